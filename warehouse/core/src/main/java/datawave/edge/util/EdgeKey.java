@@ -705,7 +705,21 @@ public class EdgeKey {
             if (nPieces < 4) {
                 return UNKNOWN;
             }
-            if (pieces.get(0).equals(STATS_COLF)) {
+            return getEdgeVersion(pieces.get(0).equals(STATS_COLF), nPieces);
+        }
+        
+        /**
+         * @param statsEdge
+         *            true if the first column piece is the stats column family
+         * @param nPieces
+         *            the number of colf and colq pieces
+         * @return the version of an edge key with the given number of column pieces
+         */
+        public static EDGE_VERSION getEdgeVersion(boolean statsEdge, int nPieces) {
+            if (nPieces < 4) {
+                return UNKNOWN;
+            }
+            if (statsEdge) {
                 if (nPieces == 6) {
                     return STATS_BASE;
                 } else if (nPieces == 7) {
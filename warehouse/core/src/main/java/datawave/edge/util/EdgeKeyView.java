@@ -0,0 +1,341 @@
+package datawave.edge.util;
+
+import static datawave.edge.util.EdgeKey.COL_SEPARATOR_BYTE;
+import static datawave.edge.util.EdgeKey.STATS_BYTES;
+
+import java.nio.charset.StandardCharsets;
+
+import datawave.edge.model.EdgeModelAware.Fields.FieldKey;
+import datawave.edge.util.EdgeKey.EDGE_FORMAT;
+import datawave.edge.util.EdgeKey.EDGE_VERSION;
+
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.accumulo.core.data.Key;
+
+/**
+ * A reusable, byte level view of the fields of an edge key. Where {@link EdgeKey#decode(Key)} decodes every field of a key into a string, a view only finds
+ * where the fields are: each field is a {@link ByteSequence} over the bytes of the key itself, so viewing a key copies nothing and, after the first key,
+ * allocates next to nothing. This makes it suitable for iterators that look at many more keys than they return.
+ * <p>
+ * The fields are located with the same {@link EDGE_VERSION} layouts used by {@link EdgeKeyDecoder}. The source and sink are left escaped, as they are in the
+ * row, and the relationship and attribute1 fields are left whole (e.g. "FROM-TO") rather than split into their source and sink parts.
+ * <p>
+ * The sequences returned are only valid until the view is {@link #set(Key) set} to another key, and must be copied to be kept. They are equal to, and hash
+ * the same as, an {@link org.apache.accumulo.core.data.ArrayByteSequence} of the same bytes. Not thread-safe.
+ */
+public class EdgeKeyView {
+    
+    private static final int MAX_PARTS = 9;
+    
+    private final Slice row = new Slice();
+    private final Slice columnFamily = new Slice();
+    private final Slice columnQualifier = new Slice();
+    private final Slice source = new Slice();
+    private final Slice sink = new Slice();
+    private final Slice[] parts = new Slice[MAX_PARTS];
+    
+    private int numParts;
+    private boolean hasSink;
+    private EDGE_VERSION version = EDGE_VERSION.UNKNOWN;
+    
+    public EdgeKeyView() {
+        for (int i = 0; i < parts.length; i++) {
+            parts[i] = new Slice();
+        }
+    }
+    
+    /**
+     * View the fields of a key
+     *
+     * @param key
+     *            a key from the edge table
+     * @return this view
+     */
+    public EdgeKeyView set(Key key) {
+        row.set(key.getRowData());
+        columnFamily.set(key.getColumnFamilyData());
+        columnQualifier.set(key.getColumnQualifierData());
+        
+        // the source and sink are separated by the first null byte of the row
+        int nullPos = row.indexOf((byte) 0, 0);
+        hasSink = (nullPos >= 0);
+        if (hasSink) {
+            source.set(row.data, row.offset, nullPos);
+            sink.set(row.data, row.offset + nullPos + 1, row.length - nullPos - 1);
+        } else {
+            source.set(row.data, row.offset, row.length);
+        }
+        
+        numParts = 0;
+        version = EDGE_VERSION.UNKNOWN;
+        if (split(columnFamily)) {
+            int numColumnFamilyParts = numParts;
+            if (split(columnQualifier)) {
+                boolean statsEdge = parts[0].equalTo(STATS_BYTES);
+                version = EDGE_VERSION.getEdgeVersion(statsEdge, numParts);
+                // the version only depends on the total number of parts, so make sure they are divided between the columns as expected
+                if (version.getNumColfPieces() != numColumnFamilyParts) {
+                    version = EDGE_VERSION.UNKNOWN;
+                }
+            }
+        }
+        return this;
+    }
+    
+    /**
+     * Split a column into parts at each separator
+     *
+     * @return false if the column has more parts than any known edge version
+     */
+    private boolean split(Slice column) {
+        int start = 0;
+        for (int i = 0; i < column.length; i++) {
+            if (column.data[column.offset + i] == COL_SEPARATOR_BYTE) {
+                if (numParts == MAX_PARTS) {
+                    return false;
+                }
+                parts[numParts++].set(column.data, column.offset + start, i - start);
+                start = i + 1;
+            }
+        }
+        if (numParts == MAX_PARTS) {
+            return false;
+        }
+        parts[numParts++].set(column.data, column.offset + start, column.length - start);
+        return true;
+    }
+    
+    /**
+     * @return true if the columns of the key matched a known edge version, otherwise none of the column fields are available
+     */
+    public boolean isValid() {
+        return version != EDGE_VERSION.UNKNOWN;
+    }
+    
+    public EDGE_VERSION getVersion() {
+        return version;
+    }
+    
+    public EDGE_FORMAT getFormat() {
+        return isValid() ? version.getFormat() : EDGE_FORMAT.UNKNOWN;
+    }
+    
+    public boolean isStatsEdge() {
+        return getFormat() == EDGE_FORMAT.STATS;
+    }
+    
+    public ByteSequence getRow() {
+        return row;
+    }
+    
+    public ByteSequence getColumnFamily() {
+        return columnFamily;
+    }
+    
+    public ByteSequence getColumnQualifier() {
+        return columnQualifier;
+    }
+    
+    /**
+     * @return the escaped source, i.e., the row up to the first null byte
+     */
+    public ByteSequence getSource() {
+        return source;
+    }
+    
+    /**
+     * @return the escaped sink, i.e., the row after the first null byte, or null if the row has none, as for stats edges
+     */
+    public ByteSequence getSink() {
+        return hasSink ? sink : null;
+    }
+    
+    public ByteSequence getType() {
+        return part(version.getTypeIndex());
+    }
+    
+    public ByteSequence getStatsType() {
+        return isStatsEdge() ? part(version.getStatsTypeIndex()) : null;
+    }
+    
+    /**
+     * @return the whole relationship, i.e., the source and sink relationships of a standard edge separated by a dash
+     */
+    public ByteSequence getRelationship() {
+        return part(version.getRelationshipIndex());
+    }
+    
+    /**
+     * @return the whole attribute1, i.e., the source and sink attributes of a standard edge separated by a dash
+     */
+    public ByteSequence getAttribute1() {
+        return part(version.getCategoryIndex());
+    }
+    
+    public ByteSequence getAttribute2() {
+        return version.hasAttribute2() ? part(version.getAttribute2Index()) : null;
+    }
+    
+    public ByteSequence getAttribute3() {
+        return version.hasAttribute3() ? part(version.getAttribute3Index()) : null;
+    }
+    
+    public ByteSequence getYyyymmdd() {
+        return part(version.getYMDIndex());
+    }
+    
+    public ByteSequence getDateType() {
+        return part(version.getDateTypeIndex());
+    }
+    
+    /**
+     * @return the field of the edge model, or null if the key does not have that field. The {@link FieldKey#STATS_EDGE} field is not a part of the key and
+     *         is always null, see {@link #isStatsEdge()}
+     */
+    public ByteSequence getField(FieldKey field) {
+        switch (field) {
+            case EDGE_SOURCE:
+                return getSource();
+            case EDGE_SINK:
+                return getSink();
+            case EDGE_TYPE:
+                return getType();
+            case EDGE_RELATIONSHIP:
+                return getRelationship();
+            case EDGE_ATTRIBUTE1:
+                return getAttribute1();
+            case EDGE_ATTRIBUTE2:
+                return getAttribute2();
+            case EDGE_ATTRIBUTE3:
+                return getAttribute3();
+            case DATE:
+                return getYyyymmdd();
+            default:
+                return null;
+        }
+    }
+    
+    private ByteSequence part(int index) {
+        return (isValid() && index >= 0 && index < numParts) ? parts[index] : null;
+    }
+    
+    @Override
+    public String toString() {
+        return row + " " + columnFamily + ":" + columnQualifier;
+    }
+    
+    /**
+     * A mutable {@link ByteSequence} over a range of a backing array, so that the view can be moved from one key to the next without allocating
+     */
+    private static final class Slice extends ByteSequence {
+        private byte[] data;
+        private int offset;
+        private int length;
+        
+        private void set(ByteSequence sequence) {
+            set(sequence.getBackingArray(), sequence.offset(), sequence.length());
+        }
+        
+        private void set(byte[] data, int offset, int length) {
+            this.data = data;
+            this.offset = offset;
+            this.length = length;
+        }
+        
+        private int indexOf(byte b, int from) {
+            for (int i = from; i < length; i++) {
+                if (data[offset + i] == b) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+        
+        private boolean equalTo(byte[] bytes) {
+            if (length != bytes.length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (data[offset + i] != bytes[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        
+        @Override
+        public byte byteAt(int i) {
+            if (i < 0 || i >= length) {
+                throw new IllegalArgumentException("index out of bounds: " + i);
+            }
+            return data[offset + i];
+        }
+        
+        @Override
+        public int length() {
+            return length;
+        }
+        
+        @Override
+        public ByteSequence subSequence(int start, int end) {
+            if (start > end || start < 0 || end > length) {
+                throw new IllegalArgumentException("Bad start and/end start = " + start + " end=" + end + " offset=" + offset + " length=" + length);
+            }
+            Slice slice = new Slice();
+            slice.set(data, offset + start, end - start);
+            return slice;
+        }
+        
+        @Override
+        public byte[] toArray() {
+            byte[] copy = new byte[length];
+            System.arraycopy(data, offset, copy, 0, length);
+            return copy;
+        }
+        
+        @Override
+        public boolean isBackedByArray() {
+            return true;
+        }
+        
+        @Override
+        public byte[] getBackingArray() {
+            return data;
+        }
+        
+        @Override
+        public int offset() {
+            return offset;
+        }
+        
+        /**
+         * Equal to any {@link ByteSequence} with the same bytes, and hashed as an {@link org.apache.accumulo.core.data.ArrayByteSequence}, so that a slice can
+         * be looked up in a set of them
+         */
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof ByteSequence)) {
+                return false;
+            }
+            ByteSequence other = (ByteSequence) o;
+            return length == other.length() && compareTo(other) == 0;
+        }
+        
+        @Override
+        public int hashCode() {
+            int hash = 1;
+            for (int i = offset; i < offset + length; i++) {
+                hash = (31 * hash) + data[i];
+            }
+            return hash;
+        }
+        
+        @Override
+        public String toString() {
+            return new String(data, offset, length, StandardCharsets.UTF_8);
+        }
+    }
+}
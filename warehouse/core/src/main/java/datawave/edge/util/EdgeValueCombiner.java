@@ -0,0 +1,251 @@
+package datawave.edge.util;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import datawave.edge.protobuf.EdgeData;
+import datawave.edge.util.EdgeKey.EDGE_FORMAT;
+import datawave.edge.util.EdgeKey.STATS_TYPE;
+import datawave.edge.util.EdgeValue.EdgeValueBuilder;
+
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.LongCombiner.VarLenEncoder;
+import org.apache.commons.lang.StringUtils;
+import org.apache.hadoop.io.Text;
+import org.apache.log4j.Logger;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+
+/**
+ * Combines the values of edges one at a time, as the edge combiners do at compaction time: counts and histograms are summed, hour bitmasks are or'ed, the
+ * hyperloglogs of STATS/LINKS edges are merged, and the earliest load date and uuid are kept. Old style varint values are combined with protocol buffer values,
+ * and the result is always a protocol buffer (or a hyperloglog for STATS/LINKS edges).
+ * <p>
+ * Since combining is associative, a combined value may itself be combined again, e.g. to merge the edges of several days, or partial results from several
+ * tablets. Not thread-safe.
+ */
+public class EdgeValueCombiner {
+    
+    private static final Logger log = Logger.getLogger(EdgeValueCombiner.class);
+    
+    private final EDGE_FORMAT format;
+    private final STATS_TYPE statsType;
+    
+    private EdgeValueBuilder builder;
+    private List<Long> combinedList;
+    private ExtendedHyperLogLogPlus ehllp;
+    private int combineCount;
+    
+    private final Text colQual = new Text();
+    
+    /**
+     * @param format
+     *            the format of the edges to combine
+     * @param statsType
+     *            the type of the stats edges to combine, ignored for standard edges
+     */
+    public EdgeValueCombiner(EDGE_FORMAT format, STATS_TYPE statsType) {
+        this.format = format;
+        this.statsType = statsType;
+        reset();
+    }
+    
+    /**
+     * @param colFam
+     *            the column family of the edges to combine
+     * @return a combiner for the format of the edges with that column family
+     */
+    public static EdgeValueCombiner forColumnFamily(Text colFam) {
+        EDGE_FORMAT format = EdgeKeyDecoder.determineEdgeFormat(colFam);
+        return new EdgeValueCombiner(format, format == EDGE_FORMAT.STATS ? EdgeKeyDecoder.determineStatsType(colFam) : null);
+    }
+    
+    /**
+     * Forget any values combined so far
+     */
+    public void reset() {
+        builder = EdgeValue.newBuilder();
+        combinedList = new ArrayList<>();
+        ehllp = (isStatsLinks() ? new ExtendedHyperLogLogPlus() : null);
+        combineCount = 0;
+    }
+    
+    private boolean isStatsLinks() {
+        return format == EDGE_FORMAT.STATS && statsType == STATS_TYPE.LINKS;
+    }
+    
+    public int getCombineCount() {
+        return combineCount;
+    }
+    
+    /**
+     * Combine another value
+     *
+     * @param key
+     *            the key of the value, whose date is used as the load date of values that have none
+     * @param value
+     *            the value to combine
+     */
+    public void add(Key key, Value value) {
+        combineCount++;
+        if (format == EDGE_FORMAT.STANDARD) {
+            addStandardValue(key, value);
+        } else if (isStatsLinks()) {
+            try {
+                ehllp.addAll(new ExtendedHyperLogLogPlus(value));
+            } catch (final IOException e) {
+                log.error("Failed to add the hyperloglog value for " + key);
+            }
+        } else if (format == EDGE_FORMAT.STATS) {
+            addStatsValue(key, value);
+        }
+    }
+    
+    /**
+     * @return the combined value, or null if the edge format is unknown
+     */
+    public Value getCombinedValue() {
+        if (format == EDGE_FORMAT.UNKNOWN) {
+            return null;
+        }
+        if (isStatsLinks()) {
+            try {
+                return new Value(ehllp.getBytes());
+            } catch (final IOException e) {
+                log.error("Failed to build the hyperloglog value", e);
+                try {
+                    // This "should" never be returned, but just in case
+                    return new Value(new ExtendedHyperLogLogPlus().getBytes());
+                } catch (final IOException e2) {
+                    throw new RuntimeException("Unable to initialize ExtendedHyperLogLogPlus", e2);
+                }
+            }
+        }
+        return builder.build().encode();
+    }
+    
+    private void addStandardValue(Key key, Value value) {
+        try {
+            EdgeData.EdgeValue protoEdgeValue = EdgeData.EdgeValue.parseFrom(value.get());
+            
+            if (protoEdgeValue.hasCount()) {
+                builder.setCount(protoEdgeValue.getCount() + builder.getCount());
+            }
+            
+            if (protoEdgeValue.hasHourBitmask()) {
+                builder.combineBitmask(protoEdgeValue.getHourBitmask());
+            }
+            
+            useEarliestLoadDate(key, protoEdgeValue);
+            combineSourceAndSink(protoEdgeValue);
+            useEarliestUuid(protoEdgeValue);
+            combineBadActivityDate(protoEdgeValue);
+        } catch (InvalidProtocolBufferException e) {
+            // Try to decode an old varint value
+            long count = new VarLenEncoder().decode(value.get());
+            builder.setCount(builder.getCount() + count);
+        }
+    }
+    
+    private void addStatsValue(Key key, Value value) {
+        try {
+            EdgeData.EdgeValue protoEdgeValue = EdgeData.EdgeValue.parseFrom(value.get());
+            useEarliestLoadDate(key, protoEdgeValue);
+            combineSourceAndSink(protoEdgeValue);
+            useEarliestUuid(protoEdgeValue);
+            combineBadActivityDate(protoEdgeValue);
+            combineHistogram(protoEdgeValue); // already decoded the value
+        } catch (InvalidProtocolBufferException e) {
+            // value wasn't previously a protobuf, so we don't get the source or sink
+            
+            // combine the stats hours/duration with the raw value
+            combineHistogramFromLegacyValue(value);
+        }
+    }
+    
+    /**
+     * Determines the oldest load date and updates the builder with it
+     *
+     * @param protoEdgeValue
+     *            the current value, decoded
+     */
+    private void useEarliestLoadDate(Key key, EdgeData.EdgeValue protoEdgeValue) {
+        String loadDate = builder.getLoadDate();
+        if (protoEdgeValue.hasLoadDate()) {
+            if (null == loadDate || loadDate.compareTo(protoEdgeValue.getLoadDate()) > 0) {
+                builder.setLoadDate(protoEdgeValue.getLoadDate());
+            }
+        } else if (null == loadDate) {
+            builder.setLoadDate(getDateFromKey(key));
+        }
+    }
+    
+    private String getDateFromKey(Key key) {
+        key.getColumnQualifier(colQual);
+        return EdgeKeyDecoder.getYYYYMMDD(colQual);
+    }
+    
+    private void combineHistogram(EdgeData.EdgeValue protoEdgeValue) {
+        if (STATS_TYPE.ACTIVITY == statsType) {
+            List<Long> sourceList = EdgeValueHelper.decodeActivityHistogram(protoEdgeValue.getHoursList());
+            EdgeValueHelper.combineHistogram(sourceList, combinedList);
+            builder.setHours(combinedList);
+        } else if (STATS_TYPE.DURATION == statsType) {
+            List<Long> sourceList = EdgeValueHelper.decodeDurationHistogram(protoEdgeValue.getDurationList());
+            EdgeValueHelper.combineHistogram(sourceList, combinedList);
+            builder.setDuration(combinedList);
+        }
+    }
+    
+    private void combineHistogramFromLegacyValue(Value value) {
+        if (STATS_TYPE.ACTIVITY == statsType) {
+            List<Long> sourceList = EdgeValueHelper.decodeActivityHistogram(EdgeValueHelper.getVarLongList(value.get()));
+            EdgeValueHelper.combineHistogram(sourceList, combinedList);
+            builder.setHours(combinedList);
+        } else if (STATS_TYPE.DURATION == statsType) {
+            List<Long> sourceList = EdgeValueHelper.decodeDurationHistogram(EdgeValueHelper.getVarLongList(value.get()));
+            EdgeValueHelper.combineHistogram(sourceList, combinedList);
+            builder.setDuration(combinedList);
+        }
+    }
+    
+    private void combineSourceAndSink(EdgeData.EdgeValue protoEdgeValue) {
+        if (StringUtils.isBlank(builder.getSourceValue()) && protoEdgeValue.hasSourceValue()) {
+            builder.setSourceValue(protoEdgeValue.getSourceValue());
+        }
+        if (StringUtils.isBlank(builder.getSinkValue()) && protoEdgeValue.hasSinkValue()) {
+            builder.setSinkValue(protoEdgeValue.getSinkValue());
+        }
+    }
+    
+    private void useEarliestUuid(EdgeData.EdgeValue protoEdgeValue) {
+        // Keeps overriding value of 'uuid' so the last(earliest) one will always be used
+        // the value corresponding to the key with the most recent timestamp will come first
+        // the value corresponding to the key with the oldest timestamp will come last
+        if (protoEdgeValue.hasUuid()) {
+            // previously, we took uuid from proto.EdgeValue, converted it to UUID, then to String
+            // then when encoding we converted it back to a UUID and then into a UUID builder
+            builder.setUuidObj(protoEdgeValue.getUuid());
+            builder.setOnlyUuidString(false);
+        } else if (protoEdgeValue.hasUuidString()) {
+            builder.setOnlyUuidString(true);
+            builder.setUuid(protoEdgeValue.getUuidString());
+        }
+    }
+    
+    private void combineBadActivityDate(EdgeData.EdgeValue protoEdgeValue) {
+        // Only set the bad activity flag if one of the edges to be combined contains the bad activity flag.
+        // This should only happen with the new EVENT_ONLY date type edges
+        if (protoEdgeValue.hasBadActivity()) {
+            if (builder.badActivityDateSet()) {
+                // If one of the activity dates is good then the edge will be treated as good
+                // They all must be bad for it to be treated as a bad activity date.
+                builder.setBadActivityDate(builder.isBadActivityDate() && protoEdgeValue.getBadActivity());
+            } else {
+                builder.setBadActivityDate(protoEdgeValue.getBadActivity());
+            }
+        }
+    }
+}
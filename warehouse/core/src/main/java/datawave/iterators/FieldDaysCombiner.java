@@ -0,0 +1,81 @@
+package datawave.iterators;
+
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.Combiner;
+import org.apache.hadoop.io.Text;
+import org.apache.log4j.Logger;
+
+import java.util.Iterator;
+
+/**
+ * Combines the day bitmaps of a field in the metadata table. The bitmaps are written with a key of the form:
+ *
+ * <pre>
+ * FIELD_NAME fd:DataType\0yyyyMM [] bitmap
+ * </pre>
+ *
+ * where the value is a 4 byte big endian int with bit (day - 1) set for each day of the month that the field was indexed for the datatype. Values are combined
+ * with a bitwise or, so that the key holds every day that was ever written for the month.
+ */
+public class FieldDaysCombiner extends Combiner {
+    
+    public static final Text COLF_FD = new Text("fd");
+    
+    private static final Logger log = Logger.getLogger(FieldDaysCombiner.class);
+    
+    /**
+     * Reduces a list of Values into a single Value.
+     *
+     * @param key
+     *            The most recent version of the Key being reduced.
+     *
+     * @param iter
+     *            An iterator over the Values for different versions of the key.
+     *
+     * @return The combined Value.
+     */
+    @Override
+    public Value reduce(Key key, Iterator<Value> iter) {
+        int days = 0;
+        while (iter.hasNext()) {
+            Value value = iter.next();
+            try {
+                days |= decode(value);
+            } catch (Exception e) {
+                log.error("Unable to decode days from " + key + " / " + value);
+            }
+        }
+        return encode(days);
+    }
+    
+    /**
+     * @param day
+     *            a day of the form yyyyMMdd
+     * @return the month of the day, of the form yyyyMM
+     */
+    public static String month(String day) {
+        return day.substring(0, 6);
+    }
+    
+    /**
+     * @param day
+     *            a day of the form yyyyMMdd
+     * @return the bit of the day within the bitmap of its month
+     */
+    public static int dayBit(String day) {
+        return 1 << (Integer.parseInt(day.substring(6, 8)) - 1);
+    }
+    
+    public static Value encode(int days) {
+        return new Value(new byte[] {(byte) (days >>> 24), (byte) (days >>> 16), (byte) (days >>> 8), (byte) days});
+    }
+    
+    public static int decode(Value value) {
+        byte[] bytes = value.get();
+        if (bytes.length != 4) {
+            throw new IllegalArgumentException("Expected 4 bytes but got " + bytes.length);
+        }
+        return ((bytes[0] & 0xff) << 24) | ((bytes[1] & 0xff) << 16) | ((bytes[2] & 0xff) << 8) | (bytes[3] & 0xff);
+    }
+}
@@ -0,0 +1,365 @@
+package datawave.query.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import datawave.ingest.protobuf.Uid;
+import datawave.security.util.ScannerHelper;
+import org.apache.accumulo.core.client.BatchScanner;
+import org.apache.accumulo.core.client.Connector;
+import org.apache.accumulo.core.client.TableNotFoundException;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.security.Authorizations;
+import org.apache.accumulo.core.security.ColumnVisibility;
+import org.apache.hadoop.io.Text;
+import org.apache.log4j.Logger;
+
+/**
+ * Resolves UUID field/value pairs to the documents containing them without planning a JEXL query. Batches of UUIDs are looked up in the global index with many
+ * exact ranges per {@link BatchScanner}, and several batches are kept in flight at once so that resolution of one batch overlaps with the scanning of the next.
+ * <p>
+ * Global index entries whose uid list was dropped at ingest (too many uids for the term) cannot be resolved to documents. The terms for those entries are
+ * reported through {@link Resolution#getUnresolvedTerms()} so that callers can fall back to a planned query.
+ */
+public class UUIDLookupEngine {
+    
+    private static final Logger log = Logger.getLogger(UUIDLookupEngine.class);
+    
+    private static final Object END_OF_RESULTS = new Object();
+    private static final String NULL_BYTE = "\u0000";
+    
+    private final Connector connector;
+    private final Set<Authorizations> auths;
+    private String indexTableName = "shardIndex";
+    private String beginDay = null;
+    private String endDay = null;
+    private Set<String> datatypeFilter = null;
+    private int batchSize = 1000;
+    private int scanThreads = 8;
+    private int maxBatchesInFlight = 4;
+    private int queueCapacity = 10000;
+    
+    /**
+     * A document in the shard table, identified by its shard id, datatype and uid. Resolved documents also carry the field, value and visibility of the global
+     * index entry they were resolved from.
+     */
+    public static class DocumentId {
+        private final String shardId;
+        private final String datatype;
+        private final String uid;
+        private final String field;
+        private final String value;
+        private final ColumnVisibility columnVisibility;
+        
+        public DocumentId(String shardId, String datatype, String uid) {
+            this(shardId, datatype, uid, null, null, null);
+        }
+        
+        public DocumentId(String shardId, String datatype, String uid, String field, String value, ColumnVisibility columnVisibility) {
+            this.shardId = shardId;
+            this.datatype = datatype;
+            this.uid = uid;
+            this.field = field;
+            this.value = value;
+            this.columnVisibility = columnVisibility;
+        }
+        
+        public String getShardId() {
+            return shardId;
+        }
+        
+        public String getDatatype() {
+            return datatype;
+        }
+        
+        public String getUid() {
+            return uid;
+        }
+        
+        public String getField() {
+            return field;
+        }
+        
+        public String getValue() {
+            return value;
+        }
+        
+        public ColumnVisibility getColumnVisibility() {
+            return columnVisibility;
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof DocumentId)) {
+                return false;
+            }
+            DocumentId other = (DocumentId) o;
+            return shardId.equals(other.shardId) && datatype.equals(other.datatype) && uid.equals(other.uid);
+        }
+        
+        @Override
+        public int hashCode() {
+            return (shardId.hashCode() * 31 + datatype.hashCode()) * 31 + uid.hashCode();
+        }
+        
+        /**
+         * @return the document id in the form shardId/datatype/uid
+         */
+        @Override
+        public String toString() {
+            return shardId + '/' + datatype + '/' + uid;
+        }
+    }
+    
+    /**
+     * A streaming resolution of UUIDs to documents. Documents are returned as soon as their global index batch has been scanned. Closing the resolution
+     * cancels any outstanding batches, after which no more documents are returned.
+     */
+    public class Resolution implements Iterator<DocumentId>, AutoCloseable {
+        private final BlockingQueue<Object> queue = new ArrayBlockingQueue<>(queueCapacity);
+        private final List<String> unresolvedTerms = Collections.synchronizedList(new ArrayList<>());
+        private final ExecutorService executor;
+        private volatile Throwable failure = null;
+        private volatile boolean closed = false;
+        private Object next = null;
+        private boolean done = false;
+        
+        private Resolution(List<List<Range>> batches) {
+            this.executor = Executors.newFixedThreadPool(Math.max(1, Math.min(maxBatchesInFlight, batches.size())));
+            final AtomicInteger remaining = new AtomicInteger(batches.size());
+            if (batches.isEmpty()) {
+                queue.add(END_OF_RESULTS);
+            }
+            for (final List<Range> batch : batches) {
+                executor.execute(() -> {
+                    try {
+                        scanIndex(batch, this);
+                    } catch (Throwable t) {
+                        failure = t;
+                    } finally {
+                        if (remaining.decrementAndGet() == 0) {
+                            put(END_OF_RESULTS);
+                        }
+                    }
+                });
+            }
+            executor.shutdown();
+        }
+        
+        private void put(Object o) {
+            try {
+                queue.put(o);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while queueing resolved UUIDs", e);
+            }
+        }
+        
+        @Override
+        public boolean hasNext() {
+            if (closed) {
+                next = null;
+                done = true;
+            }
+            if (next == null && !done) {
+                try {
+                    next = queue.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("Interrupted while resolving UUIDs", e);
+                }
+                if (next == END_OF_RESULTS || closed) {
+                    next = null;
+                    done = true;
+                }
+            }
+            if (failure != null) {
+                throw new RuntimeException("Failed to resolve UUIDs against " + indexTableName, failure);
+            }
+            return next != null;
+        }
+        
+        @Override
+        public DocumentId next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            DocumentId current = (DocumentId) next;
+            next = null;
+            return current;
+        }
+        
+        /**
+         * @return the terms (value\0field) found in the global index without a uid list. Only complete once this resolution has been exhausted.
+         */
+        public List<String> getUnresolvedTerms() {
+            return unresolvedTerms;
+        }
+        
+        @Override
+        public void close() {
+            closed = true;
+            executor.shutdownNow();
+            queue.clear();
+            // wake up a caller blocked in hasNext
+            queue.offer(END_OF_RESULTS);
+        }
+    }
+    
+    public UUIDLookupEngine(Connector connector, Set<Authorizations> auths) {
+        this.connector = connector;
+        this.auths = auths;
+    }
+    
+    /**
+     * Start resolving the given field/value pairs to documents. Values must already be normalized the way they are stored in the global index. Only the
+     * shards within the date range and the datatypes of the datatype filter, if set, are resolved.
+     *
+     * @param fieldValuePairs
+     *            the UUID field names and values to look up
+     * @return a streaming resolution of the UUIDs
+     */
+    public Resolution resolve(Collection<Entry<String,String>> fieldValuePairs) {
+        List<List<Range>> batches = new ArrayList<>();
+        List<Range> batch = new ArrayList<>(Math.min(batchSize, fieldValuePairs.size()));
+        for (Entry<String,String> pair : fieldValuePairs) {
+            batch.add(rangeForTerm(pair.getValue(), pair.getKey()));
+            if (batch.size() >= batchSize) {
+                batches.add(batch);
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+        if (!batch.isEmpty()) {
+            batches.add(batch);
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Resolving " + fieldValuePairs.size() + " UUIDs in " + batches.size() + " batches");
+        }
+        return new Resolution(batches);
+    }
+    
+    private Range rangeForTerm(String value, String field) {
+        if (beginDay == null || endDay == null) {
+            return Range.exact(new Text(value), new Text(field));
+        }
+        return new Range(new Key(value, field, beginDay + "_"), true, new Key(value, field, endDay + "_" + '\uffff'), false);
+    }
+    
+    private void scanIndex(List<Range> ranges, Resolution resolution) throws TableNotFoundException, InvalidProtocolBufferException {
+        BatchScanner scanner = ScannerHelper.createBatchScanner(connector, indexTableName, auths, scanThreads);
+        try {
+            scanner.setRanges(ranges);
+            for (Entry<Key,Value> entry : scanner) {
+                if (Thread.currentThread().isInterrupted()) {
+                    return;
+                }
+                Key key = entry.getKey();
+                String cq = key.getColumnQualifier().toString();
+                int separator = cq.indexOf('\0');
+                if (separator < 0) {
+                    continue;
+                }
+                String shardId = cq.substring(0, separator);
+                String datatype = cq.substring(separator + 1);
+                if (datatypeFilter != null && !datatypeFilter.isEmpty() && !datatypeFilter.contains(datatype)) {
+                    continue;
+                }
+                
+                Uid.List uidList = Uid.List.parseFrom(entry.getValue().get());
+                if (uidList.getIGNORE()) {
+                    resolution.unresolvedTerms.add(key.getRow() + NULL_BYTE + key.getColumnFamily());
+                    continue;
+                }
+                for (String uid : uidList.getUIDList()) {
+                    resolution.put(new DocumentId(shardId, datatype, uid, key.getColumnFamily().toString(), key.getRow().toString(),
+                                    new ColumnVisibility(key.getColumnVisibility())));
+                }
+            }
+        } finally {
+            scanner.close();
+        }
+    }
+    
+    public String getIndexTableName() {
+        return indexTableName;
+    }
+    
+    public void setIndexTableName(String indexTableName) {
+        this.indexTableName = indexTableName;
+    }
+    
+    /**
+     * Limit resolution to the shards of the given days
+     *
+     * @param beginDay
+     *            the first day, of the form yyyyMMdd
+     * @param endDay
+     *            the last day, of the form yyyyMMdd
+     */
+    public void setDateRange(String beginDay, String endDay) {
+        this.beginDay = beginDay;
+        this.endDay = endDay;
+    }
+    
+    public Set<String> getDatatypeFilter() {
+        return datatypeFilter;
+    }
+    
+    /**
+     * @param datatypeFilter
+     *            the datatypes to resolve, or null or empty for all of them
+     */
+    public void setDatatypeFilter(Set<String> datatypeFilter) {
+        this.datatypeFilter = datatypeFilter;
+    }
+    
+    public int getBatchSize() {
+        return batchSize;
+    }
+    
+    /**
+     * @param batchSize
+     *            the number of ranges handed to each batch scanner
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = Math.max(1, batchSize);
+    }
+    
+    public int getScanThreads() {
+        return scanThreads;
+    }
+    
+    public void setScanThreads(int scanThreads) {
+        this.scanThreads = Math.max(1, scanThreads);
+    }
+    
+    public int getMaxBatchesInFlight() {
+        return maxBatchesInFlight;
+    }
+    
+    public void setMaxBatchesInFlight(int maxBatchesInFlight) {
+        this.maxBatchesInFlight = Math.max(1, maxBatchesInFlight);
+    }
+    
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+    
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = Math.max(1, queueCapacity);
+    }
+}
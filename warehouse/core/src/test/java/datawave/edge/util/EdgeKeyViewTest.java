@@ -0,0 +1,136 @@
+package datawave.edge.util;
+
+import static datawave.edge.util.EdgeTableTestKeyHelper.ATTR_2;
+import static datawave.edge.util.EdgeTableTestKeyHelper.ATTR_3;
+import static datawave.edge.util.EdgeTableTestKeyHelper.DATE;
+import static datawave.edge.util.EdgeTableTestKeyHelper.SINKREL;
+import static datawave.edge.util.EdgeTableTestKeyHelper.SINK_ATTR_1;
+import static datawave.edge.util.EdgeTableTestKeyHelper.SINK_DATA;
+import static datawave.edge.util.EdgeTableTestKeyHelper.SOURCEREL;
+import static datawave.edge.util.EdgeTableTestKeyHelper.SOURCE_ATTR_1;
+import static datawave.edge.util.EdgeTableTestKeyHelper.SOURCE_DATA;
+import static datawave.edge.util.EdgeTableTestKeyHelper.TYPE;
+
+import java.util.Collections;
+import java.util.Set;
+
+import datawave.edge.model.EdgeModelAware.Fields.FieldKey;
+
+import org.apache.accumulo.core.data.ArrayByteSequence;
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.accumulo.core.data.Key;
+import org.apache.hadoop.io.Text;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class EdgeKeyViewTest {
+    private EdgeTableTestKeyHelper testKeyHelper;
+    private EdgeKeyView view;
+    
+    @Before
+    public void before() {
+        testKeyHelper = new EdgeTableTestKeyHelper();
+        view = new EdgeKeyView();
+    }
+    
+    private static void assertField(String expected, ByteSequence actual) {
+        if (expected == null) {
+            Assert.assertNull(actual);
+        } else {
+            Assert.assertNotNull(actual);
+            Assert.assertEquals(expected, actual.toString());
+        }
+    }
+    
+    @Test
+    public void testStandardKeys() {
+        // this also verifies that reusing the view object has no impact on correctness
+        Key[] keys = {testKeyHelper.refBase, testKeyHelper.refBaseAttribute2, testKeyHelper.refProtobuf, testKeyHelper.refDateProtobuf};
+        EdgeKey.EDGE_VERSION[] versions = {EdgeKey.EDGE_VERSION.BASE, EdgeKey.EDGE_VERSION.BASE_ATTRIBUTE2, EdgeKey.EDGE_VERSION.PROTOBUF,
+                EdgeKey.EDGE_VERSION.DATE_PROTOBUF};
+        for (int i = 0; i < keys.length; i++) {
+            view.set(keys[i]);
+            Assert.assertTrue(view.isValid());
+            Assert.assertEquals(versions[i], view.getVersion());
+            Assert.assertFalse(view.isStatsEdge());
+            assertField(SOURCE_DATA, view.getSource());
+            assertField(SINK_DATA, view.getSink());
+            assertField(TYPE, view.getType());
+            assertField(SOURCEREL + "-" + SINKREL, view.getRelationship());
+            assertField(SOURCE_ATTR_1 + "-" + SINK_ATTR_1, view.getAttribute1());
+            assertField(DATE, view.getYyyymmdd());
+            assertField(i == 0 ? null : ATTR_2, view.getAttribute2());
+            assertField(i < 2 ? null : ATTR_3, view.getAttribute3());
+            assertField(i == 3 ? "A" : null, view.getDateType());
+            assertField(null, view.getStatsType());
+            
+            // the same fields as the decoder finds
+            EdgeKey edgeKey = EdgeKey.decode(keys[i]);
+            assertField(edgeKey.getSourceData(), view.getField(FieldKey.EDGE_SOURCE));
+            assertField(edgeKey.getSinkData(), view.getField(FieldKey.EDGE_SINK));
+            assertField(edgeKey.getType(), view.getField(FieldKey.EDGE_TYPE));
+            assertField(edgeKey.getYyyymmdd(), view.getField(FieldKey.DATE));
+            assertField(null, view.getField(FieldKey.STATS_EDGE));
+        }
+    }
+    
+    @Test
+    public void testStatsKeys() {
+        Key[] keys = {testKeyHelper.refStatsBase, testKeyHelper.refStatsAttribute2, testKeyHelper.refStatsProtobuf, testKeyHelper.refStatsDateProtobuf};
+        EdgeKey.EDGE_VERSION[] versions = {EdgeKey.EDGE_VERSION.STATS_BASE, EdgeKey.EDGE_VERSION.STATS_ATTRIBUTE2, EdgeKey.EDGE_VERSION.STATS_PROTOBUF,
+                EdgeKey.EDGE_VERSION.DATE_STATS_PROTOBUF};
+        for (int i = 0; i < keys.length; i++) {
+            view.set(keys[i]);
+            Assert.assertTrue(view.isValid());
+            Assert.assertEquals(versions[i], view.getVersion());
+            Assert.assertTrue(view.isStatsEdge());
+            assertField(SOURCE_DATA, view.getSource());
+            assertField(null, view.getSink());
+            assertField("DURATION", view.getStatsType());
+            assertField(TYPE, view.getType());
+            assertField(SOURCEREL, view.getRelationship());
+            assertField(SOURCE_ATTR_1, view.getAttribute1());
+            assertField(DATE, view.getYyyymmdd());
+            assertField(i == 0 ? null : ATTR_2, view.getAttribute2());
+            assertField(i < 2 ? null : ATTR_3, view.getAttribute3());
+        }
+    }
+    
+    @Test
+    public void testUnknownKeys() {
+        // too few, too many, and misplaced column parts
+        Key[] keys = {new Key(new Text(SOURCE_DATA + '\0' + SINK_DATA), new Text(TYPE), new Text(DATE)),
+                new Key(new Text(SOURCE_DATA + '\0' + SINK_DATA), new Text("A/B/C/D/E/F/G/H"), new Text("I/J")),
+                new Key(new Text(SOURCE_DATA + '\0' + SINK_DATA), new Text(TYPE + "/" + SOURCEREL + "/" + SOURCE_ATTR_1), new Text(DATE + "/" + ATTR_2 + "/"
+                                + ATTR_3))};
+        for (Key key : keys) {
+            view.set(key);
+            Assert.assertFalse(key.toString(), view.isValid());
+            Assert.assertEquals(EdgeKey.EDGE_VERSION.UNKNOWN, view.getVersion());
+            assertField(null, view.getType());
+            assertField(null, view.getYyyymmdd());
+            
+            // the row is still available
+            assertField(SOURCE_DATA, view.getSource());
+            assertField(SINK_DATA, view.getSink());
+        }
+    }
+    
+    @Test
+    public void testEscapedRow() {
+        view.set(new Key(new Text("a\\u0000b\0c\0d"), new Text("TYPE/REL"), new Text("20200101/CAT/ATTR2/ATTR3")));
+        Assert.assertTrue(view.isValid());
+        assertField("a\\u0000b", view.getSource());
+        assertField("c\0d", view.getSink());
+    }
+    
+    @Test
+    public void testLookup() {
+        Set<ByteSequence> types = Collections.singleton(new ArrayByteSequence(TYPE));
+        view.set(testKeyHelper.refProtobuf);
+        Assert.assertTrue(types.contains(view.getType()));
+        Assert.assertFalse(types.contains(view.getRelationship()));
+        Assert.assertEquals(new ArrayByteSequence(TYPE).hashCode(), view.getType().hashCode());
+    }
+}
@@ -0,0 +1,32 @@
+package datawave.iterators;
+
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+public class FieldDaysCombinerTest {
+    
+    @Test
+    public void testDayBits() {
+        Assert.assertEquals("201901", FieldDaysCombiner.month("20190131"));
+        Assert.assertEquals(1, FieldDaysCombiner.dayBit("20190101"));
+        Assert.assertEquals(1 << 30, FieldDaysCombiner.dayBit("20190131"));
+        Assert.assertEquals(1 << 30, FieldDaysCombiner.decode(FieldDaysCombiner.encode(1 << 30)));
+        Assert.assertEquals(-1, FieldDaysCombiner.decode(FieldDaysCombiner.encode(-1)));
+    }
+    
+    @Test
+    public void testReduce() {
+        Key key = new Key("FIELD", FieldDaysCombiner.COLF_FD.toString(), "datatype\u0000201901");
+        Value first = FieldDaysCombiner.encode(FieldDaysCombiner.dayBit("20190101"));
+        Value second = FieldDaysCombiner.encode(FieldDaysCombiner.dayBit("20190131") | FieldDaysCombiner.dayBit("20190102"));
+        // a value that cannot be decoded is skipped
+        Value bad = new Value(new byte[] {1});
+        
+        Value combined = new FieldDaysCombiner().reduce(key, Arrays.asList(first, bad, second).iterator());
+        Assert.assertEquals(1 | 2 | 1 << 30, FieldDaysCombiner.decode(combined));
+    }
+}
@@ -0,0 +1,148 @@
+package datawave.query.util;
+
+import com.google.common.collect.Maps;
+import datawave.accumulo.inmemory.InMemoryInstance;
+import datawave.ingest.protobuf.Uid;
+import org.apache.accumulo.core.client.BatchWriter;
+import org.apache.accumulo.core.client.BatchWriterConfig;
+import org.apache.accumulo.core.client.Connector;
+import org.apache.accumulo.core.client.security.tokens.PasswordToken;
+import org.apache.accumulo.core.data.Mutation;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.security.Authorizations;
+import org.apache.accumulo.core.security.ColumnVisibility;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+public class UUIDLookupEngineTest {
+    
+    private static final ColumnVisibility cv = new ColumnVisibility("A");
+    private static final Set<Authorizations> auths = Collections.singleton(new Authorizations("A"));
+    private static Connector connector;
+    
+    @BeforeClass
+    public static void setupTables() throws Exception {
+        connector = new InMemoryInstance(UUIDLookupEngineTest.class.toString()).getConnector("root", new PasswordToken(new byte[0]));
+        connector.tableOperations().create("shardIndex");
+        
+        BatchWriterConfig config = new BatchWriterConfig().setMaxLatency(0, TimeUnit.SECONDS).setMaxMemory(0).setMaxWriteThreads(1);
+        BatchWriter indexWriter = connector.createBatchWriter("shardIndex", config);
+        for (int i = 0; i < 25; i++) {
+            String uuid = "uuid-" + i;
+            String shard = "20190101_" + (i % 3);
+            String uid = "uid." + i;
+            
+            Mutation m = new Mutation(uuid);
+            m.put("UUID", shard + "\u0000datatype", cv, uidList(uid));
+            indexWriter.addMutation(m);
+        }
+        
+        Uid.List.Builder ignored = Uid.List.newBuilder();
+        ignored.setCOUNT(500);
+        ignored.setIGNORE(true);
+        Mutation m = new Mutation("dated");
+        m.put("UUID", "20181231_0\u0000datatype", cv, uidList("uid.old"));
+        m.put("UUID", "20190101_0\u0000datatype", cv, uidList("uid.new"));
+        m.put("UUID", "20190101_0\u0000other", cv, uidList("uid.other"));
+        indexWriter.addMutation(m);
+        
+        m = new Mutation("popular");
+        m.put("UUID", "20190101_0\u0000datatype", cv, new Value(ignored.build().toByteArray()));
+        indexWriter.addMutation(m);
+        
+        indexWriter.close();
+    }
+    
+    private static Value uidList(String... uids) {
+        Uid.List.Builder builder = Uid.List.newBuilder();
+        for (String uid : uids) {
+            builder.addUID(uid);
+        }
+        builder.setCOUNT(uids.length);
+        builder.setIGNORE(false);
+        return new Value(builder.build().toByteArray());
+    }
+    
+    private UUIDLookupEngine newEngine() {
+        UUIDLookupEngine engine = new UUIDLookupEngine(connector, auths);
+        // force several batches in flight
+        engine.setBatchSize(4);
+        engine.setMaxBatchesInFlight(3);
+        engine.setQueueCapacity(2);
+        return engine;
+    }
+    
+    @Test
+    public void testResolve() {
+        List<Map.Entry<String,String>> terms = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            terms.add(Maps.immutableEntry("UUID", "uuid-" + i));
+        }
+        terms.add(Maps.immutableEntry("UUID", "missing"));
+        
+        Set<String> documents = new HashSet<>();
+        try (UUIDLookupEngine.Resolution resolution = newEngine().resolve(terms)) {
+            while (resolution.hasNext()) {
+                documents.add(resolution.next().toString());
+            }
+            Assert.assertTrue(resolution.getUnresolvedTerms().isEmpty());
+        }
+        
+        Assert.assertEquals(25, documents.size());
+        Assert.assertTrue(documents.contains("20190101_1/datatype/uid.7"));
+    }
+    
+    @Test
+    public void testUnresolvedTerms() {
+        try (UUIDLookupEngine.Resolution resolution = newEngine().resolve(Collections.singletonList(Maps.immutableEntry("UUID", "popular")))) {
+            Assert.assertFalse(resolution.hasNext());
+            Assert.assertEquals(Collections.singletonList("popular\u0000UUID"), resolution.getUnresolvedTerms());
+        }
+    }
+    
+    @Test
+    public void testDateRangeAndDatatypeFilter() {
+        UUIDLookupEngine engine = newEngine();
+        engine.setDateRange("20190101", "20190102");
+        engine.setDatatypeFilter(Collections.singleton("datatype"));
+        
+        List<UUIDLookupEngine.DocumentId> documents = new ArrayList<>();
+        try (UUIDLookupEngine.Resolution resolution = engine.resolve(Collections.singletonList(Maps.immutableEntry("UUID", "dated")))) {
+            while (resolution.hasNext()) {
+                documents.add(resolution.next());
+            }
+        }
+        
+        Assert.assertEquals(1, documents.size());
+        UUIDLookupEngine.DocumentId document = documents.get(0);
+        Assert.assertEquals("20190101_0/datatype/uid.new", document.toString());
+        Assert.assertEquals("UUID", document.getField());
+        Assert.assertEquals("dated", document.getValue());
+        Assert.assertEquals(cv, document.getColumnVisibility());
+    }
+    
+    @Test
+    public void testClose() {
+        List<Map.Entry<String,String>> terms = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            terms.add(Maps.immutableEntry("UUID", "uuid-" + i));
+        }
+        
+        UUIDLookupEngine.Resolution resolution = newEngine().resolve(terms);
+        Assert.assertTrue(resolution.hasNext());
+        resolution.next();
+        resolution.close();
+        
+        // must not block waiting for results that will never come
+        Assert.assertFalse(resolution.hasNext());
+    }
+}
@@ -64,16 +64,30 @@ public class SimpleGroupFieldNameParser {
         for (Entry<String,NormalizedContentInterface> entry : fields.entries()) {
             NormalizedContentInterface field = entry.getValue();
             if (field != null) {
-                NormalizedContentInterface revisedField = field;
-                try {
-                    revisedField = extractFieldNameComponents(field);
-                } catch (Exception e) {
-                    log.error("Failed to extract field name components: " + field.getIndexedFieldName() + '=' + field.getIndexedFieldValue(), e);
-                    revisedField.setError(e);
-                }
-                results.put(revisedField.getIndexedFieldName(), revisedField);
+                extractFieldNameComponents(field, results);
             }
         }
         return results;
     }
+    
+    /**
+     * Extract the field name components of a single field and add the revised field to {@code results}, keyed by its indexed field name. If the components
+     * cannot be extracted, the original field is added with the error set. This allows the fields to be parsed as they are created, without first collecting
+     * them in a map.
+     *
+     * @param field
+     *            the NormalizedContentInterface potentially containing a composite field name
+     * @param results
+     *            the map to add the revised field to
+     */
+    public void extractFieldNameComponents(NormalizedContentInterface field, Multimap<String,NormalizedContentInterface> results) {
+        NormalizedContentInterface revisedField = field;
+        try {
+            revisedField = extractFieldNameComponents(field);
+        } catch (Exception e) {
+            log.error("Failed to extract field name components: " + field.getIndexedFieldName() + '=' + field.getIndexedFieldValue(), e);
+            revisedField.setError(e);
+        }
+        results.put(revisedField.getIndexedFieldName(), revisedField);
+    }
 }
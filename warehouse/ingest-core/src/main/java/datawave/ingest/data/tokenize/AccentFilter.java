@@ -10,6 +10,8 @@ import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
  */
 public class AccentFilter extends TokenFilter {
     private CharTermAttribute termAtt;
+    // reused across tokens, grown as needed
+    private char[] output = new char[256];
     
     public AccentFilter(TokenStream input) {
         super(input);
@@ -26,12 +28,15 @@ public class AccentFilter extends TokenFilter {
             for (int i = 0; i < length; i++) {
                 final char c = buffer[i];
                 if (c >= '\u00c0' && c <= '\u0700') {
-                    char output[] = new char[buffer.length * 4]; // worst case
+                    if (output.length < length * 4) {
+                        output = new char[length * 4]; // worst case
+                    }
                     int outputPos = removeAccents(buffer, output, length);
                     if (outputPos > 0) {
                         termAtt.copyBuffer(output, 0, outputPos);
-                        break;
                     }
+                    // removeAccents already looked at the rest of the token
+                    break;
                 }
             }
             
@@ -45,6 +50,16 @@ public class AccentFilter extends TokenFilter {
      * Return the token with accents/diactirics/vowelization stripped off
      */
     public static String strip(String token) {
+        // ASCII fast path, only characters from U+00C0 up are ever rewritten
+        int length = token.length();
+        int i = 0;
+        while (i < length && token.charAt(i) < '\u00c0') {
+            i++;
+        }
+        if (i == length) {
+            return token;
+        }
+        
         char c[] = token.toCharArray();
         char output[] = new char[c.length * 4]; // worst case
         int outputPos = removeAccents(c, output, c.length);
@@ -0,0 +1,298 @@
+package datawave.ingest.data.tokenize;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.apache.lucene.analysis.tokenattributes.TypeAttribute;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Tokenizes large fields by splitting them into chunks that are tokenized in parallel on a pool of threads.
+ * <p>
+ * Each chunk is split at whitespace and read with an overlap on either side. The leading overlap gives the tokenizer the context it would have had at the
+ * start of the chunk, and the tokens starting in it are dropped as they belong to the previous chunk. The trailing overlap finds the tokens that span the end
+ * of the chunk, and the first token starting after the end of the chunk, which is also the first token of the next chunk and so anchors the positions of the
+ * next chunk to this one. The chunks are merged in order, so the tokens and their positions do not depend on which chunk finished first, and for text whose
+ * tokens do not span more than the overlap they are the same as if the field had been tokenized in one pass.
+ */
+public class ParallelTokenizer implements Closeable {
+    
+    private final ExecutorService executor;
+    private final int chunkSize;
+    private final int overlap;
+    
+    /**
+     * A token produced by the analyzer
+     */
+    public static class Token {
+        private final String term;
+        private final String type;
+        private final int start;
+        private final int positionIncrement;
+        private final boolean truncated;
+        private int position;
+        
+        Token(String term, String type, int start, int positionIncrement, boolean truncated, int position) {
+            this.term = term;
+            this.type = type;
+            this.start = start;
+            this.positionIncrement = positionIncrement;
+            this.truncated = truncated;
+            this.position = position;
+        }
+        
+        public String getTerm() {
+            return term;
+        }
+        
+        public String getType() {
+            return type;
+        }
+        
+        /**
+         * @return the offset of the start of the token in the field
+         */
+        public int getStart() {
+            return start;
+        }
+        
+        public int getPositionIncrement() {
+            return positionIncrement;
+        }
+        
+        public boolean isTruncated() {
+            return truncated;
+        }
+        
+        /**
+         * @return the sum of the position increments of this and every preceding token in the field
+         */
+        public int getPosition() {
+            return position;
+        }
+    }
+    
+    /**
+     * The tokens of one chunk, with positions relative to the start of the text read for the chunk
+     */
+    private static class Chunk {
+        private final int start;
+        private final int end;
+        private final List<Token> tokens = new ArrayList<>();
+        // the first token starting at or after the start of the chunk, and the position before it
+        private Token lead = null;
+        private int leadBase = 0;
+        // the first token starting at or after the end of the chunk
+        private Token anchor = null;
+        
+        private Chunk(int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+    }
+    
+    /**
+     * The tokenization of one field, in progress
+     */
+    public class Tokenization {
+        private final List<Future<Chunk>> chunks;
+        
+        private Tokenization(List<Future<Chunk>> chunks) {
+            this.chunks = chunks;
+        }
+        
+        /**
+         * @return the number of chunks the field was split into
+         */
+        public int getChunkCount() {
+            return chunks.size();
+        }
+        
+        /**
+         * Wait for every chunk to be tokenized
+         *
+         * @return true if every chunk is done, false if the timeout elapsed first
+         */
+        public boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+            long deadline = System.nanoTime() + unit.toNanos(timeout);
+            for (Future<Chunk> chunk : chunks) {
+                if (!chunk.isDone()) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        return false;
+                    }
+                    try {
+                        chunk.get(remaining, TimeUnit.NANOSECONDS);
+                    } catch (TimeoutException e) {
+                        return false;
+                    } catch (ExecutionException e) {
+                        // reported by getTokens
+                    }
+                }
+            }
+            return true;
+        }
+        
+        public void cancel() {
+            for (Future<Chunk> chunk : chunks) {
+                chunk.cancel(true);
+            }
+        }
+        
+        /**
+         * Merge the tokens of the chunks, blocking until they are done
+         *
+         * @return the tokens of the field in order, with positions relative to the start of the field
+         */
+        public List<Token> getTokens() throws IOException, InterruptedException {
+            List<Token> tokens = new ArrayList<>();
+            Chunk previous = null;
+            int offset = 0;
+            int lastPosition = 0;
+            for (Future<Chunk> future : chunks) {
+                Chunk chunk;
+                try {
+                    chunk = future.get();
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof IOException) {
+                        throw (IOException) e.getCause();
+                    }
+                    throw new IOException("Failed to tokenize a chunk", e.getCause());
+                }
+                
+                if (previous != null) {
+                    if (previous.anchor != null && chunk.lead != null && previous.anchor.start == chunk.lead.start
+                                    && previous.anchor.term.equals(chunk.lead.term)) {
+                        // the same token was found at the end of the previous chunk and the start of this one
+                        offset += previous.anchor.position - chunk.lead.position;
+                    } else {
+                        // otherwise continue on from the last position of the previous chunks
+                        offset = lastPosition - chunk.leadBase;
+                    }
+                }
+                for (Token token : chunk.tokens) {
+                    token.position += offset;
+                    tokens.add(token);
+                    lastPosition = token.position;
+                }
+                previous = chunk;
+            }
+            return tokens;
+        }
+    }
+    
+    /**
+     * @param threads
+     *            the number of tokenizer threads
+     * @param chunkSize
+     *            the number of characters above which a field is split into chunks
+     * @param overlap
+     *            the number of characters each chunk is extended by on either side
+     */
+    public ParallelTokenizer(int threads, int chunkSize, int overlap) {
+        this.executor = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder().setNameFormat("tokenizer-%d").setDaemon(true).build());
+        this.chunkSize = chunkSize;
+        this.overlap = overlap;
+    }
+    
+    /**
+     * @return true if the content is large enough to be split into chunks
+     */
+    public boolean isChunked(String content) {
+        return content.length() > chunkSize;
+    }
+    
+    /**
+     * Start tokenizing the chunks of a field
+     */
+    public Tokenization tokenize(final Analyzer analyzer, final String fieldName, final String content) {
+        List<Future<Chunk>> chunks = new ArrayList<>();
+        int start = 0;
+        while (start < content.length()) {
+            int end = (content.length() - start <= chunkSize ? content.length() : nextWhitespace(content, start + chunkSize));
+            final Chunk chunk = new Chunk(start, end);
+            chunks.add(executor.submit(() -> tokenize(analyzer, fieldName, content, chunk)));
+            start = end;
+        }
+        return new Tokenization(chunks);
+    }
+    
+    private Chunk tokenize(Analyzer analyzer, String fieldName, String content, Chunk chunk) throws IOException, InterruptedException {
+        int readStart = (chunk.start == 0 ? 0 : previousWhitespace(content, chunk.start - overlap));
+        int readEnd = (chunk.end == content.length() ? chunk.end : nextWhitespace(content, Math.min(content.length(), chunk.end + overlap)));
+        
+        try (TokenStream stream = analyzer.tokenStream(fieldName, new StringReader(content.substring(readStart, readEnd)))) {
+            CharTermAttribute termAtt = stream.addAttribute(CharTermAttribute.class);
+            TypeAttribute typeAtt = stream.addAttribute(TypeAttribute.class);
+            PositionIncrementAttribute posIncrAtt = stream.addAttribute(PositionIncrementAttribute.class);
+            OffsetAttribute offsetAtt = stream.addAttribute(OffsetAttribute.class);
+            TruncateAttribute truncAtt = stream.addAttribute(TruncateAttribute.class);
+            stream.reset();
+            
+            int position = 0;
+            while (stream.incrementToken()) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedException("Tokenization of " + fieldName + " was cancelled");
+                }
+                int start = readStart + offsetAtt.startOffset();
+                int increment = posIncrAtt.getPositionIncrement();
+                if (chunk.lead == null && start >= chunk.start) {
+                    chunk.leadBase = position;
+                }
+                position += increment;
+                if (start < chunk.start) {
+                    // belongs to the previous chunk
+                    continue;
+                }
+                
+                Token token = new Token(termAtt.toString(), typeAtt.type(), start, increment, truncAtt.isTruncated(), position);
+                if (chunk.lead == null) {
+                    chunk.lead = token;
+                }
+                if (start < chunk.end) {
+                    chunk.tokens.add(token);
+                } else {
+                    chunk.anchor = token;
+                    break;
+                }
+            }
+        }
+        return chunk;
+    }
+    
+    private static int nextWhitespace(String content, int from) {
+        int i = from;
+        while (i < content.length() && !Character.isWhitespace(content.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+    
+    private static int previousWhitespace(String content, int from) {
+        int i = Math.max(0, from);
+        while (i > 0 && !Character.isWhitespace(content.charAt(i - 1))) {
+            i--;
+        }
+        return i;
+    }
+    
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
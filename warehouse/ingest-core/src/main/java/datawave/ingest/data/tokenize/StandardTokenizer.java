@@ -75,6 +75,9 @@ public class StandardTokenizer extends Tokenizer {
     /** Token typed truncation rules. */
     private final Map<String,Integer> typedTokenTruncateLength = new HashMap<>(DEFAULT_TYPED_TOKEN_LENGTHS);
     
+    /** The typed truncation rules indexed by the lexer token type, so that no map lookup is needed per token. */
+    private int[] truncateLengthByTokenType = truncateLengthByTokenType();
+    
     // this tokenizer generates three attributes:
     // offset, positionIncrement and type
     private final CharTermAttribute termAtt = addAttribute(CharTermAttribute.class);
@@ -153,6 +156,7 @@ public class StandardTokenizer extends Tokenizer {
     /** Clear the map of token type to truncationg length. */
     public void clearTokenTruncateLengths() {
         typedTokenTruncateLength.clear();
+        truncateLengthByTokenType = truncateLengthByTokenType();
     }
     
     /**
@@ -168,6 +172,7 @@ public class StandardTokenizer extends Tokenizer {
             throw new IllegalArgumentException("Length must be zero or greater");
         }
         typedTokenTruncateLength.put(type, Integer.valueOf(length));
+        truncateLengthByTokenType = truncateLengthByTokenType();
     }
     
     /**
@@ -186,6 +191,14 @@ public class StandardTokenizer extends Tokenizer {
         }
     }
     
+    private int[] truncateLengthByTokenType() {
+        int[] lengths = new int[Lexer.TOKEN_TYPES.length];
+        for (int i = 0; i < lengths.length; i++) {
+            lengths[i] = getTokenTruncateLength(Lexer.TOKEN_TYPES[i]);
+        }
+        return lengths;
+    }
+    
     /**
      * @return true if metatata breaking is enabled
      */
@@ -231,7 +244,7 @@ public class StandardTokenizer extends Tokenizer {
             } else if (scanner.yylength() <= maxTokenLength) {
                 posIncrAtt.setPositionIncrement(skippedPositions + 1);
                 typeAtt.setType(Lexer.TOKEN_TYPES[tokenType]);
-                int truncateLength = getTokenTruncateLength(typeAtt.type());
+                int truncateLength = truncateLengthByTokenType[tokenType];
                 if (truncateLength < 0) {
                     truncateLength = defaultTokenTruncateLength;
                 }
@@ -2,6 +2,8 @@ package datawave.ingest.data.tokenize;
 
 import java.io.IOException;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.PriorityQueue;
 import java.util.Queue;
 
@@ -31,6 +33,8 @@ public class TokenSearchSynonymFilter extends TokenFilter {
     /** tokenizer state: output buffer for terms and synonyms */
     private final Queue<OutputTuple> output = new PriorityQueue<>(24);
     private final String[] zw = {"", ""};
+    /** the synonym type of each token type seen so far */
+    private final Map<String,String> synonymTypes = new HashMap<>();
     
     public TokenSearchSynonymFilter(TokenStream input, TokenSearch searchUtil) {
         super(input);
@@ -73,11 +77,8 @@ public class TokenSearchSynonymFilter extends TokenFilter {
                 return false;
             }
             
-            State baseState = captureState();
-            
             int synonymCount = generateSynonyms();
             
-            restoreState(baseState);
             if (synonymCount > 0 && synonymPositionsEnabled) {
                 int currentLength = posLenAtt.getPositionLength();
                 posLenAtt.setPositionLength(Math.max(synonymCount, currentLength));
@@ -93,13 +94,22 @@ public class TokenSearchSynonymFilter extends TokenFilter {
         zw[1] = ""; // placeholder for zone, unused in DefaultTokenSearch
         
         Collection<String> synonyms = searchUtil.getSynonyms(zw, type, false);
+        if (synonyms.isEmpty()) {
+            // the attributes are untouched, so there is no state to capture and restore
+            return 0;
+        }
+        State baseState = captureState();
         int position = 0;
         
         // create output type for synonyms
-        if (type.startsWith("<") && type.endsWith(">")) {
-            type = "<" + type.substring(1, type.length() - 1) + "_SYNONYM>";
-        } else {
-            type = type + "_SYNONYM";
+        String synonymType = synonymTypes.get(type);
+        if (synonymType == null) {
+            if (type.startsWith("<") && type.endsWith(">")) {
+                synonymType = "<" + type.substring(1, type.length() - 1) + "_SYNONYM>";
+            } else {
+                synonymType = type + "_SYNONYM";
+            }
+            synonymTypes.put(type, synonymType);
         }
         
         // TODO: it would be nice to capture proper character offset
@@ -108,9 +118,8 @@ public class TokenSearchSynonymFilter extends TokenFilter {
         // is that of the term from which it is derived.
         
         for (String synonym : synonyms) {
-            char[] cc = synonym.toCharArray();
-            termAtt.copyBuffer(cc, 0, cc.length);
-            typeAtt.setType(type);
+            termAtt.setEmpty().append(synonym);
+            typeAtt.setType(synonymType);
             
             posLenAtt.setPositionLength(1);
             
@@ -122,14 +131,16 @@ public class TokenSearchSynonymFilter extends TokenFilter {
                 posLenAtt.setPositionLength(1);
             }
             
-            captureTuple(position++);
+            captureTuple(synonym, position++);
         }
+        
+        restoreState(baseState);
         return position;
     }
     
     /** Capture information about the tuple to the output buffer */
-    protected void captureTuple(int position) {
-        output.add(new OutputTuple(termAtt.toString(), position, offsetAtt.startOffset(), offsetAtt.endOffset() - offsetAtt.startOffset(), captureState()));
+    protected void captureTuple(String term, int position) {
+        output.add(new OutputTuple(term, position, offsetAtt.startOffset(), offsetAtt.endOffset() - offsetAtt.startOffset(), captureState()));
     }
     
     /** Restore captured state to the Lucene attributes */
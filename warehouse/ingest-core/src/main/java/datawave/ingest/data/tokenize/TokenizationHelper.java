@@ -135,6 +135,15 @@ public class TokenizationHelper {
     public static final String INTERFIELD_POSITION_INCREMENT = ".token.interfield.position.increment";
     private int interFieldPositionIncrement = 10;
     
+    public static final String TOKENIZER_THREADS = ".tokenizer.threads";
+    private int tokenizerThreads = 0;
+    
+    public static final String TOKENIZER_CHUNK_SIZE = ".tokenizer.chunk.size";
+    private int tokenizerChunkSize = 256 * 1024;
+    
+    public static final String TOKENIZER_CHUNK_OVERLAP = ".tokenizer.chunk.overlap";
+    private int tokenizerChunkOverlap = 1024;
+    
     public static final String MAX_URL_DECODES = ".token.interfield.position.increment";
     private int maxUrlDecodes = 2;
     
@@ -159,6 +168,9 @@ public class TokenizationHelper {
         tokenizerTimeWarnThresholdMsec = conf.getLong(helper.getType().typeName() + TOKENIZER_TIME_WARN_MSEC, tokenizerTimeWarnThresholdMsec);
         tokenizerTimeErrorThresholdMsec = conf.getLong(helper.getType().typeName() + TOKENIZER_TIME_ERROR_MSEC, tokenizerTimeErrorThresholdMsec);
         interFieldPositionIncrement = conf.getInt(helper.getType().typeName() + INTERFIELD_POSITION_INCREMENT, interFieldPositionIncrement);
+        tokenizerThreads = conf.getInt(helper.getType().typeName() + TOKENIZER_THREADS, tokenizerThreads);
+        tokenizerChunkSize = conf.getInt(helper.getType().typeName() + TOKENIZER_CHUNK_SIZE, tokenizerChunkSize);
+        tokenizerChunkOverlap = conf.getInt(helper.getType().typeName() + TOKENIZER_CHUNK_OVERLAP, tokenizerChunkOverlap);
         
         final String nameProp = helper.getType().typeName() + TOKENIZER_TIME_THRESHOLD_NAMES;
         final String threshProp = helper.getType().typeName() + TOKENIZER_TIME_THRESHOLDS_MSEC;
@@ -239,6 +251,27 @@ public class TokenizationHelper {
         return termLengthWarningLimit;
     }
     
+    /**
+     * @return the number of threads used to tokenize the chunks of large fields, or 0 if fields are tokenized on the calling thread
+     */
+    public int getTokenizerThreads() {
+        return tokenizerThreads;
+    }
+    
+    /**
+     * @return the number of characters above which a field is split into chunks that are tokenized in parallel
+     */
+    public int getTokenizerChunkSize() {
+        return tokenizerChunkSize;
+    }
+    
+    /**
+     * @return the number of characters each chunk is extended by on either side, to find the tokens that span the chunk boundaries
+     */
+    public int getTokenizerChunkOverlap() {
+        return tokenizerChunkOverlap;
+    }
+    
     public int getTokenOffsetCacheMaxSize() {
         return tokenOffsetCacheMaxSize;
     }
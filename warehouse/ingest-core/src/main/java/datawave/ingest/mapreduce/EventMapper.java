@@ -78,9 +78,8 @@ import java.util.concurrent.TimeUnit;
  * is within the window, then the map will parse the Event into a map of field names and field values, the map method will call the process() method on each
  * DataTypeHandler implementation that has been configured for the Type of Event.
  *
- * This class no longer supports processing events in a multi-threaded fashion as that was proven to NOT be beneficial in the long run (i.e. The bulk of the
- * time is spent in the ContextWriter which is synchronized. Also multithreading mean potentially more memory use which we should already be maximizing per
- * machine in the hadoop map-reduce cluster.)
+ * This class processes events on a single thread. To process events in parallel within one JVM use the {@link ParallelEventMapper}, which runs one
+ * EventMapper per worker thread and emits their output in input order.
  *
  *
  *
@@ -140,6 +139,9 @@ public class EventMapper<K1,V1 extends RawRecordContainer,K2,V2> extends StatsDE
     
     private static Now now = Now.getInstance();
     
+    // the LINE_BYTES min and max counters are shared by the EventMappers of a ParallelEventMapper
+    private static final Object LINE_BYTES_LOCK = new Object();
+    
     private StandaloneStatusReporter reporter = new StandaloneStatusReporter();
     
     private DateNormalizer dateNormalizer = new DateNormalizer();
@@ -407,13 +409,15 @@ public class EventMapper<K1,V1 extends RawRecordContainer,K2,V2> extends StatsDE
         if (rawData != null) {
             long rawDataBytes = rawData.length;
             getCounter(context, IngestInput.LINE_BYTES.toString(), "TOTAL").increment(rawDataBytes);
-            long minBytes = getCounter(context, IngestInput.LINE_BYTES.toString(), "MIN").getValue();
-            if (rawDataBytes < minBytes) {
-                getCounter(context, IngestInput.LINE_BYTES.toString(), "MIN").setValue(rawDataBytes);
-            }
-            long maxBytes = getCounter(context, IngestInput.LINE_BYTES.toString(), "MAX").getValue();
-            if (rawDataBytes > maxBytes) {
-                getCounter(context, IngestInput.LINE_BYTES.toString(), "MAX").setValue(rawDataBytes);
+            synchronized (LINE_BYTES_LOCK) {
+                long minBytes = getCounter(context, IngestInput.LINE_BYTES.toString(), "MIN").getValue();
+                if (rawDataBytes < minBytes) {
+                    getCounter(context, IngestInput.LINE_BYTES.toString(), "MIN").setValue(rawDataBytes);
+                }
+                long maxBytes = getCounter(context, IngestInput.LINE_BYTES.toString(), "MAX").getValue();
+                if (rawDataBytes > maxBytes) {
+                    getCounter(context, IngestInput.LINE_BYTES.toString(), "MAX").setValue(rawDataBytes);
+                }
             }
         }
         
@@ -609,10 +613,40 @@ public class EventMapper<K1,V1 extends RawRecordContainer,K2,V2> extends StatsDE
         return synopsis;
     }
     
-    @Override
-    public void cleanup(Context context) throws IOException, InterruptedException {
-        
-        // Write the metadata to the output
+    /**
+     * Start processing the records of another input split with this already set up mapper, as a long running process does for each of its input files. The
+     * records of the split are numbered from zero.
+     *
+     * @param inputSplit
+     *            the split the following records are read from
+     * @param context
+     *            the context of the mapper
+     */
+    public void startSplit(InputSplit inputSplit, Context context) {
+        // we pushed the previous filename on the NDC if split is non null, so pop it here.
+        if (null != split) {
+            NDC.pop();
+        }
+        split = (inputSplit instanceof FileSplit ? (FileSplit) inputSplit : null);
+        if (null != split) {
+            NDC.push(split.getPath().toString());
+            splitStart = Long.valueOf(split.getStart()).toString();
+            if (context.getConfiguration().getBoolean(FILE_NAME_COUNTERS, true)) {
+                getCounter(context, IngestInput.FILE_NAME.name(), split.getPath().toString()).increment(1);
+            }
+        } else {
+            splitStart = null;
+        }
+        offset = 0;
+    }
+    
+    /**
+     * Write the metadata gathered by the handlers so far to the output, and clear it. This is done on cleanup, and periodically by a long running process.
+     *
+     * @param context
+     *            the context of the mapper
+     */
+    public void writeMetadata(Context context) throws IOException, InterruptedException {
         for (List<DataTypeHandler<K1>> handlers : typeMap.values()) {
             for (DataTypeHandler<K1> h : handlers)
                 if (h.getMetadata() != null) {
@@ -621,8 +655,28 @@ public class EventMapper<K1,V1 extends RawRecordContainer,K2,V2> extends StatsDE
                     } finally {
                         contextWriter.commit(context);
                     }
+                    h.getMetadata().clear();
                 }
         }
+    }
+    
+    /**
+     * Write the metadata gathered so far and drain the context writers, so that everything mapped so far has been written to the context, including the
+     * entries that caching context writers hold across events. This is used by a long running process before it releases the input it has mapped.
+     *
+     * @param context
+     *            the context of the mapper
+     */
+    public void flush(Context context) throws IOException, InterruptedException {
+        writeMetadata(context);
+        contextWriter.drain(context);
+    }
+    
+    @Override
+    public void cleanup(Context context) throws IOException, InterruptedException {
+        
+        // Write the metadata to the output
+        writeMetadata(context);
         
         // dump any unflushed metrics
         if (metricsEnabled) {
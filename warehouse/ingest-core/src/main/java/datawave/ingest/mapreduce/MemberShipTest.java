@@ -1,10 +1,13 @@
 package datawave.ingest.mapreduce;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 
 import datawave.ingest.mapreduce.handler.DataTypeHandler;
+import datawave.ingest.util.BlockedBloomFilter;
 
 import org.apache.accumulo.core.data.Value;
 
@@ -39,4 +42,30 @@ public class MemberShipTest {
         }
         
     }
+    
+    public static Value toValue(BlockedBloomFilter filter) {
+        return new Value(filter.toBytes());
+    }
+    
+    /**
+     * Test a term against a filter value written by either {@link #toValue(BloomFilter)} or {@link #toValue(BlockedBloomFilter)}. A blocked filter is tested
+     * in place, reading only the block of the term.
+     * 
+     * @return false if the term is definitely not in the filter, true if it might be or if the value is not a filter
+     */
+    @SuppressWarnings("unchecked")
+    public static boolean mightContain(Value value, String term) {
+        byte[] bytes = value.get();
+        if (BlockedBloomFilter.isSerializedFilter(bytes)) {
+            return BlockedBloomFilter.mightContain(bytes, BlockedBloomFilter.hash(term));
+        }
+        if (bytes.length == 0) {
+            return true;
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return ((BloomFilter<String>) in.readObject()).mightContain(term);
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            return true;
+        }
+    }
 }
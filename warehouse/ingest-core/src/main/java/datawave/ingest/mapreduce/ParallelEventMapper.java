@@ -0,0 +1,356 @@
+package datawave.ingest.mapreduce;
+
+import datawave.ingest.data.RawRecordContainer;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.hadoop.mapreduce.Counter;
+import org.apache.hadoop.mapreduce.MapContext;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.map.WrappedMapper;
+import org.apache.hadoop.mapreduce.task.MapContextImpl;
+import org.apache.log4j.Logger;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * A mapper that processes records on a bounded pool of worker threads while emitting their output in input order. Each worker owns its own {@link EventMapper}
+ * (and therefore its own DataTypeHandler instances, ContextWriter and metrics service), which is set up, run and cleaned up on the worker's thread, so no handler
+ * is ever shared between threads. A worker's ContextWriter flushes into a per-record buffer, and the buffers are written to the real context by the thread
+ * reading the input, in the order the records were read.
+ * <p>
+ * The ContextWriter is committed at the end of every record, so writers that only cache the entries of the current event (e.g. the
+ * {@link datawave.ingest.mapreduce.job.writer.BulkContextWriter}) flush them into the buffer of the record that produced them. Writers that deliberately
+ * combine entries across events (e.g. the {@link datawave.ingest.mapreduce.job.writer.EdgeCombiningContextWriter} or the
+ * {@link datawave.ingest.mapreduce.job.writer.TableCachingContextWriter}) hold their combined entries per worker, and write them whenever they evict them or
+ * when the worker is cleaned up. Those entries belong to no single record, so they are emitted with whichever record the worker is processing at the time or
+ * after all of the records, and are not in input order. With one thread the ordering is that of a single EventMapper.
+ * <p>
+ * Counters are shared through the real context, with every update synchronized on the counter, so the totals are the same as for a single EventMapper. The
+ * degree of parallelism is set with {@link #NUM_THREADS}; with one thread this simply runs an EventMapper.
+ *
+ * @param <K1>
+ *            input key
+ * @param <V1>
+ *            input value
+ * @param <K2>
+ *            output key
+ * @param <V2>
+ *            output value
+ */
+public class ParallelEventMapper<K1,V1 extends RawRecordContainer,K2,V2> extends Mapper<K1,V1,K2,V2> {
+    
+    private static final Logger log = Logger.getLogger(ParallelEventMapper.class);
+    
+    /**
+     * The number of worker threads processing records
+     */
+    public static final String NUM_THREADS = "ingest.event.mapper.threads";
+    
+    /**
+     * The maximum number of records read ahead of the oldest record still being processed, defaults to 4 per thread
+     */
+    public static final String MAX_PENDING_RECORDS = "ingest.event.mapper.max.pending.records";
+    
+    /**
+     * The output of one record, filled in by a worker and written to the real context in read order
+     */
+    private static class PendingRecord<K1,V1,K2,V2> {
+        private final K1 key;
+        private final V1 value;
+        private final long offset;
+        private final List<Object> output = new ArrayList<>();
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile Throwable error = null;
+        
+        PendingRecord(K1 key, V1 value, long offset) {
+            this.key = key;
+            this.value = value;
+            this.offset = offset;
+        }
+    }
+    
+    /**
+     * Collects everything a worker's EventMapper writes into the output buffer of the record it is currently processing
+     */
+    private static class BufferingRecordWriter<K2,V2> extends RecordWriter<K2,V2> {
+        private List<Object> buffer = null;
+        
+        @Override
+        public void write(K2 key, V2 value) {
+            buffer.add(key);
+            buffer.add(value);
+        }
+        
+        @Override
+        public void close(TaskAttemptContext context) {}
+    }
+    
+    /**
+     * Task counters are not thread safe, so every counter handed to a worker synchronizes on the underlying counter
+     */
+    private static class SynchronizedStatusReporter extends ContextWrappedStatusReporter {
+        
+        SynchronizedStatusReporter(TaskAttemptContext context) {
+            super(context);
+        }
+        
+        @Override
+        public Counter getCounter(Enum<?> name) {
+            return wrap(super.getCounter(name));
+        }
+        
+        @Override
+        public Counter getCounter(String group, String name) {
+            return wrap(super.getCounter(group, name));
+        }
+        
+        private static Counter wrap(Counter counter) {
+            return (counter == null ? null : new SynchronizedCounter(counter));
+        }
+    }
+    
+    private static class SynchronizedCounter implements Counter {
+        private final Counter counter;
+        
+        SynchronizedCounter(Counter counter) {
+            this.counter = counter;
+        }
+        
+        @SuppressWarnings("deprecation")
+        @Override
+        public void setDisplayName(String displayName) {
+            synchronized (counter) {
+                counter.setDisplayName(displayName);
+            }
+        }
+        
+        @Override
+        public String getName() {
+            return counter.getName();
+        }
+        
+        @Override
+        public String getDisplayName() {
+            return counter.getDisplayName();
+        }
+        
+        @Override
+        public long getValue() {
+            synchronized (counter) {
+                return counter.getValue();
+            }
+        }
+        
+        @Override
+        public void setValue(long value) {
+            synchronized (counter) {
+                counter.setValue(value);
+            }
+        }
+        
+        @Override
+        public void increment(long incr) {
+            synchronized (counter) {
+                counter.increment(incr);
+            }
+        }
+        
+        @Override
+        public Counter getUnderlyingCounter() {
+            return counter.getUnderlyingCounter();
+        }
+        
+        @Override
+        public void write(DataOutput out) throws IOException {
+            synchronized (counter) {
+                counter.write(out);
+            }
+        }
+        
+        @Override
+        public void readFields(DataInput in) throws IOException {
+            synchronized (counter) {
+                counter.readFields(in);
+            }
+        }
+    }
+    
+    private class Worker implements Runnable {
+        private final EventMapper<K1,V1,K2,V2> mapper = createEventMapper();
+        private final BufferingRecordWriter<K2,V2> writer = new BufferingRecordWriter<>();
+        private final Mapper<K1,V1,K2,V2>.Context workerContext;
+        private final PendingRecord<K1,V1,K2,V2> cleanup = new PendingRecord<>(null, null, -1);
+        private volatile Throwable setupError = null;
+        
+        Worker(Context context, Configuration conf) {
+            MapContext<K1,V1,K2,V2> mapContext = new MapContextImpl<>(conf, context.getTaskAttemptID(), null, writer, context.getOutputCommitter(),
+                            new SynchronizedStatusReporter(context), context.getInputSplit());
+            workerContext = new WrappedMapper<K1,V1,K2,V2>().getMapContext(mapContext);
+        }
+        
+        @Override
+        public void run() {
+            try {
+                try {
+                    writer.buffer = cleanup.output;
+                    mapper.setup(workerContext);
+                } catch (Throwable t) {
+                    setupError = t;
+                    throw t;
+                } finally {
+                    setupLatch.countDown();
+                }
+                PendingRecord<K1,V1,K2,V2> record;
+                while ((record = work.take()) != END_OF_INPUT) {
+                    writer.buffer = record.output;
+                    try {
+                        mapper.offset = record.offset;
+                        mapper.map(record.key, record.value, workerContext);
+                        // flush anything the writer still caches for this record into its buffer rather than the next record's
+                        mapper.getContextWriter().commit(workerContext);
+                    } catch (Throwable t) {
+                        record.error = t;
+                    } finally {
+                        record.done.countDown();
+                    }
+                }
+                writer.buffer = cleanup.output;
+                mapper.cleanup(workerContext);
+            } catch (Throwable t) {
+                cleanup.error = t;
+            } finally {
+                cleanup.done.countDown();
+            }
+        }
+    }
+    
+    @SuppressWarnings("rawtypes")
+    private static final PendingRecord END_OF_INPUT = new PendingRecord<>(null, null, -1);
+    
+    private BlockingQueue<PendingRecord<K1,V1,K2,V2>> work;
+    private CountDownLatch setupLatch;
+    
+    /**
+     * Create the EventMapper used by each worker, subclasses may override to supply a customized EventMapper
+     */
+    protected EventMapper<K1,V1,K2,V2> createEventMapper() {
+        return new EventMapper<>();
+    }
+    
+    @SuppressWarnings("unchecked")
+    @Override
+    public void run(Context context) throws IOException, InterruptedException {
+        int numThreads = context.getConfiguration().getInt(NUM_THREADS, 1);
+        if (numThreads <= 1) {
+            createEventMapper().run(context);
+            return;
+        }
+        int maxPending = Math.max(numThreads, context.getConfiguration().getInt(MAX_PENDING_RECORDS, numThreads * 4));
+        log.info("Processing records on " + numThreads + " threads with at most " + maxPending + " pending records");
+        
+        work = new ArrayBlockingQueue<>(maxPending + numThreads);
+        setupLatch = new CountDownLatch(numThreads);
+        List<Worker> workers = new ArrayList<>(numThreads);
+        List<Thread> threads = new ArrayList<>(numThreads);
+        for (int i = 0; i < numThreads; i++) {
+            Configuration conf = context.getConfiguration();
+            if (i > 0) {
+                // only count the input file once
+                conf = new Configuration(conf);
+                conf.setBoolean(EventMapper.FILE_NAME_COUNTERS, false);
+            }
+            Worker worker = new Worker(context, conf);
+            Thread thread = new Thread(worker, "EventMapper worker " + i);
+            thread.setDaemon(true);
+            workers.add(worker);
+            threads.add(thread);
+            thread.start();
+        }
+        
+        boolean completed = false;
+        try {
+            // wait for every worker to be set up so that setup side effects (e.g. counter initialization) are not interleaved with processing
+            setupLatch.await();
+            for (Worker worker : workers) {
+                if (worker.setupError != null) {
+                    throw new IOException("EventMapper worker failed to set up", worker.setupError);
+                }
+            }
+            
+            ArrayDeque<PendingRecord<K1,V1,K2,V2>> pending = new ArrayDeque<>(maxPending);
+            long offset = 0;
+            while (context.nextKeyValue()) {
+                if (pending.size() >= maxPending) {
+                    emit(pending.poll(), context);
+                }
+                PendingRecord<K1,V1,K2,V2> record = new PendingRecord<>(copyKey(context.getCurrentKey(), context.getConfiguration()),
+                                (V1) context.getCurrentValue().copy(), offset++);
+                pending.add(record);
+                work.put(record);
+                // emit whatever has already completed in order
+                while (!pending.isEmpty() && pending.peek().done.getCount() == 0) {
+                    emit(pending.poll(), context);
+                }
+            }
+            while (!pending.isEmpty()) {
+                emit(pending.poll(), context);
+            }
+            completed = true;
+        } finally {
+            for (int i = 0; i < numThreads; i++) {
+                if (completed) {
+                    work.put(END_OF_INPUT);
+                } else {
+                    threads.get(i).interrupt();
+                }
+            }
+        }
+        
+        // cleanup output (handler metadata, metrics) is written after all of the records
+        for (Worker worker : workers) {
+            emit(worker.cleanup, context);
+        }
+    }
+    
+    @SuppressWarnings("unchecked")
+    private void emit(PendingRecord<K1,V1,K2,V2> record, Context context) throws IOException, InterruptedException {
+        record.done.await();
+        if (record.error != null) {
+            if (record.error instanceof IOException) {
+                throw (IOException) record.error;
+            } else if (record.error instanceof RuntimeException) {
+                throw (RuntimeException) record.error;
+            } else if (record.error instanceof Error) {
+                throw (Error) record.error;
+            }
+            throw new IOException("Failed processing record " + record.offset, record.error);
+        }
+        List<Object> output = record.output;
+        for (int i = 0; i < output.size(); i += 2) {
+            context.write((K2) output.get(i), (V2) output.get(i + 1));
+        }
+        context.progress();
+    }
+    
+    /**
+     * Record readers may reuse their key object, so copy it if we can before handing it to another thread
+     */
+    @SuppressWarnings("unchecked")
+    private K1 copyKey(K1 key, Configuration conf) {
+        if (key instanceof Writable) {
+            return (K1) WritableUtils.clone((Writable) key, conf);
+        }
+        return key;
+    }
+}
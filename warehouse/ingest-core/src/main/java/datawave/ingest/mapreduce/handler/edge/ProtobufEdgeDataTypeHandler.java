@@ -111,6 +111,9 @@ public class ProtobufEdgeDataTypeHandler<KEYIN,KEYOUT,VALUEOUT> implements Exten
     
     public static final String EVALUATE_PRECONDITIONS = "protobufedge.evaluate.preconditions";
     
+    // compile the preconditions that only compare fields to literals, instead of evaluating them with JEXL
+    public static final String COMPILE_PRECONDITIONS = "protobufedge.compile.preconditions";
+    
     public static final String INCLUDE_ALL_EDGES = "protobufedge.include.all.edges";
     
     protected static final long ONE_DAY = 1000 * 60 * 60 * 24;
@@ -123,6 +126,7 @@ public class ProtobufEdgeDataTypeHandler<KEYIN,KEYOUT,VALUEOUT> implements Exten
     private boolean enableBlacklist = false;
     
     private boolean evaluatePreconditions = false;
+    private boolean compilePreconditions = true;
     private boolean includeAllEdges;
     private EdgePreconditionJexlContext edgePreconditionContext;
     private EdgePreconditionJexlEvaluation edgePreconditionEvaluation;
@@ -184,6 +188,7 @@ public class ProtobufEdgeDataTypeHandler<KEYIN,KEYOUT,VALUEOUT> implements Exten
         pastDelta = ConfigurationHelper.isNull(conf, ACTIVITY_DATE_PAST_DELTA, Long.class);
         
         evaluatePreconditions = Boolean.parseBoolean(conf.get(EVALUATE_PRECONDITIONS));
+        compilePreconditions = conf.getBoolean(COMPILE_PRECONDITIONS, true);
         includeAllEdges = Boolean.parseBoolean(conf.get(INCLUDE_ALL_EDGES));
         
         if (this.versioningCache == null) {
@@ -297,6 +302,9 @@ public class ProtobufEdgeDataTypeHandler<KEYIN,KEYOUT,VALUEOUT> implements Exten
             edgePreconditionEvaluation = new EdgePreconditionJexlEvaluation();
             edgePreconditionCacheHelper = new EdgePreconditionCacheHelper();
             scriptCache = edgePreconditionCacheHelper.createScriptCacheFromEdges(edges);
+            if (compilePreconditions) {
+                edgePreconditionEvaluation.setCompiledPreconditions(edgePreconditionCacheHelper.createCompiledCacheFromEdges(edges));
+            }
         } else if (!includeAllEdges) {
             
             // Else remove edges with a precondition. No conditional edge defs will be evaluated possibly resulting in fewer edges
@@ -358,6 +366,9 @@ public class ProtobufEdgeDataTypeHandler<KEYIN,KEYOUT,VALUEOUT> implements Exten
             edgePreconditionEvaluation = new EdgePreconditionJexlEvaluation();
             edgePreconditionCacheHelper = new EdgePreconditionCacheHelper();
             scriptCache = edgePreconditionCacheHelper.createScriptCacheFromEdges(edges);
+            if (compilePreconditions) {
+                edgePreconditionEvaluation.setCompiledPreconditions(edgePreconditionCacheHelper.createCompiledCacheFromEdges(edges));
+            }
         } else {
             
             // Else remove edges with a precondition
@@ -586,7 +597,7 @@ public class ProtobufEdgeDataTypeHandler<KEYIN,KEYOUT,VALUEOUT> implements Exten
                 if (edgeDef.hasJexlPrecondition()) {
                     jexlPreconditions = edgeDef.getJexlPrecondition();
                     long start = System.currentTimeMillis();
-                    if (!edgePreconditionEvaluation.apply(scriptCache.get(jexlPreconditions))) {
+                    if (!edgePreconditionEvaluation.apply(jexlPreconditions, scriptCache.get(jexlPreconditions))) {
                         
                         if (log.isTraceEnabled()) {
                             log.trace("Time to evaluate event(-): " + (System.currentTimeMillis() - start) + "ms.");
@@ -0,0 +1,281 @@
+package datawave.ingest.mapreduce.handler.edge.evaluation;
+
+import com.google.common.base.Predicate;
+import org.apache.commons.jexl2.parser.ASTAndNode;
+import org.apache.commons.jexl2.parser.ASTEQNode;
+import org.apache.commons.jexl2.parser.ASTFalseNode;
+import org.apache.commons.jexl2.parser.ASTIdentifier;
+import org.apache.commons.jexl2.parser.ASTJexlScript;
+import org.apache.commons.jexl2.parser.ASTNENode;
+import org.apache.commons.jexl2.parser.ASTNotNode;
+import org.apache.commons.jexl2.parser.ASTOrNode;
+import org.apache.commons.jexl2.parser.ASTReference;
+import org.apache.commons.jexl2.parser.ASTReferenceExpression;
+import org.apache.commons.jexl2.parser.ASTStringLiteral;
+import org.apache.commons.jexl2.parser.ASTTrueNode;
+import org.apache.commons.jexl2.parser.JexlNode;
+import org.apache.commons.jexl2.parser.ParseException;
+import org.apache.commons.jexl2.parser.Parser;
+import org.apache.commons.jexl2.parser.TokenMgrError;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * A JEXL edge precondition compiled into a predicate over the {@link EdgePreconditionJexlContext}, with the same result as the script evaluated with the
+ * {@link MultiMapArithmetic}, i.e. a field equals a literal if any of its values in the event does.
+ * <p>
+ * Only the and, or and not of == and != terms comparing a field to a string literal can be compiled. {@link Compiler#compile(String)} returns null for any
+ * other precondition, which must then be evaluated by JEXL.
+ * <p>
+ * The preconditions compiled by the same {@link Compiler} share their identical terms, and each term is only evaluated once per event, so the terms that are
+ * common to many edge definitions are evaluated once. As the terms keep the result of the current event, the compiled preconditions are not thread-safe.
+ */
+public class CompiledEdgePrecondition implements Predicate<EdgePreconditionJexlContext> {
+    
+    private static final Logger log = LoggerFactory.getLogger(CompiledEdgePrecondition.class);
+    
+    private final String precondition;
+    private final Term root;
+    
+    private CompiledEdgePrecondition(String precondition, Term root) {
+        this.precondition = precondition;
+        this.root = root;
+    }
+    
+    @Override
+    public boolean apply(EdgePreconditionJexlContext context) {
+        return root.evaluate(context);
+    }
+    
+    public String getPrecondition() {
+        return precondition;
+    }
+    
+    /**
+     * Compiles the preconditions of a job, sharing the terms they have in common
+     */
+    public static class Compiler {
+        // literals that the arithmetic might compare as numbers, or to the string of the field's values, when the field does not contain them
+        private static final Pattern UNSAFE_LITERAL = Pattern.compile("[-+0-9.eE]*|\\[.*");
+        
+        // the compiled terms, by their canonical form
+        private final Map<String,Term> terms = new HashMap<>();
+        
+        /**
+         * Compile a precondition
+         *
+         * @param precondition
+         *            the precondition of an edge definition
+         * @return the compiled precondition, or null if it can not be compiled
+         */
+        public CompiledEdgePrecondition compile(String precondition) {
+            try {
+                ASTJexlScript script = new Parser(new StringReader(";")).parse(new StringReader(precondition), null);
+                if (script.jjtGetNumChildren() != 1) {
+                    return null;
+                }
+                Term root = compile(script.jjtGetChild(0));
+                return root == null ? null : new CompiledEdgePrecondition(precondition, root);
+            } catch (ParseException | TokenMgrError e) {
+                // leave it to JEXL to report
+                if (log.isDebugEnabled()) {
+                    log.debug("Unable to compile edge precondition " + precondition, e);
+                }
+                return null;
+            }
+        }
+        
+        /**
+         * @return the number of distinct terms of the compiled preconditions
+         */
+        public int getTermCount() {
+            return terms.size();
+        }
+        
+        /**
+         * @return the compiled node, or null if it can not be compiled
+         */
+        private Term compile(JexlNode node) {
+            if (node instanceof ASTReference || node instanceof ASTReferenceExpression) {
+                return node.jjtGetNumChildren() == 1 ? compile(node.jjtGetChild(0)) : null;
+            } else if (node instanceof ASTAndNode || node instanceof ASTOrNode) {
+                boolean and = (node instanceof ASTAndNode);
+                List<Term> children = new ArrayList<>();
+                StringBuilder name = new StringBuilder(and ? "and(" : "or(");
+                for (int i = 0; i < node.jjtGetNumChildren(); i++) {
+                    Term child = compile(node.jjtGetChild(i));
+                    if (child == null) {
+                        return null;
+                    }
+                    children.add(child);
+                    name.append(i == 0 ? "" : ",").append(child.name);
+                }
+                name.append(')');
+                return intern(and ? new And(name.toString(), children) : new Or(name.toString(), children));
+            } else if (node instanceof ASTNotNode) {
+                Term child = (node.jjtGetNumChildren() == 1 ? compile(node.jjtGetChild(0)) : null);
+                return child == null ? null : intern(new Not(child));
+            } else if (node instanceof ASTTrueNode) {
+                return intern(new Constant(true));
+            } else if (node instanceof ASTFalseNode) {
+                return intern(new Constant(false));
+            } else if (node instanceof ASTEQNode || node instanceof ASTNENode) {
+                return compileEquals(node, node instanceof ASTNENode);
+            }
+            return null;
+        }
+        
+        private Term compileEquals(JexlNode node, boolean negated) {
+            if (node.jjtGetNumChildren() != 2) {
+                return null;
+            }
+            // the arithmetic only looks for the literal in the field's values when the field is on the left
+            String field = field(node.jjtGetChild(0));
+            String literal = literal(node.jjtGetChild(1));
+            if (field == null || literal == null || UNSAFE_LITERAL.matcher(literal).matches()) {
+                return null;
+            }
+            Term equals = intern(new Equals(field, literal));
+            return negated ? intern(new Not(equals)) : equals;
+        }
+        
+        private Term intern(Term term) {
+            Term existing = terms.get(term.name);
+            if (existing != null) {
+                return existing;
+            }
+            terms.put(term.name, term);
+            return term;
+        }
+        
+        private static String field(JexlNode node) {
+            if (node instanceof ASTReference && node.jjtGetNumChildren() == 1) {
+                node = node.jjtGetChild(0);
+            }
+            return node instanceof ASTIdentifier ? node.image : null;
+        }
+        
+        private static String literal(JexlNode node) {
+            if (node instanceof ASTReference && node.jjtGetNumChildren() == 1) {
+                node = node.jjtGetChild(0);
+            }
+            return node instanceof ASTStringLiteral ? node.image : null;
+        }
+    }
+    
+    /**
+     * A term of a precondition, which keeps its result for the current event of the context
+     */
+    private abstract static class Term {
+        private final String name;
+        
+        private EdgePreconditionJexlContext context;
+        private long generation;
+        private boolean result;
+        
+        private Term(String name) {
+            this.name = name;
+        }
+        
+        private boolean evaluate(EdgePreconditionJexlContext context) {
+            if (this.context != context || this.generation != context.getGeneration()) {
+                this.result = compute(context);
+                this.context = context;
+                this.generation = context.getGeneration();
+            }
+            return result;
+        }
+        
+        protected abstract boolean compute(EdgePreconditionJexlContext context);
+    }
+    
+    private static final class Equals extends Term {
+        private final String field;
+        private final String literal;
+        
+        private Equals(String field, String literal) {
+            // the length of the literal keeps the names of different terms distinct, whatever the literal contains
+            super(field + "==" + literal.length() + ":" + literal);
+            this.field = field;
+            this.literal = literal;
+        }
+        
+        @Override
+        protected boolean compute(EdgePreconditionJexlContext context) {
+            return context.containsValue(field, literal);
+        }
+    }
+    
+    private static final class Not extends Term {
+        private final Term term;
+        
+        private Not(Term term) {
+            super("not(" + term.name + ")");
+            this.term = term;
+        }
+        
+        @Override
+        protected boolean compute(EdgePreconditionJexlContext context) {
+            return !term.evaluate(context);
+        }
+    }
+    
+    private static final class Constant extends Term {
+        private final boolean value;
+        
+        private Constant(boolean value) {
+            super(Boolean.toString(value));
+            this.value = value;
+        }
+        
+        @Override
+        protected boolean compute(EdgePreconditionJexlContext context) {
+            return value;
+        }
+    }
+    
+    private static final class And extends Term {
+        private final Term[] terms;
+        
+        private And(String name, List<Term> terms) {
+            super(name);
+            this.terms = terms.toArray(new Term[terms.size()]);
+        }
+        
+        @Override
+        protected boolean compute(EdgePreconditionJexlContext context) {
+            for (Term term : terms) {
+                if (!term.evaluate(context)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+    
+    private static final class Or extends Term {
+        private final Term[] terms;
+        
+        private Or(String name, List<Term> terms) {
+            super(name);
+            this.terms = terms.toArray(new Term[terms.size()]);
+        }
+        
+        @Override
+        protected boolean compute(EdgePreconditionJexlContext context) {
+            for (Term term : terms) {
+                if (term.evaluate(context)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -4,16 +4,22 @@ import datawave.ingest.mapreduce.handler.edge.define.EdgeDefinition;
 import datawave.ingest.mapreduce.handler.edge.define.EdgeDefinitionConfigurationHelper;
 import org.apache.commons.jexl2.JexlEngine;
 import org.apache.commons.jexl2.Script;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Creates a cache of compiled Jexl scripts
  */
 public class EdgePreconditionCacheHelper {
     
+    private static final Logger log = LoggerFactory.getLogger(EdgePreconditionCacheHelper.class);
+    
     private JexlEngine engine;
     
     public EdgePreconditionCacheHelper() {
@@ -42,6 +48,36 @@ public class EdgePreconditionCacheHelper {
         return scriptCache;
     }
     
+    /**
+     * Compiles the preconditions of the edges that can be compiled, sharing the terms they have in common
+     *
+     * @param edges
+     *            the edge definitions by data type
+     * @return the compiled preconditions, by precondition
+     */
+    public Map<String,CompiledEdgePrecondition> createCompiledCacheFromEdges(Map<String,EdgeDefinitionConfigurationHelper> edges) {
+        
+        Map<String,CompiledEdgePrecondition> compiledCache = new HashMap<>();
+        CompiledEdgePrecondition.Compiler compiler = new CompiledEdgePrecondition.Compiler();
+        Set<String> preconditions = new HashSet<>();
+        
+        for (String dataTypeKey : edges.keySet()) {
+            List<EdgeDefinition> edgeList = edges.get(dataTypeKey).getEdges();
+            for (EdgeDefinition edge : edgeList) {
+                if (edge.hasJexlPrecondition() && preconditions.add(edge.getJexlPrecondition())) {
+                    CompiledEdgePrecondition compiled = compiler.compile(edge.getJexlPrecondition());
+                    if (compiled != null) {
+                        compiledCache.put(edge.getJexlPrecondition(), compiled);
+                    }
+                }
+            }
+        }
+        
+        log.info("Compiled " + compiledCache.size() + " of " + preconditions.size() + " distinct edge preconditions into " + compiler.getTermCount() + " terms");
+        
+        return compiledCache;
+    }
+    
     public Script createScriptFromString(String jexlPrecondition) {
         return engine.createScript(jexlPrecondition);
     }
@@ -22,6 +22,9 @@ public class EdgePreconditionJexlContext extends MultimapContext {
     
     private HashSet<String> filterFieldKeys;
     
+    // incremented whenever the context is cleared, so results kept for an event can tell that the event changed
+    private long generation = 0;
+    
     /**
      * This constructor creates a context based on a single list of edge definitions
      *
@@ -137,5 +140,17 @@ public class EdgePreconditionJexlContext extends MultimapContext {
     
     public void clearContext() {
         this.values.clear();
+        this.generation++;
+    }
+    
+    /**
+     * @return true if the field has the value in the current event, without creating a view of the field's values
+     */
+    public boolean containsValue(String field, Object value) {
+        return this.values.containsEntry(field, value);
+    }
+    
+    public long getGeneration() {
+        return generation;
     }
 }
@@ -5,6 +5,9 @@ import org.apache.commons.jexl2.Script;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  *
@@ -17,6 +20,12 @@ public class EdgePreconditionJexlEvaluation implements Predicate<Script> {
     
     private EdgePreconditionJexlContext jexlContext;
     
+    private Map<String,CompiledEdgePrecondition> compiledPreconditions = Collections.emptyMap();
+    
+    // the results of the preconditions for the current event of the context
+    private final Map<String,Boolean> results = new HashMap<>();
+    private long generation = -1;
+    
     public EdgePreconditionJexlEvaluation() {}
     
     public EdgePreconditionJexlEvaluation(EdgePreconditionJexlContext jexlContext) {
@@ -57,11 +66,51 @@ public class EdgePreconditionJexlEvaluation implements Predicate<Script> {
         return isMatched(o);
     }
     
+    /**
+     * Evaluates a precondition against the current event of the context. The compiled form of the precondition is used if it has one, and a precondition
+     * shared by several edge definitions is only evaluated once per event.
+     *
+     * @param precondition
+     *            the precondition of an edge definition
+     * @param compiledScript
+     *            the script of the precondition, used when it has no compiled form
+     * @return true if we matched, false otherwise.
+     */
+    public boolean apply(String precondition, Script compiledScript) {
+        if (null == getJexlContext()) {
+            log.trace("Dropping entry because it was null");
+            
+            return false;
+        }
+        
+        if (generation != jexlContext.getGeneration()) {
+            results.clear();
+            generation = jexlContext.getGeneration();
+        }
+        
+        Boolean matched = results.get(precondition);
+        if (matched == null) {
+            CompiledEdgePrecondition compiled = compiledPreconditions.get(precondition);
+            matched = (compiled != null ? compiled.apply(jexlContext) : apply(compiledScript));
+            results.put(precondition, matched);
+        }
+        return matched;
+    }
+    
     public EdgePreconditionJexlContext getJexlContext() {
         return jexlContext;
     }
     
     public void setJexlContext(EdgePreconditionJexlContext jexlContext) {
         this.jexlContext = jexlContext;
+        this.generation = -1;
+    }
+    
+    public Map<String,CompiledEdgePrecondition> getCompiledPreconditions() {
+        return compiledPreconditions;
+    }
+    
+    public void setCompiledPreconditions(Map<String,CompiledEdgePrecondition> compiledPreconditions) {
+        this.compiledPreconditions = compiledPreconditions;
     }
 }
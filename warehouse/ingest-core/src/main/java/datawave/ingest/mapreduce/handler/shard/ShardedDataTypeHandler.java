@@ -38,10 +38,13 @@ import datawave.ingest.mapreduce.MemberShipTest;
 import datawave.ingest.mapreduce.handler.DataTypeHandler;
 import datawave.ingest.mapreduce.job.BulkIngestKey;
 import datawave.ingest.mapreduce.job.statsd.StatsDEnabledDataTypeHandler;
+import datawave.ingest.metadata.EventMetadata;
 import datawave.ingest.metadata.RawRecordMetadata;
 import datawave.ingest.protobuf.Uid;
 import datawave.ingest.protobuf.Uid.List.Builder;
 import datawave.ingest.table.config.LoadDateTableConfigHelper;
+import datawave.ingest.util.BlockedBloomFilter;
+import datawave.ingest.util.BlockedBloomFilterBuilder;
 import datawave.ingest.util.BloomFilterUtil;
 import datawave.ingest.util.BloomFilterWrapper;
 import datawave.ingest.util.DiskSpaceStarvationStrategy;
@@ -133,6 +136,8 @@ public abstract class ShardedDataTypeHandler<KEYIN> extends StatsDEnabledDataTyp
                                                                                                                       // mapred.task.timeout) before n-grams
                                                                                                                       // will stop being added to a bloom filter
     public static final String SHARD_ININDEX_BLOOM_OPTIMUM_MAX_FILTER_SIZE = "shard.table.index.bloom.optimum.max.filter.size"; // Bytes
+    public static final String SHARD_ININDEX_BLOOM_BLOCKED = "shard.table.index.bloom.blocked"; // Write BlockedBloomFilters instead of java serialized Guava
+                                                                                                // BloomFilters
     public static final String SHARD_STATS_TNAME = "shard.stats.table.name";
     public static final String SHARD_GIDX_TNAME = "shard.global.index.table.name";
     public static final String SHARD_GRIDX_TNAME = "shard.global.rindex.table.name";
@@ -167,6 +172,11 @@ public abstract class ShardedDataTypeHandler<KEYIN> extends StatsDEnabledDataTyp
      */
     public static final String METADATA_TERM_FREQUENCY = "metadata.term.frequency.enabled";
     
+    /**
+     * Enable/Disable the days of each month that indexed fields were seen in the metadata (see FieldDaysCombiner)
+     */
+    public static final String METADATA_FIELD_DAYS = "metadata.field.days.enabled";
+    
     /**
      * Suppress event key generation making this into a psuedo re-indexing job No type prefix here as it is meant to be job level not datatype level.
      */
@@ -204,6 +214,14 @@ public abstract class ShardedDataTypeHandler<KEYIN> extends StatsDEnabledDataTyp
      * Determines whether or not the bloom filter is enabled.
      */
     private boolean bloomFiltersEnabled = false;
+    private BlockedBloomFilterBuilder blockedBloomFilterBuilder = null;
+    
+    // the bloom filter of an event only depends on its fields, so it is built once and shared by every field index entry of the event
+    private Multimap<String,NormalizedContentInterface> bloomFilterFields = null;
+    private Value bloomFilterValue = null;
+    private int bloomFilterFieldValuesApplied = 0;
+    private int bloomFilterNGramsApplied = 0;
+    private int bloomFilterNGramsPruned = 0;
     
     boolean isReindexEnabled;
     private Collection<String> requestedFieldsForReindex;
@@ -256,6 +274,9 @@ public abstract class ShardedDataTypeHandler<KEYIN> extends StatsDEnabledDataTyp
         if (getMetadataTableName() != null) {
             setMetadata(ingestConfig.createMetadata(getShardTableName(), getMetadataTableName(), getLoadDatesTableName(), getShardIndexTableName(),
                             getShardReverseIndexTableName(), conf.getBoolean(METADATA_TERM_FREQUENCY, true)));
+            if (getMetadata() instanceof EventMetadata) {
+                ((EventMetadata) getMetadata()).setFieldDays(conf.getBoolean(METADATA_FIELD_DAYS, false));
+            }
         }
         
         tableName = conf.get(SHARD_DINDX_NAME, null);
@@ -278,6 +299,9 @@ public abstract class ShardedDataTypeHandler<KEYIN> extends StatsDEnabledDataTyp
             this.bloomFilteringMemoryThreshold = conf.getFloat(SHARD_ININDEX_BLOOM_MEMORY_THRESHOLD, 0.0f);
             this.bloomFilteringTimeoutThreshold = conf.getFloat(SHARD_ININDEX_BLOOM_TIMEOUT_THRESHOLD, 0.0f);
             this.bloomFilteringOptimumMaxFilterSize = conf.getInt(SHARD_ININDEX_BLOOM_OPTIMUM_MAX_FILTER_SIZE, -1);
+            if (conf.getBoolean(SHARD_ININDEX_BLOOM_BLOCKED, false)) {
+                this.blockedBloomFilterBuilder = newBlockedBloomFilterBuilder(conf);
+            }
         }
         
         // Event key suppression
@@ -416,6 +440,8 @@ public abstract class ShardedDataTypeHandler<KEYIN> extends StatsDEnabledDataTyp
         IngestHelperInterface helper = this.getHelper(event.getDataType());
         
         Multimap<BulkIngestKey,Value> values = HashMultimap.create();
+        this.bloomFilterFields = null;
+        this.bloomFilterValue = null;
         
         byte[] maskedVisibility = computeMaskedVisibility(event);
         MaskedFieldHelper maskedFieldHelper = createMaskedFieldHelper(helper, event);
@@ -480,6 +506,8 @@ public abstract class ShardedDataTypeHandler<KEYIN> extends StatsDEnabledDataTyp
             
         }
         
+        this.bloomFilterFields = null;
+        this.bloomFilterValue = null;
         return values;
     }
     
@@ -577,11 +605,46 @@ public abstract class ShardedDataTypeHandler<KEYIN> extends StatsDEnabledDataTyp
     }
     
     /**
+     * Create a builder for {@link BlockedBloomFilter}s, used instead of {@link #createBloomFilter(Multimap)} if {@link #SHARD_ININDEX_BLOOM_BLOCKED} is set
+     * 
+     * @param conf
+     *            the Hadoop job configuration
+     * @return a builder that is reused for every event
+     */
+    protected BlockedBloomFilterBuilder newBlockedBloomFilterBuilder(Configuration conf) {
+        return new BlockedBloomFilterBuilder(BlockedBloomFilterBuilder.DEFAULT_MAX_NGRAM_LENGTH, Math.max(0, getBloomFilteringOptimumMaxFilterSize()),
+                        BlockedBloomFilterBuilder.DEFAULT_FPP, 0);
+    }
+    
+    /**
+     * Add the values of the fields that belong in the bloom filter of an event to a blocked bloom filter builder
+     * 
+     * @param builder
+     *            the builder of the event's filter
+     * @param fields
+     *            a multi-map of normalized fields
+     */
+    protected void addBloomFilterValues(BlockedBloomFilterBuilder builder, final Multimap<String,NormalizedContentInterface> fields) {
+        for (NormalizedContentInterface value : fields.values()) {
+            builder.addValue(value.getIndexedFieldValue());
+        }
+    }
+    
+    /**
+     * Create the bloom filter value of an event, or return the one already created for the same fields
+     * 
      * @param event
      * @param fields
      * @param reporter
      */
     protected Value createBloomFilter(RawRecordContainer event, Multimap<String,NormalizedContentInterface> fields, StatusReporter reporter) {
+        if (this.bloomFiltersEnabled && fields != null && fields == this.bloomFilterFields) {
+            // the counters are still incremented for every field index entry, as they were when the filter was created for each of them
+            countBloomFilter(reporter, this.bloomFilterValue, this.bloomFilterFieldValuesApplied, this.bloomFilterNGramsApplied, this.bloomFilterNGramsPruned,
+                            0);
+            return this.bloomFilterValue;
+        }
+        
         Value filterValue = DataTypeHandler.NULL_VALUE;
         if (this.bloomFiltersEnabled) {
             
@@ -591,44 +654,36 @@ public abstract class ShardedDataTypeHandler<KEYIN> extends StatsDEnabledDataTyp
                 stopWatch.start();
                 
                 // Create the bloom filter, which may involve NGram expansion
-                final BloomFilterWrapper result = this.createBloomFilter(fields);
-                final BloomFilter<String> bloomFilter = result.getFilter();
-                filterValue = MemberShipTest.toValue(bloomFilter);
+                final int fieldValuesApplied;
+                final int ngramsApplied;
+                final int ngramsPruned;
+                if (null != this.blockedBloomFilterBuilder) {
+                    this.blockedBloomFilterBuilder.reset();
+                    if (null != fields) {
+                        addBloomFilterValues(this.blockedBloomFilterBuilder, fields);
+                    }
+                    filterValue = MemberShipTest.toValue(this.blockedBloomFilterBuilder.build());
+                    fieldValuesApplied = this.blockedBloomFilterBuilder.getFieldValuesApplied();
+                    ngramsApplied = this.blockedBloomFilterBuilder.getNGramsApplied();
+                    ngramsPruned = this.blockedBloomFilterBuilder.getNGramsPruned();
+                } else {
+                    final BloomFilterWrapper result = this.createBloomFilter(fields);
+                    final BloomFilter<String> bloomFilter = result.getFilter();
+                    filterValue = MemberShipTest.toValue(bloomFilter);
+                    fieldValuesApplied = result.getFieldValuesAppliedToFilter();
+                    ngramsApplied = result.getNGramsAppliedToFilter();
+                    ngramsPruned = result.getNGramsPrunedFromFilter();
+                }
+                this.bloomFilterFields = fields;
+                this.bloomFilterValue = filterValue;
+                this.bloomFilterFieldValuesApplied = fieldValuesApplied;
+                this.bloomFilterNGramsApplied = ngramsApplied;
+                this.bloomFilterNGramsPruned = ngramsPruned;
                 
                 // Stop the stopwatch
                 stopWatch.stop();
                 
-                if (null != reporter) {
-                    final Counter filterCounter = reporter.getCounter(MemberShipTest.class.getSimpleName(), "BloomFilterCreated");
-                    if (null != filterCounter) {
-                        filterCounter.increment(1);
-                    }
-                    
-                    final Counter sizeCounter = reporter.getCounter(MemberShipTest.class.getSimpleName(), "BloomFilterSize");
-                    if (null != sizeCounter) {
-                        sizeCounter.increment(filterValue.getSize());
-                    }
-                    
-                    final Counter fieldsCounter = reporter.getCounter(MemberShipTest.class.getSimpleName(), "BloomFilterAppliedFields");
-                    if (null != fieldsCounter) {
-                        fieldsCounter.increment(result.getFieldValuesAppliedToFilter());
-                    }
-                    
-                    final Counter ngramsCounter = reporter.getCounter(MemberShipTest.class.getSimpleName(), "BloomFilterAppliedNGrams");
-                    if (null != ngramsCounter) {
-                        ngramsCounter.increment(result.getNGramsAppliedToFilter());
-                    }
-                    
-                    final Counter prunedCounter = reporter.getCounter(MemberShipTest.class.getSimpleName(), "BloomFilterPrunedNGrams");
-                    if (null != prunedCounter) {
-                        prunedCounter.increment(result.getNGramsPrunedFromFilter());
-                    }
-                    
-                    final Counter creationTime = reporter.getCounter(MemberShipTest.class.getSimpleName(), "Creation Time-(ms)");
-                    if (null != creationTime) {
-                        creationTime.increment(stopWatch.elapsed(TimeUnit.MILLISECONDS));
-                    }
-                }
+                countBloomFilter(reporter, filterValue, fieldValuesApplied, ngramsApplied, ngramsPruned, stopWatch.elapsed(TimeUnit.MILLISECONDS));
             } catch (Exception e) {
                 if (null != reporter) {
                     final Counter errorCounter = reporter.getCounter(MemberShipTest.class.getSimpleName(), "BloomFilterError");
@@ -643,6 +698,44 @@ public abstract class ShardedDataTypeHandler<KEYIN> extends StatsDEnabledDataTyp
         
     }
     
+    /**
+     * Increment the bloom filter counters for a field index entry. The creation time is only counted when the filter is actually created.
+     */
+    private void countBloomFilter(StatusReporter reporter, Value filterValue, int fieldValuesApplied, int ngramsApplied, int ngramsPruned,
+                    long creationMillis) {
+        if (null != reporter) {
+            final Counter filterCounter = reporter.getCounter(MemberShipTest.class.getSimpleName(), "BloomFilterCreated");
+            if (null != filterCounter) {
+                filterCounter.increment(1);
+            }
+            
+            final Counter sizeCounter = reporter.getCounter(MemberShipTest.class.getSimpleName(), "BloomFilterSize");
+            if (null != sizeCounter) {
+                sizeCounter.increment(filterValue.getSize());
+            }
+            
+            final Counter fieldsCounter = reporter.getCounter(MemberShipTest.class.getSimpleName(), "BloomFilterAppliedFields");
+            if (null != fieldsCounter) {
+                fieldsCounter.increment(fieldValuesApplied);
+            }
+            
+            final Counter ngramsCounter = reporter.getCounter(MemberShipTest.class.getSimpleName(), "BloomFilterAppliedNGrams");
+            if (null != ngramsCounter) {
+                ngramsCounter.increment(ngramsApplied);
+            }
+            
+            final Counter prunedCounter = reporter.getCounter(MemberShipTest.class.getSimpleName(), "BloomFilterPrunedNGrams");
+            if (null != prunedCounter) {
+                prunedCounter.increment(ngramsPruned);
+            }
+            
+            final Counter creationTime = reporter.getCounter(MemberShipTest.class.getSimpleName(), "Creation Time-(ms)");
+            if (null != creationTime) {
+                creationTime.increment(creationMillis);
+            }
+        }
+    }
+    
     /**
      * Creates a global index BulkIngestKey and Value and does apply masking logic
      * 
@@ -30,7 +30,7 @@ public class ContentIndexCounters {
                     TOKENIZER_OFFSET_CACHE_POSITIONS_OVERFLOWED = "Tokenizer Offset Cache Positions Overflowed",
                     CONTENT_RECORDS_CREATED = "Content Records Created", TRUNCATION_COUNTER = "Truncated Tokens",
                     LENGTH_WARNING_COUNTER = "Term Length Warnings", CONTENT_RECORDS_LIVE = "Content Records Live Ingest",
-                    CONTENT_RECORDS_BULK = "Content Records Bulk Ingest";
+                    CONTENT_RECORDS_BULK = "Content Records Bulk Ingest", TOKENIZER_CHUNKS_COUNTER = "Tokenizer Chunks Processed in Parallel";
     
     public static final String COUNTER_GROUP_NAME = "Content Index Counters";
     public static final String TOKENIZER_TIME_GROUP_NAME = "Tokenizer Time Counters";
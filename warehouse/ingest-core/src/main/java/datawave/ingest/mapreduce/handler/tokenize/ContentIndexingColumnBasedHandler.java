@@ -4,9 +4,13 @@ import java.io.IOException;
 import java.io.StringReader;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import datawave.ingest.data.RawRecordContainer;
 import datawave.ingest.data.config.NormalizedContentInterface;
@@ -14,6 +18,7 @@ import datawave.ingest.data.config.NormalizedFieldAndValue;
 import datawave.ingest.data.config.ingest.AbstractContentIngestHelper;
 import datawave.ingest.data.config.ingest.TermFrequencyIngestHelperInterface;
 import datawave.ingest.data.tokenize.DefaultTokenSearch;
+import datawave.ingest.data.tokenize.ParallelTokenizer;
 import datawave.ingest.data.tokenize.TokenSearch;
 import datawave.ingest.data.tokenize.TokenizationHelper;
 import datawave.ingest.data.tokenize.TokenizationHelper.HeartBeatThread;
@@ -29,6 +34,7 @@ import datawave.ingest.mapreduce.handler.shard.content.OffsetQueue;
 import datawave.ingest.mapreduce.handler.shard.content.TermAndZone;
 import datawave.ingest.mapreduce.job.BulkIngestKey;
 import datawave.ingest.protobuf.TermWeight;
+import datawave.ingest.util.BlockedBloomFilterBuilder;
 import datawave.ingest.util.BloomFilterUtil;
 import datawave.ingest.util.BloomFilterWrapper;
 import datawave.ingest.util.Identity;
@@ -107,12 +113,18 @@ public abstract class ContentIndexingColumnBasedHandler<KEYIN> extends AbstractC
     
     private int termPosition = 0;
     
+    private ParallelTokenizer parallelTokenizer = null;
+    
+    // the zone name of each indexed field, shared by every term and offset of the field
+    private final Map<String,String> zoneNames = new HashMap<>();
+    
     @Override
     public void setup(TaskAttemptContext context) {
         super.setup(context);
         contentHelper = getContentIndexingDataTypeHelper();
         tokenFieldNameSuffix = contentHelper.getTokenFieldNameDesignator();
         Preconditions.checkNotNull(tokenFieldNameSuffix);
+        zoneNames.clear();
         
         listDelimiter = contentHelper.getListDelimiter();
         Preconditions.checkNotNull(listDelimiter);
@@ -135,6 +147,11 @@ public abstract class ContentIndexingColumnBasedHandler<KEYIN> extends AbstractC
         
         tokenOffsetCache = new BoundedOffsetQueue<>(tokenHelper.getTokenOffsetCacheMaxSize());
         
+        if (tokenHelper.getTokenizerThreads() > 0) {
+            parallelTokenizer = new ParallelTokenizer(tokenHelper.getTokenizerThreads(), tokenHelper.getTokenizerChunkSize(),
+                            tokenHelper.getTokenizerChunkOverlap());
+        }
+        
         // Conditionally create an NGrams factory
         if (this.getBloomFiltersEnabled()) {
             this.bloomFilterUtil = newBloomFilterUtil(this.conf);
@@ -320,8 +337,18 @@ public abstract class ContentIndexingColumnBasedHandler<KEYIN> extends AbstractC
         return tokenizerTimeWarned;
     }
     
+    @Override
+    public void close(TaskAttemptContext context) {
+        super.close(context);
+        if (parallelTokenizer != null) {
+            parallelTokenizer.close();
+            parallelTokenizer = null;
+        }
+    }
+    
     /**
-     * Tokenize the specified field using the analyzer provided.
+     * Tokenize the specified field using the analyzer provided. If tokenizer threads are configured and the field is larger than the tokenizer chunk size, the
+     * field is split into chunks that are tokenized in parallel by the {@link ParallelTokenizer}, while this thread keeps reporting progress.
      * 
      */
     protected void tokenizeField(final Analyzer a, final NormalizedContentInterface nci, boolean indexField, boolean reverseIndexField, StatusReporter reporter)
@@ -332,9 +359,14 @@ public abstract class ContentIndexingColumnBasedHandler<KEYIN> extends AbstractC
         }
         
         String indexedFieldName = nci.getIndexedFieldName();
-        String modifiedFieldName = indexedFieldName + tokenFieldNameSuffix;
+        String modifiedFieldName = getZoneName(indexedFieldName);
         String content = nci.getIndexedFieldValue();
         
+        if (parallelTokenizer != null && parallelTokenizer.isChunked(content)) {
+            tokenizeFieldInChunks(a, nci, indexField, reverseIndexField, reporter);
+            return;
+        }
+        
         TokenStream tokenizer = a.tokenStream(indexedFieldName, new StringReader(content));
         tokenizer.reset();
         
@@ -357,24 +389,7 @@ public abstract class ContentIndexingColumnBasedHandler<KEYIN> extends AbstractC
                 if (heartBeatCount != HeartBeatThread.counter) {
                     tokenizerBeats += HeartBeatThread.counter - heartBeatCount;
                     heartBeatCount = HeartBeatThread.counter;
-                    
-                    // warn once on exceeding the warn threshold
-                    long elapsedEstimateMsec = tokenizerBeats * HeartBeatThread.INTERVAL;
-                    if (elapsedEstimateMsec > tokenHelper.getTokenizerTimeWarnThresholdMsec() && !tokenizerTimeWarned) {
-                        long realDelta = System.currentTimeMillis() - start;
-                        counters.incrementValue(ContentIndexCounters.TOKENIZER_TIME_WARNINGS, 1, reporter);
-                        log.warn("Tokenization of field " + modifiedFieldName + " has exceeded warning threshold "
-                                        + tokenHelper.getTokenizerTimeWarnThresholdMsec() + "ms (" + realDelta + "ms)");
-                        tokenizerTimeWarned = true;
-                    }
-                    
-                    // error when we exceed the error threshold
-                    if (elapsedEstimateMsec > tokenHelper.getTokenizerTimeErrorThresholdMsec()) {
-                        long realDelta = System.currentTimeMillis() - start;
-                        counters.incrementValue(ContentIndexCounters.TOKENIZER_TIME_ERRORS, 1, reporter);
-                        throw new TokenizerTimeoutException("Tokenization of field " + modifiedFieldName + " has exceeded error threshold "
-                                        + tokenHelper.getTokenizerTimeErrorThresholdMsec() + "ms (" + realDelta + "ms), aborting");
-                    }
+                    checkTokenizerTime(tokenizerBeats, start, modifiedFieldName, reporter);
                 }
                 
                 // getting the next token can take a long time depending on the compexity of the data...
@@ -386,156 +401,245 @@ public abstract class ContentIndexingColumnBasedHandler<KEYIN> extends AbstractC
                     break; // eof
                 }
                 
-                // Get the term and any synonyms for it
-                String token = termAtt.toString();
-                String type = typeAtt.type();
-                
                 // term positions aren't reset between fields of the same name, see getShardNamesAndValues.
                 termPosition += posIncrAtt.getPositionIncrement();
                 
-                if (type.startsWith("<") && type.endsWith(">")) {
-                    type = type.substring(1, type.length() - 1); // <FOO> => FOO without regex
-                }
-                
-                // Make sure the term length is greater than the minimum allowed length
-                int tlen = token.length();
-                if (tlen < tokenHelper.getTermLengthMinimum()) {
-                    log.debug("Ignoring token of length " + token.length() + " because it is too short");
-                    counters.increment(ContentIndexCounters.TOO_SHORT_COUNTER, reporter);
-                    continue;
-                }
-                
-                // skip the term if it is over the length limit unless it is a FILE, URL or HTTP_REQUEST
-                if (tlen > tokenHelper.getTermLengthLimit() && (!(type.equals("FILE") || type.equals("URL") || type.equals("HTTP_REQUEST")))) {
-                    if (log.isDebugEnabled()) {
-                        log.debug("Ignoring " + type + " token due to excessive length");
-                    }
-                    
-                    counters.increment(ContentIndexCounters.EXCESSIVE_LENGTH_COUNTER, reporter);
-                    continue;
-                }
-                
-                if (tlen > tokenHelper.getTermLengthWarningLimit()) {
-                    log.warn("Encountered long term: " + tlen + " characters, '" + token + "'");
-                    counters.increment(ContentIndexCounters.LENGTH_WARNING_COUNTER, reporter);
-                }
-                
-                if (truncAtt.isTruncated()) {
-                    if (log.isDebugEnabled()) {
-                        log.debug("Encountered truncated term: " + tlen + " characters, '" + token + "'");
-                    }
-                    counters.increment(ContentIndexCounters.TRUNCATION_COUNTER, reporter);
-                }
-                
-                if (tokenHelper.isVerboseTermSizeCounters()) {
-                    if (tlen < 10) {
-                        counters.increment(ContentIndexCounters.TERM_SIZE_GROUP_NAME, "SIZE_00" + tlen, reporter);
-                    } else if (tlen < 100) {
-                        counters.increment(ContentIndexCounters.TERM_SIZE_GROUP_NAME, "SIZE_0" + ((tlen / 10) * 10), reporter);
-                    } else {
-                        counters.increment(ContentIndexCounters.TERM_SIZE_GROUP_NAME, "SIZE_100", reporter);
-                    }
-                    
-                    counters.increment(ContentIndexCounters.TERM_TYPE_GROUP_NAME, type + "_TERMS", reporter);
-                }
-                
-                // Track the number of tokens processed
-                counters.increment(ContentIndexCounters.ORIGINAL_PROCESSED_COUNTER, reporter);
-                
-                if (termTypeBlacklist.contains(type)) {
-                    counters.increment(ContentIndexCounters.TERM_TYPE_GROUP_NAME, "BLACKLISTED_BY_TYPE", reporter);
-                    continue;
+                // the term attribute is passed as is, so no string is created for the terms that are skipped
+                addToken(nci, modifiedFieldName, termAtt, typeAtt.type(), truncAtt.isTruncated(), indexField, reverseIndexField, reporter);
+            }
+            
+            countTokenizerTime(tokenizerBeats * HeartBeatThread.INTERVAL, reporter);
+        } finally {
+            tokenizer.close();
+        }
+    }
+    
+    /**
+     * Tokenize the chunks of a large field in parallel. The tokens are then added in order, exactly as if they had come from a single token stream.
+     */
+    protected void tokenizeFieldInChunks(final Analyzer a, final NormalizedContentInterface nci, boolean indexField, boolean reverseIndexField,
+                    StatusReporter reporter) throws IOException, InterruptedException {
+        String indexedFieldName = nci.getIndexedFieldName();
+        String modifiedFieldName = getZoneName(indexedFieldName);
+        
+        int heartBeatCount = HeartBeatThread.counter;
+        int tokenizerBeats = 0;
+        long start = System.currentTimeMillis();
+        
+        tokenizerTimeWarned = false;
+        
+        ParallelTokenizer.Tokenization tokenization = parallelTokenizer.tokenize(a, indexedFieldName, nci.getIndexedFieldValue());
+        counters.incrementValue(ContentIndexCounters.TOKENIZER_CHUNKS_COUNTER, tokenization.getChunkCount(), reporter);
+        try {
+            // wait for the chunks, keeping the task alive and enforcing the tokenizer time limits while we do
+            while (!tokenization.await(HeartBeatThread.INTERVAL, TimeUnit.MILLISECONDS)) {
+                if (heartBeatCount != HeartBeatThread.counter) {
+                    tokenizerBeats += HeartBeatThread.counter - heartBeatCount;
+                    heartBeatCount = HeartBeatThread.counter;
+                    checkTokenizerTime(tokenizerBeats, start, modifiedFieldName, reporter);
                 }
+                if (reporter != null)
+                    reporter.progress();
+            }
+            
+            int basePosition = termPosition;
+            for (ParallelTokenizer.Token token : tokenization.getTokens()) {
+                // term positions aren't reset between fields of the same name, see getShardNamesAndValues.
+                termPosition = basePosition + token.getPosition();
+                addToken(nci, modifiedFieldName, token.getTerm(), token.getType(), token.isTruncated(), indexField, reverseIndexField, reporter);
+            }
+        } finally {
+            tokenization.cancel();
+        }
+        
+        tokenizerBeats += HeartBeatThread.counter - heartBeatCount;
+        countTokenizerTime(tokenizerBeats * HeartBeatThread.INTERVAL, reporter);
+    }
+    
+    /**
+     * @return the zone name for the tokens of an indexed field, the same instance for every field of that name
+     */
+    protected String getZoneName(String indexedFieldName) {
+        String zoneName = zoneNames.get(indexedFieldName);
+        if (zoneName == null) {
+            zoneName = indexedFieldName + tokenFieldNameSuffix;
+            zoneNames.put(indexedFieldName, zoneName);
+        }
+        return zoneName;
+    }
+    
+    /**
+     * Warn once when the tokenization of a field exceeds the warning threshold, and abort it when it exceeds the error threshold
+     */
+    private void checkTokenizerTime(int tokenizerBeats, long start, String modifiedFieldName, StatusReporter reporter) throws TokenizerTimeoutException {
+        // warn once on exceeding the warn threshold
+        long elapsedEstimateMsec = tokenizerBeats * HeartBeatThread.INTERVAL;
+        if (elapsedEstimateMsec > tokenHelper.getTokenizerTimeWarnThresholdMsec() && !tokenizerTimeWarned) {
+            long realDelta = System.currentTimeMillis() - start;
+            counters.incrementValue(ContentIndexCounters.TOKENIZER_TIME_WARNINGS, 1, reporter);
+            log.warn("Tokenization of field " + modifiedFieldName + " has exceeded warning threshold " + tokenHelper.getTokenizerTimeWarnThresholdMsec()
+                            + "ms (" + realDelta + "ms)");
+            tokenizerTimeWarned = true;
+        }
+        
+        // error when we exceed the error threshold
+        if (elapsedEstimateMsec > tokenHelper.getTokenizerTimeErrorThresholdMsec()) {
+            long realDelta = System.currentTimeMillis() - start;
+            counters.incrementValue(ContentIndexCounters.TOKENIZER_TIME_ERRORS, 1, reporter);
+            throw new TokenizerTimeoutException("Tokenization of field " + modifiedFieldName + " has exceeded error threshold "
+                            + tokenHelper.getTokenizerTimeErrorThresholdMsec() + "ms (" + realDelta + "ms), aborting");
+        }
+    }
+    
+    private void countTokenizerTime(long tokenizerDeltaMsec, StatusReporter reporter) {
+        final long[] tokenizerThresholds = tokenHelper.getTokenizerTimeThresholds();
+        final String[] tokenizerThresholdNames = tokenHelper.getTokenizerTimeThresholdNames();
+        boolean counted = false;
+        for (int i = 0; i < tokenizerThresholds.length; i++) {
+            if (tokenizerDeltaMsec < tokenizerThresholds[i]) {
+                counters.incrementValue(ContentIndexCounters.TOKENIZER_TIME_GROUP_NAME, ContentIndexCounters.TOKENIZER_TIME_PREFIX + "<"
+                                + tokenizerThresholdNames[i], 1, reporter);
+                counted = true;
+                break;
+            }
+        }
+        
+        // catch times outside of the max threshold if we're counting
+        if (!counted && tokenizerThresholdNames.length > 0) {
+            counters.incrementValue(ContentIndexCounters.TOKENIZER_TIME_GROUP_NAME, ContentIndexCounters.TOKENIZER_TIME_PREFIX + ">="
+                            + tokenizerThresholdNames[tokenizerThresholdNames.length - 1], 1, reporter);
+        }
+    }
+    
+    /**
+     * Add the index, reverse index and term frequency entries for a token at the current term position
+     */
+    private void addToken(NormalizedContentInterface nci, String modifiedFieldName, CharSequence term, String tokenType, boolean truncated,
+                    boolean indexField, boolean reverseIndexField, StatusReporter reporter) {
+        String type = tokenType;
+        if (type.startsWith("<") && type.endsWith(">")) {
+            type = type.substring(1, type.length() - 1); // <FOO> => FOO without regex
+        }
+        
+        // Make sure the term length is greater than the minimum allowed length
+        int tlen = term.length();
+        if (tlen < tokenHelper.getTermLengthMinimum()) {
+            if (log.isDebugEnabled()) {
+                log.debug("Ignoring token of length " + tlen + " because it is too short");
+            }
+            counters.increment(ContentIndexCounters.TOO_SHORT_COUNTER, reporter);
+            return;
+        }
+        
+        // skip the term if it is over the length limit unless it is a FILE, URL or HTTP_REQUEST
+        if (tlen > tokenHelper.getTermLengthLimit() && (!(type.equals("FILE") || type.equals("URL") || type.equals("HTTP_REQUEST")))) {
+            if (log.isDebugEnabled()) {
+                log.debug("Ignoring " + type + " token due to excessive length");
+            }
+            
+            counters.increment(ContentIndexCounters.EXCESSIVE_LENGTH_COUNTER, reporter);
+            return;
+        }
+        
+        if (tlen > tokenHelper.getTermLengthWarningLimit()) {
+            log.warn("Encountered long term: " + tlen + " characters, '" + term + "'");
+            counters.increment(ContentIndexCounters.LENGTH_WARNING_COUNTER, reporter);
+        }
+        
+        if (truncated) {
+            if (log.isDebugEnabled()) {
+                log.debug("Encountered truncated term: " + tlen + " characters, '" + term + "'");
+            }
+            counters.increment(ContentIndexCounters.TRUNCATION_COUNTER, reporter);
+        }
+        
+        if (tokenHelper.isVerboseTermSizeCounters()) {
+            if (tlen < 10) {
+                counters.increment(ContentIndexCounters.TERM_SIZE_GROUP_NAME, "SIZE_00" + tlen, reporter);
+            } else if (tlen < 100) {
+                counters.increment(ContentIndexCounters.TERM_SIZE_GROUP_NAME, "SIZE_0" + ((tlen / 10) * 10), reporter);
+            } else {
+                counters.increment(ContentIndexCounters.TERM_SIZE_GROUP_NAME, "SIZE_100", reporter);
+            }
+            
+            counters.increment(ContentIndexCounters.TERM_TYPE_GROUP_NAME, type + "_TERMS", reporter);
+        }
+        
+        // Track the number of tokens processed
+        counters.increment(ContentIndexCounters.ORIGINAL_PROCESSED_COUNTER, reporter);
+        
+        if (termTypeBlacklist.contains(type)) {
+            counters.increment(ContentIndexCounters.TERM_TYPE_GROUP_NAME, "BLACKLISTED_BY_TYPE", reporter);
+            return;
+        }
+        
+        if (indexField) {
+            String token = term.toString();
+            NormalizedContentInterface newField;
+            Collection<String> synonyms;
+            
+            if (tokenHelper.isSynonymGenerationEnabled()) {
+                // Get the list of synonyms including the term itself
+                // Zone is empty in this case.
+                synonyms = searchUtil.getSynonyms(new String[] {token, ""}, tokenType, true);
+            } else {
+                synonyms = Collections.singletonList(token);
+            }
+            
+            for (String s : synonyms) {
+                newField = (NormalizedContentInterface) (nci.clone());
+                newField.setFieldName(modifiedFieldName);
+                // don't put tokens in the event.
+                newField.setEventFieldValue(null);
+                newField.setIndexedFieldValue(s);
+                index.put(modifiedFieldName, newField);
                 
-                if (indexField) {
-                    NormalizedContentInterface newField;
-                    Collection<String> synonyms;
-                    
-                    if (tokenHelper.isSynonymGenerationEnabled()) {
-                        // Get the list of synonyms including the term itself
-                        // Zone is empty in this case.
-                        synonyms = searchUtil.getSynonyms(new String[] {token, ""}, typeAtt.type(), true);
-                    } else {
-                        synonyms = Collections.singletonList(token);
-                    }
-                    
-                    for (String s : synonyms) {
-                        newField = (NormalizedContentInterface) (nci.clone());
-                        newField.setFieldName(modifiedFieldName);
-                        // don't put tokens in the event.
-                        newField.setEventFieldValue(null);
-                        newField.setIndexedFieldValue(s);
-                        index.put(modifiedFieldName, newField);
-                        
-                        // add this token to the event fields so a
-                        // local fi\x00 key gets created
-                        // NOTE: we already assigned it to the
-                        // 'indexOnly' list so it won't show up in
-                        // the event
-                        fields.put(modifiedFieldName, newField);
-                        
-                        if (tokenOffsetCache != null) {
-                            tokenOffsetCache.addOffset(new TermAndZone(s, modifiedFieldName), termPosition);
-                        }
-                    }
-                    
-                    counters.incrementValue(ContentIndexCounters.SYNONYMS_PROCESSED_COUNTER, synonyms.size() - 1, reporter);
-                    if (tokenHelper.isVerboseTermIndexCounters()) {
-                        counters.incrementValue(ContentIndexCounters.SYNONYM_TYPE_GROUP_NAME, type + ContentIndexCounters.SYNONYMS_PROCESSED_TYPE_SUFFIX,
-                                        synonyms.size() - 1, reporter);
-                    }
-                }
+                // add this token to the event fields so a
+                // local fi\x00 key gets created
+                // NOTE: we already assigned it to the
+                // 'indexOnly' list so it won't show up in
+                // the event
+                fields.put(modifiedFieldName, newField);
                 
-                if (reverseIndexField) {
-                    String rToken = StringUtils.reverse(token);
-                    NormalizedContentInterface newField;
-                    Collection<String> synonyms;
-                    
-                    if (tokenHelper.isSynonymGenerationEnabled()) {
-                        synonyms = searchUtilReverse.getSynonyms(rToken, typeAtt.type(), true);
-                    } else {
-                        synonyms = Collections.singletonList(rToken);
-                    }
-                    
-                    for (String s : synonyms) {
-                        newField = (NormalizedContentInterface) (nci.clone());
-                        newField.setFieldName(modifiedFieldName);
-                        newField.setEventFieldValue(s);
-                        newField.setIndexedFieldValue(s);
-                        reverse.put(modifiedFieldName, newField);
-                        
-                        // NOTE: We don't want fi\x00 keys for reverse
-                        // tokens
-                    }
-                    
-                    counters.incrementValue(ContentIndexCounters.SYNONYMS_PROCESSED_COUNTER, synonyms.size() - 1, reporter);
-                    if (tokenHelper.isVerboseTermIndexCounters()) {
-                        counters.incrementValue(ContentIndexCounters.SYNONYM_TYPE_GROUP_NAME, type + ContentIndexCounters.SYNONYMS_PROCESSED_TYPE_SUFFIX,
-                                        synonyms.size() - 1, reporter);
-                    }
+                if (tokenOffsetCache != null) {
+                    tokenOffsetCache.addOffset(new TermAndZone(s, modifiedFieldName), termPosition);
                 }
             }
             
-            final long tokenizerDeltaMsec = tokenizerBeats * HeartBeatThread.INTERVAL;
-            final long[] tokenizerThresholds = tokenHelper.getTokenizerTimeThresholds();
-            final String[] tokenizerThresholdNames = tokenHelper.getTokenizerTimeThresholdNames();
-            boolean counted = false;
-            for (int i = 0; i < tokenizerThresholds.length; i++) {
-                if (tokenizerDeltaMsec < tokenizerThresholds[i]) {
-                    counters.incrementValue(ContentIndexCounters.TOKENIZER_TIME_GROUP_NAME, ContentIndexCounters.TOKENIZER_TIME_PREFIX + "<"
-                                    + tokenizerThresholdNames[i], 1, reporter);
-                    counted = true;
-                    break;
-                }
+            counters.incrementValue(ContentIndexCounters.SYNONYMS_PROCESSED_COUNTER, synonyms.size() - 1, reporter);
+            if (tokenHelper.isVerboseTermIndexCounters()) {
+                counters.incrementValue(ContentIndexCounters.SYNONYM_TYPE_GROUP_NAME, type + ContentIndexCounters.SYNONYMS_PROCESSED_TYPE_SUFFIX,
+                                synonyms.size() - 1, reporter);
             }
+        }
+        
+        if (reverseIndexField) {
+            String rToken = new StringBuilder(term).reverse().toString();
+            NormalizedContentInterface newField;
+            Collection<String> synonyms;
             
-            // catch times outside of the max threshold if we're counting
-            if (!counted && tokenizerThresholdNames.length > 0) {
-                counters.incrementValue(ContentIndexCounters.TOKENIZER_TIME_GROUP_NAME, ContentIndexCounters.TOKENIZER_TIME_PREFIX + ">="
-                                + tokenizerThresholdNames[tokenizerThresholdNames.length - 1], 1, reporter);
+            if (tokenHelper.isSynonymGenerationEnabled()) {
+                synonyms = searchUtilReverse.getSynonyms(rToken, tokenType, true);
+            } else {
+                synonyms = Collections.singletonList(rToken);
+            }
+            
+            for (String s : synonyms) {
+                newField = (NormalizedContentInterface) (nci.clone());
+                newField.setFieldName(modifiedFieldName);
+                newField.setEventFieldValue(s);
+                newField.setIndexedFieldValue(s);
+                reverse.put(modifiedFieldName, newField);
+                
+                // NOTE: We don't want fi\x00 keys for reverse
+                // tokens
+            }
+            
+            counters.incrementValue(ContentIndexCounters.SYNONYMS_PROCESSED_COUNTER, synonyms.size() - 1, reporter);
+            if (tokenHelper.isVerboseTermIndexCounters()) {
+                counters.incrementValue(ContentIndexCounters.SYNONYM_TYPE_GROUP_NAME, type + ContentIndexCounters.SYNONYMS_PROCESSED_TYPE_SUFFIX,
+                                synonyms.size() - 1, reporter);
             }
-        } finally {
-            tokenizer.close();
         }
     }
     
@@ -622,16 +726,7 @@ public abstract class ContentIndexingColumnBasedHandler<KEYIN> extends AbstractC
             final String diskThresholdPath = getBloomFilteringDiskThresholdPath();
             float memoryThreshold = getBloomFilteringMemoryThreshold();
             int maxFilterSize = getBloomFilteringOptimumMaxFilterSize();
-            int timeoutMillis = -1;
-            if (null != configuration) {
-                float taskTimeout = configuration.getFloat(TimeoutStrategy.MAPRED_TASK_TIMEOUT, -1);
-                if (taskTimeout > 0) {
-                    float timeoutThreshold = getBloomFilteringTimeoutThreshold();
-                    if ((timeoutThreshold > 0) && (timeoutThreshold <= 1)) {
-                        timeoutMillis = Math.round(((1.0f - timeoutThreshold) * taskTimeout));
-                    }
-                }
-            }
+            int timeoutMillis = getBloomFilteringTimeoutMillis(configuration);
             
             util = BloomFilterUtil.newInstance(helper, memoryThreshold, diskThreshold, diskThresholdPath, timeoutMillis);
             util.setOptimumFilterSize(maxFilterSize);
@@ -648,6 +743,52 @@ public abstract class ContentIndexingColumnBasedHandler<KEYIN> extends AbstractC
         return util;
     }
     
+    /**
+     * @return the maximum time to spend adding n-grams to a bloom filter, based on the mapred.task.timeout and the bloom filtering timeout threshold, or -1 for
+     *         no limit
+     */
+    protected int getBloomFilteringTimeoutMillis(final Configuration configuration) {
+        int timeoutMillis = -1;
+        if (null != configuration) {
+            float taskTimeout = configuration.getFloat(TimeoutStrategy.MAPRED_TASK_TIMEOUT, -1);
+            if (taskTimeout > 0) {
+                float timeoutThreshold = getBloomFilteringTimeoutThreshold();
+                if ((timeoutThreshold > 0) && (timeoutThreshold <= 1)) {
+                    timeoutMillis = Math.round(((1.0f - timeoutThreshold) * taskTimeout));
+                }
+            }
+        }
+        return timeoutMillis;
+    }
+    
+    @Override
+    protected BlockedBloomFilterBuilder newBlockedBloomFilterBuilder(final Configuration configuration) {
+        return new BlockedBloomFilterBuilder(BlockedBloomFilterBuilder.DEFAULT_MAX_NGRAM_LENGTH, Math.max(0, getBloomFilteringOptimumMaxFilterSize()),
+                        BlockedBloomFilterBuilder.DEFAULT_FPP, Math.max(0, getBloomFilteringTimeoutMillis(configuration)));
+    }
+    
+    /**
+     * Adds the field values, and the n-grams of the tokenized values of the content fields, exactly as {@link BloomFilterUtil#newNGramBasedFilter(Multimap)}
+     * would
+     */
+    @Override
+    protected void addBloomFilterValues(BlockedBloomFilterBuilder builder, final Multimap<String,NormalizedContentInterface> fields) {
+        super.addBloomFilterValues(builder, fields);
+        final AbstractContentIngestHelper helper = getContentIndexingDataTypeHelper();
+        if (null == helper) {
+            return;
+        }
+        Set<String> tokenized = new HashSet<>();
+        for (NormalizedContentInterface value : fields.values()) {
+            final String fieldName = value.getIndexedFieldName();
+            if ((helper.isContentIndexField(fieldName) || helper.isReverseContentIndexField(fieldName)) && tokenized.add(fieldName)) {
+                for (NormalizedContentInterface nci : fields.get(fieldName + helper.getTokenFieldNameDesignator())) {
+                    builder.addNGrams(nci.getIndexedFieldValue());
+                }
+            }
+        }
+    }
+    
     protected void indexListEntries(final NormalizedContentInterface nci, boolean indexField, boolean reverseIndexField, StatusReporter reporter) {
         
         if (!(indexField || reverseIndexField)) {
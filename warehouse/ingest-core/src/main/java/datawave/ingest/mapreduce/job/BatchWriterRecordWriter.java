@@ -0,0 +1,108 @@
+package datawave.ingest.mapreduce.job;
+
+import org.apache.accumulo.core.client.AccumuloException;
+import org.apache.accumulo.core.client.BatchWriter;
+import org.apache.accumulo.core.client.BatchWriterConfig;
+import org.apache.accumulo.core.client.Connector;
+import org.apache.accumulo.core.client.MutationsRejectedException;
+import org.apache.accumulo.core.client.TableNotFoundException;
+import org.apache.accumulo.core.data.Mutation;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A record writer that sends the table name, mutation pairs written by the EventMapper straight to Accumulo. Each table gets its own BatchWriter, and
+ * therefore its own mutation buffer and pool of write threads, so that a table receiving a large volume of small mutations (e.g. the shard table) does not
+ * hold back the mutations of the other tables. The writers are kept open across calls to {@link #flush()} so that a long running process only pays for their
+ * creation once.
+ */
+public class BatchWriterRecordWriter extends RecordWriter<Text,Mutation> implements Closeable {
+    
+    private static final Logger log = Logger.getLogger(BatchWriterRecordWriter.class);
+    
+    // the size of the mutation buffer of each table's BatchWriter
+    public static final String MAX_MEMORY = "ingest.batch.writer.max.memory";
+    public static final long DEFAULT_MAX_MEMORY = 16L * 1024 * 1024;
+    
+    // the maximum time mutations are held in a buffer before they are sent
+    public static final String MAX_LATENCY_MS = "ingest.batch.writer.max.latency.ms";
+    public static final long DEFAULT_MAX_LATENCY_MS = 1000L;
+    
+    // the number of threads each table's BatchWriter uses to send mutations
+    public static final String MAX_WRITE_THREADS = "ingest.batch.writer.threads";
+    public static final int DEFAULT_MAX_WRITE_THREADS = 4;
+    
+    private final Connector connector;
+    private final BatchWriterConfig config;
+    private final Map<Text,BatchWriter> writers = new HashMap<>();
+    
+    public BatchWriterRecordWriter(Connector connector, Configuration conf) {
+        this.connector = connector;
+        this.config = new BatchWriterConfig().setMaxMemory(conf.getLong(MAX_MEMORY, DEFAULT_MAX_MEMORY))
+                        .setMaxLatency(conf.getLong(MAX_LATENCY_MS, DEFAULT_MAX_LATENCY_MS), TimeUnit.MILLISECONDS)
+                        .setMaxWriteThreads(conf.getInt(MAX_WRITE_THREADS, DEFAULT_MAX_WRITE_THREADS));
+    }
+    
+    @Override
+    public void write(Text table, Mutation mutation) throws IOException {
+        BatchWriter writer = writers.get(table);
+        if (writer == null) {
+            try {
+                writer = connector.createBatchWriter(table.toString(), config);
+            } catch (TableNotFoundException e) {
+                throw new IOException("Table " + table + " does not exist", e);
+            }
+            // the table name may be reused by the caller
+            writers.put(new Text(table), writer);
+        }
+        try {
+            writer.addMutation(mutation);
+        } catch (MutationsRejectedException e) {
+            throw new IOException("Mutations were rejected for " + table, e);
+        }
+    }
+    
+    /**
+     * Block until every mutation written so far has been applied
+     */
+    public void flush() throws IOException {
+        for (Map.Entry<Text,BatchWriter> entry : writers.entrySet()) {
+            try {
+                entry.getValue().flush();
+            } catch (MutationsRejectedException e) {
+                throw new IOException("Mutations were rejected for " + entry.getKey(), e);
+            }
+        }
+    }
+    
+    @Override
+    public void close(TaskAttemptContext context) throws IOException {
+        close();
+    }
+    
+    @Override
+    public void close() throws IOException {
+        AccumuloException failure = null;
+        for (Map.Entry<Text,BatchWriter> entry : writers.entrySet()) {
+            try {
+                entry.getValue().close();
+            } catch (MutationsRejectedException e) {
+                log.error("Mutations were rejected for " + entry.getKey(), e);
+                failure = e;
+            }
+        }
+        writers.clear();
+        if (failure != null) {
+            throw new IOException("Failed to close the batch writers", failure);
+        }
+    }
+}
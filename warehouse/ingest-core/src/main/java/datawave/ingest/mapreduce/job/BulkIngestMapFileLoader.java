@@ -53,19 +53,30 @@ import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Stack;
+import java.util.TreeSet;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * A processor whose job is to watch for completed Bulk Ingest jobs and bring the map files produced by them online in accumulo. This class attempts to bring
  * multiple map files online at once if many jobs have completed, and also attempts to throttle itself to prevent queuing up too many major compactions on the
  * various tablet servers.
+ * <p>
+ * By default one job directory is loaded at a time. With {@code -pipelineDirectories} greater than 1 up to that many job directories are loaded at once, so
+ * that the copy, import and cleanup stages of different job directories overlap. The imports across all job directories are limited by
+ * {@code -maxTableImports} per table and {@code -maxImports} in total, and waiting imports are started in table priority order. The number of times each stage
+ * ran and the time spent in it are recorded in the MapFileLoader.StageCounts and MapFileLoader.StageMillis counters.
  */
 public final class BulkIngestMapFileLoader implements Runnable {
     private static Logger log = Logger.getLogger(BulkIngestMapFileLoader.class);
@@ -78,12 +89,22 @@ public final class BulkIngestMapFileLoader implements Runnable {
     private static int SHUTDOWN_PORT = 24111;
     private static boolean FIFO = true;
     private static boolean INGEST_METRICS = true;
+    private static int PIPELINE_DIRECTORIES = 1;
+    private static int MAX_TABLE_IMPORTS = 1;
+    private static int MAX_IMPORTS = 0; // no limit
     
     public static final String COMPLETE_FILE_MARKER = "job.complete";
     public static final String LOADING_FILE_MARKER = "job.loading";
     public static final String FAILED_FILE_MARKER = "job.failed";
     public static final String ATTEMPT_FILE_MARKER = "job.load.attempt.failed.do.not.delete";
     public static final String INPUT_FILES_MARKER = "job.paths";
+    
+    public static final String STAGE_CLAIM = "claim";
+    public static final String STAGE_DISTCP = "distcp";
+    public static final String STAGE_IMPORT_WAIT = "importWait";
+    public static final String STAGE_IMPORT = "import";
+    public static final String STAGE_VERIFY = "verify";
+    public static final String STAGE_CLEANUP = "cleanup";
     private static String cleanUpScript;
     
     private Path workDir;
@@ -100,6 +121,11 @@ public final class BulkIngestMapFileLoader implements Runnable {
     private StandaloneStatusReporter reporter = new StandaloneStatusReporter();
     private volatile boolean running;
     private ExecutorService executor;
+    private ImportPermits importPermits;
+    private final AtomicInteger fsAccessFailures = new AtomicInteger();
+    private final long startTime = System.currentTimeMillis();
+    // stage -> {count, millis} since startup, for logging the throughput and latency of each stage
+    private final Map<String,long[]> stageTotals = new LinkedHashMap<>();
     
     public static void main(String[] args) throws AccumuloSecurityException, IOException {
         
@@ -114,6 +140,7 @@ public final class BulkIngestMapFileLoader implements Runnable {
             log.error("usage: BulkIngestMapFileLoader hdfsWorkDir jobDirPattern instanceName zooKeepers username password "
                             + "[-sleepTime sleepTime] [-majcThreshold threshold] [-majcCheckInterval count] [-majcDelay majcDelay] "
                             + " [-seqFileHdfs seqFileSystemUri] [-srcHdfs srcFileSystemURI] [-destHdfs destFileSystemURI] [-jt jobTracker] "
+                            + "[-pipelineDirectories count] [-maxTableImports count] [-maxImports count] "
                             + "[-ingestMetricsDisabled] [-shutdownPort portNum] confFile [{confFile}]");
             System.exit(-1);
         }
@@ -213,6 +240,39 @@ public final class BulkIngestMapFileLoader implements Runnable {
                         log.error("-numAssignThreads must be followed by the number of bulk import assignment threads", e);
                         System.exit(-2);
                     }
+                } else if ("-pipelineDirectories".equalsIgnoreCase(args[i])) {
+                    if (i + 2 > args.length) {
+                        log.error("-pipelineDirectories must be followed by the number of job directories to load concurrently");
+                        System.exit(-2);
+                    }
+                    try {
+                        PIPELINE_DIRECTORIES = Integer.parseInt(args[++i]);
+                    } catch (NumberFormatException e) {
+                        log.error("-pipelineDirectories must be followed by the number of job directories to load concurrently", e);
+                        System.exit(-2);
+                    }
+                } else if ("-maxTableImports".equalsIgnoreCase(args[i])) {
+                    if (i + 2 > args.length) {
+                        log.error("-maxTableImports must be followed by the maximum number of concurrent bulk imports into a table");
+                        System.exit(-2);
+                    }
+                    try {
+                        MAX_TABLE_IMPORTS = Integer.parseInt(args[++i]);
+                    } catch (NumberFormatException e) {
+                        log.error("-maxTableImports must be followed by the maximum number of concurrent bulk imports into a table", e);
+                        System.exit(-2);
+                    }
+                } else if ("-maxImports".equalsIgnoreCase(args[i])) {
+                    if (i + 2 > args.length) {
+                        log.error("-maxImports must be followed by the maximum number of concurrent bulk imports");
+                        System.exit(-2);
+                    }
+                    try {
+                        MAX_IMPORTS = Integer.parseInt(args[++i]);
+                    } catch (NumberFormatException e) {
+                        log.error("-maxImports must be followed by the maximum number of concurrent bulk imports", e);
+                        System.exit(-2);
+                    }
                 } else if ("-seqFileHdfs".equalsIgnoreCase(args[i])) {
                     if (i + 2 > args.length) {
                         log.error("-seqFileHdfs must be followed a file system URI (e.g. hdfs://hostname:54310).");
@@ -303,6 +363,8 @@ public final class BulkIngestMapFileLoader implements Runnable {
         log.info("Using " + numBulkThreads + " bulk load threads");
         log.info("Using " + numHdfsThreads + " HDFS operation threads");
         log.info("Using " + numBulkAssignThreads + " bulk assign threads");
+        log.info("Loading up to " + PIPELINE_DIRECTORIES + " directories concurrently");
+        log.info("Running up to " + MAX_TABLE_IMPORTS + " concurrent imports per table" + (MAX_IMPORTS > 0 ? " and " + MAX_IMPORTS + " in total" : ""));
         log.info("Using " + seqFileHdfs + " as the file system containing the original sequence files");
         log.info("Using " + srcHdfs + " as the source file system");
         log.info("Using " + destHdfs + " as the destination file system");
@@ -366,6 +428,7 @@ public final class BulkIngestMapFileLoader implements Runnable {
         this.jobtracker = jobtracker;
         this.running = true;
         this.executor = Executors.newFixedThreadPool(numHdfsThreads > 0 ? numHdfsThreads : 1);
+        this.importPermits = new ImportPermits(MAX_IMPORTS, MAX_TABLE_IMPORTS);
         try {
             if (shutdownPort > 0) {
                 final ServerSocket serverSocket = new ServerSocket(shutdownPort);
@@ -383,19 +446,113 @@ public final class BulkIngestMapFileLoader implements Runnable {
     @Override
     public void run() {
         log.info("Starting process to monitor map files.");
+        try {
+            if (PIPELINE_DIRECTORIES > 1) {
+                runPipelined();
+            } else {
+                runSerial();
+            }
+        } finally {
+            log.info("Shutting down executor service");
+            executor.shutdown();
+        }
+        log.info("Bulk map file loader shutting down.");
+    }
+    
+    /**
+     * Loads one job directory at a time
+     */
+    private void runSerial() {
         long lastOnlineTime = 0;
         long lastLoadMessageTime = 0;
-        int fsAccessFailures = 0;
         Path[] jobDirectories = new Path[0];
         int nextJobIndex = 0;
+        while (true) {
+            try {
+                if (!running)
+                    break;
+                sleep();
+                if (!running)
+                    break;
+                long loadMessageDelta = System.currentTimeMillis() - lastLoadMessageTime;
+                boolean logMessages = (loadMessageDelta > (5 * 60 * 1000));
+                if (logMessages) {
+                    lastLoadMessageTime = System.currentTimeMillis();
+                }
+                if (!canBringMapFilesOnline(lastOnlineTime, logMessages)) {
+                    if (logMessages) {
+                        log.info("Waiting for load to decrease before bringing more map files online.");
+                    }
+                    continue;
+                }
+                List<Path> processedDirectories = new ArrayList<>();
+                if (nextJobIndex >= jobDirectories.length) {
+                    jobDirectories = getJobDirectories();
+                    nextJobIndex = 0;
+                }
+                if (jobDirectories.length > 0) {
+                    while (processedDirectories.size() < MAJC_CHECK_INTERVAL && jobDirectories.length > 0) {
+                        Path srcJobDirectory = jobDirectories[nextJobIndex++];
+                        if (!running)
+                            break;
+                        // take ownership of the job directory if we can
+                        if (claimJobDirectory(srcJobDirectory)) {
+                            processedDirectories.add(srcJobDirectory);
+                            if (loadJobDirectory(srcJobDirectory)) {
+                                // now that we actually processed something, reset the last load message time to force a message on the next round
+                                lastLoadMessageTime = 0;
+                            }
+                        }
+                        if (nextJobIndex >= jobDirectories.length) {
+                            jobDirectories = getJobDirectories();
+                            nextJobIndex = 0;
+                        }
+                        
+                    }
+                    if (!processedDirectories.isEmpty()) {
+                        writeStats(processedDirectories.toArray(new Path[processedDirectories.size()]));
+                        lastOnlineTime = System.currentTimeMillis();
+                    }
+                }
+            } catch (Exception e) {
+                log.error("Error: " + e.getMessage(), e);
+            }
+        }
+    }
+    
+    /**
+     * Loads up to PIPELINE_DIRECTORIES job directories at once. Another job directory is claimed as soon as one finishes (subject to the same major compaction
+     * checks as the serial loader, made every MAJC_CHECK_INTERVAL claims), so that the copy, import and cleanup stages of different job directories overlap.
+     * On shutdown no more job directories are claimed, but those being loaded are allowed to finish.
+     */
+    private void runPipelined() {
+        ExecutorService pipeline = Executors.newFixedThreadPool(PIPELINE_DIRECTORIES);
+        CompletionService<Path> loaded = new ExecutorCompletionService<>(pipeline);
+        long lastOnlineTime = 0;
+        long lastLoadMessageTime = 0;
+        Path[] jobDirectories = new Path[0];
+        int nextJobIndex = 0;
+        int inFlight = 0;
+        List<Path> processedDirectories = new ArrayList<>();
         try {
-            while (true) {
+            while (running || inFlight > 0) {
                 try {
-                    if (!running)
-                        break;
-                    sleep();
-                    if (!running)
-                        break;
+                    // wait for a job directory to finish, or for the sleep time to pass
+                    Future<Path> done = loaded.poll(SLEEP_TIME, TimeUnit.MILLISECONDS);
+                    while (done != null) {
+                        inFlight--;
+                        processedDirectories.add(done.get());
+                        done = loaded.poll();
+                    }
+                    if (!processedDirectories.isEmpty()) {
+                        writeStats(processedDirectories.toArray(new Path[processedDirectories.size()]));
+                        processedDirectories.clear();
+                        logStageMetrics();
+                        lastLoadMessageTime = 0;
+                    }
+                    if (!running || inFlight >= PIPELINE_DIRECTORIES)
+                        continue;
+                    
                     long loadMessageDelta = System.currentTimeMillis() - lastLoadMessageTime;
                     boolean logMessages = (loadMessageDelta > (5 * 60 * 1000));
                     if (logMessages) {
@@ -407,86 +564,141 @@ public final class BulkIngestMapFileLoader implements Runnable {
                         }
                         continue;
                     }
-                    List<Path> processedDirectories = new ArrayList<>();
-                    if (nextJobIndex >= jobDirectories.length) {
-                        jobDirectories = getJobDirectories();
-                        nextJobIndex = 0;
-                    }
-                    if (jobDirectories.length > 0) {
-                        while (processedDirectories.size() < MAJC_CHECK_INTERVAL && jobDirectories.length > 0) {
-                            Path srcJobDirectory = jobDirectories[nextJobIndex++];
-                            if (!running)
+                    
+                    int claimed = 0;
+                    while (running && claimed < MAJC_CHECK_INTERVAL && inFlight < PIPELINE_DIRECTORIES) {
+                        if (nextJobIndex >= jobDirectories.length) {
+                            jobDirectories = getJobDirectories();
+                            nextJobIndex = 0;
+                            if (jobDirectories.length == 0)
                                 break;
-                            // take ownership of the job directory if we can
-                            if (takeOwnershipJobDirectory(srcJobDirectory)) {
-                                processedDirectories.add(srcJobDirectory);
-                                Path mapFilesDir = new Path(srcJobDirectory, "mapFiles");
-                                reporter.getCounter("MapFileLoader.StartTimes", srcJobDirectory.getName()).increment(System.currentTimeMillis());
-                                Path dstJobDirectory = srcJobDirectory;
-                                URI workingHdfs = srcHdfs;
-                                
-                                try {
-                                    log.info("Started processing " + mapFilesDir);
-                                    long start = System.currentTimeMillis();
-                                    
-                                    // copy the data if needed
-                                    dstJobDirectory = distCpDirectory(srcJobDirectory);
-                                    workingHdfs = destHdfs;
-                                    
-                                    // recreate the map files directory reference in case it moved filesystems
-                                    mapFilesDir = new Path(dstJobDirectory, "mapFiles");
-                                    
-                                    // now if we have a destination work directory, then move then move the files
-                                    bringMapFilesOnline(mapFilesDir);
-                                    
-                                    // ensure everything got loaded
-                                    verifyNothingLeftBehind(mapFilesDir);
-                                    
-                                    cleanUpJobDirectory(mapFilesDir);
-                                    long end = System.currentTimeMillis();
-                                    log.info("Finished processing " + mapFilesDir + ", duration (sec): " + ((end - start) / 1000));
-                                    
-                                    // now that we actually processed something, reset the last load message time to force a message on the next round
-                                    lastLoadMessageTime = 0;
-                                } catch (Exception e) {
-                                    log.error("Failed to process " + mapFilesDir, e);
-                                    boolean marked = markJobDirectoryFailed(workingHdfs, dstJobDirectory);
-                                    if (!marked) {
-                                        ++fsAccessFailures;
-                                        if (fsAccessFailures >= 3) {
-                                            log.error("Too many failures updating marker files.  Exiting...");
-                                            shutdown();
-                                        } else {
-                                            log.warn("Failed to mark " + dstJobDirectory + " as failed. Sleeping in case this was a transient failure.");
-                                            try {
-                                                Thread.sleep(FAILURE_SLEEP_TIME);
-                                            } catch (InterruptedException ie) {
-                                                log.warn("Interrupted while sleeping.", ie);
-                                            }
-                                        }
-                                    }
-                                }
-                            }
-                            if (nextJobIndex >= jobDirectories.length) {
-                                jobDirectories = getJobDirectories();
-                                nextJobIndex = 0;
-                            }
-                            
                         }
-                        if (!processedDirectories.isEmpty()) {
-                            writeStats(processedDirectories.toArray(new Path[processedDirectories.size()]));
-                            lastOnlineTime = System.currentTimeMillis();
+                        final Path srcJobDirectory = jobDirectories[nextJobIndex++];
+                        if (claimJobDirectory(srcJobDirectory)) {
+                            loaded.submit(() -> {
+                                loadJobDirectory(srcJobDirectory);
+                                return srcJobDirectory;
+                            });
+                            inFlight++;
+                            claimed++;
                         }
                     }
+                    if (claimed > 0) {
+                        lastOnlineTime = System.currentTimeMillis();
+                    }
                 } catch (Exception e) {
                     log.error("Error: " + e.getMessage(), e);
                 }
             }
         } finally {
-            log.info("Shutting down executor service");
-            executor.shutdown();
+            pipeline.shutdown();
         }
-        log.info("Bulk map file loader shutting down.");
+    }
+    
+    /**
+     * Takes ownership of a job directory, recording the time spent in the claim stage
+     */
+    private boolean claimJobDirectory(Path srcJobDirectory) {
+        long start = System.currentTimeMillis();
+        boolean claimed = takeOwnershipJobDirectory(srcJobDirectory);
+        if (claimed) {
+            recordStage(STAGE_CLAIM, srcJobDirectory, start);
+        }
+        return claimed;
+    }
+    
+    /**
+     * Loads a job directory that we have taken ownership of: copies it to the destination file system if needed, brings its map files online, verifies that
+     * nothing was left behind and cleans it up. If any of that fails the job directory is marked as failed.
+     *
+     * @return true if the job directory was loaded
+     */
+    private boolean loadJobDirectory(Path srcJobDirectory) {
+        Path mapFilesDir = new Path(srcJobDirectory, "mapFiles");
+        incrementCounter("MapFileLoader.StartTimes", srcJobDirectory.getName(), System.currentTimeMillis());
+        Path dstJobDirectory = srcJobDirectory;
+        URI workingHdfs = srcHdfs;
+        
+        try {
+            log.info("Started processing " + mapFilesDir);
+            long start = System.currentTimeMillis();
+            
+            // copy the data if needed
+            dstJobDirectory = distCpDirectory(srcJobDirectory);
+            workingHdfs = destHdfs;
+            long stageStart = recordStage(STAGE_DISTCP, srcJobDirectory, start);
+            
+            // recreate the map files directory reference in case it moved filesystems
+            mapFilesDir = new Path(dstJobDirectory, "mapFiles");
+            
+            // now if we have a destination work directory, then move then move the files
+            bringMapFilesOnline(mapFilesDir);
+            stageStart = recordStage(STAGE_IMPORT, srcJobDirectory, stageStart);
+            
+            // ensure everything got loaded
+            verifyNothingLeftBehind(mapFilesDir);
+            stageStart = recordStage(STAGE_VERIFY, srcJobDirectory, stageStart);
+            
+            cleanUpJobDirectory(mapFilesDir);
+            long end = recordStage(STAGE_CLEANUP, srcJobDirectory, stageStart);
+            log.info("Finished processing " + mapFilesDir + ", duration (sec): " + ((end - start) / 1000));
+            return true;
+        } catch (Exception e) {
+            log.error("Failed to process " + mapFilesDir, e);
+            boolean marked = markJobDirectoryFailed(workingHdfs, dstJobDirectory);
+            if (!marked) {
+                if (fsAccessFailures.incrementAndGet() >= 3) {
+                    log.error("Too many failures updating marker files.  Exiting...");
+                    shutdown();
+                } else {
+                    log.warn("Failed to mark " + dstJobDirectory + " as failed. Sleeping in case this was a transient failure.");
+                    try {
+                        Thread.sleep(FAILURE_SLEEP_TIME);
+                    } catch (InterruptedException ie) {
+                        log.warn("Interrupted while sleeping.", ie);
+                    }
+                }
+            }
+            return false;
+        }
+    }
+    
+    private synchronized void incrementCounter(String group, String name, long amount) {
+        reporter.getCounter(group, name).increment(amount);
+    }
+    
+    /**
+     * Records that a stage of loading a job directory completed
+     *
+     * @return the current time, which is the start of the next stage
+     */
+    private long recordStage(String stage, Path jobDirectory, long start) {
+        long now = System.currentTimeMillis();
+        long millis = now - start;
+        log.debug("Stage " + stage + " of " + jobDirectory + " took " + millis + "ms");
+        synchronized (this) {
+            reporter.getCounter("MapFileLoader.StageCounts", stage).increment(1);
+            reporter.getCounter("MapFileLoader.StageMillis", stage).increment(millis);
+            long[] totals = stageTotals.computeIfAbsent(stage, k -> new long[2]);
+            totals[0]++;
+            totals[1] += millis;
+        }
+        return now;
+    }
+    
+    /**
+     * Logs the throughput and average latency of each stage since startup
+     */
+    private synchronized void logStageMetrics() {
+        double minutes = Math.max(1, System.currentTimeMillis() - startTime) / 60000.0;
+        StringBuilder builder = new StringBuilder("Stage metrics:");
+        for (Map.Entry<String,long[]> entry : stageTotals.entrySet()) {
+            long count = entry.getValue()[0];
+            builder.append(' ').append(entry.getKey()).append("=[count=").append(count);
+            builder.append(", perMinute=").append(String.format("%.2f", count / minutes));
+            builder.append(", avgMs=").append(entry.getValue()[1] / count).append(']');
+        }
+        log.info(builder);
     }
     
     protected void shutdown() {
@@ -824,10 +1036,18 @@ public final class BulkIngestMapFileLoader implements Runnable {
                 }
                 fileSystem.mkdirs(failuresPath);
                 
-                // import the directory
-                log.info("Bringing Map Files online for " + tableName);
-                tops.importDirectory(tableName, tableDir.toString(), failuresDir, false);
-                log.info("Completed bringing map files online for " + tableName);
+                // import the directory once there is room for another import into this table
+                long waitStart = System.currentTimeMillis();
+                importPermits.acquire(tableName, getTablePriority(tableName));
+                try {
+                    long importStart = recordStage(STAGE_IMPORT_WAIT, mapFilesDir.getParent(), waitStart);
+                    log.info("Bringing Map Files online for " + tableName);
+                    tops.importDirectory(tableName, tableDir.toString(), failuresDir, false);
+                    log.info("Completed bringing map files online for " + tableName);
+                    incrementCounter("MapFileLoader.TableImportMillis", tableName, System.currentTimeMillis() - importStart);
+                } finally {
+                    importPermits.release(tableName);
+                }
                 validateComplete();
             } catch (Exception e) {
                 log.error("Error importing files into table " + tableName + " from directory " + mapFilesDir, e);
@@ -910,6 +1130,105 @@ public final class BulkIngestMapFileLoader implements Runnable {
         }
     }
     
+    private int getTablePriority(String tableName) {
+        Integer priority = (tablePriorities == null ? null : tablePriorities.get(tableName));
+        return (priority == null ? Integer.MAX_VALUE : priority);
+    }
+    
+    /**
+     * Limits the number of concurrent bulk imports, per table and in total, across all of the job directories being loaded. When an import can start, it goes
+     * to the waiting import with the highest table priority (the lowest number) whose table is not already at its limit, the oldest first within a priority.
+     */
+    static class ImportPermits {
+        private final int maxImports;
+        private final int maxTableImports;
+        private final Map<String,Integer> running = new HashMap<>();
+        private final TreeSet<ImportRequest> waiting = new TreeSet<>();
+        private int totalRunning = 0;
+        private long sequence = 0;
+        
+        /**
+         * @param maxImports
+         *            the maximum number of concurrent imports, or 0 for no limit
+         * @param maxTableImports
+         *            the maximum number of concurrent imports into any one table, or 0 for no limit
+         */
+        ImportPermits(int maxImports, int maxTableImports) {
+            this.maxImports = maxImports;
+            this.maxTableImports = maxTableImports;
+        }
+        
+        synchronized void acquire(String tableName, int priority) throws InterruptedException {
+            ImportRequest request = new ImportRequest(tableName, priority, sequence++);
+            waiting.add(request);
+            try {
+                while (!canStart(request)) {
+                    wait();
+                }
+            } finally {
+                waiting.remove(request);
+                notifyAll();
+            }
+            running.put(tableName, getRunning(tableName) + 1);
+            totalRunning++;
+        }
+        
+        synchronized void release(String tableName) {
+            int count = getRunning(tableName) - 1;
+            if (count > 0) {
+                running.put(tableName, count);
+            } else {
+                running.remove(tableName);
+            }
+            totalRunning--;
+            notifyAll();
+        }
+        
+        synchronized int getRunning(String tableName) {
+            Integer count = running.get(tableName);
+            return (count == null ? 0 : count);
+        }
+        
+        synchronized int getWaiting() {
+            return waiting.size();
+        }
+        
+        private boolean canStart(ImportRequest request) {
+            if ((maxImports > 0 && totalRunning >= maxImports) || !hasRoom(request.tableName)) {
+                return false;
+            }
+            // defer to any import ahead of this one that could start now
+            for (ImportRequest ahead : waiting.headSet(request)) {
+                if (hasRoom(ahead.tableName)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        
+        private boolean hasRoom(String tableName) {
+            return maxTableImports <= 0 || getRunning(tableName) < maxTableImports;
+        }
+    }
+    
+    private static class ImportRequest implements Comparable<ImportRequest> {
+        private final String tableName;
+        private final int priority;
+        private final long sequence;
+        
+        private ImportRequest(String tableName, int priority, long sequence) {
+            this.tableName = tableName;
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+        
+        @Override
+        public int compareTo(ImportRequest o) {
+            int result = Integer.compare(priority, o.priority);
+            return (result != 0 ? result : Long.compare(sequence, o.sequence));
+        }
+    }
+    
     /**
      * Verify there are no RFiles left behind. If there are, then we need to throw an exception to ensure we fail this bulk load and the directory is not
      * removed.
@@ -1130,7 +1449,7 @@ public final class BulkIngestMapFileLoader implements Runnable {
         } else {
             long now = System.currentTimeMillis();
             for (Path p : jobDirectories)
-                reporter.getCounter("MapFileLoader.EndTimes", p.getName()).increment(now);
+                incrementCounter("MapFileLoader.EndTimes", p.getName(), now);
             // Write out the metrics.
             // We are going to serialize the counters into a file in HDFS.
             // The context was set in the processKeyValues method below, and should not be null. We'll guard against NPE anyway
@@ -1140,7 +1459,14 @@ public final class BulkIngestMapFileLoader implements Runnable {
             CompressionCodec cc = new GzipCodec();
             CompressionType ct = CompressionType.BLOCK;
             
-            Counters c = reporter.getCounters();
+            Counters c;
+            synchronized (this) {
+                c = reporter.getCounters();
+                if (null != c && c.countCounters() > 0) {
+                    // reset reporter so that old metrics don't persist over time
+                    this.reporter = new StandaloneStatusReporter();
+                }
+            }
             if (null != c && c.countCounters() > 0) {
                 // Serialize the counters to a file in HDFS.
                 Path src = new Path(File.createTempFile("MapFileLoader", ".metrics").getAbsolutePath());
@@ -1166,9 +1492,6 @@ public final class BulkIngestMapFileLoader implements Runnable {
                     // If an error occurs in the copy, then we will leave in the local metrics directory.
                     log.error("Error copying metrics file into HDFS, will remain in metrics directory.");
                 }
-                
-                // reset reporter so that old metrics don't persist over time
-                this.reporter = new StandaloneStatusReporter();
             }
         }
     }
@@ -22,6 +22,8 @@ import datawave.ingest.mapreduce.job.writer.ChainedContextWriter;
 import datawave.ingest.mapreduce.job.writer.ContextWriter;
 import datawave.ingest.mapreduce.job.writer.DedupeContextWriter;
 import datawave.ingest.mapreduce.job.writer.LiveContextWriter;
+import datawave.ingest.mapreduce.job.writer.SortedCombiningContextWriter;
+import datawave.ingest.mapreduce.job.writer.SortingContextWriter;
 import datawave.ingest.mapreduce.job.writer.TableCachingContextWriter;
 import datawave.ingest.mapreduce.partition.MultiTableRangePartitioner;
 import datawave.ingest.metric.IngestInput;
@@ -120,13 +122,14 @@ import java.util.Set;
 
 /**
  * Class that starts a MapReduce job to create Accumulo Map files that to be bulk imported into Accumulo If outputMutations is specified, then Mutations are
- * created instead which will modify accumulo directly instead of using Accumulo Map files (e.g. use for live ingest). If mapOnly is specified (only valid for
- * live ingest), then the combiner and reducers will be run as part of the map process. Beware that potentially more data may be cached in memory when doing
- * mapOnly processing. This will only be an issue if something like the EdgeDataTypeHandler produces an unreasonable number of edges for one event. The general
- * sequence of events is as follows:
+ * created instead which will modify accumulo directly instead of using Accumulo Map files (e.g. use for live ingest). If mapOnly is specified, then the
+ * combiner and reducers will be run as part of the map process; for bulk ingest each mapper sorts its own output and writes the Accumulo Map files directly.
+ * Beware that potentially more data may be cached in memory when doing mapOnly processing. This will only be an issue if something like the
+ * EdgeDataTypeHandler produces an unreasonable number of edges for one event. The general sequence of events is as follows:
  * <p>
  * EventSequenceFileInputFormat produces an EventSequenceFileReader to read files of Event objects EventMapper used in map phase which calls processBulk on
- * DataTypeHelper implementations to produce BulkIngestKey,Value pairs BulkIngestDedupeCombiner is invoked from the DedupeContextWriter to primarily dedupe
+ * DataTypeHelper implementations to produce BulkIngestKey,Value pairs BulkIngestDedupeCombiner is invoked from the DedupeContextWriter (or from the
+ * SortedCombiningContextWriter, which buffers serialized entries up to a byte budget and combines them in sorted order) to primarily dedupe
  * BulkIngestKey,Value pairs if not running a mapOnly job, then the Delegating Partitioner will run, using the Partitioners that are configured for each table
  * or the default Partitioner if none is specified for a table. BulkIngestAggregatingReducer is used as the reducer (or invoked from the
  * AggregatingContextWriter in mapOnly mode) to produce dedupped BulkIngestKey,Value pairs The BulkContextWriter or the LiveContextWriter are at all stages to
@@ -166,6 +169,7 @@ public class IngestJob implements Tool {
     protected boolean useMapOnly = false;
     protected boolean useCombiner = false;
     protected boolean useInlineCombiner = false;
+    protected boolean useSortedInlineCombiner = false;
     protected boolean verboseCounters = false;
     protected boolean tableCounters = false;
     protected boolean fileNameCounters = true;
@@ -237,6 +241,7 @@ public class IngestJob implements Tool {
         System.out.println("                     [-outputMutations]");
         System.out.println("                     [-mapreduce.job.reduces=numReducers]");
         System.out.println("                     [-disableSpeculativeExecution] [-mapOnly] [-useCombiner] [-useInlineCombiner]");
+        System.out.println("                     [-useSortedInlineCombiner]");
         System.out.println("                     [-verboseCounters]");
         System.out.println("                     [-tableCounters] [-contextWriterCounters] [-noFileNameCounters]");
         System.out.println("                     [-generateMapFileRowKeys]");
@@ -611,6 +616,9 @@ public class IngestJob implements Tool {
                 useCombiner = true;
             } else if (args[i].equals("-useInlineCombiner")) {
                 useInlineCombiner = true;
+            } else if (args[i].equals("-useSortedInlineCombiner")) {
+                useInlineCombiner = true;
+                useSortedInlineCombiner = true;
             } else if (args[i].equals("-pipelineId")) {
                 pipelineId = args[++i];
             } else if (args[i].equals("-markerFileReducePercentage")) {
@@ -712,11 +720,6 @@ public class IngestJob implements Tool {
                 return null;
             }
             
-            if (useMapOnly && !outputMutations) {
-                log.error("ERROR: Cannot do bulk ingest mapOnly (i.e. without the reduce phase).  Bulk ingest required sorted keys.");
-                return null;
-            }
-            
             if (!outputMutations && destHdfs == null) {
                 log.error("ERROR: -destHdfs must be specified for bulk ingest");
                 return null;
@@ -736,7 +739,7 @@ public class IngestJob implements Tool {
      * @throws TableNotFoundException
      * @throws ClassNotFoundException
      */
-    private boolean configureTables(AccumuloHelper cbHelper, Configuration conf) throws AccumuloSecurityException, AccumuloException, TableNotFoundException,
+    protected boolean configureTables(AccumuloHelper cbHelper, Configuration conf) throws AccumuloSecurityException, AccumuloException, TableNotFoundException,
                     ClassNotFoundException {
         // Check to see if the tables exist
         TableOperations tops = cbHelper.getConnector().tableOperations();
@@ -751,7 +754,7 @@ public class IngestJob implements Tool {
      *            configuration file that contains data handler types and other information necessary for determining the set of tables required
      * @return true if a non-empty comma separated list of table names was properly set to conf's job table.names property
      */
-    private boolean registerTableNames(Configuration conf) {
+    protected boolean registerTableNames(Configuration conf) {
         Set<String> tables = getTables(conf);
         
         if (tables.isEmpty()) {
@@ -790,6 +793,18 @@ public class IngestJob implements Tool {
         configureMultiRFileOutputFormatter(conf, compressionType, compressionTableBlackList, maxRFileEntries, maxRFileSize, generateMapFileRowKeys);
         
         DelegatingPartitioner.configurePartitioner(job, conf, tableNames); // sets the partitioner
+        
+        if (useMapOnly) {
+            // every mapper writes files for the whole key space, so start a new file at each split of the non-sharded tables to keep every file within
+            // a single tablet, which needs the full (untrimmed) splits
+            if (null == NonShardedSplitsFile.findSplitsFile(conf, job.getLocalCacheFiles(), false)) {
+                Path workDirPath = new Path(conf.get("ingest.work.dir.qualified"));
+                NonShardedSplitsFile.Writer splitsWriter = new NonShardedSplitsFile.Writer(conf, this.reduceTasks, workDirPath, outputFs, tableNames, false);
+                splitsWriter.createFile(false);
+                job.addCacheFile(splitsWriter.getUri());
+            }
+            MultiRFileOutputFormatter.setGenerateMapFilePerSplit(conf, true);
+        }
     }
     
     protected void configureInputFormat(Job job, AccumuloHelper cbHelper, Configuration conf) throws Exception {
@@ -839,6 +854,8 @@ public class IngestJob implements Tool {
                 log.warn("Using both an inline combiner AND a map-reduce combiner...perhaps only one is needed");
             } else if (useCombiner) {
                 log.info("Using a combiner.  Consider using 'useInlineCombiner' instead");
+            } else if (useSortedInlineCombiner) {
+                log.info("Using a sorted inline combiner");
             } else {
                 log.info("Using an inline combiner");
             }
@@ -864,7 +881,7 @@ public class IngestJob implements Tool {
                 if (useInlineCombiner) {
                     // The dedupe context writer invokes the BulkIngestKeyDedupeCombiner.
                     // We are running the DedupeContextWriter in the context writer stream instead of using a combiner for performance reasons
-                    job.getConfiguration().setClass(EventMapper.CONTEXT_WRITER_CLASS, DedupeContextWriter.class, ChainedContextWriter.class);
+                    job.getConfiguration().setClass(EventMapper.CONTEXT_WRITER_CLASS, getInlineCombinerClass(), ChainedContextWriter.class);
                     job.getConfiguration().setClass(DedupeContextWriter.CONTEXT_WRITER_CLASS, TableCachingContextWriter.class, ContextWriter.class);
                 } else {
                     job.getConfiguration().setClass(EventMapper.CONTEXT_WRITER_CLASS, TableCachingContextWriter.class, ChainedContextWriter.class);
@@ -885,7 +902,7 @@ public class IngestJob implements Tool {
                 job.getConfiguration().setBoolean(EventMapper.CONTEXT_WRITER_OUTPUT_TABLE_COUNTERS, tableCounters);
                 
                 if (useCombiner || useInlineCombiner) {
-                    job.getConfiguration().setClass(EventMapper.CONTEXT_WRITER_CLASS, DedupeContextWriter.class, ChainedContextWriter.class);
+                    job.getConfiguration().setClass(EventMapper.CONTEXT_WRITER_CLASS, getInlineCombinerClass(), ChainedContextWriter.class);
                     job.getConfiguration().setClass(DedupeContextWriter.CONTEXT_WRITER_CLASS, TableCachingContextWriter.class, ContextWriter.class);
                 } else {
                     job.getConfiguration().setClass(EventMapper.CONTEXT_WRITER_CLASS, TableCachingContextWriter.class, ChainedContextWriter.class);
@@ -913,7 +930,7 @@ public class IngestJob implements Tool {
                 if (useInlineCombiner) {
                     // The dedupe context writer invokes the BulkIngestKeyDedupeCombiner.
                     // We are running the DedupeContextWriter in the context writer stream instead of using a combiner for performance reasons
-                    job.getConfiguration().setClass(EventMapper.CONTEXT_WRITER_CLASS, DedupeContextWriter.class, ChainedContextWriter.class);
+                    job.getConfiguration().setClass(EventMapper.CONTEXT_WRITER_CLASS, getInlineCombinerClass(), ChainedContextWriter.class);
                     job.getConfiguration().setClass(DedupeContextWriter.CONTEXT_WRITER_CLASS, TableCachingContextWriter.class, ContextWriter.class);
                 } else {
                     job.getConfiguration().setClass(EventMapper.CONTEXT_WRITER_CLASS, TableCachingContextWriter.class, ChainedContextWriter.class);
@@ -925,19 +942,20 @@ public class IngestJob implements Tool {
                 job.getConfiguration().setBoolean(BulkIngestKeyAggregatingReducer.CONTEXT_WRITER_OUTPUT_TABLE_COUNTERS, tableCounters);
                 job.setReducerClass(BulkIngestKeyAggregatingReducer.class);
             } else {
-                // The dedupe context writer invokes the BulkIngestKeyDedupeCombiner, and the aggregating context writer
-                // invokes the BulkIngestKeyAggregatingReducer. The LiveContextWriter will take care of translating from BulkIngestKeys to Mutations
+                // The dedupe context writer invokes the BulkIngestKeyDedupeCombiner, and the sorting context writer sorts all of the mapper output
+                // (spilling to local disk as needed) and invokes the BulkIngestKeyAggregatingReducer, so that the MultiRFileOutputFormatter receives
+                // sorted keys without a shuffle
                 job.getConfiguration().setBoolean(EventMapper.CONTEXT_WRITER_OUTPUT_TABLE_COUNTERS, tableCounters);
                 
                 if (useCombiner || useInlineCombiner) {
-                    job.getConfiguration().setClass(EventMapper.CONTEXT_WRITER_CLASS, DedupeContextWriter.class, ChainedContextWriter.class);
+                    job.getConfiguration().setClass(EventMapper.CONTEXT_WRITER_CLASS, getInlineCombinerClass(), ChainedContextWriter.class);
                     job.getConfiguration().setClass(DedupeContextWriter.CONTEXT_WRITER_CLASS, TableCachingContextWriter.class, ContextWriter.class);
                 } else {
                     job.getConfiguration().setClass(EventMapper.CONTEXT_WRITER_CLASS, TableCachingContextWriter.class, ChainedContextWriter.class);
                 }
                 
-                job.getConfiguration().setClass(TableCachingContextWriter.CONTEXT_WRITER_CLASS, AggregatingContextWriter.class, ContextWriter.class);
-                job.getConfiguration().setClass(AggregatingContextWriter.CONTEXT_WRITER_CLASS, BulkContextWriter.class, ContextWriter.class);
+                job.getConfiguration().setClass(TableCachingContextWriter.CONTEXT_WRITER_CLASS, SortingContextWriter.class, ContextWriter.class);
+                job.getConfiguration().setClass(SortingContextWriter.CONTEXT_WRITER_CLASS, BulkContextWriter.class, ContextWriter.class);
             }
         }
         
@@ -994,6 +1012,14 @@ public class IngestJob implements Tool {
         }
     }
     
+    /**
+     * The context writer that runs the BulkIngestKeyDedupeCombiner in the mapper when using an inline combiner
+     */
+    @SuppressWarnings("rawtypes")
+    protected Class<? extends ChainedContextWriter> getInlineCombinerClass() {
+        return useSortedInlineCombiner ? SortedCombiningContextWriter.class : DedupeContextWriter.class;
+    }
+    
     /**
      * @param keyValue
      *            of format 'key=value'
@@ -1008,7 +1034,7 @@ public class IngestJob implements Tool {
         }
     }
     
-    private void updateConfWithOverrides(Configuration conf) {
+    protected void updateConfWithOverrides(Configuration conf) {
         for (String[] conOverride : confOverrides) {
             conf.set(conOverride[0], conOverride[1]);
         }
@@ -0,0 +1,290 @@
+package datawave.ingest.mapreduce.job;
+
+import datawave.ingest.data.RawRecordContainer;
+import datawave.ingest.data.TypeRegistry;
+import datawave.ingest.data.config.ingest.AccumuloHelper;
+import datawave.ingest.mapreduce.EventMapper;
+import datawave.ingest.test.StandaloneStatusReporter;
+import datawave.marking.MarkingFunctions;
+import org.apache.accumulo.core.client.TableNotFoundException;
+import org.apache.accumulo.core.data.Mutation;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.InputFormat;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.MapContext;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.TaskType;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+import org.apache.hadoop.mapreduce.lib.map.WrappedMapper;
+import org.apache.hadoop.mapreduce.task.MapContextImpl;
+import org.apache.hadoop.mapreduce.task.TaskAttemptContextImpl;
+import org.apache.hadoop.util.ReflectionUtils;
+import org.apache.hadoop.util.ToolRunner;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * A long running live ingest process. Instead of running a MapReduce job per set of flagged files, this process watches a spool directory and runs the files
+ * that appear there through the same mapper, handlers and context writers that a map only live ingest job would use, writing the mutations directly to
+ * Accumulo through a {@link BatchWriterRecordWriter}. This avoids the job scheduling latency, making data searchable within seconds of landing in the spool
+ * directory.
+ * <p>
+ * The arguments are those of the {@link IngestJob}, where the input path is the spool directory and the work directory is where files are moved while they are
+ * being ingested. Files are picked up in micro batches of up to {@link #MAX_BATCH_FILES} files, oldest first. Once all of the mutations for a batch have been
+ * flushed, including the entries that caching context writers hold across events, the files are deleted, so any files found in the work directory on startup
+ * were not completely ingested and are ingested again. Producers should write files under a name starting with '.' or '_' and rename them once complete, as
+ * such files are ignored.
+ * <p>
+ * A single {@link EventMapper}, with its handlers and context writers, is set up when the service starts and is fed the records of every file, so the cost of
+ * setting up the handlers is only paid once. The metadata gathered by the handlers is written, and the context writers are drained (see
+ * {@link EventMapper#flush}), with every batch, and the mapper is cleaned up when the service shuts down.
+ * <p>
+ * Events that fail to process are written to the error tables by the mapper, as they are by an ingest job, and do not fail their file. A file only fails if it
+ * cannot be read or the mapper cannot continue (e.g. a constraint violation). A failed file is moved into the {@code failed} directory beneath the work
+ * directory, but is not rolled back: the mutations are applied by the batch writer as they are written, so the events read from the file before the failure
+ * remain ingested. The number of those events is logged with the failure. Ingesting the file again writes those events again, with a new load date.
+ */
+public class LiveIngestService extends IngestJob {
+    
+    // the time to wait between checks of an empty spool directory
+    public static final String SLEEP_TIME_MS = "ingest.live.service.sleep.ms";
+    public static final long DEFAULT_SLEEP_TIME_MS = 1000L;
+    
+    // the maximum number of files ingested before the mutations are flushed
+    public static final String MAX_BATCH_FILES = "ingest.live.service.batch.files";
+    public static final int DEFAULT_MAX_BATCH_FILES = 100;
+    
+    private volatile boolean running = true;
+    private final CountDownLatch stopped = new CountDownLatch(1);
+    
+    public LiveIngestService() {
+        // this is always a map only live ingest
+        outputMutations = true;
+        useMapOnly = true;
+        generateMarkerFile = false;
+    }
+    
+    public static void main(String[] args) throws Exception {
+        System.out.println("Running main");
+        System.exit(ToolRunner.run(null, new LiveIngestService(), args));
+    }
+    
+    @Override
+    protected void printUsage() {
+        System.out.println("Usage: " + getClass().getSimpleName() + " spoolDir configfile configfile");
+        System.out.println("                     -user username -pass password -instance instanceName");
+        System.out.println("                     -zookeepers host[,host,host] -workDir directoryName");
+        System.out.println("                     [-srcHdfs spoolFileSystemURI]");
+        System.out.println("                     [-inputFormat inputFormatClass]");
+        System.out.println("                     [-mapper mapperClass]");
+        System.out.println("                     [-useCombiner] [-useInlineCombiner] [-useSortedInlineCombiner]");
+        System.out.println("                     [-tableCounters] [-contextWriterCounters] [-noFileNameCounters]");
+        System.out.println("                     [-enableBloomFilters]");
+        System.out.println("                     [-ingestMetricsDisabled]");
+        System.out.println("                     [-" + SLEEP_TIME_MS + "=ms] [-" + MAX_BATCH_FILES + "=numFiles]");
+        System.out.println("                     [-" + BatchWriterRecordWriter.MAX_MEMORY + "=bytes] [-" + BatchWriterRecordWriter.MAX_LATENCY_MS + "=ms]");
+        System.out.println("                     [-" + BatchWriterRecordWriter.MAX_WRITE_THREADS + "=numThreads]");
+    }
+    
+    @Override
+    public int run(String[] args) throws Exception {
+        // Initialize the markings file helper so we get the right markings file
+        MarkingFunctions.Factory.createMarkingFunctions();
+        TypeRegistry.reset();
+        
+        Configuration conf = parseArguments(args, getConf());
+        if (conf == null) {
+            printUsage();
+            return -1;
+        }
+        
+        updateConfWithOverrides(conf);
+        AccumuloHelper cbHelper = new AccumuloHelper();
+        cbHelper.setup(conf);
+        
+        TypeRegistry.getInstance(conf);
+        if (TypeRegistry.getTypes().isEmpty()) {
+            log.error("No data types were configured");
+            return -1;
+        }
+        
+        if (!registerTableNames(conf) || !configureTables(cbHelper, conf)) {
+            return -1;
+        }
+        
+        try {
+            serializeAggregatorConfiguration(cbHelper, conf, log);
+        } catch (TableNotFoundException tnf) {
+            log.error("One or more configured DataWave tables are missing in Accumulo", tnf);
+            return -1;
+        }
+        
+        FileSystem fs = getFileSystem(conf, srcHdfs);
+        Path spoolDir = fs.makeQualified(new Path(inputPaths));
+        Path claimDir = fs.makeQualified(new Path(workDir));
+        Path failedDir = new Path(claimDir, "failed");
+        fs.mkdirs(claimDir);
+        
+        // configure the mapper and context writers exactly as for a map only live ingest job
+        Job job = Job.getInstance(conf);
+        conf = job.getConfiguration();
+        configureInputFormat(job, cbHelper, conf);
+        configureJob(job, conf, claimDir, fs);
+        if (!EventMapper.class.isAssignableFrom(job.getMapperClass())) {
+            log.error("The mapper must be an " + EventMapper.class.getSimpleName() + " to be fed the records of every file: " + job.getMapperClass());
+            return -1;
+        }
+        
+        startDaemonProcesses(conf);
+        
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            running = false;
+            try {
+                stopped.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        
+        long sleepTime = conf.getLong(SLEEP_TIME_MS, DEFAULT_SLEEP_TIME_MS);
+        int maxBatchFiles = conf.getInt(MAX_BATCH_FILES, DEFAULT_MAX_BATCH_FILES);
+        log.info("Ingesting files from " + spoolDir + " in batches of up to " + maxBatchFiles + " files");
+        
+        StandaloneStatusReporter reporter = new StandaloneStatusReporter();
+        try (BatchWriterRecordWriter writer = new BatchWriterRecordWriter(cbHelper.getConnector(), conf)) {
+            TaskAttemptID attemptId = new TaskAttemptID("live", 0, TaskType.MAP, 0, 0);
+            MapContext<Object,Object,Text,Mutation> mapContext = new MapContextImpl<>(conf, attemptId, null, writer, null, reporter, null);
+            Mapper.Context context = new WrappedMapper<Object,Object,Text,Mutation>().getMapContext(mapContext);
+            EventMapper mapper = (EventMapper) ReflectionUtils.newInstance(job.getMapperClass(), conf);
+            mapper.setup(context);
+            try {
+                // anything already in the work directory was claimed but not completely flushed before the last shutdown
+                List<Path> batch = listFiles(fs, claimDir, maxBatchFiles);
+                while (running) {
+                    if (batch.isEmpty()) {
+                        batch = claimFiles(fs, spoolDir, claimDir, maxBatchFiles);
+                    }
+                    if (batch.isEmpty()) {
+                        Thread.sleep(sleepTime);
+                        continue;
+                    }
+                    ingestBatch(job, fs, batch, failedDir, mapper, context, writer);
+                    batch = listFiles(fs, claimDir, maxBatchFiles);
+                }
+            } finally {
+                mapper.cleanup(context);
+            }
+        } finally {
+            log.info(reporter.getCounters());
+            stopped.countDown();
+        }
+        return 0;
+    }
+    
+    /**
+     * Ingest a batch of claimed files, then delete them, or move them into the failed directory if they could not be ingested. The files are only let go of
+     * once the context writers have been drained and the batch writer flushed, so that the mutations of every event read from them, including those held across
+     * events by caching context writers, and the metadata for them have been applied.
+     *
+     * @return the number of files that were ingested
+     */
+    protected int ingestBatch(Job job, FileSystem fs, List<Path> batch, Path failedDir, EventMapper mapper, Mapper.Context context,
+                    BatchWriterRecordWriter writer) throws Exception {
+        long start = System.currentTimeMillis();
+        int ingested = 0;
+        List<Path> failed = new ArrayList<>();
+        for (Path file : batch) {
+            try {
+                ingest(job, fs, file, mapper, context);
+                ingested++;
+            } catch (Exception e) {
+                log.error("Failed to ingest " + file, e);
+                failed.add(file);
+            }
+        }
+        
+        mapper.flush(context);
+        writer.flush();
+        for (Path file : batch) {
+            if (failed.contains(file)) {
+                fs.mkdirs(failedDir);
+                if (!fs.rename(file, new Path(failedDir, file.getName()))) {
+                    throw new IOException("Unable to move " + file + " to " + failedDir);
+                }
+            } else if (!fs.delete(file, false)) {
+                throw new IOException("Unable to remove " + file);
+            }
+        }
+        log.info("Ingested " + ingested + " of " + batch.size() + " files in " + (System.currentTimeMillis() - start) + "ms");
+        return ingested;
+    }
+    
+    /**
+     * Feed the records of one file through the mapper, as if the file were the split of a map task
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    protected void ingest(Job job, FileSystem fs, Path file, EventMapper mapper, Mapper.Context context) throws Exception {
+        Configuration conf = job.getConfiguration();
+        FileSplit split = new FileSplit(file, 0, fs.getFileStatus(file).getLen(), null);
+        TaskAttemptContext attemptContext = new TaskAttemptContextImpl(conf, context.getTaskAttemptID());
+        
+        InputFormat inputFormat = ReflectionUtils.newInstance(job.getInputFormatClass(), conf);
+        long records = 0;
+        try (RecordReader reader = inputFormat.createRecordReader(split, attemptContext)) {
+            reader.initialize(split, attemptContext);
+            mapper.startSplit(split, context);
+            while (reader.nextKeyValue()) {
+                mapper.map(reader.getCurrentKey(), (RawRecordContainer) reader.getCurrentValue(), context);
+                records++;
+            }
+        } catch (Exception e) {
+            throw new IOException("Failed after ingesting " + records + " events from " + file, e);
+        }
+    }
+    
+    /**
+     * Move up to maxFiles of the oldest files from the spool directory into the work directory
+     */
+    protected List<Path> claimFiles(FileSystem fs, Path spoolDir, Path claimDir, int maxFiles) throws IOException {
+        List<Path> claimed = new ArrayList<>();
+        for (Path file : listFiles(fs, spoolDir, maxFiles)) {
+            Path dest = new Path(claimDir, file.getName());
+            if (fs.rename(file, dest)) {
+                claimed.add(dest);
+            } else {
+                log.warn("Unable to claim " + file);
+            }
+        }
+        return claimed;
+    }
+    
+    /**
+     * @return up to maxFiles of the oldest complete files in a directory
+     */
+    protected List<Path> listFiles(FileSystem fs, Path dir, int maxFiles) throws IOException {
+        FileStatus[] statuses = fs.listStatus(dir, path -> !path.getName().startsWith(".") && !path.getName().startsWith("_"));
+        Arrays.sort(statuses, Comparator.comparingLong(FileStatus::getModificationTime));
+        List<Path> files = new ArrayList<>();
+        for (FileStatus status : statuses) {
+            if (status.isFile()) {
+                files.add(status.getPath());
+                if (files.size() == maxFiles) {
+                    break;
+                }
+            }
+        }
+        return files;
+    }
+}
@@ -77,6 +77,7 @@ public class MultiRFileOutputFormatter extends FileOutputFormat<BulkIngestKey,Va
     protected static final String MAX_RFILE_UNDEDUPPED_ENTRIES = PREFIX + ".maxRFileUndeduppedEntries";
     protected static final String GENERATE_MAP_FILE_ROW_KEYS = PREFIX + ".generateMapFileRowKeys";
     protected static final String GENERATE_MAP_FILE_PER_SHARD_LOCATION = PREFIX + ".generateMapFilePerShardLocation";
+    protected static final String GENERATE_MAP_FILE_PER_SPLIT = PREFIX + ".generateMapFilePerSplit";
     
     protected static final String BASE = "bulk.output.partition.count.";
     public static final String CONFIGURE_LOCALITY_GROUPS = PREFIX + ".tables";
@@ -102,6 +103,9 @@ public class MultiRFileOutputFormatter extends FileOutputFormat<BulkIngestKey,Va
     protected int maxRFileEntries = 0;
     protected boolean generateMapFileRowKeys = false;
     protected boolean generateMapFilePerShardLocation = false;
+    protected boolean generateMapFilePerSplit = false;
+    protected Map<String,Text[]> tableSplits = null;
+    protected Map<String,Integer> currentSplits = new HashMap<>();
     private long startWriteTime = 0L;
     
     protected Map<String,Map<Text,String>> columnFamilyToLocalityGroup;
@@ -118,6 +122,15 @@ public class MultiRFileOutputFormatter extends FileOutputFormat<BulkIngestKey,Va
         conf.setBoolean(GENERATE_MAP_FILE_PER_SHARD_LOCATION, generateMapFilePerShardLocation);
     }
     
+    /**
+     * Start a new file for a non-sharded table whenever the keys written cross one of the table's splits, so that every file falls within a single tablet. This
+     * requires the keys to be written in sorted order, as they are by a reducer or by the sorting context writer of a map only job, and the full
+     * {@link NonShardedSplitsFile} to be in the distributed cache.
+     */
+    public static void setGenerateMapFilePerSplit(Configuration conf, boolean generateMapFilePerSplit) {
+        conf.setBoolean(GENERATE_MAP_FILE_PER_SPLIT, generateMapFilePerSplit);
+    }
+    
     public static void setCompressionType(Configuration conf, String compressionType) {
         if (compressionType != null) {
             if (!("snappy".equals(compressionType) || "lzo".equals(compressionType) || "gz".equals(compressionType) || "none".equals(compressionType)))
@@ -472,6 +485,10 @@ public class MultiRFileOutputFormatter extends FileOutputFormat<BulkIngestKey,Va
         
         generateMapFileRowKeys = conf.getBoolean(GENERATE_MAP_FILE_ROW_KEYS, generateMapFileRowKeys);
         generateMapFilePerShardLocation = conf.getBoolean(GENERATE_MAP_FILE_PER_SHARD_LOCATION, generateMapFilePerShardLocation);
+        generateMapFilePerSplit = conf.getBoolean(GENERATE_MAP_FILE_PER_SPLIT, generateMapFilePerSplit);
+        if (generateMapFilePerSplit && null == tableSplits) {
+            tableSplits = getTableSplits(context);
+        }
         
         // Only do this once.
         if (null == writers) {
@@ -623,6 +640,9 @@ public class MultiRFileOutputFormatter extends FileOutputFormat<BulkIngestKey,Va
                     
                     shardMapFileRowKeys.get(writerKey).add(rowKey);
                 } else {
+                    if (generateMapFilePerSplit) {
+                        startFileForSplit(tableName, rowKey);
+                    }
                     writer = getRegisteredWriter(tableName);
                     if (writer == null) {
                         throw new IOException("Asked to create writer for table " + tableName
@@ -634,6 +654,33 @@ public class MultiRFileOutputFormatter extends FileOutputFormat<BulkIngestKey,Va
         };
     }
     
+    /**
+     * Start a new file for the table if the row falls in a different tablet than the rows written so far
+     */
+    protected void startFileForSplit(String tableName, Text rowKey) throws IOException, AccumuloException {
+        Text[] splits = tableSplits.get(tableName);
+        if (null == splits || splits.length == 0) {
+            return;
+        }
+        // the splits are the end rows of the tablets, so the index is that of the first split at or after the row
+        int index = Arrays.binarySearch(splits, rowKey);
+        if (index < 0) {
+            index = (index + 1) * -1;
+        }
+        Integer previous = currentSplits.put(tableName, index);
+        if (null != previous && previous != index) {
+            closeAndUpdateWriter(tableName);
+        }
+    }
+    
+    /**
+     * Read the splits of the non-sharded tables from the full splits file (that was created at job startup) in the distributed cache
+     */
+    @SuppressWarnings("deprecation")
+    protected Map<String,Text[]> getTableSplits(TaskAttemptContext context) throws IOException {
+        return new NonShardedSplitsFile.Reader(conf, context.getLocalCacheFiles(), false).getSplitsByTable();
+    }
+    
     /**
      * Read in the sequence file (that was created at job startup) for the given table that contains a list of shard IDs and the corresponding tablet server to
      * which that shard is assigned.
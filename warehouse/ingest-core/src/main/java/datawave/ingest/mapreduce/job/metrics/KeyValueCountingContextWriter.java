@@ -94,6 +94,11 @@ public class KeyValueCountingContextWriter<OK,OV> implements ContextWriter<OK,OV
         inner.rollback();
     }
     
+    @Override
+    public void drain(TaskInputOutputContext<?,?,OK,OV> context) throws IOException, InterruptedException {
+        inner.drain(context);
+    }
+    
     @Override
     public void cleanup(TaskInputOutputContext<?,?,OK,OV> context) throws IOException, InterruptedException {
         try {
@@ -84,6 +84,10 @@ public class BulkIngestKeyAggregatingReducer<K2,V2> extends AggregatingReducer<B
         contextWriter.commit(context);
     }
     
+    public void drain(TaskInputOutputContext<?,?,K2,V2> context) throws IOException, InterruptedException {
+        contextWriter.drain(context);
+    }
+    
     /**
      * This method can be overwritten to write directly to the context if K2, V2 are BulkIngestKey, Value, or this method can translate to something else such
      * as Text, Mutation
@@ -67,6 +67,12 @@ public abstract class AbstractChainedContextWriter<OK,OV> extends StatsDHelper i
         contextWriter.rollback();
     }
     
+    @Override
+    public void drain(TaskInputOutputContext<?,?,OK,OV> context) throws IOException, InterruptedException {
+        commit(context);
+        contextWriter.drain(context);
+    }
+    
     @Override
     public void cleanup(TaskInputOutputContext<?,?,OK,OV> context) throws IOException, InterruptedException {
         contextWriter.cleanup(context);
@@ -35,6 +35,12 @@ public class AggregatingContextWriter<OK,OV> extends AbstractContextWriter<OK,OV
         reducer.setup(conf);
     }
     
+    @Override
+    public void drain(TaskInputOutputContext<?,?,OK,OV> context) throws IOException, InterruptedException {
+        commit(context);
+        reducer.drain(context);
+    }
+    
     @Override
     public void cleanup(TaskInputOutputContext<?,?,OK,OV> context) throws IOException, InterruptedException {
         super.cleanup(context);
@@ -41,6 +41,18 @@ public interface ContextWriter<OK,OV> {
      */
     void rollback() throws IOException, InterruptedException;
     
+    /**
+     * Write everything this context writer and the context writers chained after it are holding to the context, including entries that caching writers keep
+     * across calls to commit. Unlike cleanup, the writer can continue to be used afterwards. Default implementation executes the commit method.
+     * 
+     * @param context
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    default void drain(TaskInputOutputContext<?,?,OK,OV> context) throws IOException, InterruptedException {
+        commit(context);
+    }
+    
     /**
      * Clean up the context writer. Default implementation executes the flush method.
      * 
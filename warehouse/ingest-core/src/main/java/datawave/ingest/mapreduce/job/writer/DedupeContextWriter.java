@@ -35,6 +35,12 @@ public class DedupeContextWriter<OK,OV> extends AbstractContextWriter<OK,OV> imp
         combiner.setup(conf);
     }
     
+    @Override
+    public void drain(TaskInputOutputContext<?,?,OK,OV> context) throws IOException, InterruptedException {
+        commit(context);
+        combiner.drain(context);
+    }
+    
     @Override
     public void cleanup(TaskInputOutputContext<?,?,OK,OV> context) throws IOException, InterruptedException {
         super.cleanup(context);
@@ -0,0 +1,177 @@
+package datawave.ingest.mapreduce.job.writer;
+
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import datawave.edge.util.EdgeValueCombiner;
+import datawave.ingest.mapreduce.handler.edge.ProtobufEdgeDataTypeHandler;
+import datawave.ingest.mapreduce.job.BulkIngestKey;
+
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.TaskInputOutputContext;
+
+import com.google.common.collect.Multimap;
+
+/**
+ * This is a caching context writer that combines the entries of the edge table in the mapper, before they are written to the chained context writer. High
+ * fanout feeds write the same edges over and over, which otherwise are only combined by the reducer or at compaction time.
+ * <p>
+ * The values of an edge are combined with the {@link EdgeValueCombiner}, i.e. the same way as the edge table's combiner does: counts and duration bins are
+ * summed and hour bitmasks are or'ed. As with that combiner, edges that only differ by timestamp are combined, keeping the latest timestamp. The combined edges
+ * are kept in a least recently used cache across events, and the least recently used edges are written once the cache exceeds its byte budget. All other
+ * entries, including deletes, are written to the chained context writer as they are received.
+ * <p>
+ * The edges of an event are only combined into the cache when the event is committed, so a rollback discards them.
+ */
+public class EdgeCombiningContextWriter<OK,OV> extends AbstractChainedContextWriter<OK,OV> {
+    
+    public static final String CONTEXT_WRITER_CLASS = "ingest.edge.combining.context.writer.class";
+    
+    // the approximate number of bytes of edges to cache before the least recently used edges are written
+    public static final String CACHE_BYTES = "ingest.edge.combining.context.writer.cache.bytes";
+    public static final long DEFAULT_CACHE_BYTES = 32L * 1024 * 1024;
+    
+    // counters to keep track of how many edges are received and written, and how many were written to make room in the cache
+    public static final String EDGE_CACHE_COUNTER = "EDGE_COMBINING_CACHE";
+    
+    // a rough estimate of the bytes used per cached edge beyond its key and value, i.e. by the map entry and the combiner
+    private static final int ENTRY_OVERHEAD = 512;
+    
+    private Text edgeTableName;
+    private long maxBytes = DEFAULT_CACHE_BYTES;
+    private long bytes = 0;
+    
+    // the edges of the current event
+    private List<Map.Entry<BulkIngestKey,Value>> pending = new ArrayList<>();
+    
+    // the combined edges, by their key without the timestamp, in access order
+    private final LinkedHashMap<BulkIngestKey,CachedEdge> cache = new LinkedHashMap<>(1024, 0.75f, true);
+    
+    @Override
+    protected String getChainedContextWriterOption() {
+        return CONTEXT_WRITER_CLASS;
+    }
+    
+    @Override
+    public void setup(Configuration conf, boolean outputTableCounters) throws IOException, InterruptedException {
+        super.setup(conf, outputTableCounters);
+        String tableName = conf.get(ProtobufEdgeDataTypeHandler.EDGE_TABLE_NAME);
+        edgeTableName = (tableName == null ? null : new Text(tableName));
+        maxBytes = conf.getLong(CACHE_BYTES, DEFAULT_CACHE_BYTES);
+    }
+    
+    @Override
+    public void write(BulkIngestKey key, Value value, TaskInputOutputContext<?,?,OK,OV> context) throws IOException, InterruptedException {
+        if (key.getTableName().equals(edgeTableName) && !key.getKey().isDeleted()) {
+            pending.add(new AbstractMap.SimpleImmutableEntry<>(key, value));
+        } else {
+            contextWriter.write(key, value, context);
+        }
+    }
+    
+    @Override
+    public void write(Multimap<BulkIngestKey,Value> entries, TaskInputOutputContext<?,?,OK,OV> context) throws IOException, InterruptedException {
+        for (Map.Entry<BulkIngestKey,Value> entry : entries.entries()) {
+            write(entry.getKey(), entry.getValue(), context);
+        }
+    }
+    
+    /**
+     * Combine the edges of the event into the cache, and write the least recently used edges if the cache is full
+     */
+    @Override
+    public void commit(TaskInputOutputContext<?,?,OK,OV> context) throws IOException, InterruptedException {
+        if (!pending.isEmpty()) {
+            getCounter(context, EDGE_CACHE_COUNTER, "in").increment(pending.size());
+            for (Map.Entry<BulkIngestKey,Value> edge : pending) {
+                cache(edge.getKey().getKey(), edge.getValue());
+            }
+            // pending.clear() can be fairly expensive, so let's let garbage collection do that
+            pending = new ArrayList<>();
+            
+            if (bytes > maxBytes) {
+                long evicted = flush(context, maxBytes);
+                getCounter(context, EDGE_CACHE_COUNTER, "evicted").increment(evicted);
+            }
+        }
+        super.commit(context);
+    }
+    
+    @Override
+    public void rollback() throws IOException, InterruptedException {
+        pending = new ArrayList<>();
+        super.rollback();
+    }
+    
+    @Override
+    public void drain(TaskInputOutputContext<?,?,OK,OV> context) throws IOException, InterruptedException {
+        commit(context);
+        flush(context, 0);
+        super.drain(context);
+    }
+    
+    @Override
+    public void cleanup(TaskInputOutputContext<?,?,OK,OV> context) throws IOException, InterruptedException {
+        commit(context);
+        flush(context, 0);
+        super.commit(context);
+        super.cleanup(context);
+    }
+    
+    private void cache(Key key, Value value) {
+        Key column = new Key(key);
+        column.setTimestamp(0);
+        BulkIngestKey cacheKey = new BulkIngestKey(edgeTableName, column);
+        CachedEdge edge = cache.get(cacheKey);
+        if (edge == null) {
+            edge = new CachedEdge(key);
+            cache.put(cacheKey, edge);
+            bytes += edge.bytes;
+        } else if (key.getTimestamp() > edge.key.getTimestamp()) {
+            edge.key = key;
+        }
+        edge.combiner.add(key, value);
+    }
+    
+    /**
+     * Write the least recently used edges until the cache is within the given number of bytes
+     *
+     * @return the number of edges written
+     */
+    private long flush(TaskInputOutputContext<?,?,OK,OV> context, long maxRemaining) throws IOException, InterruptedException {
+        long written = 0;
+        Iterator<CachedEdge> edges = cache.values().iterator();
+        while (bytes > maxRemaining && edges.hasNext()) {
+            CachedEdge edge = edges.next();
+            edges.remove();
+            bytes -= edge.bytes;
+            contextWriter.write(new BulkIngestKey(edgeTableName, edge.key), edge.combiner.getCombinedValue(), context);
+            written++;
+        }
+        if (written > 0) {
+            getCounter(context, EDGE_CACHE_COUNTER, "out").increment(written);
+        }
+        return written;
+    }
+    
+    private static class CachedEdge {
+        // the key with the latest timestamp
+        private Key key;
+        private final EdgeValueCombiner combiner;
+        private final long bytes;
+        
+        private CachedEdge(Key key) {
+            this.key = key;
+            this.combiner = EdgeValueCombiner.forColumnFamily(key.getColumnFamily());
+            this.bytes = key.getSize() + ENTRY_OVERHEAD;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package datawave.ingest.mapreduce.job.writer;
+
+import com.google.common.collect.Multimap;
+import datawave.ingest.mapreduce.job.BulkIngestKey;
+import datawave.ingest.mapreduce.job.ConstraintChecker;
+import datawave.ingest.mapreduce.job.reduce.BulkIngestKeyDedupeCombiner;
+import datawave.ingest.mapreduce.job.statsd.StatsDHelper;
+import org.apache.accumulo.core.data.Value;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.mapreduce.TaskInputOutputContext;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This is a caching context writer that, like the DedupeContextWriter, uses the BulkIngestKeyDedupeCombiner to dedupe and combine entries before they are
+ * written to the chained context writer. Instead of holding the entries as objects in a multimap and flushing on an entry count, the entries are serialized
+ * into a {@link SortedKeyValueBuffer} and flushed once the buffer reaches a byte budget. This cache will cache values across calls to commit, so entries are
+ * combined across events (e.g. the global index entries of many events for the same term), and they are handed to the chained context writer in sorted order.
+ */
+public class SortedCombiningContextWriter<OK,OV> extends StatsDHelper implements ChainedContextWriter<OK,OV> {
+    
+    public static final String CONTEXT_WRITER_CLASS = BulkIngestKeyDedupeCombiner.CONTEXT_WRITER_CLASS;
+    
+    // the number of serialized bytes buffered before the buffer is sorted, combined and flushed
+    public static final String BUFFER_BYTES = "ingest.sorted.combining.context.writer.buffer.bytes";
+    public static final long DEFAULT_BUFFER_BYTES = 64L * 1024 * 1024;
+    
+    // the size of each page of the buffer
+    public static final String PAGE_BYTES = "ingest.sorted.combining.context.writer.page.bytes";
+    public static final int DEFAULT_PAGE_BYTES = 1024 * 1024;
+    
+    // counters to keep track of how often the buffer gets flushed and how much the entries were reduced by combining
+    public static final String FLUSHED_BUFFER_COUNTER = "SORTED_BUFFER_FLUSHES";
+    public static final String FLUSHED_BUFFER_ENTRIES = "SORTED_BUFFER_FLUSHED_ENTRIES";
+    
+    private BulkIngestKeyDedupeCombiner<OK,OV> combiner = new BulkIngestKeyDedupeCombiner<>();
+    private SortedKeyValueBuffer buffer;
+    private long maxBytes = DEFAULT_BUFFER_BYTES;
+    private ConstraintChecker constraintChecker;
+    
+    @Override
+    public void configureChainedContextWriter(Configuration conf, Class<? extends ContextWriter<OK,OV>> contextWriterClass) {
+        conf.setClass(CONTEXT_WRITER_CLASS, contextWriterClass, ContextWriter.class);
+    }
+    
+    @Override
+    public void setup(Configuration conf, boolean outputTableCounters) throws IOException, InterruptedException {
+        super.setup(conf);
+        conf.setBoolean(BulkIngestKeyDedupeCombiner.CONTEXT_WRITER_OUTPUT_TABLE_COUNTERS, outputTableCounters);
+        combiner.setup(conf);
+        maxBytes = conf.getLong(BUFFER_BYTES, DEFAULT_BUFFER_BYTES);
+        buffer = new SortedKeyValueBuffer(conf.getInt(PAGE_BYTES, DEFAULT_PAGE_BYTES));
+        constraintChecker = ConstraintChecker.create(conf);
+    }
+    
+    @Override
+    public void write(BulkIngestKey key, Value value, TaskInputOutputContext<?,?,OK,OV> context) throws IOException, InterruptedException {
+        if (constraintChecker != null && constraintChecker.isConfigured()) {
+            constraintChecker.check(key.getTableName(), key.getKey().getColumnVisibilityData().getBackingArray());
+        }
+        buffer.add(key, value);
+        if (buffer.getBytes() >= maxBytes) {
+            flush(context);
+        }
+    }
+    
+    @Override
+    public void write(Multimap<BulkIngestKey,Value> entries, TaskInputOutputContext<?,?,OK,OV> context) throws IOException, InterruptedException {
+        for (Map.Entry<BulkIngestKey,Value> entry : entries.entries()) {
+            write(entry.getKey(), entry.getValue(), context);
+        }
+    }
+    
+    /**
+     * Entries are only flushed when the buffer is full or on cleanup, so a commit only marks the point that a rollback returns to.
+     */
+    @Override
+    public void commit(TaskInputOutputContext<?,?,OK,OV> context) throws IOException, InterruptedException {
+        buffer.mark();
+    }
+    
+    @Override
+    public void rollback() throws IOException, InterruptedException {
+        buffer.reset();
+    }
+    
+    @Override
+    public void drain(TaskInputOutputContext<?,?,OK,OV> context) throws IOException, InterruptedException {
+        commit(context);
+        flush(context);
+        combiner.drain(context);
+    }
+    
+    @Override
+    public void cleanup(TaskInputOutputContext<?,?,OK,OV> context) throws IOException, InterruptedException {
+        flush(context);
+        combiner.finish(context);
+        super.close();
+    }
+    
+    /**
+     * Sort the buffer and pass each run of equal keys through the combiner
+     */
+    private void flush(TaskInputOutputContext<?,?,OK,OV> context) throws IOException, InterruptedException {
+        if (buffer.isEmpty()) {
+            return;
+        }
+        getCounter(context, FLUSHED_BUFFER_COUNTER, "flushes").increment(1);
+        getCounter(context, FLUSHED_BUFFER_ENTRIES, "in").increment(buffer.size());
+        
+        buffer.sort();
+        long keys = 0;
+        List<Value> values = new ArrayList<>();
+        int start = 0;
+        while (start < buffer.size()) {
+            int end = start + 1;
+            while (end < buffer.size() && buffer.compare(start, end) == 0) {
+                end++;
+            }
+            values.clear();
+            for (int i = start; i < end; i++) {
+                values.add(buffer.getValue(i));
+            }
+            // Note we are not calling the "countWrite" method as this will be done by the underlying ContextWriter
+            // if so configured
+            combiner.doReduce(buffer.getKey(start), values, context);
+            keys++;
+            start = end;
+        }
+        combiner.flush(context);
+        getCounter(context, FLUSHED_BUFFER_ENTRIES, "keys").increment(keys);
+        
+        buffer.clear();
+    }
+}
@@ -0,0 +1,251 @@
+package datawave.ingest.mapreduce.job.writer;
+
+import datawave.ingest.mapreduce.job.BulkIngestKey;
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.hadoop.util.IndexedSortable;
+import org.apache.hadoop.util.QuickSort;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A buffer of BulkIngestKey, Value pairs that are serialized into large byte array pages instead of being held as objects. Each entry is addressed by a long
+ * pointer (page index and offset), and sorting only moves the pointers. Entries are compared in their serialized form in the same order as
+ * {@link BulkIngestKey#compareTo(BulkIngestKey)}, so after {@link #sort()} equal keys are adjacent and can be combined in one pass.
+ * <p>
+ * The serialized form of an entry is the table name, row, column family, column qualifier and column visibility, each prefixed by its length, followed by the
+ * timestamp, the delete flag and the length prefixed value.
+ */
+public class SortedKeyValueBuffer implements IndexedSortable {
+    
+    private static final int FIXED_ENTRY_BYTES = 6 * 4 + 8 + 1;
+    
+    private final int pageSize;
+    private final List<byte[]> pages = new ArrayList<>();
+    private int page = 0;
+    private int position = 0;
+    private long[] pointers = new long[1024];
+    private int count = 0;
+    private long bytes = 0;
+    
+    // the state as of the last mark, restored by reset
+    private int markPage = 0;
+    private int markPosition = 0;
+    private int markCount = 0;
+    private long markBytes = 0;
+    
+    public SortedKeyValueBuffer(int pageSize) {
+        this.pageSize = pageSize;
+    }
+    
+    /**
+     * Serialize a key and value into the buffer
+     */
+    public void add(BulkIngestKey key, Value value) {
+        Text table = key.getTableName();
+        Key k = key.getKey();
+        ByteSequence row = k.getRowData();
+        ByteSequence cf = k.getColumnFamilyData();
+        ByteSequence cq = k.getColumnQualifierData();
+        ByteSequence cv = k.getColumnVisibilityData();
+        int length = FIXED_ENTRY_BYTES + table.getLength() + row.length() + cf.length() + cq.length() + cv.length() + value.getSize();
+        
+        byte[] buf = reserve(length);
+        int offset = position;
+        offset = writeBytes(buf, offset, table.getBytes(), 0, table.getLength());
+        offset = writeBytes(buf, offset, row.getBackingArray(), row.offset(), row.length());
+        offset = writeBytes(buf, offset, cf.getBackingArray(), cf.offset(), cf.length());
+        offset = writeBytes(buf, offset, cq.getBackingArray(), cq.offset(), cq.length());
+        offset = writeBytes(buf, offset, cv.getBackingArray(), cv.offset(), cv.length());
+        offset = writeLong(buf, offset, k.getTimestamp());
+        buf[offset++] = (byte) (k.isDeleted() ? 1 : 0);
+        writeBytes(buf, offset, value.get(), 0, value.getSize());
+        
+        if (count == pointers.length) {
+            pointers = Arrays.copyOf(pointers, count * 2);
+        }
+        pointers[count++] = ((long) page << 32) | position;
+        position += length;
+        bytes += length;
+    }
+    
+    // return the page to write the next entry of the given length into, moving to the next page if the current one is full
+    private byte[] reserve(int length) {
+        if (pages.isEmpty()) {
+            pages.add(new byte[Math.max(pageSize, length)]);
+        }
+        if (position + length > pages.get(page).length) {
+            page++;
+            position = 0;
+            if (page == pages.size()) {
+                pages.add(new byte[Math.max(pageSize, length)]);
+            } else if (pages.get(page).length < length) {
+                pages.set(page, new byte[length]);
+            }
+        }
+        return pages.get(page);
+    }
+    
+    /**
+     * Sort the entries by key
+     */
+    public void sort() {
+        new QuickSort().sort(this, 0, count);
+    }
+    
+    @Override
+    public int compare(int i, int j) {
+        long pi = pointers[i];
+        long pj = pointers[j];
+        byte[] bi = pages.get((int) (pi >>> 32));
+        byte[] bj = pages.get((int) (pj >>> 32));
+        int oi = (int) pi;
+        int oj = (int) pj;
+        
+        // table, row, column family, column qualifier, column visibility
+        for (int field = 0; field < 5; field++) {
+            int li = readInt(bi, oi);
+            int lj = readInt(bj, oj);
+            int result = WritableComparator.compareBytes(bi, oi + 4, li, bj, oj + 4, lj);
+            if (result != 0) {
+                return result;
+            }
+            oi += 4 + li;
+            oj += 4 + lj;
+        }
+        
+        // newer timestamps sort first
+        int result = Long.compare(readLong(bj, oj), readLong(bi, oi));
+        if (result != 0) {
+            return result;
+        }
+        
+        // deletes sort first
+        return bj[oj + 8] - bi[oi + 8];
+    }
+    
+    @Override
+    public void swap(int i, int j) {
+        long tmp = pointers[i];
+        pointers[i] = pointers[j];
+        pointers[j] = tmp;
+    }
+    
+    /**
+     * @return the key of the i'th entry, in sorted order after {@link #sort()}
+     */
+    public BulkIngestKey getKey(int i) {
+        long pointer = pointers[i];
+        byte[] buf = pages.get((int) (pointer >>> 32));
+        int offset = (int) pointer;
+        
+        byte[][] fields = new byte[5][];
+        for (int field = 0; field < 5; field++) {
+            int length = readInt(buf, offset);
+            fields[field] = Arrays.copyOfRange(buf, offset + 4, offset + 4 + length);
+            offset += 4 + length;
+        }
+        Key key = new Key(fields[1], fields[2], fields[3], fields[4], readLong(buf, offset), buf[offset + 8] == 1, false);
+        return new BulkIngestKey(new Text(fields[0]), key);
+    }
+    
+    /**
+     * @return the value of the i'th entry, in sorted order after {@link #sort()}
+     */
+    public Value getValue(int i) {
+        long pointer = pointers[i];
+        byte[] buf = pages.get((int) (pointer >>> 32));
+        int offset = (int) pointer;
+        
+        // skip the key
+        for (int field = 0; field < 5; field++) {
+            offset += 4 + readInt(buf, offset);
+        }
+        offset += 9;
+        int length = readInt(buf, offset);
+        return new Value(Arrays.copyOfRange(buf, offset + 4, offset + 4 + length), false);
+    }
+    
+    /**
+     * @return the number of entries in the buffer
+     */
+    public int size() {
+        return count;
+    }
+    
+    public boolean isEmpty() {
+        return count == 0;
+    }
+    
+    /**
+     * @return the number of serialized bytes in the buffer
+     */
+    public long getBytes() {
+        return bytes;
+    }
+    
+    /**
+     * Remember the current contents so that later additions can be discarded with {@link #reset()}
+     */
+    public void mark() {
+        markPage = page;
+        markPosition = position;
+        markCount = count;
+        markBytes = bytes;
+    }
+    
+    /**
+     * Discard everything added since the last {@link #mark()} or {@link #clear()}
+     */
+    public void reset() {
+        page = markPage;
+        position = markPosition;
+        count = markCount;
+        bytes = markBytes;
+    }
+    
+    /**
+     * Discard all of the entries. The pages are kept for reuse.
+     */
+    public void clear() {
+        page = 0;
+        position = 0;
+        count = 0;
+        bytes = 0;
+        mark();
+    }
+    
+    private static int writeBytes(byte[] buf, int offset, byte[] src, int srcOffset, int length) {
+        buf[offset] = (byte) (length >>> 24);
+        buf[offset + 1] = (byte) (length >>> 16);
+        buf[offset + 2] = (byte) (length >>> 8);
+        buf[offset + 3] = (byte) length;
+        System.arraycopy(src, srcOffset, buf, offset + 4, length);
+        return offset + 4 + length;
+    }
+    
+    private static int writeLong(byte[] buf, int offset, long value) {
+        for (int i = 7; i >= 0; i--) {
+            buf[offset + i] = (byte) value;
+            value >>>= 8;
+        }
+        return offset + 8;
+    }
+    
+    private static int readInt(byte[] buf, int offset) {
+        return ((buf[offset] & 0xff) << 24) | ((buf[offset + 1] & 0xff) << 16) | ((buf[offset + 2] & 0xff) << 8) | (buf[offset + 3] & 0xff);
+    }
+    
+    private static long readLong(byte[] buf, int offset) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (buf[offset + i] & 0xff);
+        }
+        return value;
+    }
+}
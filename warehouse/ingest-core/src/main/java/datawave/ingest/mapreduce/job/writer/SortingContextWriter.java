@@ -0,0 +1,342 @@
+package datawave.ingest.mapreduce.job.writer;
+
+import com.google.common.collect.Multimap;
+import datawave.ingest.mapreduce.job.BulkIngestKey;
+import datawave.ingest.mapreduce.job.ConstraintChecker;
+import datawave.ingest.mapreduce.job.reduce.BulkIngestKeyAggregatingReducer;
+import datawave.ingest.mapreduce.job.reduce.BulkIngestKeyDedupeCombiner;
+import datawave.ingest.mapreduce.job.statsd.StatsDHelper;
+import org.apache.accumulo.core.data.Value;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.LocalDirAllocator;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.mapreduce.TaskInputOutputContext;
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * A context writer that sorts everything written by a mapper so that a map only bulk ingest job can write RFiles directly, without a shuffle. The entries are
+ * buffered in a {@link SortedKeyValueBuffer}. Whenever the buffer reaches its byte budget it is sorted and spilled to a sequence file in one of the task's
+ * local directories, chosen by a {@link LocalDirAllocator} the same way the map output of a shuffle is spilled. If the job uses a
+ * combiner, the BulkIngestKeyDedupeCombiner is first run over each run of equal keys, and its output is sorted again as it may change the timestamps. On
+ * cleanup the spills are merged and every key is passed through the BulkIngestKeyAggregatingReducer, exactly as the reducers of a bulk ingest job would, which
+ * writes the sorted and reduced entries to the chained context writer. If nothing was spilled the buffer is reduced directly from memory.
+ */
+public class SortingContextWriter<OK,OV> extends StatsDHelper implements ChainedContextWriter<OK,OV> {
+    
+    private static final Logger log = Logger.getLogger(SortingContextWriter.class);
+    
+    public static final String CONTEXT_WRITER_CLASS = BulkIngestKeyAggregatingReducer.CONTEXT_WRITER_CLASS;
+    
+    // the number of serialized bytes buffered before the buffer is sorted and spilled
+    public static final String BUFFER_BYTES = "ingest.sorting.context.writer.buffer.bytes";
+    public static final long DEFAULT_BUFFER_BYTES = 256L * 1024 * 1024;
+    
+    // the comma separated local directories for the spill files, defaults to the local directories of the task
+    public static final String SPILL_DIR = "ingest.sorting.context.writer.spill.dir";
+    public static final String LOCAL_DIRS = "mapreduce.cluster.local.dir";
+    
+    public static final String SPILL_COUNTER = "SORTING_CONTEXT_WRITER";
+    
+    private BulkIngestKeyAggregatingReducer<OK,OV> reducer = new BulkIngestKeyAggregatingReducer<>();
+    private BulkIngestKeyDedupeCombiner<OK,OV> combiner = null;
+    private BufferWriter<OK,OV> combinerWriter = new BufferWriter<>();
+    private SortedKeyValueBuffer buffer;
+    private SortedKeyValueBuffer combined;
+    private long maxBytes = DEFAULT_BUFFER_BYTES;
+    private LocalDirAllocator spillDirs;
+    private List<Path> spills = new ArrayList<>();
+    private FileSystem localFs;
+    private Configuration conf;
+    private ConstraintChecker constraintChecker;
+    
+    @Override
+    public void configureChainedContextWriter(Configuration conf, Class<? extends ContextWriter<OK,OV>> contextWriterClass) {
+        conf.setClass(CONTEXT_WRITER_CLASS, contextWriterClass, ContextWriter.class);
+    }
+    
+    @Override
+    public void setup(Configuration conf, boolean outputTableCounters) throws IOException, InterruptedException {
+        super.setup(conf);
+        this.conf = conf;
+        conf.setBoolean(BulkIngestKeyAggregatingReducer.CONTEXT_WRITER_OUTPUT_TABLE_COUNTERS, outputTableCounters);
+        reducer.setup(conf);
+        
+        // only apply the combiner if the job is configured to use one, as the reducer treats combined keys differently
+        if (conf.getBoolean(BulkIngestKeyDedupeCombiner.USING_COMBINER, false)) {
+            combiner = new BulkIngestKeyDedupeCombiner<OK,OV>() {
+                @Override
+                protected void setupContextWriter(Configuration conf) throws IOException {
+                    setContextWriter(combinerWriter);
+                }
+            };
+            combiner.setup(conf);
+        }
+        
+        maxBytes = conf.getLong(BUFFER_BYTES, DEFAULT_BUFFER_BYTES);
+        int pageBytes = conf.getInt(SortedCombiningContextWriter.PAGE_BYTES, SortedCombiningContextWriter.DEFAULT_PAGE_BYTES);
+        buffer = new SortedKeyValueBuffer(pageBytes);
+        if (combiner != null) {
+            combined = new SortedKeyValueBuffer(pageBytes);
+        }
+        if (conf.get(SPILL_DIR) == null) {
+            conf.set(SPILL_DIR, conf.get(LOCAL_DIRS, System.getProperty("java.io.tmpdir")));
+        }
+        spillDirs = new LocalDirAllocator(SPILL_DIR);
+        localFs = FileSystem.getLocal(conf);
+        constraintChecker = ConstraintChecker.create(conf);
+    }
+    
+    @Override
+    public void write(BulkIngestKey key, Value value, TaskInputOutputContext<?,?,OK,OV> context) throws IOException, InterruptedException {
+        if (constraintChecker != null && constraintChecker.isConfigured()) {
+            constraintChecker.check(key.getTableName(), key.getKey().getColumnVisibilityData().getBackingArray());
+        }
+        buffer.add(key, value);
+        if (buffer.getBytes() >= maxBytes) {
+            spill(context);
+        }
+    }
+    
+    @Override
+    public void write(Multimap<BulkIngestKey,Value> entries, TaskInputOutputContext<?,?,OK,OV> context) throws IOException, InterruptedException {
+        for (Map.Entry<BulkIngestKey,Value> entry : entries.entries()) {
+            write(entry.getKey(), entry.getValue(), context);
+        }
+    }
+    
+    /**
+     * Nothing is written until cleanup, so a commit only marks the point that a rollback returns to.
+     */
+    @Override
+    public void commit(TaskInputOutputContext<?,?,OK,OV> context) throws IOException, InterruptedException {
+        buffer.mark();
+    }
+    
+    @Override
+    public void rollback() throws IOException, InterruptedException {
+        buffer.reset();
+    }
+    
+    /**
+     * The spills are only merged and reduced on cleanup, so this writer cannot be drained.
+     */
+    @Override
+    public void drain(TaskInputOutputContext<?,?,OK,OV> context) throws IOException, InterruptedException {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " only writes on cleanup");
+    }
+    
+    @Override
+    public void cleanup(TaskInputOutputContext<?,?,OK,OV> context) throws IOException, InterruptedException {
+        try {
+            if (spills.isEmpty()) {
+                reduceBuffer(context);
+            } else {
+                spill(context);
+                merge(context);
+            }
+        } finally {
+            for (Path spill : spills) {
+                localFs.delete(spill, false);
+            }
+            spills.clear();
+        }
+        reducer.finish(context);
+        if (combiner != null) {
+            combiner.finish(context);
+        }
+        super.close();
+    }
+    
+    /**
+     * Pass each run of equal keys in the sorted buffer through the reducer
+     */
+    private void reduceBuffer(TaskInputOutputContext<?,?,OK,OV> context) throws IOException, InterruptedException {
+        combine(context);
+        buffer.sort();
+        List<Value> values = new ArrayList<>();
+        int start = 0;
+        while (start < buffer.size()) {
+            int end = start + 1;
+            while (end < buffer.size() && buffer.compare(start, end) == 0) {
+                end++;
+            }
+            values.clear();
+            for (int i = start; i < end; i++) {
+                values.add(buffer.getValue(i));
+            }
+            reducer.doReduce(buffer.getKey(start), values, context);
+            start = end;
+        }
+        buffer.clear();
+    }
+    
+    /**
+     * Replace the buffer with the output of the combiner run over each run of equal keys, if the job uses a combiner
+     */
+    private void combine(TaskInputOutputContext<?,?,OK,OV> context) throws IOException, InterruptedException {
+        if (combiner == null || buffer.isEmpty()) {
+            return;
+        }
+        buffer.sort();
+        combinerWriter.setBuffer(combined);
+        List<Value> values = new ArrayList<>();
+        int start = 0;
+        while (start < buffer.size()) {
+            int end = start + 1;
+            while (end < buffer.size() && buffer.compare(start, end) == 0) {
+                end++;
+            }
+            values.clear();
+            for (int i = start; i < end; i++) {
+                values.add(buffer.getValue(i));
+            }
+            combiner.doReduce(buffer.getKey(start), values, context);
+            start = end;
+        }
+        buffer.clear();
+        SortedKeyValueBuffer tmp = buffer;
+        buffer = combined;
+        combined = tmp;
+    }
+    
+    /**
+     * Sort the buffer and write it to a new spill file
+     */
+    private void spill(TaskInputOutputContext<?,?,OK,OV> context) throws IOException, InterruptedException {
+        if (buffer.isEmpty()) {
+            return;
+        }
+        combine(context);
+        buffer.sort();
+        Path path = spillDirs.getLocalPathForWrite(context.getTaskAttemptID() + "-spill-" + spills.size() + ".seq", buffer.getBytes(), conf);
+        log.info("Spilling " + buffer.size() + " entries (" + buffer.getBytes() + " bytes) to " + path);
+        spills.add(path);
+        try (SequenceFile.Writer writer = SequenceFile.createWriter(conf, SequenceFile.Writer.file(localFs.makeQualified(path)),
+                        SequenceFile.Writer.keyClass(BulkIngestKey.class), SequenceFile.Writer.valueClass(Value.class))) {
+            for (int i = 0; i < buffer.size(); i++) {
+                writer.append(buffer.getKey(i), buffer.getValue(i));
+            }
+        }
+        getCounter(context, SPILL_COUNTER, "spills").increment(1);
+        getCounter(context, SPILL_COUNTER, "spilled entries").increment(buffer.size());
+        buffer.clear();
+    }
+    
+    /**
+     * Merge the spill files, passing all of the values for each key through the reducer
+     */
+    private void merge(TaskInputOutputContext<?,?,OK,OV> context) throws IOException, InterruptedException {
+        log.info("Merging " + spills.size() + " spills");
+        PriorityQueue<SpillReader> queue = new PriorityQueue<>(spills.size());
+        try {
+            for (Path spill : spills) {
+                SpillReader reader = new SpillReader(new SequenceFile.Reader(conf, SequenceFile.Reader.file(localFs.makeQualified(spill))));
+                if (reader.next()) {
+                    queue.add(reader);
+                } else {
+                    reader.close();
+                }
+            }
+            
+            List<Value> values = new ArrayList<>();
+            while (!queue.isEmpty()) {
+                BulkIngestKey key = queue.peek().key;
+                values.clear();
+                while (!queue.isEmpty() && queue.peek().key.equals(key)) {
+                    SpillReader reader = queue.poll();
+                    values.add(reader.value);
+                    if (reader.next()) {
+                        queue.add(reader);
+                    } else {
+                        reader.close();
+                    }
+                }
+                reducer.doReduce(key, values, context);
+            }
+        } finally {
+            for (SpillReader reader : queue) {
+                reader.close();
+            }
+        }
+    }
+    
+    /**
+     * The current entry of a spill file being merged
+     */
+    private static class SpillReader implements Comparable<SpillReader> {
+        private final SequenceFile.Reader reader;
+        private BulkIngestKey key;
+        private Value value;
+        
+        SpillReader(SequenceFile.Reader reader) {
+            this.reader = reader;
+        }
+        
+        boolean next() throws IOException {
+            key = new BulkIngestKey();
+            value = new Value();
+            return reader.next(key, value);
+        }
+        
+        void close() throws IOException {
+            reader.close();
+        }
+        
+        @Override
+        public int compareTo(SpillReader o) {
+            return key.compareTo(o.key);
+        }
+    }
+    
+    /**
+     * The context writer used by the combiner to collect the combined entries in a buffer
+     */
+    private static class BufferWriter<OK,OV> implements ContextWriter<OK,OV> {
+        
+        private SortedKeyValueBuffer buffer = null;
+        
+        void setBuffer(SortedKeyValueBuffer buffer) {
+            this.buffer = buffer;
+        }
+        
+        @Override
+        public void setup(Configuration conf, boolean outputTableCounters) throws IOException, InterruptedException {
+            
+        }
+        
+        @Override
+        public void write(BulkIngestKey key, Value value, TaskInputOutputContext<?,?,OK,OV> context) throws IOException, InterruptedException {
+            buffer.add(key, value);
+        }
+        
+        @Override
+        public void write(Multimap<BulkIngestKey,Value> entries, TaskInputOutputContext<?,?,OK,OV> context) throws IOException, InterruptedException {
+            for (Map.Entry<BulkIngestKey,Value> entry : entries.entries()) {
+                buffer.add(entry.getKey(), entry.getValue());
+            }
+        }
+        
+        @Override
+        public void commit(TaskInputOutputContext<?,?,OK,OV> context) throws IOException, InterruptedException {
+            
+        }
+        
+        @Override
+        public void rollback() throws IOException, InterruptedException {
+            
+        }
+        
+        @Override
+        public void cleanup(TaskInputOutputContext<?,?,OK,OV> context) throws IOException, InterruptedException {
+            
+        }
+    }
+}
@@ -122,6 +122,13 @@ public class TableCachingContextWriter extends AbstractContextWriter<BulkIngestK
         contextWriter.rollback();
     }
     
+    @Override
+    public void drain(TaskInputOutputContext<?,?,BulkIngestKey,Value> context) throws IOException, InterruptedException {
+        super.commit(context);
+        flushAll(context);
+        contextWriter.drain(context);
+    }
+    
     @Override
     public void cleanup(TaskInputOutputContext<?,?,BulkIngestKey,Value> context) throws IOException, InterruptedException {
         super.cleanup(context);
@@ -13,6 +13,7 @@ import datawave.ingest.data.config.ingest.IngestHelperInterface;
 import datawave.ingest.data.config.ingest.TermFrequencyIngestHelperInterface;
 import datawave.ingest.mapreduce.handler.DataTypeHandler;
 import datawave.ingest.mapreduce.job.BulkIngestKey;
+import datawave.iterators.FieldDaysCombiner;
 import datawave.util.TextUtil;
 import datawave.util.time.DateHelper;
 import org.apache.accumulo.core.data.Key;
@@ -22,7 +23,9 @@ import org.apache.hadoop.io.Text;
 import org.slf4j.Logger;
 
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 
@@ -75,6 +78,14 @@ import static org.slf4j.LoggerFactory.getLogger;
  * <td>Count</td>
  * </tr>
  * <tr>
+ * <td>MetaData</td>
+ * <td>Indexed Field Days (See FieldDaysCombiner)</td>
+ * <td>Normalized Field Name</td>
+ * <td>'fd'</td>
+ * <td>DataType\0YYYYMM</td>
+ * <td>Bitmap of the days of the month</td>
+ * </tr>
+ * <tr>
  * <td>Load Dates Table</td>
  * <td>Load Date Frequency (See LoadDateScanBuilder)</td>
  * <td>Field Name</td>
@@ -103,7 +114,10 @@ public class EventMetadata implements RawRecordMetadata {
     private final MetadataCounterGroup frequencyCounts = new MetadataCounterGroup(ColumnFamilyConstants.COLF_F); // by event date
     private final MetadataCounterGroup indexedFieldsLoadDateCounts;
     private final MetadataCounterGroup reverseIndexedFieldsLoadDateCounts;
+    // stores the days of each month that an indexed field was seen, by event date
+    private final Map<Key,Integer> indexedFieldDays = new HashMap<>();
     private boolean frequency = false;
+    private boolean fieldDays = false;
     
     /**
      * @param shardTableName
@@ -237,11 +251,32 @@ public class EventMetadata implements RawRecordMetadata {
     protected void updateForIndexedField(@SuppressWarnings("UnusedParameters") IngestHelperInterface helper, RawRecordContainer event,
                     Multimap<String,NormalizedContentInterface> fields, long countDelta, String loadDate, String tokenDesignator, String fieldName) {
         update(event, fields.get(fieldName), tokenDesignator, countDelta, loadDate, indexedFieldsInfo, indexedFieldsLoadDateCounts);
+        updateFieldDays(event, fields.get(fieldName), tokenDesignator, countDelta);
     }
     
     private void updateForCompositeField(@SuppressWarnings("UnusedParameters") IngestHelperInterface helper, RawRecordContainer event,
                     Multimap<String,NormalizedContentInterface> fields, long countDelta, String loadDate, String tokenDesignator, String fieldName) {
         update(event, fields.get(fieldName), tokenDesignator, countDelta, loadDate, indexedFieldsInfo, indexedFieldsLoadDateCounts);
+        updateFieldDays(event, fields.get(fieldName), tokenDesignator, countDelta);
+    }
+    
+    /**
+     * Marks the day of the event for each indexed field, so that queries can skip the days of the global index that a field has no entries for. Deletes do not
+     * clear the days, as the field may still have other entries for them.
+     */
+    protected void updateFieldDays(RawRecordContainer event, Collection<NormalizedContentInterface> norms, String tokenDesignator, long countDelta) {
+        if (!fieldDays || countDelta <= 0) {
+            return;
+        }
+        String day = DateHelper.format(event.getDate());
+        String month = FieldDaysCombiner.month(day);
+        Text colq = new Text(event.getDataType().outputName() + DELIMITER + month);
+        long timestamp = DateHelper.parse(month + "01").getTime();
+        for (NormalizedContentInterface norm : norms) {
+            Key k = new Key(new Text(norm.getIndexedFieldName() + tokenDesignator), FieldDaysCombiner.COLF_FD, colq, timestamp);
+            Integer days = indexedFieldDays.get(k);
+            indexedFieldDays.put(k, (days == null ? 0 : days) | FieldDaysCombiner.dayBit(day));
+        }
     }
     
     protected void updateForReverseIndexedField(@SuppressWarnings("UnusedParameters") IngestHelperInterface helper, RawRecordContainer event,
@@ -375,6 +410,7 @@ public class EventMetadata implements RawRecordMetadata {
         addIndexedFieldToMetadata(bulkData, reverseIndexedFieldsInfo);
         
         addFrequenciesToMetadata(bulkData);
+        addFieldDaysToMetadata(bulkData);
         
         addIndexedFieldToMetadata(bulkData, dataTypeFieldsInfo);
         addIndexedFieldToMetadata(bulkData, normalizedFieldsInfo);
@@ -410,6 +446,12 @@ public class EventMetadata implements RawRecordMetadata {
         }
     }
     
+    protected void addFieldDaysToMetadata(Multimap<BulkIngestKey,Value> results) {
+        for (Map.Entry<Key,Integer> entry : indexedFieldDays.entrySet()) {
+            results.put(new BulkIngestKey(this.metadataTableName, entry.getKey()), FieldDaysCombiner.encode(entry.getValue()));
+        }
+    }
+    
     protected void addToResults(Multimap<BulkIngestKey,Value> results, Long value, Key key, Text tableName) {
         BulkIngestKey bk = new BulkIngestKey(tableName, key);
         results.put(bk, new Value(SummingCombiner.VAR_LEN_ENCODER.encode(value)));
@@ -429,6 +471,14 @@ public class EventMetadata implements RawRecordMetadata {
         }
     }
     
+    /**
+     * @param fieldDays
+     *            whether to add to the metadata table's days of each month that an indexed field was seen, by event date
+     */
+    public void setFieldDays(boolean fieldDays) {
+        this.fieldDays = fieldDays;
+    }
+    
     @Override
     public void clear() {
         this.eventFieldsInfo.clear();
@@ -436,6 +486,7 @@ public class EventMetadata implements RawRecordMetadata {
         this.frequencyCounts.clear();
         
         this.indexedFieldsInfo.clear();
+        this.indexedFieldDays.clear();
         this.indexedFieldsLoadDateCounts.clear();
         
         this.reverseIndexedFieldsInfo.clear();
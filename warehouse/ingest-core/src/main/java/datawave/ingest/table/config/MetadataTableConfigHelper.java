@@ -2,6 +2,7 @@ package datawave.ingest.table.config;
 
 import datawave.data.ColumnFamilyConstants;
 import datawave.ingest.mapreduce.handler.shard.ShardedDataTypeHandler;
+import datawave.iterators.FieldDaysCombiner;
 
 import org.apache.accumulo.core.client.AccumuloException;
 import org.apache.accumulo.core.client.AccumuloSecurityException;
@@ -24,6 +25,7 @@ public class MetadataTableConfigHelper extends AbstractTableConfigHelper {
         if (tableName != null) {
             for (IteratorScope scope : IteratorScope.values()) {
                 setFrequencyCombiner(tops, scope.name());
+                setFieldDaysCombiner(tops, scope.name());
                 setCombinerForCountMetadata(tops, scope.name());
                 setCombinerForEdgeMetadata(tops, scope.name());
             }
@@ -58,6 +60,14 @@ public class MetadataTableConfigHelper extends AbstractTableConfigHelper {
         return stem;
     }
     
+    // add the FieldDaysCombiner to the indexed field days column
+    private String setFieldDaysCombiner(TableOperations tops, String scopeName) throws AccumuloException, AccumuloSecurityException, TableNotFoundException {
+        String stem = String.format("%s%s.%s", Property.TABLE_ITERATOR_PREFIX, scopeName, "FieldDaysCombiner");
+        setPropertyIfNecessary(tableName, stem, "11,datawave.iterators.FieldDaysCombiner", tops, log);
+        setPropertyIfNecessary(tableName, stem + ".opt.columns", FieldDaysCombiner.COLF_FD.toString(), tops, log);
+        return stem;
+    }
+    
     @Override
     public void setup(String tableName, Configuration config, Logger log) throws IllegalArgumentException {
         
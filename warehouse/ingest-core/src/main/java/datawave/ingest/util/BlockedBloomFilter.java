@@ -0,0 +1,261 @@
+package datawave.ingest.util;
+
+/**
+ * A bloom filter whose bits are split into blocks of one 64 byte cache line. Every hash function of a term sets a bit in the same block, so adding or testing a
+ * term touches a single cache line instead of one per hash function. The block layout costs a slightly higher false positive rate for the same number of bits,
+ * which {@link #create(int, double)} compensates for when sizing the filter.
+ * <p>
+ * Terms are hashed directly from their characters with {@link #hash(CharSequence, int, int)}, which can also be computed incrementally with
+ * {@link #hashStep(long, char)} and {@link #hashFinish(long, int)} so that every prefix of a run of characters (e.g. every n-gram starting at one position) is
+ * hashed in a single pass without creating strings.
+ * <p>
+ * The serialized form written by {@link #toBytes()} is a short header followed by the blocks, and can be tested without being deserialized, see
+ * {@link #mightContain(byte[], long)}.
+ */
+public class BlockedBloomFilter {
+    
+    /** The first byte of a serialized filter, which can not be the first byte of a java serialized object */
+    public static final byte MAGIC = (byte) 0xB1;
+    public static final byte VERSION = 1;
+    
+    private static final int HEADER_BYTES = 7;
+    private static final int BLOCK_BITS = 512;
+    private static final int BLOCK_LONGS = BLOCK_BITS / Long.SIZE;
+    private static final int MAX_HASHES = 16;
+    // blocking raises the false positive rate, so add a few bits per term to make up for it
+    private static final double BLOCKING_OVERHEAD = 1.2;
+    
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    
+    private final long[] bits;
+    private final int numBlocks;
+    private final int numHashes;
+    
+    BlockedBloomFilter(int numBlocks, int numHashes) {
+        this(new long[numBlocks * BLOCK_LONGS], numBlocks, numHashes);
+    }
+    
+    private BlockedBloomFilter(long[] bits, int numBlocks, int numHashes) {
+        this.bits = bits;
+        this.numBlocks = numBlocks;
+        this.numHashes = numHashes;
+    }
+    
+    /**
+     * Create a filter sized for a number of distinct terms
+     *
+     * @param expectedInsertions
+     *            the number of distinct terms expected to be added
+     * @param fpp
+     *            the desired false positive probability
+     * @return an empty filter
+     */
+    public static BlockedBloomFilter create(int expectedInsertions, double fpp) {
+        if (fpp <= 0 || fpp >= 1) {
+            throw new IllegalArgumentException("False positive probability must be between 0 and 1: " + fpp);
+        }
+        double bitsPerTerm = bitsPerTerm(fpp);
+        long numBits = (long) Math.ceil(Math.max(1, expectedInsertions) * bitsPerTerm);
+        int numBlocks = (int) Math.min(Integer.MAX_VALUE / BLOCK_LONGS, Math.max(1, (numBits + BLOCK_BITS - 1) / BLOCK_BITS));
+        int numHashes = (int) Math.max(1, Math.min(MAX_HASHES, Math.round(bitsPerTerm / BLOCKING_OVERHEAD * Math.log(2))));
+        return new BlockedBloomFilter(numBlocks, numHashes);
+    }
+    
+    /**
+     * @return the number of bits needed per distinct term for the false positive probability
+     */
+    public static double bitsPerTerm(double fpp) {
+        return BLOCKING_OVERHEAD * -Math.log(fpp) / (Math.log(2) * Math.log(2));
+    }
+    
+    /**
+     * @return the number of bytes a filter sized by {@link #create(int, double)} serializes to
+     */
+    public static int serializedSize(int expectedInsertions, double fpp) {
+        return HEADER_BYTES + create(expectedInsertions, fpp).numBlocks * BLOCK_LONGS * 8;
+    }
+    
+    /**
+     * @return the number of distinct terms that fit in a serialized filter of the given size at the false positive probability
+     */
+    public static int maxInsertions(int serializedBytes, double fpp) {
+        return (int) Math.max(0, Math.floor((serializedBytes - HEADER_BYTES) * 8L / bitsPerTerm(fpp)));
+    }
+    
+    public static long hash(CharSequence term) {
+        return hash(term, 0, term.length());
+    }
+    
+    /**
+     * @return the hash of the characters of term from start (inclusive) to end (exclusive)
+     */
+    public static long hash(CharSequence term, int start, int end) {
+        long h = FNV_OFFSET;
+        for (int i = start; i < end; i++) {
+            h = hashStep(h, term.charAt(i));
+        }
+        return hashFinish(h, end - start);
+    }
+    
+    /**
+     * @return the initial state of an incremental hash
+     */
+    public static long hashStart() {
+        return FNV_OFFSET;
+    }
+    
+    /**
+     * @return the state of an incremental hash after adding a character
+     */
+    public static long hashStep(long h, char c) {
+        return (h ^ c) * FNV_PRIME;
+    }
+    
+    /**
+     * @return the hash of the characters added to an incremental hash state, without changing the state
+     */
+    public static long hashFinish(long h, int length) {
+        // murmur3 finalizer, so that every bit of the hash depends on every character
+        h ^= length;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+    
+    public void put(CharSequence term) {
+        put(hash(term));
+    }
+    
+    /**
+     * Add a term by its {@link #hash(CharSequence, int, int)}
+     */
+    public void put(long hash) {
+        int offset = block(hash, numBlocks) * BLOCK_LONGS;
+        int h1 = (int) hash;
+        int h2 = secondHash(hash);
+        for (int i = 0; i < numHashes; i++) {
+            int bit = (h1 + i * h2) & (BLOCK_BITS - 1);
+            bits[offset + (bit >>> 6)] |= 1L << bit;
+        }
+    }
+    
+    public boolean mightContain(CharSequence term) {
+        return mightContain(hash(term));
+    }
+    
+    public boolean mightContain(long hash) {
+        int offset = block(hash, numBlocks) * BLOCK_LONGS;
+        int h1 = (int) hash;
+        int h2 = secondHash(hash);
+        for (int i = 0; i < numHashes; i++) {
+            int bit = (h1 + i * h2) & (BLOCK_BITS - 1);
+            if ((bits[offset + (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private static int secondHash(long hash) {
+        // odd so that every bit of a block is reachable, and mixed so that it is independent of the bits that selected the block
+        return (int) ((hash * 0x9e3779b97f4a7c15L) >>> 32) | 1;
+    }
+    
+    private static int block(long hash, int numBlocks) {
+        // the high bits select the block, as the low bits select the bits within it
+        return (int) (((hash >>> 32) * numBlocks) >>> 32);
+    }
+    
+    public int getNumBlocks() {
+        return numBlocks;
+    }
+    
+    public int getNumHashes() {
+        return numHashes;
+    }
+    
+    public byte[] toBytes() {
+        byte[] bytes = new byte[HEADER_BYTES + bits.length * 8];
+        bytes[0] = MAGIC;
+        bytes[1] = VERSION;
+        bytes[2] = (byte) numHashes;
+        writeInt(bytes, 3, numBlocks);
+        for (int i = 0; i < bits.length; i++) {
+            long word = bits[i];
+            int pos = HEADER_BYTES + i * 8;
+            for (int b = 7; b >= 0; b--) {
+                bytes[pos + b] = (byte) word;
+                word >>>= 8;
+            }
+        }
+        return bytes;
+    }
+    
+    /**
+     * @return true if the bytes are a serialized BlockedBloomFilter
+     */
+    public static boolean isSerializedFilter(byte[] bytes) {
+        return bytes != null && bytes.length >= HEADER_BYTES && bytes[0] == MAGIC && bytes[1] == VERSION
+                        && bytes.length == HEADER_BYTES + (long) readInt(bytes, 3) * BLOCK_LONGS * 8;
+    }
+    
+    public static BlockedBloomFilter fromBytes(byte[] bytes) {
+        if (!isSerializedFilter(bytes)) {
+            throw new IllegalArgumentException("Not a serialized " + BlockedBloomFilter.class.getSimpleName());
+        }
+        int numBlocks = readInt(bytes, 3);
+        long[] bits = new long[numBlocks * BLOCK_LONGS];
+        for (int i = 0; i < bits.length; i++) {
+            bits[i] = readLong(bytes, HEADER_BYTES + i * 8);
+        }
+        return new BlockedBloomFilter(bits, numBlocks, bytes[2]);
+    }
+    
+    /**
+     * Test a term against a serialized filter without deserializing it, only the header and the words of one block are read
+     *
+     * @param bytes
+     *            a serialized filter
+     * @param hash
+     *            the {@link #hash(CharSequence, int, int)} of the term
+     * @return false if the term is definitely not in the filter
+     */
+    public static boolean mightContain(byte[] bytes, long hash) {
+        int numHashes = bytes[2];
+        int offset = HEADER_BYTES + block(hash, readInt(bytes, 3)) * BLOCK_LONGS * 8;
+        int h1 = (int) hash;
+        int h2 = secondHash(hash);
+        for (int i = 0; i < numHashes; i++) {
+            int bit = (h1 + i * h2) & (BLOCK_BITS - 1);
+            // bit 0 of a word is the low bit of its last byte
+            byte b = bytes[offset + (bit >>> 6) * 8 + 7 - ((bit & 63) >>> 3)];
+            if ((b & (1 << (bit & 7))) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private static void writeInt(byte[] bytes, int pos, int value) {
+        bytes[pos] = (byte) (value >>> 24);
+        bytes[pos + 1] = (byte) (value >>> 16);
+        bytes[pos + 2] = (byte) (value >>> 8);
+        bytes[pos + 3] = (byte) value;
+    }
+    
+    private static int readInt(byte[] bytes, int pos) {
+        return ((bytes[pos] & 0xff) << 24) | ((bytes[pos + 1] & 0xff) << 16) | ((bytes[pos + 2] & 0xff) << 8) | (bytes[pos + 3] & 0xff);
+    }
+    
+    private static long readLong(byte[] bytes, int pos) {
+        long value = 0;
+        for (int b = 0; b < 8; b++) {
+            value = (value << 8) | (bytes[pos + b] & 0xff);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,256 @@
+package datawave.ingest.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Builds a {@link BlockedBloomFilter} from field values and the n-grams of content values, without creating a string per n-gram. The n-grams of a value are
+ * every run of 2 to maxNGramLength characters, the same terms the {@link org.apache.lucene.analysis.ngram.NGramTokenizer} used by
+ * {@link NGramTokenizationStrategy} produces, and are hashed incrementally, so all of the n-grams starting at a position are hashed in a single pass over the
+ * characters.
+ * <p>
+ * A filter is built in two passes. The first hashes every term into a HyperLogLog sketch per n-gram length to estimate the number of distinct terms, which is
+ * usually far lower than the number of n-grams as content repeats itself. If a maximum filter size is set, the n-gram budget is then chosen up front: the
+ * longest n-gram length whose distinct terms fit in the filter is applied and the longer n-grams are pruned, rather than pruning whichever n-grams happen to
+ * come last. The filter is then sized for the estimated distinct terms and the second pass adds them.
+ * <p>
+ * A builder is meant to be reused from one event to the next, so that its sketches are only allocated once. Not thread-safe.
+ */
+public class BlockedBloomFilterBuilder {
+    
+    public static final double DEFAULT_FPP = 0.03;
+    public static final int DEFAULT_MAX_NGRAM_LENGTH = AbstractNGramTokenizationStrategy.DEFAULT_MAX_NGRAM_LENGTH;
+    
+    private static final int REGISTER_BITS = 10;
+    private static final int REGISTERS = 1 << REGISTER_BITS;
+    private static final double ALPHA = 0.7213 / (1 + 1.079 / REGISTERS);
+    // how often, in n-gram start positions, the timeout is checked
+    private static final int TIMEOUT_CHECK_INTERVAL = 1024;
+    
+    private final int maxNGramLength;
+    private final int maxFilterBytes;
+    private final double fpp;
+    private final long timeoutMillis;
+    
+    private final List<String> values = new ArrayList<>();
+    private final List<String> ngramValues = new ArrayList<>();
+    // registers[0] is the sketch of the field values, registers[n] that of the n-grams of length n
+    private final byte[][] registers;
+    private final byte[] union = new byte[REGISTERS];
+    private final long[] ngramsPerLength;
+    private long deadline = Long.MAX_VALUE;
+    
+    private int fieldValuesApplied;
+    private int ngramsApplied;
+    private int ngramsPruned;
+    private int ngramLengthApplied;
+    private int estimatedTerms;
+    
+    /**
+     * @param maxNGramLength
+     *            the maximum length of an n-gram
+     * @param maxFilterBytes
+     *            the maximum serialized size of a filter, beyond which n-grams are pruned, or 0 for no limit. Field values are never pruned.
+     * @param fpp
+     *            the false positive probability the filters are sized for
+     * @param timeoutMillis
+     *            the time after which no more n-grams are added to a filter being built, or 0 for no limit
+     */
+    public BlockedBloomFilterBuilder(int maxNGramLength, int maxFilterBytes, double fpp, long timeoutMillis) {
+        if (maxNGramLength < 2) {
+            throw new IllegalArgumentException("The maximum n-gram length must be at least 2: " + maxNGramLength);
+        }
+        this.maxNGramLength = maxNGramLength;
+        this.maxFilterBytes = maxFilterBytes;
+        this.fpp = fpp;
+        this.timeoutMillis = timeoutMillis;
+        this.registers = new byte[maxNGramLength + 1][REGISTERS];
+        this.ngramsPerLength = new long[maxNGramLength + 1];
+    }
+    
+    /**
+     * Add a field value to the next filter
+     */
+    public BlockedBloomFilterBuilder addValue(String value) {
+        values.add(value);
+        return this;
+    }
+    
+    /**
+     * Add the n-grams of a content value to the next filter
+     */
+    public BlockedBloomFilterBuilder addNGrams(String value) {
+        ngramValues.add(value);
+        return this;
+    }
+    
+    /**
+     * Forget the values added since the last filter was built
+     */
+    public void reset() {
+        values.clear();
+        ngramValues.clear();
+    }
+    
+    /**
+     * Build a filter of the values added since the last reset, and reset
+     */
+    public BlockedBloomFilter build() {
+        deadline = (timeoutMillis > 0 ? System.currentTimeMillis() + timeoutMillis : Long.MAX_VALUE);
+        try {
+            // first pass: estimate the distinct terms of each n-gram length
+            for (byte[] r : registers) {
+                Arrays.fill(r, (byte) 0);
+            }
+            Arrays.fill(ngramsPerLength, 0);
+            for (String value : values) {
+                observe(registers[0], BlockedBloomFilter.hash(value));
+            }
+            for (String value : ngramValues) {
+                hashNGrams(value, maxNGramLength, null);
+            }
+            
+            // choose the longest n-gram length whose terms fit the budget
+            int budget = (maxFilterBytes > 0 ? BlockedBloomFilter.maxInsertions(maxFilterBytes, fpp) : Integer.MAX_VALUE);
+            System.arraycopy(registers[0], 0, union, 0, REGISTERS);
+            estimatedTerms = estimate(union);
+            ngramLengthApplied = 0;
+            long predictedNGrams = 0;
+            for (long count : ngramsPerLength) {
+                predictedNGrams += count;
+            }
+            for (int length = 2; length <= maxNGramLength; length++) {
+                if (ngramsPerLength[length] == 0) {
+                    continue;
+                }
+                for (int i = 0; i < REGISTERS; i++) {
+                    union[i] = (byte) Math.max(union[i], registers[length][i]);
+                }
+                int estimate = estimate(union);
+                if (estimate > budget) {
+                    break;
+                }
+                estimatedTerms = estimate;
+                ngramLengthApplied = length;
+            }
+            
+            // second pass: add the terms
+            BlockedBloomFilter filter = BlockedBloomFilter.create(estimatedTerms, fpp);
+            for (String value : values) {
+                filter.put(BlockedBloomFilter.hash(value));
+            }
+            fieldValuesApplied = values.size();
+            ngramsApplied = 0;
+            if (ngramLengthApplied >= 2) {
+                for (String value : ngramValues) {
+                    if (!hashNGrams(value, ngramLengthApplied, filter) || timedOut()) {
+                        break;
+                    }
+                }
+            }
+            ngramsPruned = (int) Math.min(Integer.MAX_VALUE, predictedNGrams - ngramsApplied);
+            return filter;
+        } finally {
+            reset();
+        }
+    }
+    
+    /**
+     * Hash every n-gram of a value up to a length, either into the sketches if filter is null, or into the filter
+     *
+     * @return false if the timeout elapsed before every n-gram was added
+     */
+    private boolean hashNGrams(String value, int maxLength, BlockedBloomFilter filter) {
+        int length = value.length();
+        for (int start = 0; start < length - 1; start++) {
+            if (filter != null && start % TIMEOUT_CHECK_INTERVAL == TIMEOUT_CHECK_INTERVAL - 1 && timedOut()) {
+                return false;
+            }
+            // n-grams are made of whole code points
+            if (Character.isLowSurrogate(value.charAt(start))) {
+                continue;
+            }
+            long h = BlockedBloomFilter.hashStart();
+            int end = Math.min(length, start + maxLength);
+            for (int i = start; i < end; i++) {
+                char c = value.charAt(i);
+                h = BlockedBloomFilter.hashStep(h, c);
+                int n = i - start + 1;
+                if (n < 2 || Character.isHighSurrogate(c)) {
+                    continue;
+                }
+                long hash = BlockedBloomFilter.hashFinish(h, n);
+                if (filter == null) {
+                    observe(registers[n], hash);
+                    ngramsPerLength[n]++;
+                } else {
+                    filter.put(hash);
+                    ngramsApplied++;
+                }
+            }
+        }
+        return true;
+    }
+    
+    private boolean timedOut() {
+        return System.currentTimeMillis() > deadline;
+    }
+    
+    private static void observe(byte[] registers, long hash) {
+        int index = (int) (hash >>> (Long.SIZE - REGISTER_BITS));
+        byte rank = (byte) (Long.numberOfLeadingZeros((hash << REGISTER_BITS) | (1L << (REGISTER_BITS - 1))) + 1);
+        if (rank > registers[index]) {
+            registers[index] = rank;
+        }
+    }
+    
+    /**
+     * @return the HyperLogLog estimate of the number of distinct hashes observed by the registers
+     */
+    static int estimate(byte[] registers) {
+        double sum = 0;
+        int zeros = 0;
+        for (byte r : registers) {
+            sum += 1.0 / (1L << r);
+            if (r == 0) {
+                zeros++;
+            }
+        }
+        double estimate = ALPHA * REGISTERS * REGISTERS / sum;
+        if (estimate <= 2.5 * REGISTERS && zeros > 0) {
+            // linear counting is more accurate for small cardinalities
+            estimate = REGISTERS * Math.log((double) REGISTERS / zeros);
+        }
+        return (int) Math.min(Integer.MAX_VALUE, Math.round(estimate));
+    }
+    
+    public int getFieldValuesApplied() {
+        return fieldValuesApplied;
+    }
+    
+    public int getNGramsApplied() {
+        return ngramsApplied;
+    }
+    
+    /**
+     * @return the number of n-grams of the last filter left out, either as they were longer than the budget allowed or as the timeout elapsed
+     */
+    public int getNGramsPruned() {
+        return ngramsPruned;
+    }
+    
+    /**
+     * @return the longest n-grams added to the last filter, or 0 if none were
+     */
+    public int getNGramLengthApplied() {
+        return ngramLengthApplied;
+    }
+    
+    /**
+     * @return the estimated number of distinct terms the last filter was sized for
+     */
+    public int getEstimatedTerms() {
+        return estimatedTerms;
+    }
+}
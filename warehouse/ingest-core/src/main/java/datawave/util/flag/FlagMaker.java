@@ -77,7 +77,7 @@ public class FlagMaker implements Runnable, Observer, SizeValidator {
     private final Cache<Path,Path> directoryCache;
     // Executor will be used for directory lookups
     private ExecutorService executor;
-    private final FlagMakerConfig fmc;
+    protected final FlagMakerConfig fmc;
     final FlagDistributor fd;
     private volatile boolean running = true;
     private FlagSocket flagSocket;
@@ -218,7 +218,7 @@ public class FlagMaker implements Runnable, Observer, SizeValidator {
             while (running) {
                 try {
                     processFlags();
-                    Thread.sleep(fmc.getSleepMilliSecs());
+                    waitForNextCycle();
                 } catch (Exception ex) {
                     log.error("An unexpected exception occurred. Exiting", ex);
                     running = false;
@@ -230,6 +230,15 @@ public class FlagMaker implements Runnable, Observer, SizeValidator {
         log.trace(this.getClass().getSimpleName() + " Exiting.");
     }
     
+    /**
+     * Wait between calls to {@link #processFlags()}
+     * 
+     * @throws InterruptedException
+     */
+    protected void waitForNextCycle() throws InterruptedException {
+        Thread.sleep(fmc.getSleepMilliSecs());
+    }
+    
     /**
      * 
      * @throws IOException
@@ -276,25 +285,39 @@ public class FlagMaker implements Runnable, Observer, SizeValidator {
                 continue;
             }
             
-            // remove the base directory from the folder
-            if (folder.startsWith(this.fmc.getBaseHDFSDir())) {
-                folder = folder.substring(this.fmc.getBaseHDFSDir().length());
-                if (folder.startsWith(File.separator)) {
-                    folder = folder.substring(File.separator.length());
-                }
+            addFilesToDistributor(fc, folder, files);
+        }
+    }
+    
+    /**
+     * Adds the files found in one of the input folders of the data type to the {@link FlagDistributor}.
+     * 
+     * @param fc
+     *            flag datatype configuration data
+     * @param folder
+     *            the input folder the files were found in
+     * @param files
+     *            the files
+     */
+    protected void addFilesToDistributor(FlagDataTypeConfig fc, String folder, FileStatus[] files) {
+        // remove the base directory from the folder
+        if (folder.startsWith(this.fmc.getBaseHDFSDir())) {
+            folder = folder.substring(this.fmc.getBaseHDFSDir().length());
+            if (folder.startsWith(File.separator)) {
+                folder = folder.substring(File.separator.length());
             }
-            
-            // add the files
-            for (FileStatus status : files) {
-                if (status.isDirectory()) {
-                    log.warn("Skipping subdirectory " + status.getPath());
-                } else {
-                    try {
-                        this.fd.addInputFile(new InputFile(folder, status, this.fmc.getBaseHDFSDir(), this.fmc.isUseFolderTimestamp()));
-                        logFileInfo(fc, status);
-                    } catch (UnusableFileException e) {
-                        log.warn("Skipping unusable file " + status.getPath(), e);
-                    }
+        }
+        
+        // add the files
+        for (FileStatus status : files) {
+            if (status.isDirectory()) {
+                log.warn("Skipping subdirectory " + status.getPath());
+            } else {
+                try {
+                    this.fd.addInputFile(new InputFile(folder, status, this.fmc.getBaseHDFSDir(), this.fmc.isUseFolderTimestamp()));
+                    logFileInfo(fc, status);
+                } catch (UnusableFileException e) {
+                    log.warn("Skipping unusable file " + status.getPath(), e);
                 }
             }
         }
@@ -0,0 +1,292 @@
+package datawave.util.flag;
+
+import datawave.util.flag.config.FlagDataTypeConfig;
+import datawave.util.flag.config.FlagMakerConfig;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.GlobFilter;
+import org.apache.hadoop.fs.LocalFileSystem;
+import org.apache.hadoop.fs.Path;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A FlagMaker that keeps an index of the files in each input directory instead of listing every file on every cycle. Each cycle only the directories matching
+ * the file pattern are found, and a directory is only listed again if its modification time changed, or if it was modified too recently to trust that its
+ * modification time will change with the next update. With millions of queued files this reduces a cycle from a listing of every file to a status call per
+ * directory.
+ * <p>
+ * When the input folders are on the local filesystem the directories are also registered with a {@link WatchService}, so that a new file ends the wait between
+ * cycles instead of waiting for the full sleepMilliSecs.
+ * <p>
+ * If a listingCheckpointFile is configured the index is saved after each cycle and loaded on startup, so that a restart does not have to list every directory
+ * again. The checkpoint is only a cache, every directory in it is still validated against its modification time.
+ * <p>
+ * The last element of the filePattern is treated as the file name pattern, and the rest as the pattern of the directories containing the files.
+ */
+public class IncrementalFlagMaker extends FlagMaker {
+    
+    private static final Logger log = LoggerFactory.getLogger(IncrementalFlagMaker.class);
+    
+    private static final int CHECKPOINT_VERSION = 1;
+    
+    // directories modified within this long of being listed are listed again, as a further modification may not change their modification time
+    protected long settleMillis = 60 * 1000L;
+    // the maximum time to spend gathering a burst of file system events before starting the next cycle
+    protected long maxEventWaitMillis = 1000L;
+    
+    /**
+     * The files in a directory as of the last listing
+     */
+    static class DirectoryListing {
+        final long modificationTime;
+        final long listedAt;
+        final FileStatus[] files;
+        boolean changed = false;
+        
+        DirectoryListing(long modificationTime, long listedAt, FileStatus[] files) {
+            this.modificationTime = modificationTime;
+            this.listedAt = listedAt;
+            this.files = files;
+        }
+        
+        boolean isCurrent(FileStatus dir, long settleMillis) {
+            if (changed || dir.getModificationTime() != modificationTime) {
+                return false;
+            }
+            long newest = modificationTime;
+            for (FileStatus file : files) {
+                newest = Math.max(newest, file.getModificationTime());
+            }
+            return listedAt - newest >= settleMillis;
+        }
+    }
+    
+    // input folder -> directory -> listing
+    private final Map<String,Map<Path,DirectoryListing>> listings = new HashMap<>();
+    private boolean listingsChanged = false;
+    int directoriesListed = 0;
+    
+    private WatchService watchService = null;
+    private final Map<WatchKey,Path> watchedDirectories = new HashMap<>();
+    private final Set<Path> watched = new HashSet<>();
+    
+    public IncrementalFlagMaker(FlagMakerConfig fmconfig) {
+        super(fmconfig);
+        if (fmc.getListingCheckpointFile() != null) {
+            try {
+                loadCheckpoint(new File(fmc.getListingCheckpointFile()));
+            } catch (IOException e) {
+                log.warn("Unable to load the listing checkpoint " + fmc.getListingCheckpointFile() + ", all directories will be listed", e);
+                listings.clear();
+            }
+        }
+    }
+    
+    @Override
+    public void run() {
+        try {
+            super.run();
+        } finally {
+            if (watchService != null) {
+                try {
+                    watchService.close();
+                } catch (IOException e) {
+                    log.warn("Unable to close the watch service", e);
+                }
+            }
+        }
+    }
+    
+    @Override
+    protected void processFlags() throws IOException {
+        directoriesListed = 0;
+        super.processFlags();
+        log.debug("Listed {} directories", directoriesListed);
+        if (listingsChanged && fmc.getListingCheckpointFile() != null) {
+            saveCheckpoint(new File(fmc.getListingCheckpointFile()));
+        }
+        listingsChanged = false;
+    }
+    
+    @Override
+    void loadFilesForDistributor(FlagDataTypeConfig fc, FileSystem fs) throws IOException {
+        String filePattern = fmc.getFilePattern();
+        int index = filePattern.lastIndexOf('/');
+        String dirPattern = (index < 0 ? null : filePattern.substring(0, index));
+        GlobFilter nameFilter = new GlobFilter(filePattern.substring(index + 1));
+        
+        for (String folder : fc.getFolder()) {
+            Path folderPattern = (dirPattern == null ? new Path(folder) : new Path(folder + "/" + dirPattern));
+            log.trace("searching for " + fc.getDataName() + " directories in " + folderPattern);
+            FileStatus[] dirs = fs.globStatus(folderPattern);
+            
+            Map<Path,DirectoryListing> previous = listings.get(folder);
+            Map<Path,DirectoryListing> current = new HashMap<>();
+            List<FileStatus> files = new ArrayList<>();
+            if (dirs != null) {
+                for (FileStatus dir : dirs) {
+                    if (!dir.isDirectory()) {
+                        continue;
+                    }
+                    DirectoryListing listing = (previous == null ? null : previous.get(dir.getPath()));
+                    if (listing == null || !listing.isCurrent(dir, settleMillis)) {
+                        listing = new DirectoryListing(dir.getModificationTime(), System.currentTimeMillis(), fs.listStatus(dir.getPath(), nameFilter));
+                        directoriesListed++;
+                        listingsChanged = true;
+                        watch(fs, folder, dir.getPath());
+                    }
+                    current.put(dir.getPath(), listing);
+                    files.addAll(Arrays.asList(listing.files));
+                }
+            }
+            if (previous == null || previous.size() != current.size()) {
+                listingsChanged = true;
+            }
+            listings.put(folder, current);
+            
+            if (!files.isEmpty()) {
+                addFilesToDistributor(fc, folder, files.toArray(new FileStatus[files.size()]));
+            }
+        }
+    }
+    
+    /**
+     * Wait for the sleepMilliSecs, or until a watched directory changes
+     */
+    @Override
+    protected void waitForNextCycle() throws InterruptedException {
+        if (watchService == null) {
+            super.waitForNextCycle();
+            return;
+        }
+        WatchKey key = watchService.poll(fmc.getSleepMilliSecs(), TimeUnit.MILLISECONDS);
+        long deadline = System.currentTimeMillis() + maxEventWaitMillis;
+        while (key != null) {
+            // any event means the directory has to be listed again
+            key.pollEvents();
+            markChanged(watchedDirectories.get(key));
+            if (!key.reset()) {
+                watched.remove(watchedDirectories.remove(key));
+            }
+            
+            // gather the rest of a burst of events
+            long remaining = deadline - System.currentTimeMillis();
+            key = (remaining > 0 ? watchService.poll(Math.min(remaining, 100), TimeUnit.MILLISECONDS) : null);
+        }
+    }
+    
+    private void markChanged(Path dir) {
+        if (dir == null) {
+            return;
+        }
+        for (Map<Path,DirectoryListing> folderListings : listings.values()) {
+            DirectoryListing listing = folderListings.get(dir);
+            if (listing != null) {
+                listing.changed = true;
+            }
+        }
+    }
+    
+    /**
+     * Register a directory, and its parents up to the input folder (so that new directories are noticed), with the watch service if on the local filesystem
+     */
+    private void watch(FileSystem fs, String folder, Path dir) {
+        if (!(fs instanceof LocalFileSystem)) {
+            return;
+        }
+        try {
+            if (watchService == null) {
+                watchService = FileSystems.getDefault().newWatchService();
+            }
+            String root = fs.makeQualified(new Path(folder)).toUri().getPath();
+            for (Path p = dir; p != null && p.toUri().getPath().startsWith(root); p = p.getParent()) {
+                if (!watched.add(p)) {
+                    break;
+                }
+                WatchKey key = Paths.get(p.toUri().getPath()).register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE,
+                                StandardWatchEventKinds.ENTRY_MODIFY);
+                watchedDirectories.put(key, p);
+            }
+        } catch (IOException e) {
+            log.warn("Unable to watch " + dir + ", relying on the sleep interval", e);
+        }
+    }
+    
+    void saveCheckpoint(File checkpoint) throws IOException {
+        File tmp = new File(checkpoint.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(tmp))) {
+            out.writeInt(CHECKPOINT_VERSION);
+            out.writeInt(listings.size());
+            for (Map.Entry<String,Map<Path,DirectoryListing>> folder : listings.entrySet()) {
+                out.writeUTF(folder.getKey());
+                out.writeInt(folder.getValue().size());
+                for (Map.Entry<Path,DirectoryListing> dir : folder.getValue().entrySet()) {
+                    DirectoryListing listing = dir.getValue();
+                    out.writeUTF(dir.getKey().toString());
+                    // a directory that changed since it was listed must be listed again after a restart
+                    out.writeLong(listing.changed ? -1 : listing.modificationTime);
+                    out.writeLong(listing.listedAt);
+                    out.writeInt(listing.files.length);
+                    for (FileStatus file : listing.files) {
+                        file.write(out);
+                    }
+                }
+            }
+        }
+        Files.move(tmp.toPath(), checkpoint.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    
+    void loadCheckpoint(File checkpoint) throws IOException {
+        if (!checkpoint.exists()) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new FileInputStream(checkpoint))) {
+            int version = in.readInt();
+            if (version != CHECKPOINT_VERSION) {
+                throw new IOException("Unexpected checkpoint version " + version);
+            }
+            int folders = in.readInt();
+            for (int i = 0; i < folders; i++) {
+                String folder = in.readUTF();
+                int dirs = in.readInt();
+                Map<Path,DirectoryListing> folderListings = new HashMap<>();
+                for (int j = 0; j < dirs; j++) {
+                    Path dir = new Path(in.readUTF());
+                    long modificationTime = in.readLong();
+                    long listedAt = in.readLong();
+                    FileStatus[] files = new FileStatus[in.readInt()];
+                    for (int k = 0; k < files.length; k++) {
+                        files[k] = new FileStatus();
+                        files[k].readFields(in);
+                    }
+                    folderListings.put(dir, new DirectoryListing(modificationTime, listedAt, files));
+                }
+                listings.put(folder, folderListings);
+            }
+        }
+        log.info("Loaded listings of {} folders from {}", listings.size(), checkpoint);
+    }
+}
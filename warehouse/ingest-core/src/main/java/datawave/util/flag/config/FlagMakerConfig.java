@@ -62,6 +62,8 @@ public class FlagMakerConfig {
     protected long directoryCacheTimeout = (2 * 60 * 60 * 1000);
     // implementation of flagmaker to run
     private String flagMakerClass = FlagMaker.class.getName();
+    // local file the IncrementalFlagMaker checkpoints its directory listings to. Default is no checkpoint.
+    private String listingCheckpointFile;
     
     public FlagDataTypeConfig getDefaultCfg() {
         return defaultCfg;
@@ -207,6 +209,14 @@ public class FlagMakerConfig {
         this.flagMakerClass = flagMakerClass;
     }
     
+    public String getListingCheckpointFile() {
+        return listingCheckpointFile;
+    }
+    
+    public void setListingCheckpointFile(String listingCheckpointFile) {
+        this.listingCheckpointFile = listingCheckpointFile;
+    }
+    
     /**
      * Gets the list of <code>FlagConfig</code>s
      *
@@ -364,6 +374,7 @@ public class FlagMakerConfig {
         result.append("directoryCacheSize: " + this.getDirectoryCacheSize() + "\n");
         result.append("directoryCacheTimeout: " + this.getDirectoryCacheTimeout() + "\n");
         result.append("flagMakerClass: " + this.getFlagMakerClass() + "\n");
+        result.append("listingCheckpointFile: " + this.getListingCheckpointFile() + "\n");
         return result.toString();
     }
     
@@ -0,0 +1,38 @@
+package datawave.ingest.data.tokenize;
+
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AccentFilterTest {
+    
+    @Test
+    public void testRemovesAccents() throws Exception {
+        AccentFilter filter = new AccentFilter(new TestTokenStream("<ALPHANUM>", "caf\u00e9", "plain", "\u00c6r\u00f8", "Z\u00fcrich"));
+        Assert.assertEquals(Arrays.asList("cafe/<ALPHANUM>/1/0", "plain/<ALPHANUM>/1/5", "AEro/<ALPHANUM>/1/11", "Zurich/<ALPHANUM>/1/15"),
+                        TestTokenStream.consume(filter));
+    }
+    
+    @Test
+    public void testReusedBufferDoesNotLeakBetweenTokens() throws Exception {
+        StringBuilder longAccented = new StringBuilder();
+        StringBuilder longStripped = new StringBuilder();
+        for (int i = 0; i < 300; i++) {
+            longAccented.append('\u00e9');
+            longStripped.append('e');
+        }
+        // the long token grows the output buffer, and the following shorter tokens must only see their own characters
+        AccentFilter filter = new AccentFilter(new TestTokenStream("<ALPHANUM>", "r\u00e9sum\u00e9s", longAccented.toString(), "\u00e0", "na\u00efve"));
+        Assert.assertEquals(Arrays.asList("resumes/<ALPHANUM>/1/0", longStripped + "/<ALPHANUM>/1/8", "a/<ALPHANUM>/1/309", "naive/<ALPHANUM>/1/311"),
+                        TestTokenStream.consume(filter));
+    }
+    
+    @Test
+    public void testStrip() {
+        String ascii = "plain ascii";
+        Assert.assertSame(ascii, AccentFilter.strip(ascii));
+        Assert.assertEquals("Sao Paulo", AccentFilter.strip("S\u00e3o Paulo"));
+        Assert.assertEquals("Strasse", AccentFilter.strip("Stra\u00dfe"));
+    }
+}
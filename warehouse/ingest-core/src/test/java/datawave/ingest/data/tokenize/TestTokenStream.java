@@ -0,0 +1,75 @@
+package datawave.ingest.data.tokenize;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.apache.lucene.analysis.tokenattributes.TypeAttribute;
+
+/**
+ * A token stream of fixed terms and types, separated by single spaces, for testing token filters
+ */
+public class TestTokenStream extends TokenStream {
+    
+    private final CharTermAttribute termAtt = addAttribute(CharTermAttribute.class);
+    private final TypeAttribute typeAtt = addAttribute(TypeAttribute.class);
+    private final OffsetAttribute offsetAtt = addAttribute(OffsetAttribute.class);
+    private final PositionIncrementAttribute posIncrAtt = addAttribute(PositionIncrementAttribute.class);
+    
+    private final String[] terms;
+    private final String type;
+    private int index = 0;
+    private int offset = 0;
+    
+    public TestTokenStream(String type, String... terms) {
+        this.type = type;
+        this.terms = terms;
+    }
+    
+    @Override
+    public boolean incrementToken() {
+        if (index >= terms.length) {
+            return false;
+        }
+        clearAttributes();
+        String term = terms[index++];
+        termAtt.append(term);
+        typeAtt.setType(type);
+        posIncrAtt.setPositionIncrement(1);
+        offsetAtt.setOffset(offset, offset + term.length());
+        offset += term.length() + 1;
+        return true;
+    }
+    
+    @Override
+    public void reset() throws IOException {
+        super.reset();
+        index = 0;
+        offset = 0;
+    }
+    
+    /**
+     * @return each token of the stream as term/type/position increment/start offset
+     */
+    public static List<String> consume(TokenStream stream) throws IOException {
+        CharTermAttribute termAtt = stream.addAttribute(CharTermAttribute.class);
+        TypeAttribute typeAtt = stream.addAttribute(TypeAttribute.class);
+        OffsetAttribute offsetAtt = stream.addAttribute(OffsetAttribute.class);
+        PositionIncrementAttribute posIncrAtt = stream.addAttribute(PositionIncrementAttribute.class);
+        List<String> tokens = new ArrayList<>();
+        try {
+            stream.reset();
+            while (stream.incrementToken()) {
+                tokens.add(termAtt + "/" + typeAtt.type() + "/" + posIncrAtt.getPositionIncrement() + "/" + offsetAtt.startOffset());
+            }
+            stream.end();
+        } finally {
+            stream.close();
+        }
+        return tokens;
+    }
+}
@@ -0,0 +1,49 @@
+package datawave.ingest.data.tokenize;
+
+import static org.easymock.EasyMock.aryEq;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.eq;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TokenSearchSynonymFilterTest {
+    
+    @Test
+    public void testSynonymsFollowTheirTerm() throws Exception {
+        TokenSearch search = createMock(TokenSearch.class);
+        expect(search.getSynonyms(aryEq(new String[] {"John@Example.com", ""}), eq("<EMAIL>"), eq(false))).andReturn(
+                        Arrays.asList("john@example.com", "john", "example.com"));
+        expect(search.getSynonyms(aryEq(new String[] {"plain", ""}), eq("<EMAIL>"), eq(false))).andReturn(Collections.emptyList());
+        expect(search.getSynonyms(aryEq(new String[] {"jane@example.com", ""}), eq("<EMAIL>"), eq(false))).andReturn(Collections.singletonList("jane"));
+        replay(search);
+        
+        TokenSearchSynonymFilter filter = new TokenSearchSynonymFilter(new TestTokenStream("<EMAIL>", "John@Example.com", "plain", "jane@example.com"), search);
+        
+        // each synonym is at the position and offset of its term, and terms without synonyms pass through untouched
+        Assert.assertEquals(Arrays.asList("John@Example.com/<EMAIL>/1/0", "john@example.com/<EMAIL_SYNONYM>/0/0", "john/<EMAIL_SYNONYM>/0/0",
+                        "example.com/<EMAIL_SYNONYM>/0/0", "plain/<EMAIL>/1/17", "jane@example.com/<EMAIL>/1/23", "jane/<EMAIL_SYNONYM>/0/23"),
+                        TestTokenStream.consume(filter));
+        verify(search);
+    }
+    
+    @Test
+    public void testSynonymPositions() throws Exception {
+        TokenSearch search = createMock(TokenSearch.class);
+        expect(search.getSynonyms(aryEq(new String[] {"term", ""}), eq("TERM"), eq(false))).andReturn(Arrays.asList("syn1", "syn2"));
+        replay(search);
+        
+        TokenSearchSynonymFilter filter = new TokenSearchSynonymFilter(new TestTokenStream("TERM", "term"), search);
+        filter.setSynonymPositionsEnabled(true);
+        
+        // the first synonym co-occurs with the term and the others follow it, with the type of a type not in angle brackets
+        Assert.assertEquals(Arrays.asList("term/TERM/1/0", "syn1/TERM_SYNONYM/0/0", "syn2/TERM_SYNONYM/1/0"), TestTokenStream.consume(filter));
+        verify(search);
+    }
+}
@@ -0,0 +1,155 @@
+package datawave.ingest.data.tokenize;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Random;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A micro benchmark of the tokenizer chain used by the content indexing handlers. Representative content (prose mixed with accented words, email addresses,
+ * hosts, IP addresses, URLs, file paths and timestamps) is run through each analyzer configuration after a warm up, reporting the tokens per second and the
+ * bytes allocated per token, so that changes to the tokenizer chain can be measured.
+ *
+ * <pre>
+ *    TokenizerBenchmark [contentChars [warmupIterations [iterations]]]
+ * </pre>
+ */
+public class TokenizerBenchmark {
+    
+    private static final Logger logger = LoggerFactory.getLogger(TokenizerBenchmark.class);
+    
+    private static final String[] WORDS = {"the", "quick", "brown", "fox", "jumped", "over", "lazy", "dog", "report", "meeting", "Tuesday", "shipment",
+            "arrived", "Company", "O'Brien", "U.S.A.", "request_id",
+            "na\u00efve", "caf\u00e9", "r\u00e9sum\u00e9", "Z\u00fcrich", "S\u00e3o", "Paulo", "\u00c6r\u00f8", "Stra\u00dfe", "1234", "3.14159"};
+    private static final String[] TERMS = {"john.smith@example.com", "mail.example.org", "192.168.10.42", "http://www.example.com/path/to/page.html?q=1",
+            "/var/log/messages.1", "C:\\Users\\jsmith\\report.docx", "2018-06-01T12:34:56Z", "GET /index.html HTTP/1.1"};
+    
+    // consumes results so that the measured work cannot be optimized away
+    static long sink = 0;
+    
+    private final String content;
+    private final int warmupIterations;
+    private final int iterations;
+    
+    public static void main(String[] args) throws IOException {
+        int contentChars = (args.length > 0 ? Integer.parseInt(args[0]) : 1024 * 1024);
+        int warmupIterations = (args.length > 1 ? Integer.parseInt(args[1]) : 10);
+        int iterations = (args.length > 2 ? Integer.parseInt(args[2]) : 20);
+        new TokenizerBenchmark(generateContent(contentChars, 42), warmupIterations, iterations).run();
+    }
+    
+    TokenizerBenchmark(String content, int warmupIterations, int iterations) {
+        this.content = content;
+        this.warmupIterations = warmupIterations;
+        this.iterations = iterations;
+    }
+    
+    /**
+     * @return content of roughly the given size, the same for the same seed
+     */
+    static String generateContent(int chars, long seed) {
+        Random random = new Random(seed);
+        StringBuilder content = new StringBuilder(chars + 64);
+        while (content.length() < chars) {
+            if (random.nextInt(10) == 0) {
+                content.append(TERMS[random.nextInt(TERMS.length)]);
+            } else {
+                content.append(WORDS[random.nextInt(WORDS.length)]);
+            }
+            content.append(random.nextInt(12) == 0 ? ".\n" : " ");
+        }
+        return content.toString();
+    }
+    
+    void run() throws IOException {
+        TokenSearch searchUtil = TokenSearch.Factory.newInstance(DefaultTokenSearch.class.getCanonicalName(), DefaultTokenSearch.getStopWords(), false);
+        
+        StandardAnalyzer plain = new StandardAnalyzer(searchUtil.getInstanceStopwords());
+        StandardAnalyzer synonyms = new StandardAnalyzer(searchUtil);
+        StandardAnalyzer accents = new StandardAnalyzer(searchUtil);
+        accents.applyAccentFilter = true;
+        
+        logger.info("Tokenizing " + content.length() + " chars, " + warmupIterations + " warm up and " + iterations + " measured iterations");
+        measure("tokenizer", plain);
+        measure("tokenizer+synonyms", synonyms);
+        measure("tokenizer+synonyms+accents", accents);
+        measureStrip();
+    }
+    
+    private void measure(String name, Analyzer analyzer) throws IOException {
+        for (int i = 0; i < warmupIterations; i++) {
+            tokenize(analyzer);
+        }
+        
+        long tokens = 0;
+        long allocated = allocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            tokens += tokenize(analyzer);
+        }
+        report(name, tokens, System.nanoTime() - start, allocatedBytes() - allocated);
+    }
+    
+    private long tokenize(Analyzer analyzer) throws IOException {
+        long tokens = 0;
+        try (TokenStream stream = analyzer.tokenStream("CONTENT", new StringReader(content))) {
+            CharTermAttribute termAtt = stream.addAttribute(CharTermAttribute.class);
+            stream.reset();
+            while (stream.incrementToken()) {
+                sink += termAtt.length();
+                tokens++;
+            }
+            stream.end();
+        }
+        return tokens;
+    }
+    
+    /**
+     * Measure the accent stripping applied to every term by the token search
+     */
+    private void measureStrip() {
+        String[] words = content.split("\\s+");
+        for (int i = 0; i < warmupIterations; i++) {
+            strip(words);
+        }
+        
+        long tokens = 0;
+        long allocated = allocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            tokens += strip(words);
+        }
+        report("AccentFilter.strip", tokens, System.nanoTime() - start, allocatedBytes() - allocated);
+    }
+    
+    private static long strip(String[] words) {
+        for (String word : words) {
+            sink += AccentFilter.strip(word).length();
+        }
+        return words.length;
+    }
+    
+    private static void report(String name, long tokens, long nanos, long allocated) {
+        boolean tracked = (allocatedBytes() >= 0);
+        logger.info(String.format("%-28s %,12d tokens/sec %8.1f ns/token %8.1f bytes/token", name, (long) (tokens * 1e9 / nanos), (double) nanos / tokens,
+                        tracked ? (double) allocated / tokens : Double.NaN));
+    }
+    
+    /**
+     * @return the bytes allocated by this thread so far, or -1 if the JVM does not track them
+     */
+    private static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+}
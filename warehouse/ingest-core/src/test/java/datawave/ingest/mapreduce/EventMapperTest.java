@@ -14,8 +14,10 @@ import datawave.ingest.mapreduce.job.metrics.TestEventCountMetricsReceiver;
 import datawave.ingest.mapreduce.job.writer.ContextWriter;
 import org.apache.accumulo.core.data.Value;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
 import org.easymock.EasyMockRule;
 import org.easymock.Mock;
 import org.junit.After;
@@ -27,6 +29,9 @@ import static org.easymock.EasyMock.*;
 import static org.junit.Assert.*;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 
 public class EventMapperTest {
@@ -122,6 +127,29 @@ public class EventMapperTest {
         assertEquals(5, written.size());
     }
     
+    @Test
+    public void shouldStartEachSplitOfALongRunningMapper() throws IOException, InterruptedException {
+        eventMapper.setup(mapContext);
+        eventMapper.startSplit(new FileSplit(new Path("/some/file1"), 0, 10, null), mapContext);
+        eventMapper.map(new LongWritable(1), record, mapContext);
+        eventMapper.startSplit(new FileSplit(new Path("/some/file2"), 0, 10, null), mapContext);
+        eventMapper.map(new LongWritable(1), record, mapContext);
+        eventMapper.cleanup(mapContext);
+        
+        // the records of each split are numbered from the start of that split
+        List<String> origFiles = new ArrayList<>();
+        for (BulkIngestKey key : TestContextWriter.getWritten().keySet()) {
+            if (key.getKey().getColumnFamily().toString().equals(EventMapper.SEQUENCE_FILE_FIELDNAME)) {
+                origFiles.add(key.getKey().getColumnQualifier().toString());
+            }
+        }
+        Collections.sort(origFiles);
+        assertEquals(2, origFiles.size());
+        assertTrue(origFiles.get(0).startsWith("file1|"));
+        assertTrue(origFiles.get(1).startsWith("file2|"));
+        assertEquals(origFiles.get(0).substring("file1".length()), origFiles.get(1).substring("file2".length()));
+    }
+    
     @Test
     public void shouldNotWriteMetricsByDefault() throws IOException, InterruptedException {
         eventMapper.setup(mapContext);
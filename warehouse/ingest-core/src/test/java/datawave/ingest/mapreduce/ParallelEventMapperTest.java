@@ -0,0 +1,198 @@
+package datawave.ingest.mapreduce;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Multimap;
+import datawave.ingest.data.RawRecordContainer;
+import datawave.ingest.data.Type;
+import datawave.ingest.data.TypeRegistry;
+import datawave.ingest.data.config.BaseNormalizedContent;
+import datawave.ingest.data.config.NormalizedContentInterface;
+import datawave.ingest.mapreduce.job.BulkIngestKey;
+import datawave.ingest.mapreduce.job.writer.AbstractContextWriter;
+import datawave.ingest.mapreduce.job.writer.BulkContextWriter;
+import datawave.ingest.mapreduce.job.writer.ContextWriter;
+import datawave.ingest.mapreduce.job.writer.TableCachingContextWriter;
+import org.apache.accumulo.core.data.Value;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+import org.apache.hadoop.mapreduce.lib.map.WrappedMapper;
+import org.apache.hadoop.mapreduce.task.MapContextImpl;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+
+public class ParallelEventMapperTest {
+    
+    private static final int NUM_RECORDS = 200;
+    
+    private Configuration conf;
+    private List<SimpleRawRecord> records;
+    private List<BulkIngestKey> written;
+    private StandaloneStatusReporter reporter;
+    
+    @Before
+    public void setUp() throws Exception {
+        long eventTime = System.currentTimeMillis();
+        
+        conf = new Configuration();
+        
+        Type type = new Type("file", null, null, new String[] {SimpleDataTypeHandler.class.getName()}, 10, null);
+        TypeRegistry registry = TypeRegistry.getInstance(conf);
+        registry.put(type.typeName(), type);
+        
+        Multimap<String,NormalizedContentInterface> fields = HashMultimap.create();
+        fields.put("fileExtension", new BaseNormalizedContent("fileExtension", "gz"));
+        SimpleDataTypeHelper.registerFields(fields);
+        
+        records = new ArrayList<>();
+        for (int i = 0; i < NUM_RECORDS; i++) {
+            SimpleRawRecord record = new SimpleRawRecord();
+            record.setRawFileTimestamp(eventTime);
+            record.setDataType(type);
+            record.setDate(eventTime);
+            record.setRawData(("some data " + i).getBytes());
+            record.generateId(null);
+            records.add(record);
+        }
+        
+        written = new ArrayList<>();
+        reporter = new StandaloneStatusReporter();
+    }
+    
+    @Test
+    public void shouldEmitInReadOrder() throws Exception {
+        conf.setInt(ParallelEventMapper.NUM_THREADS, 4);
+        run();
+        
+        // one fileExtension mutation + LOAD_DATE + ORIG_FILE per record
+        assertEquals(NUM_RECORDS * 3, written.size());
+        assertOrigFileOffsetsInOrder();
+        assertEquals(NUM_RECORDS, reporter.getCounter("EVENTS_PROCESSED", "FILE").getValue());
+        assertEquals(1, reporter.getCounter("FILE_NAME", "/some/seqfile").getValue());
+    }
+    
+    @Test
+    public void shouldEmitCachedEntriesInReadOrder() throws Exception {
+        conf.setInt(ParallelEventMapper.NUM_THREADS, 4);
+        // the writer caches far more than all of the records, so only the commit at the end of each record flushes it
+        conf.setClass(EventMapper.CONTEXT_WRITER_CLASS, BulkContextWriter.class, ContextWriter.class);
+        conf.setInt(AbstractContextWriter.CONTEXT_WRITER_MAX_CACHE_SIZE, NUM_RECORDS * 10);
+        run();
+        
+        assertEquals(NUM_RECORDS * 3, written.size());
+        assertOrigFileOffsetsInOrder();
+    }
+    
+    @Test
+    public void shouldEmitEntriesCombinedAcrossRecordsAfterTheRecords() throws Exception {
+        conf.setInt(ParallelEventMapper.NUM_THREADS, 4);
+        conf.setClass(EventMapper.CONTEXT_WRITER_CLASS, TableCachingContextWriter.class, ContextWriter.class);
+        conf.setInt(SimpleDataTypeHandler.TABLE + TableCachingContextWriter.TABLES_TO_CACHE_SUFFIX, NUM_RECORDS * 10);
+        run();
+        
+        // every entry is still written once, but by each worker when it is cleaned up rather than in read order
+        assertEquals(NUM_RECORDS * 3, written.size());
+        Set<Long> offsets = new HashSet<>();
+        for (BulkIngestKey key : written) {
+            if (key.getKey().getColumnFamily().toString().equals(EventMapper.SEQUENCE_FILE_FIELDNAME)) {
+                offsets.add(Long.parseLong(key.getKey().getColumnQualifier().toString().split("\\|")[1]));
+            }
+        }
+        assertEquals(NUM_RECORDS, offsets.size());
+        assertEquals(NUM_RECORDS, reporter.getCounter("EVENTS_PROCESSED", "FILE").getValue());
+    }
+    
+    @Test
+    public void shouldRunSingleThreaded() throws Exception {
+        run();
+        
+        assertEquals(NUM_RECORDS * 3, written.size());
+        assertOrigFileOffsetsInOrder();
+        assertEquals(NUM_RECORDS, reporter.getCounter("EVENTS_PROCESSED", "FILE").getValue());
+    }
+    
+    private void assertOrigFileOffsetsInOrder() {
+        long expected = 1;
+        for (BulkIngestKey key : written) {
+            if (key.getKey().getColumnFamily().toString().equals(EventMapper.SEQUENCE_FILE_FIELDNAME)) {
+                // seqfile|offset|splitStart
+                String[] parts = key.getKey().getColumnQualifier().toString().split("\\|");
+                assertEquals(expected++, Long.parseLong(parts[1]));
+            }
+        }
+        assertEquals(NUM_RECORDS + 1, expected);
+    }
+    
+    private void run() throws Exception {
+        RecordWriter<BulkIngestKey,Value> writer = new RecordWriter<BulkIngestKey,Value>() {
+            @Override
+            public void write(BulkIngestKey key, Value value) {
+                written.add(key);
+            }
+            
+            @Override
+            public void close(TaskAttemptContext context) {}
+        };
+        InputSplit split = new FileSplit(new Path("/some/seqfile"), 0, 100, null);
+        MapContextImpl<LongWritable,RawRecordContainer,BulkIngestKey,Value> mapContext = new MapContextImpl<>(conf, new TaskAttemptID(), new ListRecordReader(
+                        records), writer, null, reporter, split);
+        Mapper<LongWritable,RawRecordContainer,BulkIngestKey,Value>.Context context = new WrappedMapper<LongWritable,RawRecordContainer,BulkIngestKey,Value>()
+                        .getMapContext(mapContext);
+        
+        new ParallelEventMapper<LongWritable,RawRecordContainer,BulkIngestKey,Value>().run(context);
+    }
+    
+    /**
+     * Hands out the records while reusing a single key, as most record readers do
+     */
+    private static class ListRecordReader extends RecordReader<LongWritable,RawRecordContainer> {
+        private final List<SimpleRawRecord> records;
+        private final LongWritable key = new LongWritable();
+        private int index = -1;
+        
+        ListRecordReader(List<SimpleRawRecord> records) {
+            this.records = records;
+        }
+        
+        @Override
+        public void initialize(InputSplit split, TaskAttemptContext context) {}
+        
+        @Override
+        public boolean nextKeyValue() {
+            key.set(++index);
+            return index < records.size();
+        }
+        
+        @Override
+        public LongWritable getCurrentKey() {
+            return key;
+        }
+        
+        @Override
+        public RawRecordContainer getCurrentValue() {
+            return records.get(index);
+        }
+        
+        @Override
+        public float getProgress() {
+            return (float) index / records.size();
+        }
+        
+        @Override
+        public void close() {}
+    }
+}
@@ -9,8 +9,12 @@ import datawave.ingest.data.TypeRegistry;
 import org.apache.accumulo.core.security.ColumnVisibility;
 import org.apache.hadoop.io.Writable;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.DataInput;
+import java.io.DataInputStream;
 import java.io.DataOutput;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -232,7 +236,19 @@ public class SimpleRawRecord implements RawRecordContainer, Writable {
     
     @Override
     public RawRecordContainer copy() {
-        throw new UnsupportedOperationException("Copy not yet implemented on " + this.getClass());
+        SimpleRawRecord copy = new SimpleRawRecord();
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            write(new DataOutputStream(bytes));
+            copy.readFields(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to copy " + this, e);
+        }
+        copy.auxData = auxData;
+        copy.auxMap = (auxMap == null ? null : new HashMap<>(auxMap));
+        copy.visibility = visibility;
+        copy.fatalError = fatalError;
+        return copy;
     }
     
     @Override
@@ -0,0 +1,107 @@
+package datawave.ingest.mapreduce.handler.edge.evaluation;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Multimap;
+import datawave.ingest.data.config.NormalizedContentInterface;
+import datawave.ingest.data.config.NormalizedFieldAndValue;
+import datawave.ingest.mapreduce.handler.edge.define.EdgeDefinition;
+import org.apache.commons.jexl2.Script;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class CompiledEdgePreconditionTest {
+    
+    private static final String[] PRECONDITIONS = {"COLOR == 'red'", "COLOR != 'red'", "COLOR == 'red' && SHAPE == 'round'",
+            "(COLOR == 'red' && SHAPE == 'round') || SIZE == 'big'", "!(COLOR == 'blue') && (SHAPE == 'square' || SHAPE == 'round')", "true && COLOR == 'red'",
+            "$1FIELD == 'one'"};
+    
+    private List<EdgeDefinition> edges;
+    private EdgePreconditionJexlContext context;
+    private EdgePreconditionCacheHelper helper;
+    
+    @Before
+    public void setup() {
+        edges = new ArrayList<>();
+        for (String precondition : PRECONDITIONS) {
+            EdgeDefinition edge = new EdgeDefinition();
+            edge.setJexlPrecondition(precondition);
+            edges.add(edge);
+        }
+        context = new EdgePreconditionJexlContext(edges);
+        helper = new EdgePreconditionCacheHelper();
+    }
+    
+    private static Multimap<String,NormalizedContentInterface> event(String... fields) {
+        Multimap<String,NormalizedContentInterface> event = HashMultimap.create();
+        for (int i = 0; i < fields.length; i += 2) {
+            event.put(fields[i], new NormalizedFieldAndValue(fields[i], fields[i + 1]));
+        }
+        return event;
+    }
+    
+    @Test
+    public void testSameResultAsJexl() {
+        CompiledEdgePrecondition.Compiler compiler = new CompiledEdgePrecondition.Compiler();
+        EdgePreconditionJexlEvaluation evaluation = new EdgePreconditionJexlEvaluation(context);
+        
+        List<Multimap<String,NormalizedContentInterface>> events = Arrays.asList(event(), event("COLOR", "red"), event("COLOR", "blue", "COLOR", "red"),
+                        event("COLOR", "red", "SHAPE", "round"), event("COLOR", "green", "SHAPE", "square", "SIZE", "big"), event("1FIELD", "one"),
+                        event("COLOR", "blue", "SHAPE", "round"));
+        for (String precondition : PRECONDITIONS) {
+            CompiledEdgePrecondition compiled = compiler.compile(precondition);
+            Assert.assertNotNull(precondition, compiled);
+            Script script = helper.createScriptFromString(precondition);
+            for (Multimap<String,NormalizedContentInterface> event : events) {
+                context.setFilteredContextForNormalizedContentInterface(event);
+                Assert.assertEquals(precondition + " " + event, evaluation.apply(script), compiled.apply(context));
+            }
+        }
+    }
+    
+    @Test
+    public void testSharedTerms() {
+        CompiledEdgePrecondition.Compiler compiler = new CompiledEdgePrecondition.Compiler();
+        CompiledEdgePrecondition first = compiler.compile("COLOR == 'red' && SHAPE == 'round'");
+        CompiledEdgePrecondition second = compiler.compile("(COLOR == 'red' && SHAPE == 'round') || SIZE == 'big'");
+        Assert.assertNotNull(first);
+        Assert.assertNotNull(second);
+        // COLOR, SHAPE, their and, SIZE and the or
+        Assert.assertEquals(5, compiler.getTermCount());
+        
+        // the results are kept per event
+        context.setFilteredContextForNormalizedContentInterface(event("COLOR", "red", "SHAPE", "round"));
+        Assert.assertTrue(first.apply(context));
+        Assert.assertTrue(second.apply(context));
+        context.setFilteredContextForNormalizedContentInterface(event("COLOR", "red"));
+        Assert.assertFalse(second.apply(context));
+        Assert.assertFalse(first.apply(context));
+    }
+    
+    @Test
+    public void testNotCompiled() {
+        CompiledEdgePrecondition.Compiler compiler = new CompiledEdgePrecondition.Compiler();
+        Assert.assertNull(compiler.compile("'red' == COLOR"));
+        Assert.assertNull(compiler.compile("COLOR == '12'"));
+        Assert.assertNull(compiler.compile("COLOR =~ 'r.*'"));
+        Assert.assertNull(compiler.compile("COLOR.size() > 1"));
+        Assert.assertNull(compiler.compile("COLOR == "));
+    }
+    
+    @Test
+    public void testEvaluationFallsBackToJexl() {
+        EdgePreconditionJexlEvaluation evaluation = new EdgePreconditionJexlEvaluation(context);
+        String precondition = "COLOR == 'red' || SHAPE =~ 'ro.*'";
+        
+        context.setFilteredContextForNormalizedContentInterface(event("COLOR", "red"));
+        Assert.assertTrue(evaluation.apply(precondition, helper.createScriptFromString(precondition)));
+        // a precondition is only evaluated once per event
+        Assert.assertTrue(evaluation.apply(precondition, null));
+        context.setFilteredContextForNormalizedContentInterface(event("COLOR", "blue"));
+        Assert.assertFalse(evaluation.apply(precondition, helper.createScriptFromString(precondition)));
+    }
+}
@@ -13,6 +13,7 @@ import datawave.ingest.data.config.NormalizedContentInterface;
 import datawave.ingest.data.config.NormalizedFieldAndValue;
 import datawave.ingest.data.config.ingest.BaseIngestHelper;
 import datawave.ingest.data.config.ingest.ContentBaseIngestHelper;
+import datawave.ingest.data.tokenize.TokenizationHelper;
 import datawave.ingest.input.reader.EventRecordReader;
 import datawave.ingest.mapreduce.job.BulkIngestKey;
 import datawave.policy.IngestPolicyEnforcer;
@@ -39,6 +40,7 @@ import java.io.IOException;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Map;
+import java.util.Random;
 
 public class ContentIndexingColumnBasedHandlerTest {
     
@@ -325,6 +327,55 @@ public class ContentIndexingColumnBasedHandlerTest {
                         listExpectedAlphanumTfValues, false);
     }
     
+    @Test
+    public void testChunkedTokenizationMatchesSerial() throws Exception {
+        TypeRegistry.reset();
+        TypeRegistry.getInstance(ctx.getConfiguration());
+        
+        setupMocks();
+        
+        StringBuilder content = new StringBuilder();
+        Random random = new Random(7);
+        String[] words = {"the", "quick", "brown", "fox", "and", "a", "lazy", "dog", "12.34", "user@example.com", "it's", "C3PO", "of", "x"};
+        for (int i = 0; i < 2000; i++) {
+            content.append(words[random.nextInt(words.length)]);
+            content.append(random.nextInt(10) == 0 ? ".\n" : " ");
+        }
+        
+        TestContentIndexingColumnBasedHandler serial = new TestContentIndexingColumnBasedHandler();
+        serial.setup(ctx);
+        helper.setup(ctx.getConfiguration());
+        Multimap<BulkIngestKey,Value> serialTf = tokenize(serial, content.toString());
+        
+        ctx.getConfiguration().setInt(TEST_TYPE + TokenizationHelper.TOKENIZER_THREADS, 4);
+        ctx.getConfiguration().setInt(TEST_TYPE + TokenizationHelper.TOKENIZER_CHUNK_SIZE, 500);
+        ctx.getConfiguration().setInt(TEST_TYPE + TokenizationHelper.TOKENIZER_CHUNK_OVERLAP, 50);
+        TestContentIndexingColumnBasedHandler chunked = new TestContentIndexingColumnBasedHandler();
+        chunked.setup(ctx);
+        try {
+            Multimap<BulkIngestKey,Value> chunkedTf = tokenize(chunked, content.toString());
+            
+            Assert.assertFalse(serialTf.isEmpty());
+            Assert.assertEquals(serialTf, chunkedTf);
+            Assert.assertTrue(equalNciMaps(serial.getIndex(), chunked.getIndex()) && equalNciMaps(chunked.getIndex(), serial.getIndex()));
+            Assert.assertTrue(equalNciMaps(serial.getReverse(), chunked.getReverse()) && equalNciMaps(chunked.getReverse(), serial.getReverse()));
+        } finally {
+            chunked.close(ctx);
+        }
+    }
+    
+    private Multimap<BulkIngestKey,Value> tokenize(TestContentIndexingColumnBasedHandler handler, String content) throws Exception {
+        NormalizedContentInterface field = new NormalizedFieldAndValue(ALPHANUM_LIST, content);
+        handler.tokenizeField(handler.tokenHelper.getAnalyzer(), field, true, true, null);
+        
+        handler.shardId = SHARD_ID.getBytes();
+        handler.eventDataTypeName = TEST_TYPE;
+        handler.eventUid = TEST_UUID;
+        Multimap<BulkIngestKey,Value> tfEntries = HashMultimap.create();
+        handler.flushTokenOffsetCache(event, tfEntries);
+        return tfEntries;
+    }
+    
     private boolean equalNciMaps(Multimap<String,NormalizedContentInterface> first, Multimap<String,NormalizedContentInterface> second) {
         Multimap<String,NormalizedContentInterface> firstToSecondDiff = Multimaps.filterEntries(first, e -> !second.containsEntry(e.getKey(), e.getValue()));
         Multimap<String,NormalizedContentInterface> secondToFirstDiff = Multimaps.filterEntries(first, e -> !second.containsEntry(e.getKey(), e.getValue()));
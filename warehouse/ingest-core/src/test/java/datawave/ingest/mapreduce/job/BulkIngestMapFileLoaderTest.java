@@ -12,6 +12,8 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -2696,4 +2698,65 @@ public class BulkIngestMapFileLoaderTest {
         }
         
     }
+    
+    @Test
+    public void testImportPermitsStartHighestPriorityFirst() throws Exception {
+        BulkIngestMapFileLoader.ImportPermits permits = new BulkIngestMapFileLoader.ImportPermits(1, 1);
+        List<String> started = Collections.synchronizedList(new ArrayList<>());
+        
+        permits.acquire("shard", 1);
+        Thread low = startImport(permits, "shardIndex", 10, started);
+        waitForWaiting(permits, 1);
+        Thread high = startImport(permits, "shardReverseIndex", 2, started);
+        waitForWaiting(permits, 2);
+        Assert.assertTrue(started.isEmpty());
+        
+        permits.release("shard");
+        low.join(10000);
+        high.join(10000);
+        Assert.assertEquals(Arrays.asList("shardReverseIndex", "shardIndex"), started);
+    }
+    
+    @Test
+    public void testImportPermitsLimitEachTable() throws Exception {
+        BulkIngestMapFileLoader.ImportPermits permits = new BulkIngestMapFileLoader.ImportPermits(0, 1);
+        List<String> started = Collections.synchronizedList(new ArrayList<>());
+        
+        permits.acquire("shard", 1);
+        Thread blocked = startImport(permits, "shard", 1, started);
+        waitForWaiting(permits, 1);
+        
+        // a waiting import into one table does not hold back the imports into other tables
+        Thread other = startImport(permits, "shardIndex", 2, started);
+        other.join(10000);
+        Assert.assertEquals(Collections.singletonList("shardIndex"), started);
+        Assert.assertEquals(1, permits.getRunning("shard"));
+        
+        permits.release("shard");
+        blocked.join(10000);
+        Assert.assertEquals(Arrays.asList("shardIndex", "shard"), started);
+        Assert.assertEquals(0, permits.getRunning("shard"));
+    }
+    
+    private Thread startImport(BulkIngestMapFileLoader.ImportPermits permits, String tableName, int priority, List<String> started) {
+        Thread thread = new Thread(() -> {
+            try {
+                permits.acquire(tableName, priority);
+                started.add(tableName);
+                permits.release(tableName);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        thread.start();
+        return thread;
+    }
+    
+    private void waitForWaiting(BulkIngestMapFileLoader.ImportPermits permits, int waiting) throws InterruptedException {
+        long end = System.currentTimeMillis() + 10000;
+        while (permits.getWaiting() < waiting && System.currentTimeMillis() < end) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(waiting, permits.getWaiting());
+    }
 }
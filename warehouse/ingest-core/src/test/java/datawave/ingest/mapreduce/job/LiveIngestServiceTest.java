@@ -0,0 +1,196 @@
+package datawave.ingest.mapreduce.job;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Multimap;
+import datawave.accumulo.inmemory.InMemoryInstance;
+import datawave.ingest.data.RawRecordContainer;
+import datawave.ingest.data.Type;
+import datawave.ingest.data.TypeRegistry;
+import datawave.ingest.data.config.BaseNormalizedContent;
+import datawave.ingest.data.config.NormalizedContentInterface;
+import datawave.ingest.mapreduce.EventMapper;
+import datawave.ingest.mapreduce.SimpleDataTypeHandler;
+import datawave.ingest.mapreduce.SimpleDataTypeHelper;
+import datawave.ingest.mapreduce.SimpleRawRecord;
+import datawave.ingest.mapreduce.job.reduce.BulkIngestKeyDedupeCombiner;
+import datawave.ingest.mapreduce.job.writer.ContextWriter;
+import datawave.ingest.mapreduce.job.writer.TableCachingContextWriter;
+import datawave.ingest.test.StandaloneStatusReporter;
+import org.apache.accumulo.core.client.Connector;
+import org.apache.accumulo.core.client.Scanner;
+import org.apache.accumulo.core.client.security.tokens.PasswordToken;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Mutation;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.security.Authorizations;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.MapContext;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.TaskType;
+import org.apache.hadoop.mapreduce.lib.map.WrappedMapper;
+import org.apache.hadoop.mapreduce.task.MapContextImpl;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+public class LiveIngestServiceTest {
+    
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+    
+    @Test
+    public void testWritesEachTable() throws Exception {
+        Connector connector = new InMemoryInstance("LiveIngestServiceTest").getConnector("root", new PasswordToken());
+        connector.tableOperations().create("shard");
+        connector.tableOperations().create("shardIndex");
+        
+        Text table = new Text();
+        try (BatchWriterRecordWriter writer = new BatchWriterRecordWriter(connector, new Configuration())) {
+            for (int i = 0; i < 10; i++) {
+                // the table name is reused, as it is by the LiveContextWriter
+                table.set(i % 2 == 0 ? "shard" : "shardIndex");
+                Mutation m = new Mutation("row" + i);
+                m.put("cf", "cq", new Value(Integer.toString(i).getBytes()));
+                writer.write(table, m);
+            }
+            writer.flush();
+            
+            Assert.assertEquals(5, count(connector, "shard"));
+            Assert.assertEquals(5, count(connector, "shardIndex"));
+        }
+    }
+    
+    @Test(expected = IOException.class)
+    public void testMissingTable() throws Exception {
+        Connector connector = new InMemoryInstance("LiveIngestServiceTest").getConnector("root", new PasswordToken());
+        try (BatchWriterRecordWriter writer = new BatchWriterRecordWriter(connector, new Configuration())) {
+            Mutation m = new Mutation("row");
+            m.put("cf", "cq", new Value());
+            writer.write(new Text("missing"), m);
+        }
+    }
+    
+    @Test
+    public void testClaimsOldestCompleteFiles() throws Exception {
+        FileSystem fs = FileSystem.getLocal(new Configuration());
+        File spool = temporaryFolder.newFolder("spool");
+        File work = temporaryFolder.newFolder("work");
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < 5; i++) {
+            File file = new File(spool, "file" + i);
+            Assert.assertTrue(file.createNewFile());
+            Assert.assertTrue(file.setLastModified(now - i * 1000L));
+        }
+        // files still being written are ignored
+        Assert.assertTrue(new File(spool, "_inprogress").createNewFile());
+        Assert.assertTrue(new File(spool, ".inprogress").createNewFile());
+        
+        LiveIngestService service = new LiveIngestService();
+        Path spoolDir = fs.makeQualified(new Path(spool.getAbsolutePath()));
+        Path workDir = fs.makeQualified(new Path(work.getAbsolutePath()));
+        List<Path> claimed = service.claimFiles(fs, spoolDir, workDir, 3);
+        
+        List<String> names = new ArrayList<>();
+        for (Path path : claimed) {
+            Assert.assertEquals(workDir, path.getParent());
+            names.add(path.getName());
+        }
+        Assert.assertEquals(3, claimed.size());
+        Assert.assertTrue(names.contains("file4"));
+        Assert.assertTrue(names.contains("file3"));
+        Assert.assertTrue(names.contains("file2"));
+        Assert.assertEquals(claimed.size(), service.listFiles(fs, workDir, 10).size());
+        Assert.assertEquals(2, service.listFiles(fs, spoolDir, 10).size());
+    }
+    
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testDrainsCachingContextWritersBeforeDeletingFiles() throws Exception {
+        Connector connector = new InMemoryInstance("LiveIngestServiceTest").getConnector("root", new PasswordToken());
+        connector.tableOperations().create(SimpleDataTypeHandler.TABLE.toString());
+        
+        // the table is cached across events, and the cache is large enough that it would only be written on cleanup
+        TypeRegistry.reset();
+        Configuration conf = new Configuration();
+        conf.setClass(EventMapper.CONTEXT_WRITER_CLASS, TableCachingContextWriter.class, ContextWriter.class);
+        conf.set(SimpleDataTypeHandler.TABLE + TableCachingContextWriter.TABLES_TO_CACHE_SUFFIX, "1000000");
+        conf.setBoolean(BulkIngestKeyDedupeCombiner.USING_COMBINER, true);
+        conf.setClass(TableCachingContextWriter.MAPRED_OUTPUT_VALUE_CLASS, Mutation.class, Object.class);
+        Type type = new Type("file", null, null, new String[] {SimpleDataTypeHandler.class.getName()}, 10, null);
+        TypeRegistry.getInstance(conf).put(type.typeName(), type);
+        
+        Multimap<String,NormalizedContentInterface> fields = HashMultimap.create();
+        fields.put("fileExtension", new BaseNormalizedContent("fileExtension", "gz"));
+        SimpleDataTypeHelper.registerFields(fields);
+        
+        FileSystem fs = FileSystem.getLocal(conf);
+        File work = temporaryFolder.newFolder("work");
+        List<Path> batch = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            File file = new File(work, "file" + i);
+            Assert.assertTrue(file.createNewFile());
+            batch.add(fs.makeQualified(new Path(file.getAbsolutePath())));
+        }
+        
+        // every file holds a single event
+        LiveIngestService service = new LiveIngestService() {
+            @Override
+            protected void ingest(Job job, FileSystem fs, Path file, EventMapper mapper, Mapper.Context context) throws Exception {
+                SimpleRawRecord record = new SimpleRawRecord();
+                record.setRawFileTimestamp(System.currentTimeMillis());
+                record.setDataType(type);
+                record.setDate(System.currentTimeMillis());
+                record.setRawFileName(file.toString());
+                record.setRawData("some data".getBytes());
+                record.generateId(null);
+                mapper.map(new LongWritable(1), record, context);
+            }
+        };
+        
+        StandaloneStatusReporter reporter = new StandaloneStatusReporter();
+        try (BatchWriterRecordWriter writer = new BatchWriterRecordWriter(connector, conf)) {
+            TaskAttemptID attemptId = new TaskAttemptID("live", 0, TaskType.MAP, 0, 0);
+            MapContext<Object,Object,Text,Mutation> mapContext = new MapContextImpl<>(conf, attemptId, null, writer, null, reporter, null);
+            Mapper.Context context = new WrappedMapper<Object,Object,Text,Mutation>().getMapContext(mapContext);
+            EventMapper mapper = new EventMapper();
+            mapper.setup(context);
+            
+            Assert.assertEquals(2, service.ingestBatch(null, fs, batch, new Path(work.getAbsolutePath(), "failed"), mapper, context, writer));
+            
+            // the files are only deleted once the cached entries for them have been applied
+            for (Path file : batch) {
+                Assert.assertFalse(fs.exists(file));
+            }
+            List<String> columnFamilies = new ArrayList<>();
+            Scanner scanner = connector.createScanner(SimpleDataTypeHandler.TABLE.toString(), new Authorizations());
+            for (Map.Entry<Key,Value> entry : scanner) {
+                columnFamilies.add(entry.getKey().getColumnFamily().toString());
+            }
+            Assert.assertTrue(columnFamilies.contains("fileExtension"));
+            
+            mapper.cleanup(context);
+        }
+    }
+    
+    private int count(Connector connector, String table) throws Exception {
+        int count = 0;
+        Scanner scanner = connector.createScanner(table, new Authorizations());
+        for (Map.Entry<Key,Value> ignored : scanner) {
+            count++;
+        }
+        return count;
+    }
+}
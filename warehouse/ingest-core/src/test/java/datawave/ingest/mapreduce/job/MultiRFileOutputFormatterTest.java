@@ -404,6 +404,13 @@ public class MultiRFileOutputFormatterTest {
                 return locations;
             }
             
+            @Override
+            protected Map<String,Text[]> getTableSplits(TaskAttemptContext context) {
+                Map<String,Text[]> splits = new HashMap<>();
+                splits.put(TableName.SHARD_INDEX, new Text[] {new Text("f"), new Text("p")});
+                return splits;
+            }
+            
             @Override
             protected SizeTrackingWriter openWriter(String filename, AccumuloConfiguration tableConf) {
                 filenames.add(filename);
@@ -528,6 +535,30 @@ public class MultiRFileOutputFormatterTest {
         assertFileNameForShard(4, "server2", 2);
     }
     
+    @Test
+    public void testFilePerSplit() throws IOException, InterruptedException {
+        MultiRFileOutputFormatter.setGenerateMapFilePerSplit(conf, true);
+        RecordWriter<BulkIngestKey,Value> writer = createWriter(formatter, conf);
+        // the first tablet ends at f (inclusive), the second at p and the last is unbounded
+        for (String row : new String[] {"a", "f", "g", "m", "z"}) {
+            writer.write(new BulkIngestKey(new Text(TableName.SHARD_INDEX), new Key(row, "bla", "bla")), new Value(new byte[0]));
+        }
+        assertNumFileNames(3);
+        for (int i = 0; i < 3; i++) {
+            Assert.assertTrue(filenames.get(i).endsWith("/shardIndex/shardIndex-m-00001_" + (i + 1) + ".rf"));
+        }
+    }
+    
+    @Test
+    public void testFilePerSplitIgnoresShardedTables() throws IOException, InterruptedException {
+        MultiRFileOutputFormatter.setGenerateMapFilePerSplit(conf, true);
+        RecordWriter<BulkIngestKey,Value> writer = createWriter(formatter, conf);
+        writeShardPairs(writer, 2);
+        assertNumFileNames(2);
+        assertFileNameForShardIndex(0);
+        expectShardFiles(1);
+    }
+    
     private void writeShardPairs(RecordWriter<BulkIngestKey,Value> writer, int numOfPairs) throws IOException, InterruptedException {
         for (int i = 0; i < numOfPairs; i++) {
             writeShardEntry(writer, 1);
@@ -0,0 +1,139 @@
+package datawave.ingest.mapreduce.job.writer;
+
+import datawave.edge.util.EdgeValue;
+import datawave.ingest.mapreduce.StandaloneStatusReporter;
+import datawave.ingest.mapreduce.handler.edge.ProtobufEdgeDataTypeHandler;
+import datawave.ingest.mapreduce.job.BulkIngestKey;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.TaskInputOutputContext;
+import org.apache.hadoop.mapreduce.task.MapContextImpl;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class EdgeCombiningContextWriterTest {
+    
+    private static final Text EDGE_TABLE = new Text("edge");
+    
+    private Configuration conf;
+    private List<BulkIngestKey> written;
+    private List<Value> values;
+    private TaskInputOutputContext<?,?,BulkIngestKey,Value> context;
+    
+    @Before
+    public void setup() {
+        conf = new Configuration();
+        conf.set(ProtobufEdgeDataTypeHandler.EDGE_TABLE_NAME, EDGE_TABLE.toString());
+        conf.setClass(EdgeCombiningContextWriter.CONTEXT_WRITER_CLASS, BulkContextWriter.class, ContextWriter.class);
+        
+        written = new ArrayList<>();
+        values = new ArrayList<>();
+        RecordWriter<BulkIngestKey,Value> writer = new RecordWriter<BulkIngestKey,Value>() {
+            @Override
+            public void write(BulkIngestKey key, Value value) {
+                written.add(key);
+                values.add(value);
+            }
+            
+            @Override
+            public void close(TaskAttemptContext context) {}
+        };
+        context = new MapContextImpl<>(conf, new TaskAttemptID(), null, writer, null, new StandaloneStatusReporter(), null);
+    }
+    
+    private static BulkIngestKey edge(String row, long timestamp) {
+        return new BulkIngestKey(EDGE_TABLE, new Key(new Text(row), new Text("TYPE/REL1-REL2"), new Text("20200101/CAT1-CAT2/ATTR2/ATTR3/A"), new Text(""),
+                        timestamp));
+    }
+    
+    private static Value value(long count) {
+        EdgeValue.EdgeValueBuilder builder = EdgeValue.newBuilder();
+        builder.setCount(count);
+        return builder.build().encode();
+    }
+    
+    private static long count(Value value) throws Exception {
+        return EdgeValue.decode(value).getCount();
+    }
+    
+    @Test
+    public void testCombinesAcrossCommits() throws Exception {
+        EdgeCombiningContextWriter<BulkIngestKey,Value> writer = new EdgeCombiningContextWriter<>();
+        writer.setup(conf, false);
+        
+        writer.write(edge("MARS\0VENUS", 1L), value(1), context);
+        writer.write(edge("MARS\0EARTH", 1L), value(2), context);
+        writer.commit(context);
+        writer.write(edge("MARS\0VENUS", 3L), value(4), context);
+        writer.commit(context);
+        // an event that fails is rolled back
+        writer.write(edge("MARS\0VENUS", 5L), value(8), context);
+        writer.rollback();
+        writer.write(edge("MARS\0VENUS", 2L), value(16), context);
+        writer.commit(context);
+        
+        Assert.assertTrue(written.isEmpty());
+        writer.cleanup(context);
+        
+        Assert.assertEquals(2, written.size());
+        Assert.assertEquals(2, count(values.get(written.indexOf(edge("MARS\0EARTH", 1L)))));
+        // the latest timestamp that was committed is kept
+        Assert.assertTrue(written.contains(edge("MARS\0VENUS", 3L)));
+        Assert.assertEquals(21, count(values.get(written.indexOf(edge("MARS\0VENUS", 3L)))));
+        
+        Assert.assertEquals(4, context.getCounter(EdgeCombiningContextWriter.EDGE_CACHE_COUNTER, "in").getValue());
+        Assert.assertEquals(2, context.getCounter(EdgeCombiningContextWriter.EDGE_CACHE_COUNTER, "out").getValue());
+    }
+    
+    @Test
+    public void testPassesThroughOtherEntries() throws Exception {
+        EdgeCombiningContextWriter<BulkIngestKey,Value> writer = new EdgeCombiningContextWriter<>();
+        writer.setup(conf, false);
+        
+        BulkIngestKey shard = new BulkIngestKey(new Text("shard"), new Key("row", "cf", "cq", 1L));
+        Key deleted = edge("MARS\0VENUS", 1L).getKey();
+        deleted.setDeleted(true);
+        BulkIngestKey delete = new BulkIngestKey(EDGE_TABLE, deleted);
+        writer.write(shard, new Value(), context);
+        writer.write(delete, value(1), context);
+        writer.commit(context);
+        
+        Assert.assertEquals(2, written.size());
+        Assert.assertTrue(written.contains(shard));
+        Assert.assertTrue(written.contains(delete));
+        writer.cleanup(context);
+        Assert.assertEquals(2, written.size());
+    }
+    
+    @Test
+    public void testEvictsLeastRecentlyUsed() throws Exception {
+        conf.setLong(EdgeCombiningContextWriter.CACHE_BYTES, 4096);
+        EdgeCombiningContextWriter<BulkIngestKey,Value> writer = new EdgeCombiningContextWriter<>();
+        writer.setup(conf, false);
+        
+        for (int i = 0; i < 100; i++) {
+            // the first edge is used by every event, so it stays cached
+            writer.write(edge("MARS\0VENUS", i), value(1), context);
+            writer.write(edge("MARS\0SINK" + i, i), value(1), context);
+            writer.commit(context);
+        }
+        Assert.assertFalse(written.isEmpty());
+        Assert.assertTrue(written.size() < 100);
+        Assert.assertFalse(written.contains(edge("MARS\0VENUS", 99L)));
+        Assert.assertEquals(written.size(), context.getCounter(EdgeCombiningContextWriter.EDGE_CACHE_COUNTER, "evicted").getValue());
+        
+        writer.cleanup(context);
+        Assert.assertEquals(101, written.size());
+        int venus = written.indexOf(edge("MARS\0VENUS", 99L));
+        Assert.assertEquals(100, count(values.get(venus)));
+    }
+}
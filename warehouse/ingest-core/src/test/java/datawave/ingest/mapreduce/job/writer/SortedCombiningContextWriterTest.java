@@ -0,0 +1,148 @@
+package datawave.ingest.mapreduce.job.writer;
+
+import datawave.ingest.mapreduce.StandaloneStatusReporter;
+import datawave.ingest.mapreduce.job.BulkIngestKey;
+import datawave.ingest.mapreduce.job.reduce.BulkIngestKeyDedupeCombiner;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.security.ColumnVisibility;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.TaskInputOutputContext;
+import org.apache.hadoop.mapreduce.task.MapContextImpl;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+public class SortedCombiningContextWriterTest {
+    
+    private Configuration conf;
+    private List<BulkIngestKey> written;
+    private TaskInputOutputContext<?,?,BulkIngestKey,Value> context;
+    
+    @Before
+    public void setup() {
+        conf = new Configuration();
+        conf.setBoolean(BulkIngestKeyDedupeCombiner.USING_COMBINER, true);
+        conf.setClass(SortedCombiningContextWriter.CONTEXT_WRITER_CLASS, BulkContextWriter.class, ContextWriter.class);
+        
+        written = new ArrayList<>();
+        RecordWriter<BulkIngestKey,Value> writer = new RecordWriter<BulkIngestKey,Value>() {
+            @Override
+            public void write(BulkIngestKey key, Value value) {
+                written.add(key);
+            }
+            
+            @Override
+            public void close(TaskAttemptContext context) {}
+        };
+        context = new MapContextImpl<>(conf, new TaskAttemptID(), null, writer, null, new StandaloneStatusReporter(), null);
+    }
+    
+    @Test
+    public void testBufferSortsLikeBulkIngestKey() {
+        SortedKeyValueBuffer buffer = new SortedKeyValueBuffer(256);
+        TreeSet<BulkIngestKey> expected = new TreeSet<>();
+        Random random = new Random(42);
+        String[] tables = {"shard", "shardIndex", "shardReverseIndex"};
+        String[] visibilities = {"", "A", "A&B"};
+        for (int i = 0; i < 500; i++) {
+            ColumnVisibility cv = new ColumnVisibility(visibilities[random.nextInt(3)]);
+            Key key = new Key("row" + random.nextInt(20), "cf" + random.nextInt(3), "cq" + random.nextInt(3), cv, random.nextInt(3) - 1);
+            key.setDeleted(random.nextBoolean());
+            BulkIngestKey bik = new BulkIngestKey(new Text(tables[random.nextInt(3)]), key);
+            buffer.add(bik, new Value(("value" + i).getBytes()));
+            expected.add(bik);
+        }
+        
+        buffer.sort();
+        TreeSet<BulkIngestKey> distinct = new TreeSet<>();
+        BulkIngestKey last = null;
+        for (int i = 0; i < buffer.size(); i++) {
+            BulkIngestKey key = buffer.getKey(i);
+            if (last != null) {
+                Assert.assertTrue(last + " should not sort after " + key, last.compareTo(key) <= 0);
+                Assert.assertEquals(last.equals(key), buffer.compare(i - 1, i) == 0);
+            }
+            distinct.add(key);
+            Assert.assertTrue(new String(buffer.getValue(i).get()).startsWith("value"));
+            last = key;
+        }
+        Assert.assertEquals(expected, distinct);
+    }
+    
+    @Test
+    public void testMarkAndReset() {
+        SortedKeyValueBuffer buffer = new SortedKeyValueBuffer(64);
+        buffer.add(new BulkIngestKey(new Text("table"), new Key("b")), new Value("1".getBytes()));
+        buffer.mark();
+        long bytes = buffer.getBytes();
+        for (int i = 0; i < 10; i++) {
+            buffer.add(new BulkIngestKey(new Text("table"), new Key("a" + i)), new Value("2".getBytes()));
+        }
+        buffer.reset();
+        Assert.assertEquals(1, buffer.size());
+        Assert.assertEquals(bytes, buffer.getBytes());
+        
+        buffer.add(new BulkIngestKey(new Text("table"), new Key("a")), new Value("3".getBytes()));
+        buffer.sort();
+        Assert.assertEquals(new Key("a"), buffer.getKey(0).getKey());
+        Assert.assertEquals("3", buffer.getValue(0).toString());
+        Assert.assertEquals(new Key("b"), buffer.getKey(1).getKey());
+        Assert.assertEquals("1", buffer.getValue(1).toString());
+    }
+    
+    @Test
+    public void testDedupesAcrossCommitsInSortedOrder() throws Exception {
+        SortedCombiningContextWriter<BulkIngestKey,Value> writer = new SortedCombiningContextWriter<>();
+        writer.setup(conf, false);
+        
+        BulkIngestKey a = new BulkIngestKey(new Text("table"), new Key("a", "cf", "cq", 1L));
+        BulkIngestKey b = new BulkIngestKey(new Text("table"), new Key("b", "cf", "cq", 1L));
+        BulkIngestKey c = new BulkIngestKey(new Text("table"), new Key("c", "cf", "cq", 1L));
+        
+        writer.write(b, new Value(), context);
+        writer.write(a, new Value(), context);
+        writer.commit(context);
+        writer.write(b, new Value(), context);
+        writer.commit(context);
+        // an event that fails is rolled back
+        writer.write(c, new Value(), context);
+        writer.rollback();
+        writer.write(a, new Value(), context);
+        writer.commit(context);
+        
+        Assert.assertTrue(written.isEmpty());
+        writer.cleanup(context);
+        
+        Assert.assertEquals(2, written.size());
+        Assert.assertEquals(a, written.get(0));
+        Assert.assertEquals(b, written.get(1));
+    }
+    
+    @Test
+    public void testFlushesOnByteBudget() throws Exception {
+        conf.setLong(SortedCombiningContextWriter.BUFFER_BYTES, 1024);
+        SortedCombiningContextWriter<BulkIngestKey,Value> writer = new SortedCombiningContextWriter<>();
+        writer.setup(conf, false);
+        
+        for (int i = 0; i < 100; i++) {
+            writer.write(new BulkIngestKey(new Text("table"), new Key("row" + i)), new Value(), context);
+            writer.commit(context);
+        }
+        Assert.assertFalse(written.isEmpty());
+        Assert.assertTrue(written.size() < 100);
+        
+        writer.cleanup(context);
+        Assert.assertEquals(100, written.size());
+        Assert.assertTrue(context.getCounter(SortedCombiningContextWriter.FLUSHED_BUFFER_COUNTER, "flushes").getValue() > 1);
+    }
+}
@@ -0,0 +1,130 @@
+package datawave.ingest.mapreduce.job.writer;
+
+import datawave.ingest.mapreduce.StandaloneStatusReporter;
+import datawave.ingest.mapreduce.job.BulkIngestKey;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.TaskInputOutputContext;
+import org.apache.hadoop.mapreduce.task.MapContextImpl;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+public class SortingContextWriterTest {
+    
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+    
+    private Configuration conf;
+    private File spillDir;
+    private List<BulkIngestKey> written;
+    private TaskInputOutputContext<?,?,BulkIngestKey,Value> context;
+    
+    @Before
+    public void setup() throws Exception {
+        spillDir = temporaryFolder.newFolder();
+        conf = new Configuration();
+        conf.set(SortingContextWriter.SPILL_DIR, spillDir.getAbsolutePath());
+        conf.setClass(SortingContextWriter.CONTEXT_WRITER_CLASS, BulkContextWriter.class, ContextWriter.class);
+        
+        written = new ArrayList<>();
+        RecordWriter<BulkIngestKey,Value> writer = new RecordWriter<BulkIngestKey,Value>() {
+            @Override
+            public void write(BulkIngestKey key, Value value) {
+                written.add(key);
+            }
+            
+            @Override
+            public void close(TaskAttemptContext context) {}
+        };
+        context = new MapContextImpl<>(conf, new TaskAttemptID(), null, writer, null, new StandaloneStatusReporter(), null);
+    }
+    
+    @Test
+    public void testSortsInMemory() throws Exception {
+        SortingContextWriter<BulkIngestKey,Value> writer = new SortingContextWriter<>();
+        writer.setup(conf, false);
+        
+        BulkIngestKey a = new BulkIngestKey(new Text("table"), new Key("a", "cf", "cq", 1L));
+        BulkIngestKey b = new BulkIngestKey(new Text("table"), new Key("b", "cf", "cq", 1L));
+        BulkIngestKey c = new BulkIngestKey(new Text("table"), new Key("c", "cf", "cq", 1L));
+        
+        writer.write(c, new Value(), context);
+        writer.write(a, new Value(), context);
+        writer.commit(context);
+        // an event that fails is rolled back
+        writer.write(b, new Value(), context);
+        writer.rollback();
+        writer.write(a, new Value(), context);
+        writer.commit(context);
+        
+        Assert.assertTrue(written.isEmpty());
+        writer.cleanup(context);
+        
+        Assert.assertEquals(2, written.size());
+        Assert.assertEquals(a, written.get(0));
+        Assert.assertEquals(c, written.get(1));
+        Assert.assertEquals(0, context.getCounter(SortingContextWriter.SPILL_COUNTER, "spills").getValue());
+    }
+    
+    @Test
+    public void testMergesSpills() throws Exception {
+        conf.setLong(SortingContextWriter.BUFFER_BYTES, 1024);
+        SortingContextWriter<BulkIngestKey,Value> writer = new SortingContextWriter<>();
+        writer.setup(conf, false);
+        
+        TreeSet<BulkIngestKey> expected = new TreeSet<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 500; i++) {
+            BulkIngestKey key = new BulkIngestKey(new Text("table"), new Key("row" + random.nextInt(200), "cf", "cq", 1L));
+            writer.write(key, new Value(("value" + i).getBytes()), context);
+            writer.commit(context);
+            expected.add(key);
+        }
+        Assert.assertTrue(written.isEmpty());
+        
+        writer.cleanup(context);
+        Assert.assertTrue(context.getCounter(SortingContextWriter.SPILL_COUNTER, "spills").getValue() > 1);
+        
+        // every key is written once, in sorted order, and the spill files are removed
+        Assert.assertEquals(new ArrayList<>(expected), written);
+        Assert.assertEquals(0, spillDir.list().length);
+    }
+    
+    @Test
+    public void testSpillsToTaskLocalDirs() throws Exception {
+        File localDir1 = temporaryFolder.newFolder();
+        File localDir2 = temporaryFolder.newFolder();
+        conf.unset(SortingContextWriter.SPILL_DIR);
+        conf.set(SortingContextWriter.LOCAL_DIRS, localDir1.getAbsolutePath() + ',' + localDir2.getAbsolutePath());
+        conf.setLong(SortingContextWriter.BUFFER_BYTES, 1024);
+        SortingContextWriter<BulkIngestKey,Value> writer = new SortingContextWriter<>();
+        writer.setup(conf, false);
+        
+        for (int i = 0; i < 100; i++) {
+            writer.write(new BulkIngestKey(new Text("table"), new Key("row" + i, "cf", "cq", 1L)), new Value(("value" + i).getBytes()), context);
+            writer.commit(context);
+        }
+        // the spills are spread over the local directories of the task rather than java.io.tmpdir
+        Assert.assertTrue(context.getCounter(SortingContextWriter.SPILL_COUNTER, "spills").getValue() > 1);
+        Assert.assertTrue(localDir1.list().length + localDir2.list().length > 0);
+        
+        writer.cleanup(context);
+        Assert.assertEquals(100, written.size());
+        Assert.assertEquals(0, localDir1.list().length + localDir2.list().length);
+        Assert.assertEquals(0, spillDir.list().length);
+    }
+}
@@ -20,6 +20,8 @@ import datawave.ingest.data.config.NormalizedContentInterface;
 import datawave.ingest.data.config.NormalizedFieldAndValue;
 import datawave.ingest.data.config.ingest.BaseIngestHelper;
 import datawave.ingest.mapreduce.job.BulkIngestKey;
+import datawave.iterators.FieldDaysCombiner;
+import datawave.util.time.DateHelper;
 import org.apache.accumulo.core.data.Key;
 import org.apache.accumulo.core.data.PartialKey;
 import org.apache.accumulo.core.data.Value;
@@ -193,6 +195,35 @@ public class EventMetadataTest {
         EasyMock.verify(event);
     }
     
+    @Test
+    public void testCreatesFieldDays() throws IOException {
+        setupMocks();
+        
+        helper.addIndexedField(FIELD_TO_COUNT);
+        EventMetadata eventMetadata = new EventMetadata(null, METADATA_TABLE_NAME, LOADDATES_TABLE_NAME, INDEX_TABLE_NAME, RINDEX_TABLE_NAME, true);
+        eventMetadata.addEvent(helper, event, createEventFields(), getLoadDateAsMillis());
+        
+        String day = DateHelper.format(event.getDate());
+        Text expectedColumnQualifier = new Text(DATA_TYPE + RawRecordMetadata.DELIMITER + FieldDaysCombiner.month(day));
+        BulkIngestKey expectedBulkIngestKey = createExpectedBulkIngestKey(FieldDaysCombiner.COLF_FD, METADATA_TABLE_NAME, FIELD_TO_COUNT,
+                        expectedColumnQualifier);
+        // disabled by default
+        Assert.assertFalse(assertContainsKey(eventMetadata, expectedBulkIngestKey));
+        
+        eventMetadata.clear();
+        eventMetadata.setFieldDays(true);
+        eventMetadata.addEvent(helper, event, createEventFields(), getLoadDateAsMillis());
+        
+        Collection<Value> values = getCorrespondingValue(eventMetadata, expectedBulkIngestKey);
+        Assert.assertNotNull(values);
+        Assert.assertEquals(1, values.size());
+        Assert.assertEquals(FieldDaysCombiner.dayBit(day), FieldDaysCombiner.decode(values.iterator().next()));
+        Assert.assertNull(getCorrespondingValue(eventMetadata, createExpectedBulkIngestKey(FieldDaysCombiner.COLF_FD, METADATA_TABLE_NAME,
+                        FIELD_NAME_FOR_LOAD_DATE, expectedColumnQualifier)));
+        
+        EasyMock.verify(event);
+    }
+    
     @Test
     public void testWithExclusions() throws IOException {
         setupMocks();
@@ -0,0 +1,135 @@
+package datawave.ingest.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import datawave.ingest.mapreduce.MemberShipTest;
+
+import org.apache.accumulo.core.data.Value;
+import org.junit.Test;
+
+public class BlockedBloomFilterTest {
+    
+    @Test
+    public void testNoFalseNegatives() {
+        Random random = new Random(1);
+        BlockedBloomFilter filter = BlockedBloomFilter.create(10000, 0.03);
+        List<String> terms = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            String term = Long.toString(random.nextLong());
+            terms.add(term);
+            filter.put(term);
+        }
+        
+        int falsePositives = 0;
+        for (int i = 0; i < 100000; i++) {
+            if (filter.mightContain("x" + random.nextLong())) {
+                falsePositives++;
+            }
+        }
+        for (String term : terms) {
+            assertTrue(term, filter.mightContain(term));
+        }
+        assertTrue("false positive rate " + falsePositives / 100000.0, falsePositives < 3000);
+    }
+    
+    @Test
+    public void testSerializedFilter() {
+        Random random = new Random(2);
+        BlockedBloomFilter filter = BlockedBloomFilter.create(1000, 0.03);
+        for (int i = 0; i < 1000; i++) {
+            filter.put(Integer.toString(i));
+        }
+        byte[] bytes = filter.toBytes();
+        assertTrue(BlockedBloomFilter.isSerializedFilter(bytes));
+        BlockedBloomFilter copy = BlockedBloomFilter.fromBytes(bytes);
+        assertEquals(filter.getNumBlocks(), copy.getNumBlocks());
+        assertEquals(filter.getNumHashes(), copy.getNumHashes());
+        
+        Value value = MemberShipTest.toValue(filter);
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(copy.mightContain(Integer.toString(i)));
+            assertTrue(MemberShipTest.mightContain(value, Integer.toString(i)));
+        }
+        // the serialized filter must answer exactly as the filter does
+        for (int i = 0; i < 10000; i++) {
+            String term = "x" + random.nextLong();
+            assertEquals(term, filter.mightContain(term), BlockedBloomFilter.mightContain(bytes, BlockedBloomFilter.hash(term)));
+        }
+    }
+    
+    @Test
+    public void testGuavaFilterValue() {
+        Value value = MemberShipTest.toValue(MemberShipTest.update(MemberShipTest.<String> create(10), "term"));
+        assertFalse(BlockedBloomFilter.isSerializedFilter(value.get()));
+        assertTrue(MemberShipTest.mightContain(value, "term"));
+    }
+    
+    @Test
+    public void testBuilderAddsEveryNGram() {
+        String content = "the quick brown fox jumped over the lazy dog";
+        BlockedBloomFilterBuilder builder = new BlockedBloomFilterBuilder(25, 0, 0.03, 0);
+        BlockedBloomFilter filter = builder.addValue("FIELD_VALUE").addNGrams(content).build();
+        
+        assertTrue(filter.mightContain("FIELD_VALUE"));
+        for (int start = 0; start < content.length(); start++) {
+            for (int end = start + 2; end <= Math.min(content.length(), start + 25); end++) {
+                assertTrue(content.substring(start, end), filter.mightContain(content.substring(start, end)));
+            }
+        }
+        assertEquals(1, builder.getFieldValuesApplied());
+        assertEquals(0, builder.getNGramsPruned());
+        assertEquals(25, builder.getNGramLengthApplied());
+        assertEquals(BloomFilterUtil.predictNGramCount((float) content.length(), 25), builder.getNGramsApplied());
+    }
+    
+    @Test
+    public void testBuilderSizesForDistinctTerms() {
+        StringBuilder repeated = new StringBuilder();
+        StringBuilder distinct = new StringBuilder();
+        Random random = new Random(3);
+        for (int i = 0; i < 1000; i++) {
+            repeated.append("abcdefghij");
+            for (int j = 0; j < 10; j++) {
+                distinct.append((char) ('a' + random.nextInt(26)));
+            }
+        }
+        
+        BlockedBloomFilterBuilder builder = new BlockedBloomFilterBuilder(25, 0, 0.03, 0);
+        int repeatedBytes = builder.addNGrams(repeated.toString()).build().toBytes().length;
+        int repeatedTerms = builder.getEstimatedTerms();
+        int distinctBytes = builder.addNGrams(distinct.toString()).build().toBytes().length;
+        
+        // only 10 distinct n-grams of each length repeat over and over
+        assertTrue("estimated " + repeatedTerms, repeatedTerms < 300);
+        assertTrue(repeatedBytes * 20 < distinctBytes);
+    }
+    
+    @Test
+    public void testBuilderPrunesLongestNGrams() {
+        StringBuilder content = new StringBuilder();
+        Random random = new Random(4);
+        for (int i = 0; i < 2000; i++) {
+            content.append((char) ('a' + random.nextInt(26)));
+        }
+        
+        BlockedBloomFilterBuilder builder = new BlockedBloomFilterBuilder(25, 4096, 0.03, 0);
+        BlockedBloomFilter filter = builder.addValue("FIELD_VALUE").addNGrams(content.toString()).build();
+        int length = builder.getNGramLengthApplied();
+        
+        assertTrue("applied n-grams up to " + length, length >= 2 && length < 25);
+        assertTrue(filter.toBytes().length <= 4096);
+        assertTrue(builder.getNGramsPruned() > 0);
+        assertTrue(filter.mightContain("FIELD_VALUE"));
+        for (int start = 0; start + length <= content.length(); start++) {
+            for (int end = start + 2; end <= start + length; end++) {
+                assertTrue(filter.mightContain(content.substring(start, end)));
+            }
+        }
+    }
+}
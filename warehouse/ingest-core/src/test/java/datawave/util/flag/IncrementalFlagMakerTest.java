@@ -0,0 +1,141 @@
+package datawave.util.flag;
+
+import datawave.util.flag.config.ConfigUtil;
+import datawave.util.flag.config.FlagDataTypeConfig;
+import datawave.util.flag.config.FlagMakerConfig;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.filefilter.FalseFileFilter;
+import org.apache.commons.io.filefilter.TrueFileFilter;
+import org.apache.hadoop.fs.FileStatus;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class IncrementalFlagMakerTest extends AbstractFlagConfig {
+    
+    private static final String FLAG_DIR = "target/test/flags";
+    private static final String CHECKPOINT = "target/test/flagmaker.listing";
+    
+    @Before
+    public void setUp() throws Exception {
+        fmc = ConfigUtil.getXmlObject(FlagMakerConfig.class, TEST_CONFIG);
+        cleanTestDirs();
+        File f = new File(FLAG_DIR);
+        if (f.exists()) {
+            FileUtils.deleteDirectory(f);
+        }
+        f.mkdirs();
+        new File(CHECKPOINT).delete();
+    }
+    
+    @Test
+    public void testProcessFlags() throws Exception {
+        // two days, 5 files each day, two folders in fmc = 20 files, 2 flags
+        createTestFiles(2, 5);
+        new CountingFlagMaker(fmc).processFlags();
+        
+        int flagCnt = 0;
+        for (File file : new File(FLAG_DIR).listFiles()) {
+            if (file.getName().endsWith(".flag")) {
+                flagCnt++;
+            }
+        }
+        assertEquals(2, flagCnt);
+    }
+    
+    @Test
+    public void testOnlyListsChangedDirectories() throws Exception {
+        // nothing gets flagged so the files stay put
+        fmc.getFlagConfigs().get(0).setMaxFlags(100);
+        createTestFiles(2, 5);
+        List<File> dirs = settleDirectories();
+        assertEquals(4, dirs.size());
+        
+        CountingFlagMaker instance = new CountingFlagMaker(fmc);
+        instance.processFlags();
+        assertEquals(4, instance.directoriesListed);
+        assertEquals(20, instance.files.size());
+        
+        instance.processFlags();
+        assertEquals(0, instance.directoriesListed);
+        assertEquals(20, instance.files.size());
+        
+        // a new file changes the modification time of its directory
+        try (FileOutputStream fos = new FileOutputStream(new File(dirs.get(0), "newfile"))) {
+            fos.write(1);
+        }
+        instance.processFlags();
+        assertEquals(1, instance.directoriesListed);
+        assertEquals(21, instance.files.size());
+    }
+    
+    @Test
+    public void testCheckpoint() throws Exception {
+        fmc.getFlagConfigs().get(0).setMaxFlags(100);
+        fmc.setListingCheckpointFile(CHECKPOINT);
+        createTestFiles(2, 5);
+        settleDirectories();
+        
+        CountingFlagMaker instance = new CountingFlagMaker(fmc);
+        instance.processFlags();
+        assertEquals(4, instance.directoriesListed);
+        assertTrue(new File(CHECKPOINT).exists());
+        
+        // a restarted flag maker starts from the checkpoint
+        fmc = ConfigUtil.getXmlObject(FlagMakerConfig.class, TEST_CONFIG);
+        fmc.getFlagConfigs().get(0).setMaxFlags(100);
+        fmc.setListingCheckpointFile(CHECKPOINT);
+        instance = new CountingFlagMaker(fmc);
+        instance.processFlags();
+        assertEquals(0, instance.directoriesListed);
+        assertEquals(20, instance.files.size());
+    }
+    
+    /**
+     * Set the modification time of the input directories far enough in the past to be trusted
+     */
+    private List<File> settleDirectories() throws IOException {
+        long past = System.currentTimeMillis() - 60 * 60 * 1000L;
+        List<File> dirs = new ArrayList<>();
+        for (File dir : FileUtils.listFilesAndDirs(new File(fmc.getBaseHDFSDir()), FalseFileFilter.INSTANCE, TrueFileFilter.INSTANCE)) {
+            // the yyyy/mm/dd directories containing the files
+            if (dir.getPath().matches(".*/[0-9]{4}/[0-9]{2}/[0-9]{2}")) {
+                dirs.add(dir);
+            }
+        }
+        for (File dir : dirs) {
+            for (File file : dir.listFiles()) {
+                assertTrue(file.setLastModified(past));
+            }
+            assertTrue(dir.setLastModified(past));
+        }
+        return dirs;
+    }
+    
+    private static class CountingFlagMaker extends IncrementalFlagMaker {
+        private final List<FileStatus> files = new ArrayList<>();
+        
+        CountingFlagMaker(FlagMakerConfig fmc) {
+            super(fmc);
+        }
+        
+        @Override
+        protected void processFlags() throws IOException {
+            files.clear();
+            super.processFlags();
+        }
+        
+        @Override
+        protected void logFileInfo(FlagDataTypeConfig fc, FileStatus status) {
+            files.add(status);
+        }
+    }
+}
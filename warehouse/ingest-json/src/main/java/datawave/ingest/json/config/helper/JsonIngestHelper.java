@@ -2,8 +2,10 @@ package datawave.ingest.json.config.helper;
 
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Multimap;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonParser;
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.MalformedJsonException;
 import datawave.ingest.data.RawRecordContainer;
 import datawave.ingest.data.config.NormalizedContentInterface;
 import datawave.ingest.data.config.NormalizedFieldAndValue;
@@ -13,6 +15,9 @@ import datawave.ingest.json.util.JsonObjectFlattener;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.log4j.Logger;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
 import java.util.Map;
 
 /**
@@ -43,11 +48,16 @@ public class JsonIngestHelper extends ContentBaseIngestHelper {
         }
         
         HashMultimap<String,String> fields = HashMultimap.create();
-        String jsonString = new String(event.getRawData());
         
-        JsonParser parser = new JsonParser();
-        JsonElement jsonElement = parser.parse(jsonString);
-        flattener.flatten(jsonElement.getAsJsonObject(), fields);
+        // Flatten the raw json as it is read, rather than parsing it into a tree first
+        try (JsonReader reader = new JsonReader(new InputStreamReader(new ByteArrayInputStream(event.getRawData())))) {
+            reader.setLenient(true);
+            flattener.flatten(reader, fields);
+        } catch (MalformedJsonException e) {
+            throw new JsonSyntaxException(e);
+        } catch (IOException e) {
+            throw new JsonIOException(e);
+        }
         
         return normalizeMap(getGroupNormalizedMap(fields));
     }
@@ -56,9 +66,10 @@ public class JsonIngestHelper extends ContentBaseIngestHelper {
         Multimap<String,NormalizedContentInterface> results = HashMultimap.create();
         for (Map.Entry<String,String> e : fields.entries()) {
             if (e.getValue() != null) {
-                results.put(e.getKey(), new NormalizedFieldAndValue(e.getKey(), e.getValue()));
+                // Extract the group from each field as it is created, rather than from a second map of the fields
+                groupNormalizer.extractFieldNameComponents(new NormalizedFieldAndValue(e.getKey(), e.getValue()), results);
             }
         }
-        return groupNormalizer.extractFieldNameComponents(results);
+        return results;
     }
 }
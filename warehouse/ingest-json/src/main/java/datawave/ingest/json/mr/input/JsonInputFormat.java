@@ -27,7 +27,7 @@ public class JsonInputFormat extends SequenceFileInputFormat<LongWritable,RawRec
             
             @Override
             public void initialize(InputSplit split, TaskAttemptContext context) throws IOException, InterruptedException {
-                delegate = new JsonRecordReader();
+                delegate = newJsonRecordReader();
                 delegate.initialize(split, context);
             }
             
@@ -58,4 +58,8 @@ public class JsonInputFormat extends SequenceFileInputFormat<LongWritable,RawRec
             }
         };
     }
+    
+    protected JsonRecordReader newJsonRecordReader() {
+        return new JsonRecordReader();
+    }
 }
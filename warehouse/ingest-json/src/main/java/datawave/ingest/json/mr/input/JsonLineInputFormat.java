@@ -0,0 +1,23 @@
+package datawave.ingest.json.mr.input;
+
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.mapreduce.JobContext;
+
+/**
+ * Input format for newline-delimited json, which unlike the {@link JsonInputFormat} splits uncompressed files across mappers. See {@link JsonLineRecordReader}
+ */
+public class JsonLineInputFormat extends JsonInputFormat {
+    
+    @Override
+    protected boolean isSplitable(JobContext context, Path filename) {
+        CompressionCodec codec = new CompressionCodecFactory(context.getConfiguration()).getCodec(filename);
+        return codec == null;
+    }
+    
+    @Override
+    protected JsonRecordReader newJsonRecordReader() {
+        return new JsonLineRecordReader();
+    }
+}
@@ -0,0 +1,155 @@
+package datawave.ingest.json.mr.input;
+
+import java.io.CharArrayReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.Arrays;
+
+import com.google.gson.stream.JsonReader;
+import datawave.ingest.input.reader.LongLineEventRecordReader;
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+import org.apache.log4j.Logger;
+
+/**
+ * <p>
+ * {@link JsonRecordReader} for newline-delimited json, i.e., files with one json object per line. Unlike the {@link JsonRecordReader}, the file may be split
+ * across mappers: as with any line oriented input, a split starts at the first line that begins within it and ends with the line that spans its end.
+ *
+ * <p>
+ * Each object is flattened as it is read, via {@link datawave.ingest.json.util.JsonObjectFlattener#flatten(JsonReader, com.google.common.collect.Multimap)},
+ * rather than being parsed into a tree first. The line is decoded into a reusable buffer, and its bytes are written to the event as they are, rather than
+ * being serialized again from a tree. Blank lines are skipped.
+ */
+public class JsonLineRecordReader extends JsonRecordReader {
+    
+    private static final Logger logger = Logger.getLogger(JsonLineRecordReader.class);
+    
+    protected final LongLineEventRecordReader lineReader = new LongLineEventRecordReader();
+    protected Text currentLine;
+    protected int currentLineLength;
+    
+    private final CharsetDecoder decoder = Charset.defaultCharset().newDecoder().onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private CharBuffer chars = CharBuffer.allocate(4096);
+    
+    @Override
+    protected void initializeReader(FileSplit split, TaskAttemptContext context) throws IOException {
+        lineReader.setCompressionCodecFactory(compressionCodecs);
+        lineReader.initializeMaxLineLength(context.getConfiguration());
+        lineReader.initializeLineReader(split, context);
+        
+        // The line reader re-establishes the start of the split at the first whole line
+        start = lineReader.getStart();
+        end = lineReader.getEnd();
+        pos = start;
+        
+        if (logger.isInfoEnabled()) {
+            logger.info("Reading Json lines from " + fileURI.getScheme() + "://" + fileURI.getPath() + " starting at " + start);
+        }
+    }
+    
+    @Override
+    public void close() throws IOException {
+        lineReader.close();
+    }
+    
+    @Override
+    public BytesWritable getCurrentValue() {
+        if (currentLine != null) {
+            return new BytesWritable(getRawData());
+        } else {
+            return null;
+        }
+    }
+    
+    @Override
+    public boolean nextKeyValue() throws IOException {
+        
+        event.clear();
+        currentKey.set(pos);
+        currentValue.clear();
+        currentLine = null;
+        counter++;
+        
+        while (lineReader.nextKeyValue()) {
+            pos = lineReader.getPos();
+            Text line = lineReader.getCurrentValue();
+            int length = trimmedLength(line);
+            if (length == 0) {
+                continue;
+            }
+            
+            try {
+                parseCurrentValue(line, length);
+            } catch (IOException | RuntimeException e) {
+                throw new IOException("Failed to read json record from " + rawFileName + " at offset " + lineReader.getCurrentKey().get(), e);
+            }
+            currentLine = line;
+            currentLineLength = length;
+            return true;
+        }
+        
+        return false;
+    }
+    
+    /**
+     * Flattens the json object on the specified line into {@link #currentValue}
+     *
+     * @param line
+     *            the current line
+     * @param length
+     *            the length of the line in bytes, excluding any trailing whitespace
+     * @throws IOException
+     *             if the line is not valid json
+     */
+    protected void parseCurrentValue(Text line, int length) throws IOException {
+        decode(line.getBytes(), length);
+        try (JsonReader reader = new JsonReader(new CharArrayReader(chars.array(), 0, chars.position()))) {
+            reader.setLenient(true);
+            jsonFlattener.flatten(reader, currentValue);
+        }
+    }
+    
+    /**
+     * Decodes the bytes into {@link #chars}, which is only reallocated when a line is too long for it
+     */
+    private void decode(byte[] bytes, int length) {
+        int capacity = (int) Math.ceil(length * (double) decoder.maxCharsPerByte());
+        if (capacity > chars.capacity()) {
+            chars = CharBuffer.allocate(Math.max(capacity, chars.capacity() * 2));
+        }
+        chars.clear();
+        decoder.reset();
+        ByteBuffer in = ByteBuffer.wrap(bytes, 0, length);
+        CoderResult result = decoder.decode(in, chars, true);
+        if (!result.isOverflow()) {
+            result = decoder.flush(chars);
+        }
+        if (result.isOverflow()) {
+            // only possible for a charset that can produce more chars per byte than it advertises
+            throw new IllegalStateException("Buffer overflow decoding a line of " + length + " bytes");
+        }
+    }
+    
+    private static int trimmedLength(Text line) {
+        byte[] bytes = line.getBytes();
+        int length = line.getLength();
+        while (length > 0 && (bytes[length - 1] == ' ' || bytes[length - 1] == '\t' || bytes[length - 1] == '\r' || bytes[length - 1] == '\n')) {
+            length--;
+        }
+        return length;
+    }
+    
+    @Override
+    protected byte[] getRawData() {
+        return Arrays.copyOf(currentLine.getBytes(), currentLineLength);
+    }
+}
@@ -125,19 +125,11 @@ public class JsonRecordReader extends AbstractEventRecordReader<BytesWritable> {
         Path file = fsplit.getPath();
         rawFileName = file.getName();
         fileURI = file.toUri();
-        FileSystem fs = file.getFileSystem(context.getConfiguration());
-        InputStream is = fs.open(file);
         start = fsplit.getStart();
         end = start + fsplit.getLength();
         pos = start;
         
-        String normURI = fileURI.getScheme() + "://" + fileURI.getPath();
-        
-        setupReader(is);
-        
-        if (logger.isInfoEnabled()) {
-            logger.info("Reading Json records from " + normURI + " via " + is.getClass().getName());
-        }
+        initializeReader(fsplit, context);
         
         jsonHelper = (JsonDataTypeHelper) createHelper(context.getConfiguration());
         this.parseHeaderOnly = !jsonHelper.processExtraFields();
@@ -148,6 +140,22 @@ public class JsonRecordReader extends AbstractEventRecordReader<BytesWritable> {
         }
     }
     
+    /**
+     * Opens the split for reading
+     */
+    protected void initializeReader(FileSplit split, TaskAttemptContext context) throws IOException {
+        FileSystem fs = split.getPath().getFileSystem(context.getConfiguration());
+        InputStream is = fs.open(split.getPath());
+        
+        String normURI = fileURI.getScheme() + "://" + fileURI.getPath();
+        
+        setupReader(is);
+        
+        if (logger.isInfoEnabled()) {
+            logger.info("Reading Json records from " + normURI + " via " + is.getClass().getName());
+        }
+    }
+    
     protected void setupReader(InputStream is) {
         countingInputStream = new CountingInputStream(is);
         reader = new JsonReader(new InputStreamReader(countingInputStream));
@@ -228,7 +236,7 @@ public class JsonRecordReader extends AbstractEventRecordReader<BytesWritable> {
         
         decorateEvent();
         
-        event.setRawData(currentJsonObj.toString().getBytes());
+        event.setRawData(getRawData());
         
         if (0 == event.getDate()) {
             event.setDate(System.currentTimeMillis());
@@ -247,6 +255,13 @@ public class JsonRecordReader extends AbstractEventRecordReader<BytesWritable> {
         return event;
     }
     
+    /**
+     * @return the raw json of the current record, to be written to the event
+     */
+    protected byte[] getRawData() {
+        return currentJsonObj.toString().getBytes();
+    }
+    
     /**
      * If needed, modify/update event after parsing has occurred but before policy enforcement and UID assignment
      */
@@ -2,7 +2,10 @@ package datawave.ingest.json.util;
 
 import com.google.common.collect.Multimap;
 import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
 
+import java.io.IOException;
 import java.util.Set;
 
 /**
@@ -97,6 +100,26 @@ public interface JsonObjectFlattener {
      */
     void flatten(JsonObject object, Multimap<String,String> map) throws IllegalStateException, NullPointerException;
     
+    /**
+     * <p>
+     * Flattens the next json object read from the specified reader, with the same result as {@link #flatten(JsonObject, Multimap)}. Implementations should
+     * flatten the object as it is read, without first building a {@link JsonObject} tree. By default, the tree is built and flattened
+     *
+     * @param reader
+     *            {@link JsonReader} positioned at the start of a json object
+     * @param map
+     *            {@link com.google.common.collect.Multimap} instance to receive the flattened keys and associated values
+     * @throws IOException
+     *             if the json could not be read
+     * @throws IllegalStateException
+     *             if the next value is not a json object, or as per {@link #flatten(JsonObject, Multimap)}
+     * @throws NullPointerException
+     *             if map is null
+     */
+    default void flatten(JsonReader reader, Multimap<String,String> map) throws IOException, IllegalStateException, NullPointerException {
+        flatten(new JsonParser().parse(reader).getAsJsonObject(), map);
+    }
+    
     /**
      * <p>
      * Allows clients to specify custom normalization behavior per their needs to affect the final presentation of flattened keys and their values to the
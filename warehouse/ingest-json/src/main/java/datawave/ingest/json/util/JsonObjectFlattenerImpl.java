@@ -1,16 +1,23 @@
 package datawave.ingest.json.util;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ForwardingMultimap;
 import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonPrimitive;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -100,6 +107,20 @@ public class JsonObjectFlattenerImpl implements JsonObjectFlattener {
         addKeysToMap("", object, map, occurrenceCounts);
     }
     
+    /**
+     * Flattens the next json object as it is read. Nested paths are built up in a single buffer that is shared by the whole object, so the only strings created
+     * are the keys and values that are put into the map. As with a {@link JsonObject}, only the last value of any duplicate name is kept
+     */
+    @Override
+    public void flatten(JsonReader reader, Multimap<String,String> map) throws IOException, IllegalStateException, NullPointerException {
+        Preconditions.checkNotNull(map, "'map' argument cannot be null");
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+            throw new IllegalStateException("Not a JSON Object: " + reader.peek());
+        }
+        Journal journal = new Journal(map, this.flattenMode == FlattenMode.GROUPED || this.flattenMode == FlattenMode.GROUPED_AND_NORMAL);
+        addKeysToMap(new StringBuilder(), reader, journal);
+    }
+    
     @Override
     public FlattenMode getFlattenMode() {
         return this.flattenMode;
@@ -160,6 +181,178 @@ public class JsonObjectFlattenerImpl implements JsonObjectFlattener {
         }
     }
     
+    /**
+     * Streaming equivalent of {@link #addKeysToMap(String, JsonElement, Multimap, Map)}, which consumes the next value from the reader. The path is appended to
+     * the buffer while the value is read and the buffer is restored to its original length before returning. When a name is repeated within an object, the
+     * keys and occurrence counts of its earlier value are withdrawn through the journal before the later value is read
+     */
+    private void addKeysToMap(StringBuilder path, JsonReader reader, Journal journal) throws IOException {
+        Map<String,Integer> occurrenceCounts = journal.getOccurrenceCounts();
+        int length = path.length();
+        switch (reader.peek()) {
+            case NULL:
+                // Don't add nulls
+                reader.nextNull();
+                break;
+            case BEGIN_OBJECT:
+                if (length > 0) {
+                    switch (this.flattenMode) {
+                        case SIMPLE:
+                            // No recursion in simple mode
+                            reader.skipValue();
+                            return;
+                        case GROUPED:
+                        case GROUPED_AND_NORMAL:
+                            // Append occurrence delimiter + ordinal suffix
+                            path.append(this.occurrenceDelimiter).append(incrementCount(path.toString(), occurrenceCounts));
+                            break;
+                    }
+                }
+                
+                String currentPath = path.toString();
+                int prefixLength = path.length();
+                Map<String,int[]> members = new HashMap<>();
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String elementName = reader.nextName();
+                    int[] previous = members.get(elementName);
+                    if (previous != null) {
+                        // Last one wins, as when the object is parsed into a tree
+                        journal.withdraw(previous);
+                    }
+                    String name = this.nameNormalizer.normalizeElementName(elementName, currentPath);
+                    if (prefixLength > 0) {
+                        path.append(this.pathDelimiter);
+                    }
+                    path.append(name);
+                    int[] member = journal.mark();
+                    addKeysToMap(path, reader, journal);
+                    members.put(elementName, journal.end(member));
+                    path.setLength(prefixLength);
+                }
+                reader.endObject();
+                break;
+            case BEGIN_ARRAY:
+                reader.beginArray();
+                for (int i = 0; reader.hasNext(); i++) {
+                    JsonToken token = reader.peek();
+                    if (token == JsonToken.STRING || token == JsonToken.NUMBER || token == JsonToken.BOOLEAN) {
+                        mapPut(path.toString(), nextPrimitive(reader, token), journal, occurrenceCounts);
+                    } else {
+                        if (this.addArrayIndexToFieldName) {
+                            path.append(this.pathDelimiter).append(i);
+                        }
+                        addKeysToMap(path, reader, journal);
+                    }
+                    path.setLength(length);
+                }
+                reader.endArray();
+                break;
+            case STRING:
+            case NUMBER:
+            case BOOLEAN:
+                mapPut(path.toString(), nextPrimitive(reader, reader.peek()), journal, occurrenceCounts);
+                break;
+            default:
+                throw new IllegalStateException("Unexpected json token: " + reader.peek());
+        }
+        path.setLength(length);
+    }
+    
+    /**
+     * @return the value of the next primitive, as {@link JsonPrimitive#getAsString()} would represent it
+     */
+    private static String nextPrimitive(JsonReader reader, JsonToken token) throws IOException {
+        if (token == JsonToken.BOOLEAN) {
+            return Boolean.toString(reader.nextBoolean());
+        }
+        // numbers are returned as they were written, as for the lazily parsed numbers of a parsed tree
+        return reader.nextString();
+    }
+    
+    /**
+     * Records the keys put into the map and the changes to the occurrence counts while an object is streamed, so that those made for the earlier value of a
+     * duplicate name can be withdrawn. Keys that were already in the map are not recorded, so withdrawing a value never removes a key put by another
+     */
+    private static class Journal extends ForwardingMultimap<String,String> {
+        
+        private final Multimap<String,String> map;
+        private final List<Map.Entry<String,String>> puts = new ArrayList<>();
+        private final Counts occurrenceCounts;
+        
+        Journal(Multimap<String,String> map, boolean grouped) {
+            this.map = map;
+            this.occurrenceCounts = grouped ? new Counts() : null;
+        }
+        
+        @Override
+        protected Multimap<String,String> delegate() {
+            return this.map;
+        }
+        
+        @Override
+        public boolean put(String key, String value) {
+            boolean changed = this.map.put(key, value);
+            if (changed) {
+                this.puts.add(Maps.immutableEntry(key, value));
+            }
+            return changed;
+        }
+        
+        Map<String,Integer> getOccurrenceCounts() {
+            return this.occurrenceCounts;
+        }
+        
+        /**
+         * @return the start of the changes made for a value, to be completed by {@link #end(int[])}
+         */
+        int[] mark() {
+            return new int[] {this.puts.size(), this.occurrenceCounts == null ? 0 : this.occurrenceCounts.changes.size(), 0, 0};
+        }
+        
+        int[] end(int[] mark) {
+            mark[2] = this.puts.size();
+            mark[3] = this.occurrenceCounts == null ? 0 : this.occurrenceCounts.changes.size();
+            return mark;
+        }
+        
+        /**
+         * Removes the keys put for a value from the map, and restores the occurrence counts to what they were before the value was read
+         */
+        void withdraw(int[] mark) {
+            for (int i = mark[0]; i < mark[2]; i++) {
+                Map.Entry<String,String> put = this.puts.get(i);
+                if (put != null) {
+                    this.map.remove(put.getKey(), put.getValue());
+                    this.puts.set(i, null);
+                }
+            }
+            for (int i = mark[3] - 1; i >= mark[1]; i--) {
+                this.occurrenceCounts.restore(this.occurrenceCounts.changes.get(i));
+            }
+        }
+        
+        private static class Counts extends HashMap<String,Integer> {
+            
+            private final List<Map.Entry<String,Integer>> changes = new ArrayList<>();
+            
+            @Override
+            public Integer put(String key, Integer value) {
+                Integer previous = super.put(key, value);
+                this.changes.add(Maps.immutableEntry(key, previous));
+                return previous;
+            }
+            
+            void restore(Map.Entry<String,Integer> change) {
+                if (change.getValue() == null) {
+                    super.remove(change.getKey());
+                } else {
+                    super.put(change.getKey(), change.getValue());
+                }
+            }
+        }
+    }
+    
     protected String defaultNormalizeJsonElementName(String name) {
         switch (this.flattenMode) {
             case GROUPED:
@@ -0,0 +1,138 @@
+package datawave.ingest.json.mr.input;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.PrintWriter;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Multimap;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import datawave.ingest.data.TypeRegistry;
+
+import datawave.ingest.json.util.JsonObjectFlattener.FlattenMode;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+import org.apache.hadoop.mapreduce.task.TaskAttemptContextImpl;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class JsonLineRecordReaderTest {
+    
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+    
+    protected Configuration conf;
+    protected File dataFile;
+    
+    @Before
+    public void setup() throws Exception {
+        conf = new Configuration();
+        conf.addResource(ClassLoader.getSystemResource("config/ingest/all-config.xml"));
+        conf.addResource(ClassLoader.getSystemResource("config/ingest/json-ingest-config.xml"));
+        conf.set("myjson.data.process.extra.fields", "true");
+        
+        TypeRegistry.reset();
+        TypeRegistry.getInstance(conf);
+        
+        // Rewrite the records of my.json as newline-delimited json, with blank lines in between
+        URL data = JsonLineRecordReaderTest.class.getResource("/input/my.json");
+        Assert.assertNotNull(data);
+        dataFile = temporaryFolder.newFile("my.jsonl");
+        try (JsonReader reader = new JsonReader(new FileReader(new File(data.toURI()))); PrintWriter writer = new PrintWriter(dataFile)) {
+            reader.setLenient(true);
+            JsonParser parser = new JsonParser();
+            while (reader.peek() != JsonToken.END_DOCUMENT) {
+                JsonElement element = parser.parse(reader);
+                writer.println(element.toString());
+                writer.println();
+            }
+        }
+    }
+    
+    protected JsonRecordReader init(JsonRecordReader reader, FlattenMode mode, long start, long length) throws Exception {
+        conf.set("myjson.data.json.flattener.mode", mode.name());
+        FileSplit split = new FileSplit(new Path(dataFile.toURI().toString()), start, length, null);
+        TaskAttemptContext ctx = new TaskAttemptContextImpl(conf, new TaskAttemptID());
+        reader.initialize(split, ctx);
+        reader.setInputDate(System.currentTimeMillis());
+        return reader;
+    }
+    
+    protected List<Multimap<String,String>> readAll(JsonRecordReader reader) throws Exception {
+        List<Multimap<String,String>> records = new ArrayList<>();
+        while (reader.nextKeyValue()) {
+            Assert.assertNotNull(reader.getEvent());
+            records.add(HashMultimap.create(reader.getCurrentFields()));
+        }
+        reader.close();
+        return records;
+    }
+    
+    @Test
+    public void testGetAllRecordsNORMAL() throws Exception {
+        JsonRecordReader reader = init(new JsonLineRecordReader(), FlattenMode.NORMAL, 0, dataFile.length());
+        
+        // Same as the JsonRecordReader reading my.json
+        int[] keys = {14, 18, 9, 10, 10};
+        int[] values = {27, 29, 9, 14, 11};
+        for (int i = 0; i < keys.length; i++) {
+            Assert.assertTrue(reader.nextKeyValue());
+            Assert.assertNotNull(reader.getEvent());
+            Assert.assertEquals(keys[i], reader.getCurrentFields().keySet().size());
+            Assert.assertEquals(values[i], reader.getCurrentFields().values().size());
+        }
+        
+        // EOF
+        Assert.assertFalse(reader.nextKeyValue());
+        reader.close();
+    }
+    
+    @Test
+    public void testSameFieldsAsJsonRecordReader() throws Exception {
+        for (FlattenMode mode : FlattenMode.values()) {
+            List<Multimap<String,String>> expected = readAll(init(new JsonRecordReader(), mode, 0, dataFile.length()));
+            List<Multimap<String,String>> actual = readAll(init(new JsonLineRecordReader(), mode, 0, dataFile.length()));
+            Assert.assertEquals(5, expected.size());
+            Assert.assertEquals(mode.name(), expected, actual);
+        }
+    }
+    
+    @Test
+    public void testRawDataIsTheLine() throws Exception {
+        JsonRecordReader reader = init(new JsonLineRecordReader(), FlattenMode.NORMAL, 0, dataFile.length());
+        Assert.assertTrue(reader.nextKeyValue());
+        String line = new String(reader.getEvent().getRawData());
+        Assert.assertTrue(line.startsWith("{") && line.endsWith("}"));
+        Assert.assertEquals(new JsonParser().parse(line), new JsonParser().parse(new String(reader.getCurrentValue().copyBytes())));
+        reader.close();
+    }
+    
+    @Test
+    public void testSplits() throws Exception {
+        List<Multimap<String,String>> expected = readAll(init(new JsonLineRecordReader(), FlattenMode.GROUPED, 0, dataFile.length()));
+        
+        // Every record must be read exactly once, in order, whichever the split boundaries
+        for (long splitSize : new long[] {10, 100, 333, 1024, dataFile.length() / 2 + 1}) {
+            List<Multimap<String,String>> actual = new ArrayList<>();
+            for (long start = 0; start < dataFile.length(); start += splitSize) {
+                long length = Math.min(splitSize, dataFile.length() - start);
+                actual.addAll(readAll(init(new JsonLineRecordReader(), FlattenMode.GROUPED, start, length)));
+            }
+            Assert.assertEquals("split size " + splitSize, expected, actual);
+        }
+    }
+}
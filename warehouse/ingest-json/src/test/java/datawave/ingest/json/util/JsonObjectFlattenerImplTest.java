@@ -5,15 +5,18 @@ import com.google.common.collect.TreeMultimap;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
 import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.io.StringReader;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
@@ -266,6 +269,63 @@ public class JsonObjectFlattenerImplTest {
         }
     }
     
+    @Test
+    public void testStreamingFlattenMatchesTree() throws Exception {
+        for (FlattenMode mode : FlattenMode.values()) {
+            for (boolean addArrayIndex : new boolean[] {true, false}) {
+                JsonObjectFlattener flattener = new JsonObjectFlattenerImpl.Builder().flattenMode(mode).occurrenceInGroupDelimiter("#")
+                                .addArrayIndexToFieldName(addArrayIndex).mapKeyValueNormalizer(noOpNormalizer).build();
+                
+                JsonParser parser = new JsonParser();
+                Multimap<String,String> treeMap = flattener.flatten(parser.parse(json).getAsJsonObject());
+                
+                Multimap<String,String> streamMap = TreeMultimap.create();
+                JsonReader reader = new JsonReader(new StringReader(json));
+                reader.setLenient(true);
+                flattener.flatten(reader, streamMap);
+                
+                Assert.assertFalse(streamMap.isEmpty());
+                Assert.assertEquals(mode + ", addArrayIndex=" + addArrayIndex, TreeMultimap.create(treeMap), streamMap);
+            }
+        }
+    }
+    
+    @Test
+    public void testStreamingFlattenDuplicateNames() throws Exception {
+        String duplicates = "{\"a\": \"1\", \"b\": {\"c\": [\"2\", \"3\"], \"d\": \"4\", \"c\": \"5\"},"
+                        + " \"e\": [{\"f\": \"6\"}, {\"f\": {\"g\": \"7\"}, \"f\": null}],"
+                        + " \"a\": {\"h\": \"8\"}, \"b\": {\"c\": {\"i\": \"9\", \"i\": \"10\"}}}";
+        for (FlattenMode mode : FlattenMode.values()) {
+            JsonObjectFlattener flattener = new JsonObjectFlattenerImpl.Builder().flattenMode(mode).occurrenceInGroupDelimiter("#")
+                            .mapKeyValueNormalizer(noOpNormalizer).build();
+            
+            Multimap<String,String> treeMap = flattener.flatten(new JsonParser().parse(duplicates).getAsJsonObject());
+            
+            Multimap<String,String> streamMap = TreeMultimap.create();
+            flattener.flatten(new JsonReader(new StringReader(duplicates)), streamMap);
+            
+            Assert.assertEquals(mode.toString(), TreeMultimap.create(treeMap), streamMap);
+            // only the last value of each duplicate name is kept
+            Assert.assertFalse(mode.toString(), streamMap.containsValue("1"));
+            Assert.assertFalse(mode.toString(), streamMap.containsValue("4"));
+            Assert.assertFalse(mode.toString(), streamMap.containsValue("7"));
+            Assert.assertFalse(mode.toString(), streamMap.containsValue("9"));
+            Assert.assertEquals(mode.toString(), mode != FlattenMode.SIMPLE, streamMap.containsValue("10"));
+            Assert.assertEquals(mode.toString(), mode != FlattenMode.SIMPLE, streamMap.containsValue("6"));
+        }
+        
+        JsonObjectFlattener flattener = new JsonObjectFlattenerImpl.Builder().flattenMode(FlattenMode.NORMAL).mapKeyValueNormalizer(noOpNormalizer).build();
+        Multimap<String,String> streamMap = TreeMultimap.create();
+        flattener.flatten(new JsonReader(new StringReader(duplicates)), streamMap);
+        Assert.assertEquals(Arrays.asList("a.h", "b.c.i", "e.0.f"), new ArrayList<>(streamMap.keySet()));
+    }
+    
+    @Test(expected = IllegalStateException.class)
+    public void testStreamingFlattenNotAnObject() throws Exception {
+        JsonObjectFlattener flattener = new JsonObjectFlattenerImpl.Builder().build();
+        flattener.flatten(new JsonReader(new StringReader("[1, 2, 3]")), TreeMultimap.<String,String> create());
+    }
+    
     private void printMap(Multimap<String,String> fieldMap) {
         TreeMultimap<String,String> sorted = TreeMultimap.create(fieldMap);
         for (String key : sorted.keySet()) {
@@ -1,5 +1,7 @@
 package datawave.query;
 
+import datawave.webservice.query.util.LookupUUIDUtil;
+
 public class QueryParameters {
     
     /**
@@ -157,4 +159,11 @@ public class QueryParameters {
     
     public static final String DATE_INDEX_TIME_TRAVEL = "date.index.time.travel";
     
+    /**
+     * Resolve a disjunction of UUID terms straight from the global index instead of planning the query. Each returned document only holds the UUID fields it
+     * was resolved by, so this is meant for lookups that only need the ids of the documents, such as content lookups by UUID. The parameter is set by the
+     * {@link LookupUUIDUtil}, which defines its name.
+     */
+    public static final String UUID_LOOKUP_ENGINE = LookupUUIDUtil.PARAM_UUID_LOOKUP_ENGINE;
+    
 }
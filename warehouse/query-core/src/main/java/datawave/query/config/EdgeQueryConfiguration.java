@@ -35,6 +35,8 @@ public class EdgeQueryConfiguration extends GenericQueryConfiguration {
     
     public static final String SUMMARIZE = "summarize";
     
+    public static final String SUMMARIZE_TOP_N = "summarize.topN";
+    
     // Query model defaults...
     private String modelName = "DATAWAVE_EDGE";
     private String modelTableName = "DatawaveMetadata";
@@ -56,6 +58,9 @@ public class EdgeQueryConfiguration extends GenericQueryConfiguration {
     // Use to aggregate results will be false by default
     private boolean aggregateResults = false;
     
+    // The number of sinks per source to return when aggregating results, or 0 for all of them
+    private int summarizeTopN = 0;
+    
     public EdgeQueryConfiguration(EdgeQueryLogic configuredLogic, Query query) {
         super(configuredLogic);
         setDataTypes(configuredLogic.getDataTypes());
@@ -143,6 +148,11 @@ public class EdgeQueryConfiguration extends GenericQueryConfiguration {
             if (p != null && !p.getParameterValue().isEmpty()) {
                 this.aggregateResults = Boolean.parseBoolean(p.getParameterValue());
             }
+            
+            p = settings.findParameter(SUMMARIZE_TOP_N);
+            if (p != null && !p.getParameterValue().isEmpty()) {
+                this.summarizeTopN = Integer.parseInt(p.getParameterValue());
+            }
         }
         return this;
     }
@@ -179,6 +189,14 @@ public class EdgeQueryConfiguration extends GenericQueryConfiguration {
         this.aggregateResults = aggregateResults;
     }
     
+    public int getSummarizeTopN() {
+        return summarizeTopN;
+    }
+    
+    public void setSummarizeTopN(int summarizeTopN) {
+        this.summarizeTopN = summarizeTopN;
+    }
+    
     public EdgeQueryModel getEdgeQueryModel() {
         return this.edgeQueryModel;
     }
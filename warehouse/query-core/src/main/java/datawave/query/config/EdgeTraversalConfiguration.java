@@ -0,0 +1,108 @@
+package datawave.query.config;
+
+import datawave.query.tables.edge.EdgeTraversalQueryLogic;
+import datawave.webservice.query.Query;
+import datawave.webservice.query.QueryImpl;
+
+public class EdgeTraversalConfiguration extends EdgeQueryConfiguration {
+    
+    public static final String HOPS = "traversal.hops";
+    public static final String EDGES = "traversal.edges";
+    public static final String MAX_FAN_OUT = "traversal.maxFanOut";
+    
+    // The number of hops to expand from the sources of the query
+    private int hops;
+    private int maxHops;
+    
+    // The query that the edges of every hop must match, e.g. TYPE == 'x'
+    private String edgeQuery = "";
+    
+    // The number of sinks to expand per source and hop, or 0 for all of them
+    private int maxFanOut;
+    
+    private int frontierBatchSize;
+    private int maxVertices;
+    
+    public EdgeTraversalConfiguration(EdgeTraversalQueryLogic configuredLogic, Query query) {
+        super(configuredLogic, query);
+        setHops(configuredLogic.getHops());
+        setMaxHops(configuredLogic.getMaxHops());
+        setMaxFanOut(configuredLogic.getMaxFanOut());
+        setFrontierBatchSize(configuredLogic.getFrontierBatchSize());
+        setMaxVertices(configuredLogic.getMaxVertices());
+    }
+    
+    @Override
+    public EdgeQueryConfiguration parseParameters(Query settings) {
+        super.parseParameters(settings);
+        if (settings.getParameters() != null) {
+            
+            QueryImpl.Parameter p = settings.findParameter(HOPS);
+            if (p != null && !p.getParameterValue().isEmpty()) {
+                this.hops = Integer.parseInt(p.getParameterValue());
+            }
+            
+            p = settings.findParameter(EDGES);
+            if (p != null && !p.getParameterValue().isEmpty()) {
+                this.edgeQuery = p.getParameterValue();
+            }
+            
+            p = settings.findParameter(MAX_FAN_OUT);
+            if (p != null && !p.getParameterValue().isEmpty()) {
+                this.maxFanOut = Integer.parseInt(p.getParameterValue());
+            }
+        }
+        if (hops < 1 || hops > maxHops) {
+            throw new IllegalArgumentException("The query parameter " + HOPS + " must be between 1 and " + maxHops + ": " + hops);
+        }
+        return this;
+    }
+    
+    public int getHops() {
+        return hops;
+    }
+    
+    public void setHops(int hops) {
+        this.hops = hops;
+    }
+    
+    public int getMaxHops() {
+        return maxHops;
+    }
+    
+    public void setMaxHops(int maxHops) {
+        this.maxHops = maxHops;
+    }
+    
+    public String getEdgeQuery() {
+        return edgeQuery;
+    }
+    
+    public void setEdgeQuery(String edgeQuery) {
+        this.edgeQuery = edgeQuery;
+    }
+    
+    public int getMaxFanOut() {
+        return maxFanOut;
+    }
+    
+    public void setMaxFanOut(int maxFanOut) {
+        this.maxFanOut = maxFanOut;
+    }
+    
+    public int getFrontierBatchSize() {
+        return frontierBatchSize;
+    }
+    
+    public void setFrontierBatchSize(int frontierBatchSize) {
+        this.frontierBatchSize = frontierBatchSize;
+    }
+    
+    public int getMaxVertices() {
+        return maxVertices;
+    }
+    
+    public void setMaxVertices(int maxVertices) {
+        this.maxVertices = maxVertices;
+    }
+}
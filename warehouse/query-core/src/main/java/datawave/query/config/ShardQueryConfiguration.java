@@ -82,6 +82,9 @@ public class ShardQueryConfiguration extends GenericQueryConfiguration implement
     private boolean parseTldUids = false;
     private boolean collapseUids = false;
     private int collapseUidsThreshold = -1;
+    // The first day (yyyyMMdd) that ingest wrote the days of the indexed fields to the metadata table. Days of the global index from then on that a field
+    // has no entries for are not scanned. Null to scan every day.
+    private String fieldDaysStartDate = null;
     // Should this query dedupe terms within ANDs and ORs
     private boolean enforceUniqueTermsWithinExpressions = false;
     private boolean sequentialScheduler = false;
@@ -345,6 +348,7 @@ public class ShardQueryConfiguration extends GenericQueryConfiguration implement
         this.setMaxIndexScanTimeMillis(other.getMaxIndexScanTimeMillis());
         this.setCollapseUids(other.getCollapseUids());
         this.setCollapseUidsThreshold(other.getCollapseUidsThreshold());
+        this.setFieldDaysStartDate(other.getFieldDaysStartDate());
         this.setEnforceUniqueTermsWithinExpressions(other.getEnforceUniqueTermsWithinExpressions());
         this.setParseTldUids(other.getParseTldUids());
         this.setSequentialScheduler(other.getSequentialScheduler());
@@ -1811,6 +1815,14 @@ public class ShardQueryConfiguration extends GenericQueryConfiguration implement
         this.collapseUidsThreshold = collapseUidsThreshold;
     }
     
+    public String getFieldDaysStartDate() {
+        return fieldDaysStartDate;
+    }
+    
+    public void setFieldDaysStartDate(String fieldDaysStartDate) {
+        this.fieldDaysStartDate = fieldDaysStartDate;
+    }
+    
     public boolean getEnforceUniqueTermsWithinExpressions() {
         return enforceUniqueTermsWithinExpressions;
     }
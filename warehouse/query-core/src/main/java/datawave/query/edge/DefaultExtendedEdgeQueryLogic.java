@@ -182,7 +182,11 @@ public class DefaultExtendedEdgeQueryLogic extends EdgeQueryLogic {
         }
         
         this.scanner = scanner;
-        iterator = scanner.iterator();
+        if (this.summaryOutputType) {
+            addSummaryIterator(scanner, qData, localConf.getSummarizeTopN());
+        } else {
+            iterator = scanner.iterator();
+        }
     }
     
     @Override
@@ -34,6 +34,7 @@ import datawave.query.util.MetadataHelper;
 import datawave.query.util.QueryScannerHelper;
 import datawave.query.util.Tuple2;
 import datawave.query.util.Tuples;
+import datawave.query.util.metadata.FieldDays;
 import datawave.util.StringUtils;
 import datawave.util.time.DateHelper;
 import datawave.webservice.common.logging.ThreadConfigurableLogger;
@@ -42,6 +43,7 @@ import datawave.webservice.query.exception.PreConditionFailedQueryException;
 import datawave.webservice.query.exception.QueryException;
 import org.apache.accumulo.core.client.BatchScanner;
 import org.apache.accumulo.core.client.IteratorSetting;
+import org.apache.accumulo.core.client.Scanner;
 import org.apache.accumulo.core.client.TableNotFoundException;
 import org.apache.accumulo.core.data.Key;
 import org.apache.accumulo.core.data.Range;
@@ -86,6 +88,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingDeque;
@@ -137,6 +140,11 @@ public class RangeStream extends BaseVisitor implements CloseableIterable<QueryP
     
     protected Set<String> indexOnlyFields = Sets.newHashSet();
     
+    /**
+     * The days that each field was indexed, from the field days start date until the end date of the query
+     */
+    protected Map<String,Set<String>> fieldDays = new ConcurrentHashMap<>();
+    
     public RangeStream(ShardQueryConfiguration config, ScannerFactory scanners, MetadataHelper metadataHelper) {
         this.config = config;
         this.scanners = scanners;
@@ -440,6 +448,12 @@ public class RangeStream extends BaseVisitor implements CloseableIterable<QueryP
         log.debug("\"" + fieldName + "\" is indexed. for " + literal);
         try {
             
+            Collection<Range> ranges = rangesForTerm(literal, fieldName);
+            if (ranges.isEmpty()) {
+                log.debug("\"" + fieldName + "\" was not indexed on any day of the query");
+                return ScannerStream.noData(node);
+            }
+            
             // two scenarios
             Iterator<Tuple2<String,IndexInfo>> itr = null;
             int stackStart = config.getBaseIteratorPriority();
@@ -466,14 +480,14 @@ public class RangeStream extends BaseVisitor implements CloseableIterable<QueryP
                 String queryString = fieldName + "=='" + literal + "'";
                 options.addScanIterator(QueryScannerHelper.getQueryInfoIterator(config.getQuery(), false, queryString));
                 
-                scanSession.setRanges(Collections.singleton(rangeForTerm(literal, fieldName, config))).setOptions(options);
+                scanSession.setRanges(ranges).setOptions(options);
                 
                 itr = Iterators.transform(scanSession, new EntryParser(node, fieldName, literal, indexOnlyFields));
                 
             } else {
                 
                 BatchScanner scanner = scanners.newScanner(config.getIndexTableName(), config.getAuthorizations(), 1, config.getQuery());
-                scanner.setRanges(Collections.singleton(rangeForTerm(literal, fieldName, config)));
+                scanner.setRanges(ranges);
                 scanner.fetchColumnFamily(new Text(fieldName));
                 scanner.addScanIterator(makeDataTypeFilter(config, stackStart++));
                 
@@ -761,6 +775,67 @@ public class RangeStream extends BaseVisitor implements CloseableIterable<QueryP
         return new Range(new Key(term, field, DateHelper.format(start) + "_"), true, new Key(term, field, DateHelper.format(end) + "_" + '\uffff'), false);
     }
     
+    /**
+     * The ranges of the global index to scan for a term. When the config has a field days start date, the days from then on that the field was not indexed
+     * are skipped, with a range for each run of days that remain.
+     * 
+     * @param term
+     *            the term
+     * @param field
+     *            the field
+     * @return the ranges of the term, which are empty if the field was not indexed on any day of the query
+     * @throws TableNotFoundException
+     *             if the metadata table does not exist
+     */
+    public Collection<Range> rangesForTerm(String term, String field) throws TableNotFoundException {
+        String startDay = config.getFieldDaysStartDate();
+        String beginDay = DateHelper.format(config.getBeginDate());
+        String endDay = DateHelper.format(config.getEndDate());
+        if (startDay == null || endDay.compareTo(startDay) < 0) {
+            return Collections.singleton(rangeForTerm(term, field, config));
+        }
+        
+        Set<String> days = getFieldDays(field, beginDay.compareTo(startDay) < 0 ? startDay : beginDay, endDay);
+        List<Range> ranges = new ArrayList<>();
+        Date runStart = null;
+        Date runEnd = null;
+        Date end = DateHelper.parse(endDay);
+        for (Date date = DateHelper.parse(beginDay); !date.after(end); date = new Date(date.getTime() + TimeUnit.DAYS.toMillis(1))) {
+            String day = DateHelper.format(date);
+            if (day.compareTo(startDay) < 0 || days.contains(day)) {
+                if (runStart == null) {
+                    runStart = date;
+                }
+                runEnd = date;
+            } else if (runStart != null) {
+                ranges.add(rangeForTerm(term, field, runStart, runEnd));
+                runStart = null;
+            }
+        }
+        if (runStart != null) {
+            ranges.add(rangeForTerm(term, field, runStart, runEnd));
+        }
+        
+        if (log.isDebugEnabled()) {
+            log.debug("Scanning " + ranges.size() + " ranges of days for " + field + " with " + days.size() + " indexed days since " + startDay);
+        }
+        return ranges;
+    }
+    
+    protected Set<String> getFieldDays(String field, String beginDay, String endDay) throws TableNotFoundException {
+        Set<String> days = fieldDays.get(field);
+        if (days == null) {
+            Scanner scanner = scanners.newSingleScanner(config.getMetadataTableName(), config.getAuthorizations(), config.getQuery());
+            try {
+                days = FieldDays.getDays(scanner, field, config.getDatatypeFilter(), beginDay, endDay);
+            } finally {
+                scanner.close();
+            }
+            fieldDays.put(field, days);
+        }
+        return days;
+    }
+    
     public static IteratorSetting makeDataTypeFilter(ShardQueryConfiguration config, int stackPosition) {
         IteratorSetting is = new IteratorSetting(stackPosition, DataTypeFilter.class);
         is.addOption(DataTypeFilter.TYPES, config.getDatatypeFilterAsString());
@@ -0,0 +1,193 @@
+package datawave.query.iterator;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import datawave.query.tables.edge.EdgeSummary;
+
+import org.apache.accumulo.core.data.ArrayByteSequence;
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.IteratorEnvironment;
+import org.apache.accumulo.core.iterators.OptionDescriber;
+import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
+import org.apache.accumulo.core.iterators.WrappingIterator;
+import org.apache.log4j.Logger;
+
+/**
+ * Summarizes edges on the tablet server, so that only the summary is returned to the web server. The edges of a row that differ only by date are combined into
+ * a single edge, see {@link EdgeSummary}.
+ * <p>
+ * Without the {@link #TOP_N_OPTION}, each row, i.e., each source and sink, is returned as one entry. With it, each source is returned as one entry, with its
+ * stats edges and the edges of only the sinks with the highest total counts. Either way the key of an entry is the last key summarized into it, so that a scan
+ * that is resumed after that key resumes with the next row or source, and the value holds the {@link EdgeSummary#encode(Collection, boolean) encoded} edges.
+ * <p>
+ * A row or source that is not wholly within the seeked range, because it is split between ranges or tablets, is encoded as a partial summary. The sinks of a
+ * partial source are ranked separately, and are ranked again with those of its other parts by the {@link datawave.query.tables.edge.EdgeSummaryMerger} on the
+ * web server, which returns the complete summaries as they are read.
+ */
+public class EdgeSummaryIterator extends WrappingIterator implements OptionDescriber {
+    
+    private static final Logger log = Logger.getLogger(EdgeSummaryIterator.class);
+    
+    public static final String TOP_N_OPTION = "topN";
+    
+    private int topN = 0;
+    
+    private Range range;
+    private Key topKey;
+    private Value topValue;
+    
+    private final EdgeSummary stats = new EdgeSummary();
+    
+    @Override
+    public void init(SortedKeyValueIterator<Key,Value> source, Map<String,String> options, IteratorEnvironment env) throws IOException {
+        super.init(source, options, env);
+        if (options.containsKey(TOP_N_OPTION)) {
+            topN = Integer.parseInt(options.get(TOP_N_OPTION));
+        }
+    }
+    
+    @Override
+    public SortedKeyValueIterator<Key,Value> deepCopy(IteratorEnvironment env) {
+        EdgeSummaryIterator copy = new EdgeSummaryIterator();
+        copy.setSource(getSource().deepCopy(env));
+        copy.topN = topN;
+        return copy;
+    }
+    
+    @Override
+    public IteratorOptions describeOptions() {
+        IteratorOptions io = new IteratorOptions("edgeSummary", "Summarizes the edges of each row, or of each source if topN is set", null, null);
+        io.addNamedOption(TOP_N_OPTION, "The number of sinks to return per source, ranked by their total count. Each row is returned if not set.");
+        return io;
+    }
+    
+    @Override
+    public boolean validateOptions(Map<String,String> options) {
+        if (options.containsKey(TOP_N_OPTION)) {
+            try {
+                Integer.parseInt(options.get(TOP_N_OPTION));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid " + TOP_N_OPTION + ": " + options.get(TOP_N_OPTION), e);
+            }
+        }
+        return true;
+    }
+    
+    @Override
+    public void seek(Range range, Collection<ByteSequence> columnFamilies, boolean inclusive) throws IOException {
+        super.seek(range, columnFamilies, inclusive);
+        this.range = range;
+        findTop();
+    }
+    
+    @Override
+    public boolean hasTop() {
+        return topKey != null;
+    }
+    
+    @Override
+    public Key getTopKey() {
+        return topKey;
+    }
+    
+    @Override
+    public Value getTopValue() {
+        return topValue;
+    }
+    
+    @Override
+    public void next() throws IOException {
+        findTop();
+    }
+    
+    private void findTop() throws IOException {
+        topKey = null;
+        topValue = null;
+        
+        SortedKeyValueIterator<Key,Value> source = getSource();
+        if (!source.hasTop()) {
+            return;
+        }
+        
+        if (topN > 0) {
+            // summarize every row of the source, keeping only the top sinks
+            ByteSequence vertex = new ArrayByteSequence(getVertex(source.getTopKey().getRowData()).toArray());
+            EdgeSummary.TopSinks top = new EdgeSummary.TopSinks(topN);
+            stats.clear();
+            while (source.hasTop() && vertex.equals(getVertex(source.getTopKey().getRowData()))) {
+                if (isStatsRow(source.getTopKey().getRowData())) {
+                    summarizeRow(source, stats);
+                } else {
+                    EdgeSummary sink = new EdgeSummary();
+                    summarizeRow(source, sink);
+                    top.offer(sink);
+                }
+            }
+            List<Map.Entry<Key,Value>> edges = new ArrayList<>(stats.getEdges());
+            edges.addAll(top.drain());
+            // the rows of a source run from the stats row up to the vertex followed by a 1 byte
+            topValue = EdgeSummary.encode(edges, covers(vertex.toArray(), append(vertex.toArray(), (byte) 1)));
+        } else {
+            byte[] rowData = source.getTopKey().getRowData().toArray();
+            EdgeSummary row = new EdgeSummary();
+            summarizeRow(source, row);
+            topValue = EdgeSummary.encode(row.getEdges(), covers(rowData, append(rowData, (byte) 0)));
+        }
+        
+        if (log.isTraceEnabled()) {
+            log.trace("Summarized edges through " + topKey);
+        }
+    }
+    
+    /**
+     * Summarize the edges of the current row of the source, leaving the source at the next row and {@link #topKey} at the last key of the row
+     */
+    private void summarizeRow(SortedKeyValueIterator<Key,Value> source, EdgeSummary summary) throws IOException {
+        ByteSequence row = new ArrayByteSequence(source.getTopKey().getRowData().toArray());
+        while (source.hasTop() && row.equals(source.getTopKey().getRowData())) {
+            Key key = source.getTopKey();
+            if (!key.isDeleted()) {
+                summary.add(key, source.getTopValue());
+            }
+            topKey = new Key(key);
+            source.next();
+        }
+    }
+    
+    /**
+     * @return whether the seeked range holds every key from the start row up to, but not including, the end row, so that a summary of those rows is complete
+     */
+    private boolean covers(byte[] startRow, byte[] endRow) {
+        return !range.beforeStartKey(new Key(startRow)) && (range.isInfiniteStopKey() || range.getEndKey().compareTo(new Key(endRow)) >= 0);
+    }
+    
+    private static byte[] append(byte[] bytes, byte b) {
+        byte[] appended = Arrays.copyOf(bytes, bytes.length + 1);
+        appended[bytes.length] = b;
+        return appended;
+    }
+    
+    /**
+     * @return the source vertex of a row, i.e., the row up to the first null byte
+     */
+    private static ByteSequence getVertex(ByteSequence row) {
+        for (int i = 0; i < row.length(); i++) {
+            if (row.byteAt(i) == 0) {
+                return row.subSequence(0, i);
+            }
+        }
+        return row;
+    }
+    
+    private static boolean isStatsRow(ByteSequence row) {
+        return getVertex(row).length() == row.length();
+    }
+}
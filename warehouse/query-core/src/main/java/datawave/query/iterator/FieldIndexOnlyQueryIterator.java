@@ -83,6 +83,7 @@ public class FieldIndexOnlyQueryIterator extends QueryIterator {
         options.put(QUERY_ID, "The query id");
         options.put(TYPE_METADATA, "encapsulation of a map of field name to a multimap of ingest-type to DataType class names");
         options.put(TYPE_METADATA_AUTHS, "subset of metadata auths that the user has. Used as a key for the TypeMetadataProvider");
+        options.put(TYPE_METADATA_VERSION, "hash of the type metadata, used to share it between the scans of a query");
         options.put(QUERY_MAPPING_COMPRESS, "Boolean value to indicate Normalizer mapping is compressed");
         options.put(REDUCED_RESPONSE, "Whether or not to return visibility markings on each attribute. Default: " + reducedResponse);
         options.put(Constants.RETURN_TYPE, "The method to use to serialize data for return to the client");
@@ -96,6 +96,9 @@ public class QueryOptions implements OptionDescriber {
     
     protected static Cache<String,FileSystem> fileSystemCache = CacheBuilder.newBuilder().concurrencyLevel(10).maximumSize(100).build();
     
+    // the TypeMetadata passed in the options by version, so that it is only deserialized once for all of the scans of a query
+    protected static Cache<String,TypeMetadata> typeMetadataCache = CacheBuilder.newBuilder().concurrencyLevel(10).maximumSize(100).build();
+    
     public static final Charset UTF8 = Charset.forName("utf-8");
     
     public static final String DEBUG_MULTITHREADED_SOURCES = "debug.multithreaded.sources";
@@ -110,6 +113,7 @@ public class QueryOptions implements OptionDescriber {
     public static final String QUERY_ID = "query.id";
     public static final String TYPE_METADATA = "type.metadata";
     public static final String TYPE_METADATA_AUTHS = "type.metadata.auths";
+    public static final String TYPE_METADATA_VERSION = "type.metadata.version";
     public static final String METADATA_TABLE_NAME = "model.table.name";
     
     public static final String REDUCED_RESPONSE = "reduced.response";
@@ -250,6 +254,7 @@ public class QueryOptions implements OptionDescriber {
     protected boolean disableIndexOnlyDocuments = false;
     protected TypeMetadata typeMetadata = new TypeMetadata();
     protected Set<String> typeMetadataAuthsKey = Sets.newHashSet();
+    protected String typeMetadataVersion = null;
     protected CompositeMetadata compositeMetadata = null;
     protected int compositeSeekThreshold = 10;
     protected DocumentSerialization.ReturnType returnType = DocumentSerialization.ReturnType.kryo;
@@ -390,6 +395,7 @@ public class QueryOptions implements OptionDescriber {
         this.typeMetadata = other.typeMetadata;
         this.typeMetadataProvider = other.typeMetadataProvider;
         this.typeMetadataAuthsKey = other.typeMetadataAuthsKey;
+        this.typeMetadataVersion = other.typeMetadataVersion;
         this.metadataTableName = other.metadataTableName;
         this.compositeMetadata = other.compositeMetadata;
         this.compositeSeekThreshold = other.compositeSeekThreshold;
@@ -562,7 +568,8 @@ public class QueryOptions implements OptionDescriber {
                 }
             }
             if (this.typeMetadataProvider != null) {
-                TypeMetadata typeMetadata = this.typeMetadataProvider.getTypeMetadata(this.metadataTableName, this.typeMetadataAuthsKey);
+                TypeMetadata typeMetadata = this.typeMetadataProvider.getTypeMetadata(this.metadataTableName, this.typeMetadataAuthsKey,
+                                this.typeMetadataVersion);
                 if (typeMetadata != null) {
                     if (log.isDebugEnabled()) {
                         log.debug("got a typeMetadata from hdfs and the bridge uri is " + typeMetadataProvider.getBridge().getUri());
@@ -1012,6 +1019,7 @@ public class QueryOptions implements OptionDescriber {
         options.put(QUERY, "The JEXL query to evaluate documents against");
         options.put(QUERY_ID, "The UUID of the query");
         options.put(TYPE_METADATA, "A mapping of field name to a set of DataType class names");
+        options.put(TYPE_METADATA_VERSION, "A hash of the type metadata, used to share it between the scans of a query");
         options.put(METADATA_TABLE_NAME, "The name of the metadata table");
         options.put(QUERY_MAPPING_COMPRESS, "Boolean value to indicate Normalizer mapping is compressed");
         options.put(REDUCED_RESPONSE, "Whether or not to return visibility markings on each attribute. Default: " + reducedResponse);
@@ -1565,16 +1573,27 @@ public class QueryOptions implements OptionDescriber {
                 log.trace("Using typeMetadataAuthsKey: " + this.typeMetadataAuthsKey);
             }
         }
+        if (options.containsKey(TYPE_METADATA_VERSION)) {
+            this.typeMetadataVersion = options.get(TYPE_METADATA_VERSION);
+        }
         // Serialized version of a mapping from field name to DataType used
         if (options.containsKey(TYPE_METADATA)) {
-            String typeMetadataString = options.get(TYPE_METADATA);
-            try {
-                if (compressedMappings) {
-                    typeMetadataString = decompressOption(typeMetadataString, QueryOptions.UTF8);
+            TypeMetadata cached = (this.typeMetadataVersion == null ? null : typeMetadataCache.getIfPresent(this.typeMetadataVersion));
+            if (cached != null) {
+                this.typeMetadata = cached;
+            } else {
+                String typeMetadataString = options.get(TYPE_METADATA);
+                try {
+                    if (compressedMappings) {
+                        typeMetadataString = decompressOption(typeMetadataString, QueryOptions.UTF8);
+                    }
+                    this.typeMetadata = buildTypeMetadata(typeMetadataString);
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+                if (this.typeMetadataVersion != null) {
+                    typeMetadataCache.put(this.typeMetadataVersion, this.typeMetadata);
                 }
-                this.typeMetadata = buildTypeMetadata(typeMetadataString);
-            } catch (IOException e) {
-                throw new RuntimeException(e);
             }
             
             if (log.isTraceEnabled()) {
@@ -0,0 +1,378 @@
+package datawave.query.iterator.filter;
+
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import datawave.edge.model.EdgeModelAware;
+import datawave.edge.model.EdgeModelAware.Fields.FieldKey;
+import datawave.edge.util.EdgeKeyView;
+
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.commons.jexl2.parser.ASTAndNode;
+import org.apache.commons.jexl2.parser.ASTEQNode;
+import org.apache.commons.jexl2.parser.ASTERNode;
+import org.apache.commons.jexl2.parser.ASTFalseNode;
+import org.apache.commons.jexl2.parser.ASTIdentifier;
+import org.apache.commons.jexl2.parser.ASTJexlScript;
+import org.apache.commons.jexl2.parser.ASTNENode;
+import org.apache.commons.jexl2.parser.ASTNRNode;
+import org.apache.commons.jexl2.parser.ASTNotNode;
+import org.apache.commons.jexl2.parser.ASTOrNode;
+import org.apache.commons.jexl2.parser.ASTReference;
+import org.apache.commons.jexl2.parser.ASTReferenceExpression;
+import org.apache.commons.jexl2.parser.ASTStringLiteral;
+import org.apache.commons.jexl2.parser.ASTTrueNode;
+import org.apache.commons.jexl2.parser.JexlNode;
+import org.apache.commons.jexl2.parser.ParseException;
+import org.apache.commons.jexl2.parser.Parser;
+import org.apache.commons.jexl2.parser.TokenMgrError;
+import org.apache.commons.lang.StringEscapeUtils;
+import org.apache.log4j.Logger;
+
+import com.google.common.base.Predicate;
+
+/**
+ * A JEXL edge query compiled into a predicate over the bytes of an edge key, with the same result as the {@link EdgeFilterIterator} evaluating the query
+ * against the lower cased fields of the key, see {@link EdgeFilterIterator#setupContext}.
+ * <p>
+ * The terms of the query compare the lower cased string literals and match the regular expressions directly against the {@link EdgeKeyView} fields of the
+ * key, lower casing ASCII bytes as they are compared, so no strings are decoded or allocated. Fields that are not plain ASCII, or for the source and sink
+ * that contain escapes, are decoded, unescaped and lower cased as the JEXL context would have them.
+ * <p>
+ * Only the and, or and not of ==, !=, =~ and !~ terms comparing an edge field to a string literal can be compiled. {@link #compile(String)} returns null for
+ * any other query, which must then be evaluated by JEXL. A compiled filter holds the matchers of its regular expressions, so it is not thread-safe.
+ */
+public class CompiledEdgeFilter implements Predicate<EdgeKeyView> {
+    
+    private static final Logger log = Logger.getLogger(CompiledEdgeFilter.class);
+    
+    // lower casing ASCII bytes is only the same as String.toLowerCase in locales that do not lower case ASCII letters differently, e.g. Turkish
+    private static final boolean ASCII_LOWER_CASE = "ABCDEFGHIJKLMNOPQRSTUVWXYZ".toLowerCase().equals("ABCDEFGHIJKLMNOPQRSTUVWXYZ".toLowerCase(Locale.ROOT));
+    
+    private final String query;
+    private final Term root;
+    
+    private CompiledEdgeFilter(String query, Term root) {
+        this.query = query;
+        this.root = root;
+    }
+    
+    /**
+     * Compile a query
+     *
+     * @param query
+     *            the lower cased query, as the {@link EdgeFilterIterator} evaluates it
+     * @return the compiled query, or null if the query can not be compiled
+     */
+    public static CompiledEdgeFilter compile(String query) {
+        try {
+            ASTJexlScript script = new Parser(new StringReader(";")).parse(new StringReader(query), null);
+            if (script.jjtGetNumChildren() != 1) {
+                return null;
+            }
+            Term root = new Compiler().compile(script.jjtGetChild(0));
+            return root == null ? null : new CompiledEdgeFilter(query, root);
+        } catch (ParseException | TokenMgrError | PatternSyntaxException e) {
+            // leave it to JEXL to report
+            if (log.isDebugEnabled()) {
+                log.debug("Unable to compile edge query " + query, e);
+            }
+            return null;
+        }
+    }
+    
+    /**
+     * @return a filter for the same query, with its own matchers
+     */
+    public CompiledEdgeFilter copy() {
+        return compile(query);
+    }
+    
+    @Override
+    public boolean apply(EdgeKeyView key) {
+        return root.evaluate(key);
+    }
+    
+    public String getQuery() {
+        return query;
+    }
+    
+    private interface Term {
+        boolean evaluate(EdgeKeyView key);
+    }
+    
+    private static final class Compiler {
+        // the variables set in the JEXL context
+        private static final Map<String,FieldKey> FIELDS = new HashMap<>();
+        static {
+            FIELDS.put(EdgeModelAware.EDGE_SOURCE.toLowerCase(), FieldKey.EDGE_SOURCE);
+            FIELDS.put(EdgeModelAware.EDGE_SINK.toLowerCase(), FieldKey.EDGE_SINK);
+            FIELDS.put(EdgeModelAware.EDGE_TYPE.toLowerCase(), FieldKey.EDGE_TYPE);
+            FIELDS.put(EdgeModelAware.EDGE_RELATIONSHIP.toLowerCase(), FieldKey.EDGE_RELATIONSHIP);
+            FIELDS.put(EdgeModelAware.EDGE_ATTRIBUTE1.toLowerCase(), FieldKey.EDGE_ATTRIBUTE1);
+            FIELDS.put(EdgeModelAware.EDGE_ATTRIBUTE2.toLowerCase(), FieldKey.EDGE_ATTRIBUTE2);
+            FIELDS.put(EdgeModelAware.EDGE_ATTRIBUTE3.toLowerCase(), FieldKey.EDGE_ATTRIBUTE3);
+            FIELDS.put(EdgeModelAware.DATE.toLowerCase(), FieldKey.DATE);
+        }
+        
+        // one reusable view per field, as a term only looks at one field at a time
+        private final Map<FieldKey,FieldValue> values = new EnumMap<>(FieldKey.class);
+        
+        /**
+         * @return the compiled node, or null if it can not be compiled
+         */
+        private Term compile(JexlNode node) {
+            if (node instanceof ASTReference || node instanceof ASTReferenceExpression) {
+                return node.jjtGetNumChildren() == 1 ? compile(node.jjtGetChild(0)) : null;
+            } else if (node instanceof ASTAndNode || node instanceof ASTOrNode) {
+                List<Term> terms = new ArrayList<>();
+                for (int i = 0; i < node.jjtGetNumChildren(); i++) {
+                    Term term = compile(node.jjtGetChild(i));
+                    if (term == null) {
+                        return null;
+                    }
+                    terms.add(term);
+                }
+                return node instanceof ASTAndNode ? new And(terms) : new Or(terms);
+            } else if (node instanceof ASTNotNode) {
+                final Term term = (node.jjtGetNumChildren() == 1 ? compile(node.jjtGetChild(0)) : null);
+                return term == null ? null : key -> !term.evaluate(key);
+            } else if (node instanceof ASTTrueNode) {
+                return key -> true;
+            } else if (node instanceof ASTFalseNode) {
+                return key -> false;
+            } else if (node instanceof ASTEQNode || node instanceof ASTNENode) {
+                return compileEquals(node, node instanceof ASTNENode);
+            } else if (node instanceof ASTERNode || node instanceof ASTNRNode) {
+                return compileMatches(node, node instanceof ASTNRNode);
+            }
+            return null;
+        }
+        
+        private Term compileEquals(JexlNode node, boolean negated) {
+            if (node.jjtGetNumChildren() != 2) {
+                return null;
+            }
+            // equality is symmetric, so the literal may be on either side
+            FieldKey field = field(node.jjtGetChild(0));
+            String literal = literal(node.jjtGetChild(1));
+            if (field == null || literal == null) {
+                field = field(node.jjtGetChild(1));
+                literal = literal(node.jjtGetChild(0));
+            }
+            if (field == null || literal == null) {
+                return null;
+            }
+            return new Equals(value(field), literal, negated);
+        }
+        
+        private Term compileMatches(JexlNode node, boolean negated) {
+            if (node.jjtGetNumChildren() != 2) {
+                return null;
+            }
+            FieldKey field = field(node.jjtGetChild(0));
+            String literal = literal(node.jjtGetChild(1));
+            if (field == null || literal == null) {
+                return null;
+            }
+            return new Matches(value(field), Pattern.compile(literal), negated);
+        }
+        
+        private FieldValue value(FieldKey field) {
+            return values.computeIfAbsent(field, FieldValue::new);
+        }
+        
+        private static FieldKey field(JexlNode node) {
+            if (node instanceof ASTReference && node.jjtGetNumChildren() == 1) {
+                node = node.jjtGetChild(0);
+            }
+            return node instanceof ASTIdentifier ? FIELDS.get(node.image) : null;
+        }
+        
+        private static String literal(JexlNode node) {
+            if (node instanceof ASTReference && node.jjtGetNumChildren() == 1) {
+                node = node.jjtGetChild(0);
+            }
+            return node instanceof ASTStringLiteral ? node.image : null;
+        }
+    }
+    
+    /**
+     * The value of one field of the key, either as the bytes of the key or, when they are not plain ASCII, decoded as the JEXL context would have it
+     */
+    private static final class FieldValue implements CharSequence {
+        private final FieldKey field;
+        // the source and sink are escaped in the row
+        private final boolean escaped;
+        private ByteSequence bytes;
+        private String decoded;
+        
+        private FieldValue(FieldKey field) {
+            this.field = field;
+            this.escaped = (field == FieldKey.EDGE_SOURCE || field == FieldKey.EDGE_SINK);
+        }
+        
+        /**
+         * @return false if the key does not have the field
+         */
+        private boolean set(EdgeKeyView key) {
+            bytes = key.getField(field);
+            decoded = null;
+            if (bytes == null) {
+                return false;
+            }
+            if (!ASCII_LOWER_CASE || !isPlainAscii()) {
+                String value = new String(bytes.getBackingArray(), bytes.offset(), bytes.length(), StandardCharsets.UTF_8);
+                if (escaped) {
+                    value = StringEscapeUtils.unescapeJava(value);
+                }
+                decoded = value.toLowerCase();
+            }
+            return true;
+        }
+        
+        private boolean isPlainAscii() {
+            byte[] data = bytes.getBackingArray();
+            for (int i = bytes.offset(), end = bytes.offset() + bytes.length(); i < end; i++) {
+                if (data[i] < 0 || (escaped && data[i] == '\\')) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        
+        private boolean equalTo(String literal, byte[] literalBytes) {
+            if (decoded != null) {
+                return decoded.equals(literal);
+            }
+            if (bytes.length() != literalBytes.length) {
+                return false;
+            }
+            byte[] data = bytes.getBackingArray();
+            int offset = bytes.offset();
+            for (int i = 0; i < literalBytes.length; i++) {
+                if (toLowerCase(data[offset + i]) != literalBytes[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        
+        private static byte toLowerCase(byte b) {
+            return (b >= 'A' && b <= 'Z') ? (byte) (b + ('a' - 'A')) : b;
+        }
+        
+        // the lower cased value, as a CharSequence for the regular expressions
+        
+        @Override
+        public int length() {
+            return decoded != null ? decoded.length() : bytes.length();
+        }
+        
+        @Override
+        public char charAt(int index) {
+            if (decoded != null) {
+                return decoded.charAt(index);
+            }
+            return (char) toLowerCase(bytes.getBackingArray()[bytes.offset() + index]);
+        }
+        
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return toString().substring(start, end);
+        }
+        
+        @Override
+        public String toString() {
+            if (decoded != null) {
+                return decoded;
+            }
+            return new String(bytes.getBackingArray(), bytes.offset(), bytes.length(), StandardCharsets.US_ASCII).toLowerCase();
+        }
+    }
+    
+    private static final class Equals implements Term {
+        private final FieldValue value;
+        private final String literal;
+        private final byte[] literalBytes;
+        private final boolean negated;
+        
+        private Equals(FieldValue value, String literal, boolean negated) {
+            this.value = value;
+            this.literal = literal;
+            this.literalBytes = literal.getBytes(StandardCharsets.UTF_8);
+            this.negated = negated;
+        }
+        
+        @Override
+        public boolean evaluate(EdgeKeyView key) {
+            // a missing field is null in the JEXL context, and null equals no literal
+            boolean equal = value.set(key) && value.equalTo(literal, literalBytes);
+            return equal != negated;
+        }
+    }
+    
+    private static final class Matches implements Term {
+        private final FieldValue value;
+        private final Matcher matcher;
+        private final boolean negated;
+        
+        private Matches(FieldValue value, Pattern pattern, boolean negated) {
+            this.value = value;
+            this.matcher = pattern.matcher("");
+            this.negated = negated;
+        }
+        
+        @Override
+        public boolean evaluate(EdgeKeyView key) {
+            // a missing field is null in the JEXL context, and null matches no regular expression
+            boolean matches = value.set(key) && matcher.reset(value).matches();
+            return matches != negated;
+        }
+    }
+    
+    private static final class And implements Term {
+        private final Term[] terms;
+        
+        private And(List<Term> terms) {
+            this.terms = terms.toArray(new Term[terms.size()]);
+        }
+        
+        @Override
+        public boolean evaluate(EdgeKeyView key) {
+            for (Term term : terms) {
+                if (!term.evaluate(key)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+    
+    private static final class Or implements Term {
+        private final Term[] terms;
+        
+        private Or(List<Term> terms) {
+            this.terms = terms.toArray(new Term[terms.size()]);
+        }
+        
+        @Override
+        public boolean evaluate(EdgeKeyView key) {
+            for (Term term : terms) {
+                if (term.evaluate(key)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -3,14 +3,21 @@ package datawave.query.iterator.filter;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 
 import datawave.edge.model.EdgeModelAware;
 import datawave.edge.model.EdgeModelAware.Fields;
 import datawave.edge.model.EdgeModelAware.Fields.FieldKey;
+import datawave.edge.util.EdgeKey.EDGE_VERSION;
 import datawave.edge.util.EdgeKeyUtil;
+import datawave.edge.util.EdgeKeyView;
 
+import org.apache.accumulo.core.data.ArrayByteSequence;
+import org.apache.accumulo.core.data.ByteSequence;
 import org.apache.accumulo.core.data.Key;
 import org.apache.accumulo.core.data.Value;
 import org.apache.accumulo.core.iterators.Filter;
@@ -21,6 +28,7 @@ import org.apache.commons.jexl2.Expression;
 import org.apache.commons.jexl2.JexlContext;
 import org.apache.commons.jexl2.JexlEngine;
 import org.apache.commons.jexl2.MapContext;
+import org.apache.commons.lang.StringEscapeUtils;
 import org.apache.log4j.Logger;
 
 import com.google.common.collect.HashMultimap;
@@ -33,6 +41,10 @@ import com.google.common.collect.HashMultimap;
  *
  * Prefiltering is an optional component that can determine quickly if a key will fail using a whitelist of accepted values parsed from the jexl
  *
+ * When the queries can be compiled, see {@link CompiledEdgeFilter}, keys are prefiltered and evaluated against the bytes of the key via an {@link EdgeKeyView}
+ * rather than being disassembled into strings for a JEXL context. Keys that the view would not disassemble exactly as {@link EdgeKeyUtil#dissasembleKey} does,
+ * e.g. keys in a format other than the one configured, are still evaluated by JEXL.
+ *
  */
 public class EdgeFilterIterator extends Filter {
     public static final Logger log = Logger.getLogger(EdgeFilterIterator.class);
@@ -45,6 +57,9 @@ public class EdgeFilterIterator extends Filter {
     
     private static final JexlEngine jexlEngine = new JexlEngine();
     
+    private static final byte[] STATS_PREFIX = "STATS".getBytes(StandardCharsets.UTF_8);
+    private static final ByteSequence TRUE = new ArrayByteSequence("true");
+    
     private boolean protobuffFormat;
     private boolean includeStatsEdges;
     private Expression expression = null;
@@ -53,13 +68,28 @@ public class EdgeFilterIterator extends Filter {
     
     private HashMultimap<String,String> preFilterValues;
     
+    // the compiled queries, used when both the query and the stats query, if any, could be compiled
+    private boolean compiled;
+    private CompiledEdgeFilter compiledExpression = null;
+    private CompiledEdgeFilter compiledStatsExpression = null;
+    private Map<FieldKey,Set<ByteSequence>> preFilterBytes;
+    private final EdgeKeyView view = new EdgeKeyView();
+    
     @Override
     public SortedKeyValueIterator<Key,Value> deepCopy(IteratorEnvironment env) {
         EdgeFilterIterator result = (EdgeFilterIterator) super.deepCopy(env);
         result.protobuffFormat = this.protobuffFormat;
+        result.includeStatsEdges = this.includeStatsEdges;
         result.expression = this.expression;
+        result.statsExpression = this.statsExpression;
         result.preFilterValues = this.preFilterValues;
         
+        // the compiled queries hold their own matchers, so each copy gets its own
+        result.compiled = this.compiled;
+        result.compiledExpression = (this.compiledExpression == null ? null : this.compiledExpression.copy());
+        result.compiledStatsExpression = (this.compiledStatsExpression == null ? null : this.compiledStatsExpression.copy());
+        result.preFilterBytes = this.preFilterBytes;
+        
         return result;
     }
     
@@ -147,6 +177,7 @@ public class EdgeFilterIterator extends Filter {
         // to stay consistent with the rest of the query engine, support case-insensitive boolean operators.
         String caseFixQuery = jexl.toLowerCase();
         expression = jexlEngine.createExpression(caseFixQuery);
+        compiledExpression = CompiledEdgeFilter.compile(caseFixQuery);
         
         String protobuff = options.get(PROTOBUF_OPTION);
         if (null == protobuff) {
@@ -164,6 +195,11 @@ public class EdgeFilterIterator extends Filter {
         
         if (jexlStats != null) {
             statsExpression = jexlEngine.createExpression(jexlStats.toLowerCase());
+            compiledStatsExpression = CompiledEdgeFilter.compile(jexlStats.toLowerCase());
+        }
+        compiled = (compiledExpression != null && (jexlStats == null || compiledStatsExpression != null));
+        if (log.isDebugEnabled()) {
+            log.debug("Edge query " + (compiled ? "compiled" : "will be evaluated by JEXL") + ": " + caseFixQuery);
         }
         
         String inPrefilter = options.get(PREFILTER_WHITELIST);
@@ -182,6 +218,25 @@ public class EdgeFilterIterator extends Filter {
                 log.error("Class not found for whitelies value.");
             }
         }
+        preFilterBytes = (preFilterValues == null ? null : toBytes(preFilterValues));
+    }
+    
+    /**
+     * @return the whitelisted values of each field as bytes, for fields with any
+     */
+    private static Map<FieldKey,Set<ByteSequence>> toBytes(HashMultimap<String,String> preFilterValues) {
+        Map<FieldKey,Set<ByteSequence>> bytes = new EnumMap<>(FieldKey.class);
+        for (FieldKey field : FieldKey.values()) {
+            Set<String> values = preFilterValues.get(Fields.getInstance().getFieldName(field));
+            if (values != null && !values.isEmpty()) {
+                Set<ByteSequence> fieldBytes = new HashSet<>();
+                for (String value : values) {
+                    fieldBytes.add(new ArrayByteSequence(value.getBytes(StandardCharsets.UTF_8)));
+                }
+                bytes.put(field, fieldBytes);
+            }
+        }
+        return bytes;
     }
     
     /**
@@ -211,6 +266,100 @@ public class EdgeFilterIterator extends Filter {
         return retVal;
     }
     
+    /**
+     * The same as {@link #prefilter(Map)}, against the fields of the view
+     *
+     * @param view
+     * @return
+     */
+    private boolean prefilter(EdgeKeyView view) {
+        if (preFilterBytes != null) {
+            for (Map.Entry<FieldKey,Set<ByteSequence>> entry : preFilterBytes.entrySet()) {
+                FieldKey field = entry.getKey();
+                if (field == FieldKey.STATS_EDGE) {
+                    if (view.isStatsEdge() && !entry.getValue().contains(TRUE)) {
+                        return false;
+                    }
+                    continue;
+                }
+                ByteSequence value = view.getField(field);
+                if (value == null) {
+                    continue;
+                }
+                if ((field == FieldKey.EDGE_SOURCE || field == FieldKey.EDGE_SINK) && indexOf(value, (byte) '\\') >= 0) {
+                    // the whitelist has the unescaped source and sink
+                    String unescaped = StringEscapeUtils.unescapeJava(value.toString());
+                    if (!preFilterValues.get(Fields.getInstance().getFieldName(field)).contains(unescaped)) {
+                        return false;
+                    }
+                } else if (!entry.getValue().contains(value)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Determines if the view has the same fields as {@link EdgeKeyUtil#dissasembleKey} would find in the key, so that the compiled queries may be evaluated
+     * against the view
+     *
+     * @param view
+     * @return
+     */
+    private boolean isCompilable(EdgeKeyView view) {
+        EDGE_VERSION version = view.getVersion();
+        if (protobuffFormat) {
+            if (version != EDGE_VERSION.PROTOBUF && version != EDGE_VERSION.DATE_PROTOBUF && version != EDGE_VERSION.STATS_PROTOBUF
+                            && version != EDGE_VERSION.DATE_STATS_PROTOBUF) {
+                return false;
+            }
+        } else if (version != EDGE_VERSION.BASE && version != EDGE_VERSION.BASE_ATTRIBUTE2) {
+            return false;
+        }
+        
+        // keys are disassembled as stats edges by the prefix of their column family alone
+        if (!view.isStatsEdge() && startsWith(view.getColumnFamily(), STATS_PREFIX)) {
+            return false;
+        }
+        
+        // the row is split at every null byte, and empty parts are dropped
+        ByteSequence sink = view.getSink();
+        if (sink != null && indexOf(sink, (byte) 0) >= 0) {
+            return false;
+        }
+        
+        // empty source and sink parts are dropped, as are trailing empty column parts
+        for (FieldKey field : FieldKey.values()) {
+            ByteSequence value = view.getField(field);
+            if (value != null && value.length() == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private static int indexOf(ByteSequence bytes, byte b) {
+        for (int i = 0; i < bytes.length(); i++) {
+            if (bytes.byteAt(i) == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    private static boolean startsWith(ByteSequence bytes, byte[] prefix) {
+        if (bytes.length() < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (bytes.byteAt(i) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
     @Override
     public void init(org.apache.accumulo.core.iterators.SortedKeyValueIterator<org.apache.accumulo.core.data.Key,org.apache.accumulo.core.data.Value> source,
                     java.util.Map<java.lang.String,java.lang.String> options, org.apache.accumulo.core.iterators.IteratorEnvironment env)
@@ -240,6 +389,10 @@ public class EdgeFilterIterator extends Filter {
      */
     @Override
     public boolean accept(Key k, Value V) {
+        if (compiled && isCompilable(view.set(k))) {
+            return acceptCompiled(view);
+        }
+        
         boolean value = false;
         
         Map<FieldKey,String> keyComponents = EdgeKeyUtil.dissasembleKey(k, protobuffFormat);
@@ -264,4 +417,24 @@ public class EdgeFilterIterator extends Filter {
         
         return value;
     }
+    
+    /**
+     * The same as {@link #accept(Key, Value)}, evaluating the compiled queries against the view
+     *
+     * @param view
+     * @return boolean - true if it is a match.
+     */
+    private boolean acceptCompiled(EdgeKeyView view) {
+        if (!prefilter(view)) {
+            return false;
+        } else if (view.isStatsEdge()) {
+            if (includeStatsEdges) {
+                return compiledStatsExpression == null || compiledStatsExpression.apply(view);
+            } else {
+                return false;
+            }
+        } else {
+            return compiledExpression.apply(view);
+        }
+    }
 }
@@ -17,6 +17,7 @@ import java.util.Set;
 import java.util.TreeMap;
 import java.util.UUID;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
 
 import javax.annotation.PostConstruct;
 import javax.enterprise.context.ApplicationScoped;
@@ -27,6 +28,7 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
+import com.google.common.util.concurrent.Striped;
 
 import datawave.configuration.DatawaveEmbeddedProjectStageHolder;
 import datawave.data.hash.UID;
@@ -145,6 +147,8 @@ public class ShardTableQueryMetricHandler extends BaseQueryMetricHandler<QueryMe
     // static to share the cache across instances of this class held by QueryExecutorBean, CachedResultsBean, QueryMetricsEnrichmentInterceptor, etc
     @SuppressWarnings("unchecked")
     private static Map metricsCache = Collections.synchronizedMap(new LRUMap(5000));
+    // updates for the same query are serialized, updates for different queries only contend when they hash to the same stripe
+    private static final Striped<Lock> queryIdLocks = Striped.lock(64);
     
     private final Configuration conf = new Configuration();
     private final StatusReporter reporter = new MockStatusReporter();
@@ -371,7 +375,9 @@ public class ShardTableQueryMetricHandler extends BaseQueryMetricHandler<QueryMe
             // user's DatawavePrincipal must have the Administrator role to use the Metrics query logic
             QueryMetric cachedQueryMetric;
             QueryMetric newCachedQueryMetric;
-            synchronized (ShardTableQueryMetricHandler.class) {
+            Lock queryIdLock = queryIdLocks.get(updatedQueryMetric.getQueryId());
+            queryIdLock.lock();
+            try {
                 cachedQueryMetric = (QueryMetric) metricsCache.get(updatedQueryMetric.getQueryId());
                 // duplicate updatedQueryMetric because we're counting on the cache to be a snapshot of the QueryMetric
                 // so that we can retrieve it next update call to create the delete Mutations for the values written to Accumulo
@@ -393,6 +399,8 @@ public class ShardTableQueryMetricHandler extends BaseQueryMetricHandler<QueryMe
                 newPageMetrics.addAll(storedPageMetricMap.values());
                 newCachedQueryMetric.setPageTimes(newPageMetrics);
                 metricsCache.put(updatedQueryMetric.getQueryId(), newCachedQueryMetric);
+            } finally {
+                queryIdLock.unlock();
             }
             
             List<QueryMetric> queryMetrics = new ArrayList<>();
@@ -434,9 +442,12 @@ public class ShardTableQueryMetricHandler extends BaseQueryMetricHandler<QueryMe
             
             updatedQueryMetric.setNumUpdates(nextUpdateNumber);
             
-            synchronized (ShardTableQueryMetricHandler.class) {
+            queryIdLock.lock();
+            try {
                 newCachedQueryMetric.setNumUpdates(nextUpdateNumber);
                 metricsCache.put(updatedQueryMetric.getQueryId(), newCachedQueryMetric);
+            } finally {
+                queryIdLock.unlock();
             }
             
             // write new entry
@@ -0,0 +1,82 @@
+package datawave.query.model;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSetMultimap;
+
+/**
+ * A QueryModel whose lookups are computed once and shared, so that a model loaded once can be used to expand the queries at planning time and to rename the
+ * fields of every result document, without walking its mappings again.
+ * <p>
+ * The forward mappings of each alias and the reverse mapping of each field are kept the first time they are looked up, and the inverse of the reverse model
+ * that the planner uses to remap the projection, blacklist and grouping fields is computed when the model is compiled. The lookups reflect the mappings of the
+ * model when it was compiled, so a compiled model must not be modified: copy it into a new QueryModel to change it.
+ */
+public class CompiledQueryModel extends QueryModel {
+    
+    // field names with a grouping context may be unique per document, so only this many of them are kept
+    private static final int MAX_LOOKUPS = 10000;
+    
+    private final ConcurrentMap<String,Set<String>> aliases = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String,String> reverseAliases = new ConcurrentHashMap<>();
+    private final ImmutableSetMultimap<String,String> inverseReverseModel;
+    
+    public CompiledQueryModel(QueryModel other) {
+        super(other);
+        ImmutableSetMultimap.Builder<String,String> builder = ImmutableSetMultimap.builder();
+        for (Map.Entry<String,String> entry : getReverseQueryMapping().entrySet()) {
+            builder.put(entry.getValue(), entry.getKey());
+        }
+        builder.putAll(getForwardQueryMapping());
+        this.inverseReverseModel = builder.build();
+    }
+    
+    /**
+     * Compile a query model, unless it already is
+     *
+     * @param queryModel
+     *            the query model, or null
+     * @return the compiled query model, or null if the query model is null
+     */
+    public static QueryModel compile(QueryModel queryModel) {
+        if (queryModel == null || queryModel instanceof CompiledQueryModel) {
+            return queryModel;
+        }
+        return new CompiledQueryModel(queryModel);
+    }
+    
+    @Override
+    public Set<String> getMappingsForAlias(String alias) {
+        Set<String> mappings = aliases.get(alias);
+        if (mappings == null) {
+            mappings = ImmutableSet.copyOf(super.getMappingsForAlias(alias));
+            if (aliases.size() < MAX_LOOKUPS) {
+                aliases.put(alias, mappings);
+            }
+        }
+        return mappings;
+    }
+    
+    @Override
+    public String aliasFieldNameReverseModel(String fieldName) {
+        String alias = reverseAliases.get(fieldName);
+        if (alias == null) {
+            alias = super.aliasFieldNameReverseModel(fieldName);
+            if (alias != null && reverseAliases.size() < MAX_LOOKUPS) {
+                reverseAliases.put(fieldName, alias);
+            }
+        }
+        return alias;
+    }
+    
+    /**
+     * @return the inverse of the reverse model, i.e. each display field name to the field names it is the reverse mapping of, with the forward model
+     */
+    public ImmutableSetMultimap<String,String> getInverseReverseModel() {
+        return inverseReverseModel;
+    }
+}
@@ -75,6 +75,7 @@ import datawave.query.jexl.visitors.TermCountingVisitor;
 import datawave.query.jexl.visitors.TreeFlatteningRebuildingVisitor;
 import datawave.query.jexl.visitors.UniqueExpressionTermsVisitor;
 import datawave.query.jexl.visitors.ValidPatternVisitor;
+import datawave.query.model.CompiledQueryModel;
 import datawave.query.model.QueryModel;
 import datawave.query.planner.comparator.DefaultQueryPlanComparator;
 import datawave.query.planner.comparator.GeoWaveQueryPlanComparator;
@@ -89,6 +90,10 @@ import datawave.query.util.DateIndexHelper;
 import datawave.query.util.MetadataHelper;
 import datawave.query.util.QueryStopwatch;
 import datawave.query.util.Tuple2;
+import datawave.query.util.TypeMetadata;
+import datawave.query.util.TypeMetadataFile;
+import datawave.query.util.metadata.MetadataSnapshot;
+import datawave.query.util.metadata.MetadataSnapshotService;
 import datawave.util.time.TraceStopwatch;
 import datawave.webservice.common.logging.ThreadConfigurableLogger;
 import datawave.webservice.query.Query;
@@ -126,6 +131,7 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -184,6 +190,19 @@ public class DefaultQueryPlanner extends QueryPlanner implements Cloneable {
      */
     protected boolean cacheDataTypes = false;
     
+    /**
+     * Looks up the indexed, index only, reverse indexed, normalized and all fields and the types in a snapshot of the metadata table, when one is loaded,
+     * instead of with the metadata helper. The other metadata, such as the composite, expansion and content fields, and the lookups made by the visitors, still
+     * come from the metadata helper
+     */
+    protected MetadataSnapshotService metadataSnapshotService = null;
+    
+    /**
+     * The snapshot of the metadata table loaded when the query is processed. The same snapshot is used throughout the planning of the query, even if it is
+     * refreshed in the meantime
+     */
+    protected MetadataSnapshot metadataSnapshot = null;
+    
     /**
      * Overrides behavior with doc specific ranges
      */
@@ -290,6 +309,7 @@ public class DefaultQueryPlanner extends QueryPlanner implements Cloneable {
         this(other.maxRangesPerQueryPiece, other.limitScanners);
         setRangeStreamClass(other.getRangeStreamClass());
         setCacheDataTypes(other.getCacheDataTypes());
+        setMetadataSnapshotService(other.getMetadataSnapshotService());
         setDisableAnyFieldLookup(other.disableAnyFieldLookup);
         setDisableBoundedLookup(other.disableBoundedLookup);
         setDisableCompositeFields(other.disableCompositeFields);
@@ -374,6 +394,8 @@ public class DefaultQueryPlanner extends QueryPlanner implements Cloneable {
                     ShardQueryConfiguration config, String query, Query settings) throws DatawaveQueryException {
         final QueryData queryData = new QueryData();
         
+        metadataSnapshot = loadMetadataSnapshot(config, metadataHelper);
+        
         settingFuture = null;
         
         IteratorSetting cfg = null;
@@ -502,7 +524,7 @@ public class DefaultQueryPlanner extends QueryPlanner implements Cloneable {
         addOption(cfg, QueryOptions.FULL_TABLE_SCAN_ONLY, Boolean.toString(isFullTable), false);
         addOption(cfg, QueryOptions.TRACK_SIZES, Boolean.toString(config.isTrackSizes()), true);
         // Set the start and end dates
-        configureTypeMappings(config, cfg, metadataHelper, compressMappings);
+        configureTypeMappings(config, cfg, metadataHelper, compressMappings, metadataSnapshot);
     }
     
     /*
@@ -916,8 +938,13 @@ public class DefaultQueryPlanner extends QueryPlanner implements Cloneable {
             
             try {
                 expansionFields = metadataHelper.getExpansionFields(config.getDatatypeFilter());
-                config.setIndexedFields(metadataHelper.getIndexedFields(config.getDatatypeFilter()));
-                config.setReverseIndexedFields(metadataHelper.getReverseIndexedFields(config.getDatatypeFilter()));
+                if (null != metadataSnapshot) {
+                    config.setIndexedFields(metadataSnapshot.getIndexedFields(config.getDatatypeFilter()));
+                    config.setReverseIndexedFields(metadataSnapshot.getReverseIndexedFields(config.getDatatypeFilter()));
+                } else {
+                    config.setIndexedFields(metadataHelper.getIndexedFields(config.getDatatypeFilter()));
+                    config.setReverseIndexedFields(metadataHelper.getReverseIndexedFields(config.getDatatypeFilter()));
+                }
                 queryTree = FixUnfieldedTermsVisitor.fixUnfieldedTree(config, scannerFactory, metadataHelper, queryTree, expansionFields,
                                 config.isExpandFields(), config.isExpandValues(), config.isExpandUnfieldedNegations());
             } catch (EmptyUnfieldedTermExpansionException e) {
@@ -968,7 +995,8 @@ public class DefaultQueryPlanner extends QueryPlanner implements Cloneable {
             // ensure that all of the fields actually exist in the data dictionary
             Set<String> allFields = null;
             try {
-                allFields = metadataHelper.getAllFields(config.getDatatypeFilter());
+                allFields = (null != metadataSnapshot ? metadataSnapshot.getAllFields(config.getDatatypeFilter()) : metadataHelper.getAllFields(config
+                                .getDatatypeFilter()));
             } catch (TableNotFoundException e) {
                 throw new DatawaveQueryException("Unable get get data dictionary", e);
             }
@@ -1023,12 +1051,16 @@ public class DefaultQueryPlanner extends QueryPlanner implements Cloneable {
         
         stopwatch = timers.newStartedStopwatch("DefaultQueryPlanner - Fetch required dataTypes");
         Multimap<String,Type<?>> fieldToDatatypeMap = null;
-        if (cacheDataTypes) {
+        if (cacheDataTypes && null == metadataSnapshot) {
             fieldToDatatypeMap = dataTypeMap.getIfPresent(String.valueOf(config.getDatatypeFilter().hashCode()));
             
         }
         try {
-            if (null != fieldToDatatypeMap) {
+            if (null != metadataSnapshot) {
+                fieldToDatatypeMap = configureIndexedAndNormalizedFields(metadataSnapshot.getFieldsToTypes(config.getDatatypeFilter()),
+                                metadataSnapshot.getIndexedFields(null), metadataSnapshot.getReverseIndexedFields(null), metadataSnapshot.getNormalizedFields(),
+                                config, queryTree);
+            } else if (null != fieldToDatatypeMap) {
                 Set<String> indexedFields = Sets.newHashSet();
                 Set<String> reverseIndexedFields = Sets.newHashSet();
                 Set<String> normalizedFields = Sets.newHashSet();
@@ -1111,9 +1143,17 @@ public class DefaultQueryPlanner extends QueryPlanner implements Cloneable {
         Set<String> nonEventFields = null;
         if (config.getMinSelectivity() > 0 || !disableBoundedLookup) {
             try {
-                indexedFields = metadataHelper.getIndexedFields(config.getDatatypeFilter());
-                indexOnlyFields = metadataHelper.getIndexOnlyFields(config.getDatatypeFilter());
-                nonEventFields = metadataHelper.getNonEventFields(config.getDatatypeFilter());
+                if (null != metadataSnapshot) {
+                    indexedFields = metadataSnapshot.getIndexedFields(config.getDatatypeFilter());
+                    indexOnlyFields = metadataSnapshot.getIndexOnlyFields(config.getDatatypeFilter());
+                    // the composite fields are not in the snapshot
+                    nonEventFields = new HashSet<>(indexOnlyFields);
+                    nonEventFields.addAll(metadataHelper.getCompositeToFieldMap(config.getDatatypeFilter()).keySet());
+                } else {
+                    indexedFields = metadataHelper.getIndexedFields(config.getDatatypeFilter());
+                    indexOnlyFields = metadataHelper.getIndexOnlyFields(config.getDatatypeFilter());
+                    nonEventFields = metadataHelper.getNonEventFields(config.getDatatypeFilter());
+                }
             } catch (TableNotFoundException te) {
                 QueryException qe = new QueryException(DatawaveErrorCode.METADATA_ACCESS_ERROR, te);
                 throw new DatawaveFatalQueryException(qe);
@@ -1314,9 +1354,13 @@ public class DefaultQueryPlanner extends QueryPlanner implements Cloneable {
         // a reverse mapping is always many to one, therefore the inverted
         // reverse mapping
         // can be one to many
-        Multimap<String,String> inverseReverseModel = invertMultimap(queryModel.getReverseQueryMapping());
-        
-        inverseReverseModel.putAll(queryModel.getForwardQueryMapping());
+        Multimap<String,String> inverseReverseModel;
+        if (queryModel instanceof CompiledQueryModel) {
+            inverseReverseModel = ((CompiledQueryModel) queryModel).getInverseReverseModel();
+        } else {
+            inverseReverseModel = invertMultimap(queryModel.getReverseQueryMapping());
+            inverseReverseModel.putAll(queryModel.getForwardQueryMapping());
+        }
         Collection<String> projectFields = config.getProjectFields(), blacklistedFields = config.getBlacklistedFields(), limitFields = config.getLimitFields(), groupFields = config
                         .getGroupFields(), uniqueFields = config.getUniqueFields();
         
@@ -1366,7 +1410,9 @@ public class DefaultQueryPlanner extends QueryPlanner implements Cloneable {
         Set<String> allFields = null;
         try {
             String dataTypeHash = String.valueOf(dataTypes.hashCode());
-            if (cacheDataTypes) {
+            if (null != metadataSnapshot) {
+                allFields = metadataSnapshot.getAllFields(dataTypes);
+            } else if (cacheDataTypes) {
                 allFields = allFieldTypeMap.getIfPresent(dataTypeHash);
             }
             if (null == allFields) {
@@ -1689,17 +1735,19 @@ public class DefaultQueryPlanner extends QueryPlanner implements Cloneable {
                         
                         addOption(cfg, QueryOptions.SORTED_UIDS, Boolean.toString(config.isSortedUIDs()), false);
                         
-                        configureTypeMappings(config, cfg, metadataHelper, compressMappings);
+                        configureTypeMappings(config, cfg, metadataHelper, compressMappings, metadataSnapshot);
                         configureAdditionalOptions(config, cfg);
                         
                         try {
-                            addOption(cfg, QueryOptions.INDEX_ONLY_FIELDS,
-                                            QueryOptions.buildFieldStringFromSet(metadataHelper.getIndexOnlyFields(config.getDatatypeFilter())), true);
+                            Set<String> indexOnlyFields = (null != metadataSnapshot ? metadataSnapshot.getIndexOnlyFields(config.getDatatypeFilter())
+                                            : metadataHelper.getIndexOnlyFields(config.getDatatypeFilter()));
+                            Set<String> indexedFields = (null != metadataSnapshot ? metadataSnapshot.getIndexedFields(config.getDatatypeFilter())
+                                            : metadataHelper.getIndexedFields(config.getDatatypeFilter()));
+                            addOption(cfg, QueryOptions.INDEX_ONLY_FIELDS, QueryOptions.buildFieldStringFromSet(indexOnlyFields), true);
                             addOption(cfg, QueryOptions.COMPOSITE_FIELDS,
                                             QueryOptions.buildFieldStringFromSet(metadataHelper.getCompositeToFieldMap(config.getDatatypeFilter()).keySet()),
                                             true);
-                            addOption(cfg, QueryOptions.INDEXED_FIELDS,
-                                            QueryOptions.buildFieldStringFromSet(metadataHelper.getIndexedFields(config.getDatatypeFilter())), true);
+                            addOption(cfg, QueryOptions.INDEXED_FIELDS, QueryOptions.buildFieldStringFromSet(indexedFields), true);
                         } catch (TableNotFoundException e) {
                             QueryException qe = new QueryException(DatawaveErrorCode.INDEX_ONLY_FIELDS_RETRIEVAL_ERROR, e);
                             throw new DatawaveQueryException(qe);
@@ -1779,6 +1827,15 @@ public class DefaultQueryPlanner extends QueryPlanner implements Cloneable {
     
     public static void configureTypeMappings(ShardQueryConfiguration config, IteratorSetting cfg, MetadataHelper metadataHelper, boolean compressMappings)
                     throws DatawaveQueryException {
+        configureTypeMappings(config, cfg, metadataHelper, compressMappings, null);
+    }
+    
+    /**
+     * @param metadataSnapshot
+     *            the snapshot of the metadata table to take the type metadata from, or null to look it up with the metadata helper
+     */
+    public static void configureTypeMappings(ShardQueryConfiguration config, IteratorSetting cfg, MetadataHelper metadataHelper, boolean compressMappings,
+                    MetadataSnapshot metadataSnapshot) throws DatawaveQueryException {
         try {
             addOption(cfg, QueryOptions.QUERY_MAPPING_COMPRESS, Boolean.valueOf(compressMappings).toString(), false);
             
@@ -1788,19 +1845,29 @@ public class DefaultQueryPlanner extends QueryPlanner implements Cloneable {
             nonIndexedQueryFieldsDatatypes.keySet().removeAll(config.getIndexedFields());
             
             String nonIndexedTypes = QueryOptions.buildFieldNormalizerString(nonIndexedQueryFieldsDatatypes);
-            String typeMetadataString = metadataHelper.getTypeMetadata(config.getDatatypeFilter()).toString();
+            // the type metadata file holds the type metadata of every datatype for each set of metadata auths, so when the tservers read it from there the
+            // version has to be the hash of the unfiltered type metadata for it to match an entry of the file
+            Set<String> datatypeFilter = (config.isTypeMetadataInHdfs() ? null : config.getDatatypeFilter());
+            TypeMetadata typeMetadata = (null != metadataSnapshot ? metadataSnapshot.getTypeMetadata(datatypeFilter) : metadataHelper
+                            .getTypeMetadata(datatypeFilter));
+            String typeMetadataString = typeMetadata.toString();
+            String typeMetadataVersion = TypeMetadataFile.version(typeMetadataString);
             String requiredAuthsString = metadataHelper.getUsersMetadataAuthorizationSubset();
             
             if (compressMappings) {
                 nonIndexedTypes = QueryOptions.compressOption(nonIndexedTypes, QueryOptions.UTF8);
-                typeMetadataString = QueryOptions.compressOption(typeMetadataString, QueryOptions.UTF8);
                 requiredAuthsString = QueryOptions.compressOption(requiredAuthsString, QueryOptions.UTF8);
             }
             addOption(cfg, QueryOptions.NON_INDEXED_DATATYPES, nonIndexedTypes, false);
+            // only the version is sent when the tservers read the type metadata from the file
             if (config.isTypeMetadataInHdfs() == false) {
+                if (compressMappings) {
+                    typeMetadataString = QueryOptions.compressOption(typeMetadataString, QueryOptions.UTF8);
+                }
                 addOption(cfg, QueryOptions.TYPE_METADATA, typeMetadataString, false);
             }
             addOption(cfg, QueryOptions.TYPE_METADATA_AUTHS, requiredAuthsString, false);
+            addOption(cfg, QueryOptions.TYPE_METADATA_VERSION, typeMetadataVersion, false);
             
             addOption(cfg, QueryOptions.METADATA_TABLE_NAME, config.getMetadataTableName(), false);
             
@@ -2155,6 +2222,31 @@ public class DefaultQueryPlanner extends QueryPlanner implements Cloneable {
         this.cacheDataTypes = cacheDataTypes;
     }
     
+    public MetadataSnapshotService getMetadataSnapshotService() {
+        return metadataSnapshotService;
+    }
+    
+    public void setMetadataSnapshotService(MetadataSnapshotService metadataSnapshotService) {
+        this.metadataSnapshotService = metadataSnapshotService;
+    }
+    
+    /**
+     * @return the snapshot of the metadata table used to plan the current query, or null if there is none
+     */
+    public MetadataSnapshot getMetadataSnapshot() {
+        return metadataSnapshot;
+    }
+    
+    /**
+     * @return the loaded snapshot of the metadata table for the metadata authorizations of the user, or null if there is none
+     */
+    protected MetadataSnapshot loadMetadataSnapshot(ShardQueryConfiguration config, MetadataHelper metadataHelper) {
+        if (null == metadataSnapshotService || null == config.getConnector() || null == metadataHelper) {
+            return null;
+        }
+        return metadataSnapshotService.getSnapshot(config.getConnector(), config.getMetadataTableName(), metadataHelper.getUsersMetadataAuthorizationSubset());
+    }
+    
     private Multimap<String,String> invertMultimap(Map<String,String> multi) {
         Multimap<String,String> inverse = HashMultimap.create();
         for (Entry<String,String> entry : multi.entrySet()) {
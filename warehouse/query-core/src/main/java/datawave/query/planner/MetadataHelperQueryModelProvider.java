@@ -1,22 +1,37 @@
 package datawave.query.planner;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableSet;
 import datawave.query.config.ShardQueryConfiguration;
+import datawave.query.model.CompiledQueryModel;
 import datawave.query.model.QueryModel;
 import datawave.query.exceptions.DatawaveFatalQueryException;
 import datawave.query.util.MetadataHelper;
+import datawave.util.UniversalSet;
 import datawave.webservice.common.logging.ThreadConfigurableLogger;
 import datawave.webservice.query.exception.DatawaveErrorCode;
 import datawave.webservice.query.exception.QueryException;
 import org.apache.accumulo.core.client.TableNotFoundException;
 import org.apache.log4j.Logger;
 
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
 /**
- * Uses the ShardQueryConfiguration or the MetadataHelper to fetch a QueryModel
+ * Uses the ShardQueryConfiguration or the MetadataHelper to fetch a QueryModel. The QueryModel fetched with the MetadataHelper is compiled, so that its lookups
+ * are shared by the query planner and the result transformers, and it is cached by model name, table and auths when the configuration caches the model.
  */
 public class MetadataHelperQueryModelProvider implements QueryModelProvider {
     
     private static final Logger log = ThreadConfigurableLogger.getLogger(MetadataHelperQueryModelProvider.class);
     
+    private static final Cache<List<Object>,QueryModel> queryModelCache = CacheBuilder.newBuilder().maximumSize(100).concurrencyLevel(100)
+                    .expireAfterAccess(24, TimeUnit.HOURS).build();
+    
     // this must be the correct, initialized metadatahalper.Don't inject it, set it before calling getQueryModel
     protected MetadataHelper metadataHelper;
     protected ShardQueryConfiguration config;
@@ -30,8 +45,19 @@ public class MetadataHelperQueryModelProvider implements QueryModelProvider {
         } else if (null != config.getModelName() && null != config.getModelTableName()) {
             log.debug("Generating a query model");
             try {
-                queryModel = metadataHelper.getQueryModel(config.getModelTableName(), config.getModelName(), config.getUnevaluatedFields(),
-                                config.getDatatypeFilter());
+                List<Object> cacheKey = null;
+                if (config.getCacheModel()) {
+                    cacheKey = Arrays.asList(config.getModelTableName(), config.getModelName(), new HashSet<>(config.getAuthorizations()),
+                                    copyOf(config.getUnevaluatedFields()), copyOf(config.getDatatypeFilter()));
+                    queryModel = queryModelCache.getIfPresent(cacheKey);
+                }
+                if (null == queryModel) {
+                    queryModel = CompiledQueryModel.compile(metadataHelper.getQueryModel(config.getModelTableName(), config.getModelName(),
+                                    config.getUnevaluatedFields(), config.getDatatypeFilter()));
+                    if (null != cacheKey && null != queryModel) {
+                        queryModelCache.put(cacheKey, queryModel);
+                    }
+                }
                 config.setQueryModel(queryModel);
             } catch (TableNotFoundException e) {
                 QueryException qe = new QueryException(DatawaveErrorCode.QUERY_MODEL_FETCH_ERROR, e);
@@ -47,6 +73,17 @@ public class MetadataHelperQueryModelProvider implements QueryModelProvider {
         return queryModel;
     }
     
+    /**
+     * @return an immutable copy of a set of the configuration, so that a later change to the configuration does not change the key of a cached model
+     */
+    private static Set<String> copyOf(Set<String> set) {
+        // the universal set is immutable already, and cannot be copied
+        if (null == set || set instanceof UniversalSet) {
+            return set;
+        }
+        return ImmutableSet.copyOf(set);
+    }
+    
     public MetadataHelper getMetadataHelper() {
         return metadataHelper;
     }
@@ -28,6 +28,7 @@ import datawave.query.iterator.QueryOptions;
 import datawave.query.language.parser.ParseException;
 import datawave.query.language.parser.QueryParser;
 import datawave.query.language.tree.QueryNode;
+import datawave.query.model.CompiledQueryModel;
 import datawave.query.model.QueryModel;
 import datawave.query.planner.DefaultQueryPlanner;
 import datawave.query.planner.MetadataHelperQueryModelProvider;
@@ -165,6 +166,7 @@ public class ShardQueryLogic extends BaseQueryLogic<Entry<Key,Value>> {
     protected Class<? extends SortedKeyValueIterator<Key,Value>> createUidsIteratorClass = CreateUidsIterator.class;
     protected UidIntersector uidIntersector = new IndexInfo();
     protected CloseableIterable<QueryData> queries = null;
+    protected List<Entry<Key,Value>> uuidLookupResults = null;
     protected QueryModel queryModel = null;
     protected ScannerFactory scannerFactory = null;
     protected Scheduler scheduler = null;
@@ -417,6 +419,15 @@ public class ShardQueryLogic extends BaseQueryLogic<Entry<Key,Value>> {
         
         validateConfiguration(config);
         
+        // lookups that only need the ids of the documents of some UUIDs can resolve them from the global index without planning the query
+        this.uuidLookupResults = null;
+        if (Boolean.parseBoolean(settings.findParameter(QueryParameters.UUID_LOOKUP_ENGINE).getParameterValue().trim())) {
+            this.uuidLookupResults = resolveUUIDs(config, settings, jexlQueryString, metadataHelper);
+            if (null != this.uuidLookupResults) {
+                return;
+            }
+        }
+        
         if (getCardinalityConfiguration() != null && (!config.getBlacklistedFields().isEmpty() || !config.getProjectFields().isEmpty())) {
             // Ensure that fields used for resultCardinalities are returned. They will be removed in the DocumentTransformer.
             // Modify the projectFields and blacklistFields only for this stage, then return to the original values.
@@ -450,6 +461,30 @@ public class ShardQueryLogic extends BaseQueryLogic<Entry<Key,Value>> {
         stopwatch.stop();
     }
     
+    /**
+     * Resolve a query of OR'd UUID terms with the UUID lookup engine, using the index table, dates, datatype filter, query model and field types of this query.
+     *
+     * @return the documents of the UUIDs, or null if the query has to be planned because it is not a plain UUID lookup or its UUIDs cannot all be resolved
+     */
+    protected List<Entry<Key,Value>> resolveUUIDs(ShardQueryConfiguration config, Query settings, String jexlQueryString, MetadataHelper metadataHelper)
+                    throws Exception {
+        List<Entry<String,String>> terms = UUIDLookupResolver.getTerms(jexlQueryString);
+        if (null != terms) {
+            terms = UUIDLookupResolver.normalize(terms, metadataHelper, queryModel, config.getDatatypeFilter());
+        }
+        if (null == terms || terms.isEmpty()) {
+            log.debug("Planning UUID lookup " + jexlQueryString);
+            return null;
+        }
+        
+        TraceStopwatch stopwatch = config.getTimers().newStartedStopwatch("ShardQueryLogic - Resolve UUIDs");
+        try {
+            return UUIDLookupResolver.resolve(config, settings, terms);
+        } finally {
+            stopwatch.stop();
+        }
+    }
+    
     /**
      * Validate that the configuration is in a consistent state
      *
@@ -508,6 +543,17 @@ public class ShardQueryLogic extends BaseQueryLogic<Entry<Key,Value>> {
         final QueryStopwatch timers = config.getTimers();
         TraceStopwatch stopwatch = timers.newStartedStopwatch("ShardQueryLogic - Setup Query");
         
+        // UUIDs resolved without planning the query are returned as they are
+        if (null != this.uuidLookupResults) {
+            this.scanner = null;
+            this.iterator = this.uuidLookupResults.iterator();
+            
+            stopwatch.stop();
+            
+            log.info(getStopwatchHeader(config));
+            return;
+        }
+        
         // Ensure we have all of the information needed to run a query
         if (!config.canRunQuery()) {
             log.warn("The given query '" + config + "' could not be run, most likely due to not matching any records in the global index.");
@@ -977,16 +1023,18 @@ public class ShardQueryLogic extends BaseQueryLogic<Entry<Key,Value>> {
                     TableNotFoundException, ExecutionException {
         TraceStopwatch modelWatch = config.getTimers().newStartedStopwatch("ShardQueryLogic - Loading the query model");
         
-        int cacheKeyCode = new HashCodeBuilder().append(config.getDatatypeFilter()).append(config.getModelName()).hashCode();
+        int cacheKeyCode = new HashCodeBuilder().append(config.getDatatypeFilter()).append(config.getModelName()).append(config.getModelTableName())
+                        .append(config.getAuthorizations()).hashCode();
         
         if (config.getCacheModel()) {
             queryModel = queryModelMap.getIfPresent(String.valueOf(cacheKeyCode));
         }
         if (null == queryModel && (null != config.getModelName() && null != config.getModelTableName())) {
             
-            queryModel = helper.getQueryModel(config.getModelTableName(), config.getModelName(), helper.getIndexOnlyFields(config.getDatatypeFilter()));
+            queryModel = CompiledQueryModel.compile(helper.getQueryModel(config.getModelTableName(), config.getModelName(),
+                            helper.getIndexOnlyFields(config.getDatatypeFilter())));
             
-            if (config.getCacheModel()) {
+            if (config.getCacheModel() && null != queryModel) {
                 
                 queryModelMap.put(String.valueOf(cacheKeyCode), queryModel);
             }
@@ -1969,6 +2017,14 @@ public class ShardQueryLogic extends BaseQueryLogic<Entry<Key,Value>> {
         this.config.setCollapseUidsThreshold(collapseUidsThreshold);
     }
     
+    public String getFieldDaysStartDate() {
+        return getConfig().getFieldDaysStartDate();
+    }
+    
+    public void setFieldDaysStartDate(String fieldDaysStartDate) {
+        getConfig().setFieldDaysStartDate(fieldDaysStartDate);
+    }
+    
     public boolean getEnforceUniqueTermsWithinExpressions() {
         return this.config.getEnforceUniqueTermsWithinExpressions();
     }
@@ -0,0 +1,183 @@
+package datawave.query.tables;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import com.google.common.collect.Maps;
+import datawave.data.type.Type;
+import datawave.query.DocumentSerialization;
+import datawave.query.attributes.Content;
+import datawave.query.attributes.Document;
+import datawave.query.config.ShardQueryConfiguration;
+import datawave.query.function.serializer.DocumentSerializer;
+import datawave.query.jexl.JexlASTHelper;
+import datawave.query.model.QueryModel;
+import datawave.query.util.MetadataHelper;
+import datawave.query.util.UUIDLookupEngine;
+import datawave.util.time.DateHelper;
+import datawave.webservice.query.Query;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.apache.commons.jexl2.parser.ASTEQNode;
+import org.apache.commons.jexl2.parser.ASTJexlScript;
+import org.apache.commons.jexl2.parser.ASTOrNode;
+import org.apache.commons.jexl2.parser.JexlNode;
+import org.apache.hadoop.io.Text;
+import org.apache.log4j.Logger;
+
+/**
+ * Resolves a query of OR'd UUID terms with a {@link UUIDLookupEngine} instead of planning it. The terms are mapped through the query model and normalized with
+ * the types of their fields, and are resolved against the index table of the query within its date range and datatype filter. Each resolved document holds
+ * only the UUID fields that it was resolved by, which is all that a content lookup needs from it.
+ */
+public class UUIDLookupResolver {
+    
+    private static final Logger log = Logger.getLogger(UUIDLookupResolver.class);
+    
+    private UUIDLookupResolver() {}
+    
+    /**
+     * @param jexlQuery
+     *            a jexl query
+     * @return the field/value pairs of the query, or null if the query is anything but a disjunction of equality terms
+     */
+    public static List<Entry<String,String>> getTerms(String jexlQuery) {
+        List<Entry<String,String>> terms = new ArrayList<>();
+        try {
+            ASTJexlScript script = JexlASTHelper.parseJexlQuery(jexlQuery);
+            if (script.jjtGetNumChildren() != 1 || !getTerms(script.jjtGetChild(0), terms)) {
+                return null;
+            }
+        } catch (Exception e) {
+            log.debug("Unable to get UUID terms from " + jexlQuery, e);
+            return null;
+        }
+        return terms;
+    }
+    
+    private static boolean getTerms(JexlNode node, List<Entry<String,String>> terms) {
+        node = JexlASTHelper.dereference(node);
+        if (node instanceof ASTOrNode) {
+            for (int i = 0; i < node.jjtGetNumChildren(); i++) {
+                if (!getTerms(node.jjtGetChild(i), terms)) {
+                    return false;
+                }
+            }
+            return true;
+        } else if (node instanceof ASTEQNode) {
+            JexlASTHelper.IdentifierOpLiteral term = JexlASTHelper.getIdentifierOpLiteral(node);
+            if (term == null || !(term.getLiteralValue() instanceof String)) {
+                return false;
+            }
+            terms.add(Maps.immutableEntry(term.deconstructIdentifier(), (String) term.getLiteralValue()));
+            return true;
+        }
+        return false;
+    }
+    
+    /**
+     * Map the terms through the query model and normalize their values with each type of their fields, the way the query planner expands them.
+     *
+     * @param terms
+     *            the field/value pairs of the query
+     * @param helper
+     *            the metadata helper of the query
+     * @param queryModel
+     *            the query model, or null if there is none
+     * @param datatypeFilter
+     *            the datatypes of the query
+     * @return the normalized field/value pairs, or null if a term has no indexed field to resolve it with
+     * @throws Exception
+     *             if the indexed fields or the types of a field cannot be read
+     */
+    public static List<Entry<String,String>> normalize(List<Entry<String,String>> terms, MetadataHelper helper, QueryModel queryModel,
+                    Set<String> datatypeFilter) throws Exception {
+        Set<String> indexedFields = helper.getIndexedFields(datatypeFilter);
+        Set<Entry<String,String>> normalized = new LinkedHashSet<>();
+        for (Entry<String,String> term : terms) {
+            Set<String> fields = (queryModel == null ? null : queryModel.getMappingsForAlias(term.getKey()));
+            if (fields == null || fields.isEmpty()) {
+                fields = Collections.singleton(term.getKey());
+            }
+            
+            boolean indexed = false;
+            for (String field : fields) {
+                if (!indexedFields.contains(field)) {
+                    continue;
+                }
+                Set<Type<?>> types = helper.getDatatypesForField(field, datatypeFilter);
+                if (null == types) {
+                    continue;
+                }
+                for (Type<?> type : types) {
+                    indexed = true;
+                    try {
+                        String value = type.normalize(term.getValue());
+                        if (null != value && !value.isEmpty()) {
+                            normalized.add(Maps.immutableEntry(field, value));
+                        }
+                    } catch (Exception e) {
+                        log.debug(type + " failed to normalize value: " + term.getValue());
+                    }
+                }
+            }
+            if (!indexed) {
+                return null;
+            }
+        }
+        return new ArrayList<>(normalized);
+    }
+    
+    /**
+     * Resolve the normalized terms to documents.
+     *
+     * @param config
+     *            the configuration of the query
+     * @param settings
+     *            the query, which determines how documents are serialized
+     * @param terms
+     *            the normalized field/value pairs
+     * @return the serialized documents, or null if a term could not be resolved to its documents through the index
+     * @throws Exception
+     *             if the index cannot be read or a document cannot be serialized
+     */
+    public static List<Entry<Key,Value>> resolve(ShardQueryConfiguration config, Query settings, List<Entry<String,String>> terms) throws Exception {
+        UUIDLookupEngine engine = new UUIDLookupEngine(config.getConnector(), config.getAuthorizations());
+        engine.setIndexTableName(config.getIndexTableName());
+        engine.setScanThreads(config.getNumQueryThreads());
+        engine.setDateRange(DateHelper.format(config.getBeginDate()), DateHelper.format(config.getEndDate()));
+        engine.setDatatypeFilter(config.getDatatypeFilter());
+        
+        Map<UUIDLookupEngine.DocumentId,Entry<Key,Document>> documents = new LinkedHashMap<>();
+        try (UUIDLookupEngine.Resolution resolution = engine.resolve(terms)) {
+            while (resolution.hasNext()) {
+                UUIDLookupEngine.DocumentId documentId = resolution.next();
+                Entry<Key,Document> document = documents.get(documentId);
+                if (null == document) {
+                    Key key = new Key(new Text(documentId.getShardId()), new Text(documentId.getDatatype() + '\u0000' + documentId.getUid()), new Text(),
+                                    new Text(documentId.getColumnVisibility().getExpression()));
+                    document = Maps.immutableEntry(key, new Document(key, true));
+                    documents.put(documentId, document);
+                }
+                document.getValue().put(documentId.getField(), new Content(documentId.getValue(), document.getKey(), true));
+            }
+            if (!resolution.getUnresolvedTerms().isEmpty()) {
+                log.debug("Unable to resolve " + resolution.getUnresolvedTerms().size() + " UUIDs against " + config.getIndexTableName());
+                return null;
+            }
+        }
+        
+        DocumentSerializer serializer = DocumentSerialization.getDocumentSerializer(settings);
+        List<Entry<Key,Value>> results = new ArrayList<>(documents.size());
+        for (Entry<Key,Document> document : documents.values()) {
+            results.add(serializer.apply(document));
+        }
+        return results;
+    }
+}
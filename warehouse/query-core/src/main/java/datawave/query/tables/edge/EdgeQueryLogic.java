@@ -9,6 +9,7 @@ import datawave.query.Constants;
 import datawave.query.QueryParameters;
 import datawave.query.config.EdgeQueryConfiguration;
 import datawave.query.exceptions.DatawaveFatalQueryException;
+import datawave.query.iterator.EdgeSummaryIterator;
 import datawave.query.iterator.filter.DateTypeFilter;
 import datawave.query.iterator.filter.EdgeFilterIterator;
 import datawave.query.iterator.filter.LoadDateFilter;
@@ -598,7 +599,35 @@ public class EdgeQueryLogic extends BaseQueryLogic<Entry<Key,Value>> {
         }
         
         this.scanner = scanner;
-        iterator = scanner.iterator();
+        if (config.isAggregateResults()) {
+            addSummaryIterator(scanner, qData, config.getSummarizeTopN());
+        } else {
+            iterator = scanner.iterator();
+        }
+    }
+    
+    /**
+     * Summarizes the edges on the tablet servers, after all of the filters, and sets the iterator to merge the summaries as they are returned. The summary
+     * iterator must be added after the custom filters, since it changes what the values are.
+     *
+     * @param scanner
+     *            the scanner, to which the filters have been added
+     * @param data
+     *            the QueryData for the query logic to be configured
+     * @param topN
+     *            the number of sinks to return per source, or 0 to return every row
+     */
+    protected void addSummaryIterator(BatchScanner scanner, QueryData data, int topN) {
+        int priority = currentIteratorPriority;
+        for (IteratorSetting setting : data.getSettings()) {
+            priority = Math.max(priority, setting.getPriority() + 1);
+        }
+        IteratorSetting summarySetting = new IteratorSetting(priority, EdgeSummaryIterator.class.getSimpleName() + "_" + priority, EdgeSummaryIterator.class);
+        if (topN > 0) {
+            summarySetting.addOption(EdgeSummaryIterator.TOP_N_OPTION, Integer.toString(topN));
+        }
+        scanner.addScanIterator(summarySetting);
+        iterator = new EdgeSummaryMerger(scanner.iterator(), topN);
     }
     
     protected BatchScanner createBatchScanner(GenericQueryConfiguration config) {
@@ -679,6 +708,8 @@ public class EdgeQueryLogic extends BaseQueryLogic<Entry<Key,Value>> {
         optionalParams.add(QueryParameters.DATATYPE_FILTER_SET);
         optionalParams.add(EdgeQueryConfiguration.INCLUDE_STATS);
         optionalParams.add(EdgeQueryConfiguration.DATE_RANGE_TYPE);
+        optionalParams.add(EdgeQueryConfiguration.SUMMARIZE);
+        optionalParams.add(EdgeQueryConfiguration.SUMMARIZE_TOP_N);
         return optionalParams;
     }
     
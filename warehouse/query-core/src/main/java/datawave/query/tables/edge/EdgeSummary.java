@@ -0,0 +1,294 @@
+package datawave.query.tables.edge;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import datawave.edge.util.EdgeKey.EDGE_FORMAT;
+import datawave.edge.util.EdgeKeyDecoder;
+import datawave.edge.util.EdgeValue;
+import datawave.edge.util.EdgeValueCombiner;
+
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.apache.hadoop.io.Text;
+import org.apache.log4j.Logger;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+
+/**
+ * A summary of edges, in which the edges that differ only by date are combined into one edge, see {@link EdgeValueCombiner}. A combined edge has the earliest
+ * date of the edges combined into it, and their latest timestamp. Edges are only combined with edges of the same visibility, so that the summary shows no more
+ * than the edges did.
+ * <p>
+ * Summaries are built on the tablet servers by the {@link datawave.query.iterator.EdgeSummaryIterator}, which returns each one {@link #encode(Collection)
+ * encoded} in a single value, and merged on the web server by the {@link EdgeSummaryMerger}. Not thread-safe.
+ */
+public class EdgeSummary {
+    
+    private static final Logger log = Logger.getLogger(EdgeSummary.class);
+    
+    private static final byte COL_SEPARATOR = '/';
+    
+    // the edges, by their key without the date or timestamp
+    private final Map<Key,SummarizedEdge> edges = new HashMap<>();
+    private List<Map.Entry<Key,Value>> combined = null;
+    private long count;
+    
+    /**
+     * Add an edge to the summary, combining it with any edge that only differs by date
+     *
+     * @param key
+     * @param value
+     */
+    public void add(Key key, Value value) {
+        combined = null;
+        Key column = toColumn(key);
+        SummarizedEdge edge = edges.get(column);
+        if (edge == null) {
+            edge = new SummarizedEdge(key);
+            edges.put(column, edge);
+        }
+        edge.add(key, value);
+    }
+    
+    /**
+     * @return the key of an edge without the date in its column qualifier, or its timestamp
+     */
+    private static Key toColumn(Key key) {
+        ByteSequence cq = key.getColumnQualifierData();
+        int separator = -1;
+        for (int i = 0; i < cq.length(); i++) {
+            if (cq.byteAt(i) == COL_SEPARATOR) {
+                separator = i;
+                break;
+            }
+        }
+        byte[] attributes = (separator < 0 ? new byte[0] : cq.subSequence(separator + 1, cq.length()).toArray());
+        return new Key(key.getRowData().toArray(), key.getColumnFamilyData().toArray(), attributes, key.getColumnVisibilityData().toArray(), 0);
+    }
+    
+    public boolean isEmpty() {
+        return edges.isEmpty();
+    }
+    
+    public void clear() {
+        edges.clear();
+        combined = null;
+    }
+    
+    /**
+     * @return the combined edges, sorted by key
+     */
+    public List<Map.Entry<Key,Value>> getEdges() {
+        combine();
+        return combined;
+    }
+    
+    /**
+     * @return the total count of the standard edges, by which the sinks of a source are ranked
+     */
+    public long getCount() {
+        combine();
+        return count;
+    }
+    
+    private void combine() {
+        if (combined == null) {
+            combined = new ArrayList<>(edges.size());
+            count = 0;
+            for (SummarizedEdge edge : edges.values()) {
+                Map.Entry<Key,Value> entry = edge.getEntry();
+                combined.add(entry);
+                count += edge.getCount(entry.getValue());
+            }
+            Collections.sort(combined, Map.Entry.comparingByKey());
+        }
+    }
+    
+    /**
+     * The edges that differ only by date
+     */
+    private static class SummarizedEdge {
+        private final EDGE_FORMAT format;
+        private final EdgeValueCombiner combiner;
+        private Key first;
+        private long timestamp;
+        // edges of an unknown format can not be combined, so the latest is kept
+        private Value latest;
+        
+        private SummarizedEdge(Key key) {
+            Text colFam = key.getColumnFamily();
+            this.format = EdgeKeyDecoder.determineEdgeFormat(colFam);
+            this.combiner = EdgeValueCombiner.forColumnFamily(colFam);
+            this.first = new Key(key);
+            this.timestamp = key.getTimestamp();
+        }
+        
+        private void add(Key key, Value value) {
+            if (key.getColumnQualifierData().compareTo(first.getColumnQualifierData()) < 0) {
+                // the source may reuse its keys
+                first = new Key(key);
+            }
+            if (key.getTimestamp() >= timestamp) {
+                timestamp = key.getTimestamp();
+                latest = (format == EDGE_FORMAT.UNKNOWN ? new Value(value) : null);
+            }
+            combiner.add(key, value);
+        }
+        
+        private Map.Entry<Key,Value> getEntry() {
+            Key key = new Key(first.getRowData().toArray(), first.getColumnFamilyData().toArray(), first.getColumnQualifierData().toArray(), first
+                            .getColumnVisibilityData().toArray(), timestamp);
+            Value value = combiner.getCombinedValue();
+            return new AbstractMap.SimpleImmutableEntry<>(key, value == null ? latest : value);
+        }
+        
+        private long getCount(Value value) {
+            if (format != EDGE_FORMAT.STANDARD || value == null) {
+                return 0;
+            }
+            try {
+                Long count = EdgeValue.decode(value).getCount();
+                return count == null ? 0 : count;
+            } catch (InvalidProtocolBufferException e) {
+                log.error("Invalid protobuf edge value for " + first);
+                return 0;
+            }
+        }
+    }
+    
+    /**
+     * Encode the edges of a complete summary into a single value
+     *
+     * @param edges
+     * @return the encoded edges
+     * @throws IOException
+     */
+    public static Value encode(Collection<Map.Entry<Key,Value>> edges) throws IOException {
+        return encode(edges, true);
+    }
+    
+    /**
+     * Encode edges into a single value
+     *
+     * @param edges
+     * @param complete
+     *            whether the edges summarize every edge of their row, or of their source, or only those of part of it that was scanned
+     * @return the encoded edges
+     * @throws IOException
+     */
+    public static Value encode(Collection<Map.Entry<Key,Value>> edges, boolean complete) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeBoolean(complete);
+        out.writeInt(edges.size());
+        for (Map.Entry<Key,Value> edge : edges) {
+            edge.getKey().write(out);
+            edge.getValue().write(out);
+        }
+        out.close();
+        return new Value(bytes.toByteArray());
+    }
+    
+    /**
+     * Decode edges encoded by {@link #encode(Collection, boolean)}
+     *
+     * @param value
+     * @return the edges, in the order they were encoded
+     * @throws IOException
+     */
+    public static List<Map.Entry<Key,Value>> decode(Value value) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(value.get()));
+        in.readBoolean();
+        int size = in.readInt();
+        List<Map.Entry<Key,Value>> edges = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Key key = new Key();
+            key.readFields(in);
+            Value edgeValue = new Value();
+            edgeValue.readFields(in);
+            edges.add(new AbstractMap.SimpleImmutableEntry<>(key, edgeValue));
+        }
+        return edges;
+    }
+    
+    /**
+     * @param value
+     *            edges encoded by {@link #encode(Collection, boolean)}
+     * @return whether the edges were encoded as a complete summary
+     */
+    public static boolean isComplete(Value value) {
+        return value.getSize() > 0 && value.get()[0] != 0;
+    }
+    
+    /**
+     * The sinks of a source with the highest total counts, see {@link #getCount()}
+     */
+    public static class TopSinks {
+        // the lowest ranked sink first, ties going to the earlier sink
+        private static final Comparator<EdgeSummary> RANKING = Comparator.comparingLong(EdgeSummary::getCount).thenComparing(
+                        (s1, s2) -> s2.getEdges().get(0).getKey().compareRow(s1.getEdges().get(0).getKey().getRow()));
+        
+        private final int n;
+        private final PriorityQueue<EdgeSummary> top;
+        
+        /**
+         * @param n
+         *            the number of sinks to keep
+         */
+        public TopSinks(int n) {
+            if (n < 1) {
+                throw new IllegalArgumentException("The number of top sinks must be positive: " + n);
+            }
+            this.n = n;
+            this.top = new PriorityQueue<>(n + 1, RANKING);
+        }
+        
+        /**
+         * Offer the summary of a sink, i.e., of one row
+         *
+         * @param sink
+         *            a summary, that is kept if it is among the top sinks
+         */
+        public void offer(EdgeSummary sink) {
+            if (sink.isEmpty()) {
+                return;
+            }
+            top.add(sink);
+            if (top.size() > n) {
+                top.poll();
+            }
+        }
+        
+        public boolean isEmpty() {
+            return top.isEmpty();
+        }
+        
+        /**
+         * @return the edges of the top sinks, the highest ranked sink first, after which there are no sinks
+         */
+        public List<Map.Entry<Key,Value>> drain() {
+            List<EdgeSummary> sinks = new ArrayList<>(top);
+            top.clear();
+            Collections.sort(sinks, RANKING.reversed());
+            List<Map.Entry<Key,Value>> edges = new ArrayList<>();
+            for (EdgeSummary sink : sinks) {
+                edges.addAll(sink.getEdges());
+            }
+            return edges;
+        }
+    }
+}
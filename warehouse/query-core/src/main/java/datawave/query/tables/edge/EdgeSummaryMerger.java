@@ -0,0 +1,195 @@
+package datawave.query.tables.edge;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+
+import datawave.query.iterator.EdgeSummaryIterator;
+
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.apache.hadoop.io.Text;
+import org.apache.log4j.Logger;
+
+/**
+ * Merges the summaries returned by the {@link EdgeSummaryIterator} into plain edges, which the edge query transformer handles like any other edges. A complete
+ * summary, of a whole row or of a whole source and its top sinks, is returned as soon as it is read. The partial summaries of a row or source that was split
+ * between ranges or tablets are combined, and if the top sinks were requested, the sinks of each partial source are ranked again across all of its parts, so
+ * that a source returns its stats edges and then the edges of its top sinks, the highest ranked first.
+ * <p>
+ * The partial summaries are returned once every summary has been read, since the parts of a row or source may come from any tablet, in any order. Only the
+ * stats edges, the top sinks, and the first and last sinks of each part are kept for a partial source, since only those sinks may have been split themselves.
+ */
+public class EdgeSummaryMerger implements Iterator<Entry<Key,Value>> {
+    
+    private static final Logger log = Logger.getLogger(EdgeSummaryMerger.class);
+    
+    private final Iterator<Entry<Key,Value>> summaries;
+    private final int topN;
+    // the partial summaries, by row, or by source if the top sinks were requested
+    private final TreeMap<Text,PartialSummary> partials = new TreeMap<>();
+    private Iterator<Entry<Key,Value>> edges = Collections.emptyIterator();
+    private boolean merged = false;
+    private int count = 0;
+    
+    /**
+     * @param summaries
+     *            the entries returned by the {@link EdgeSummaryIterator}
+     * @param topN
+     *            the number of sinks to return per source, or 0 to return every row
+     */
+    public EdgeSummaryMerger(Iterator<Entry<Key,Value>> summaries, int topN) {
+        this.summaries = summaries;
+        this.topN = topN;
+    }
+    
+    @Override
+    public boolean hasNext() {
+        while (!edges.hasNext()) {
+            if (summaries.hasNext()) {
+                edges = read(summaries.next()).iterator();
+            } else if (!merged) {
+                merged = true;
+                edges = mergePartials().iterator();
+            } else {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    @Override
+    public Entry<Key,Value> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return edges.next();
+    }
+    
+    /**
+     * @return the edges of a complete summary, or none if the summary is partial and has been kept to be merged
+     */
+    private List<Entry<Key,Value>> read(Entry<Key,Value> summary) {
+        List<Entry<Key,Value>> decoded;
+        try {
+            decoded = EdgeSummary.decode(summary.getValue());
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to decode the edge summary of " + summary.getKey(), e);
+        }
+        count++;
+        if (EdgeSummary.isComplete(summary.getValue()) || decoded.isEmpty()) {
+            return decoded;
+        }
+        
+        Text row = decoded.get(0).getKey().getRow();
+        Text part = (topN > 0 ? getSource(row) : row);
+        PartialSummary partial = partials.get(part);
+        if (partial == null) {
+            partial = new PartialSummary(part);
+            partials.put(part, partial);
+        }
+        partial.add(decoded);
+        return Collections.emptyList();
+    }
+    
+    private List<Entry<Key,Value>> mergePartials() {
+        if (log.isDebugEnabled()) {
+            log.debug("Merged " + count + " edge summaries, of which " + partials.size() + (topN > 0 ? " sources" : " rows") + " were partial");
+        }
+        List<Entry<Key,Value>> merged = new ArrayList<>();
+        for (PartialSummary partial : partials.values()) {
+            merged.addAll(partial.getEdges());
+        }
+        partials.clear();
+        return merged;
+    }
+    
+    /**
+     * The parts of a row, or of a source and its top sinks, that were summarized separately
+     */
+    private class PartialSummary {
+        private final Text part;
+        // the edges of the row, or the stats edges of the source
+        private final EdgeSummary summary = new EdgeSummary();
+        private final EdgeSummary.TopSinks top;
+        // the first and last sinks of each part, which are ranked once all of their parts have been combined
+        private final TreeMap<Text,EdgeSummary> boundaries = new TreeMap<>();
+        
+        private PartialSummary(Text part) {
+            this.part = part;
+            this.top = (topN > 0 ? new EdgeSummary.TopSinks(topN) : null);
+        }
+        
+        private void add(List<Entry<Key,Value>> edges) {
+            if (top == null) {
+                for (Entry<Key,Value> edge : edges) {
+                    summary.add(edge.getKey(), edge.getValue());
+                }
+                return;
+            }
+            
+            TreeMap<Text,EdgeSummary> sinks = new TreeMap<>();
+            for (Entry<Key,Value> edge : edges) {
+                Text row = edge.getKey().getRow();
+                if (row.equals(part)) {
+                    summary.add(edge.getKey(), edge.getValue());
+                } else {
+                    add(sinks, row, edge);
+                }
+            }
+            for (Entry<Text,EdgeSummary> sink : Arrays.asList(sinks.pollFirstEntry(), sinks.pollLastEntry())) {
+                if (sink != null) {
+                    for (Entry<Key,Value> edge : sink.getValue().getEdges()) {
+                        add(boundaries, sink.getKey(), edge);
+                    }
+                }
+            }
+            for (EdgeSummary sink : sinks.values()) {
+                top.offer(sink);
+            }
+        }
+        
+        private void add(Map<Text,EdgeSummary> sinks, Text row, Entry<Key,Value> edge) {
+            EdgeSummary sink = sinks.get(row);
+            if (sink == null) {
+                sink = new EdgeSummary();
+                sinks.put(row, sink);
+            }
+            sink.add(edge.getKey(), edge.getValue());
+        }
+        
+        private List<Entry<Key,Value>> getEdges() {
+            if (top == null) {
+                return summary.getEdges();
+            }
+            List<Entry<Key,Value>> edges = new ArrayList<>(summary.getEdges());
+            for (EdgeSummary sink : boundaries.values()) {
+                top.offer(sink);
+            }
+            edges.addAll(top.drain());
+            return edges;
+        }
+    }
+    
+    /**
+     * @return the source vertex of a row, i.e., the row up to the first null byte
+     */
+    private static Text getSource(Text row) {
+        byte[] bytes = row.getBytes();
+        for (int i = 0; i < row.getLength(); i++) {
+            if (bytes[i] == 0) {
+                Text source = new Text();
+                source.set(bytes, 0, i);
+                return source;
+            }
+        }
+        return row;
+    }
+}
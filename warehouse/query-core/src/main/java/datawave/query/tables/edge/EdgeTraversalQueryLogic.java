@@ -0,0 +1,309 @@
+package datawave.query.tables.edge;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import datawave.data.type.NoOpType;
+import datawave.data.type.Type;
+import datawave.edge.model.EdgeModelAware;
+import datawave.edge.util.EdgeKeyView;
+import datawave.query.config.EdgeQueryConfiguration;
+import datawave.query.config.EdgeTraversalConfiguration;
+import datawave.query.exceptions.DatawaveFatalQueryException;
+import datawave.webservice.query.Query;
+import datawave.webservice.query.configuration.GenericQueryConfiguration;
+
+import org.apache.accumulo.core.client.Connector;
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.security.Authorizations;
+import org.apache.log4j.Logger;
+
+/**
+ * Expands the edges of the sources matched by the query breadth first, for up to {@link EdgeTraversalConfiguration#HOPS} hops, so that the neighborhood of a
+ * vertex is returned by a single query. The first hop runs the query like the {@link EdgeQueryLogic} does, and each following hop runs it again with the sinks
+ * found by the previous hop as its sources, in batches of {@link #getFrontierBatchSize()} sources, each of which is scanned by one batch scanner. The edges of
+ * every hop must also match the {@link EdgeTraversalConfiguration#EDGES} query, if one is given.
+ * <p>
+ * A vertex is only expanded once, so cycles end the traversal, and at most {@link #getMaxVertices()} vertices are expanded in all. The sinks of each source
+ * beyond the first {@link EdgeTraversalConfiguration#MAX_FAN_OUT} of a hop are not returned or expanded.
+ * <p>
+ * The edges are returned as they are scanned, hop by hop, and transformed like those of the {@link EdgeQueryLogic}.
+ */
+public class EdgeTraversalQueryLogic extends EdgeQueryLogic {
+    
+    private static final Logger log = Logger.getLogger(EdgeTraversalQueryLogic.class);
+    
+    // the vertices of the hops after the first are already normalized, as they were read from the edge table
+    private static final List<? extends Type<?>> FRONTIER_TYPES = Collections.singletonList(new NoOpType());
+    
+    protected int hops = 2;
+    protected int maxHops = 3;
+    protected int maxFanOut = 0;
+    protected int frontierBatchSize = 250;
+    protected int maxVertices = 100000;
+    
+    private int firstIteratorPriority;
+    
+    public EdgeTraversalQueryLogic() {
+        super();
+    }
+    
+    public EdgeTraversalQueryLogic(EdgeTraversalQueryLogic other) {
+        super(other);
+        setHops(other.getHops());
+        setMaxHops(other.getMaxHops());
+        setMaxFanOut(other.getMaxFanOut());
+        setFrontierBatchSize(other.getFrontierBatchSize());
+        setMaxVertices(other.getMaxVertices());
+    }
+    
+    @Override
+    public EdgeTraversalQueryLogic clone() {
+        return new EdgeTraversalQueryLogic(this);
+    }
+    
+    @Override
+    protected EdgeQueryConfiguration setUpConfig(Query settings) {
+        return new EdgeTraversalConfiguration(this, settings).parseParameters(settings);
+    }
+    
+    @Override
+    public GenericQueryConfiguration initialize(Connector connection, Query settings, Set<Authorizations> auths) throws Exception {
+        GenericQueryConfiguration cfg = super.initialize(connection, settings, auths);
+        firstIteratorPriority = currentIteratorPriority;
+        return cfg;
+    }
+    
+    @Override
+    public void setupQuery(GenericQueryConfiguration configuration) throws Exception {
+        Traversal traversal = new Traversal((EdgeTraversalConfiguration) configuration);
+        traversal.scanFirstHop();
+        iterator = traversal;
+    }
+    
+    private void setupScan(EdgeTraversalConfiguration conf) throws Exception {
+        super.setupQuery(conf);
+    }
+    
+    @Override
+    public Set<String> getOptionalQueryParameters() {
+        Set<String> optionalParams = super.getOptionalQueryParameters();
+        optionalParams.add(EdgeTraversalConfiguration.HOPS);
+        optionalParams.add(EdgeTraversalConfiguration.EDGES);
+        optionalParams.add(EdgeTraversalConfiguration.MAX_FAN_OUT);
+        return optionalParams;
+    }
+    
+    /**
+     * @return the query for the edges of the given sources
+     */
+    protected static String getHopQuery(List<String> sources, String edgeQuery) {
+        StringBuilder query = new StringBuilder("(");
+        for (String source : sources) {
+            if (query.length() > 1) {
+                query.append(" || ");
+            }
+            query.append(EdgeModelAware.EDGE_SOURCE).append(" == '").append(source.replace("\\", "\\\\").replace("'", "\\'")).append('\'');
+        }
+        query.append(')');
+        if (!edgeQuery.isEmpty()) {
+            query.append(" && (").append(edgeQuery).append(')');
+        }
+        return query.toString();
+    }
+    
+    /**
+     * Scans one hop after another, and one batch of sources of a hop after another
+     */
+    private class Traversal implements Iterator<Entry<Key,Value>> {
+        private final EdgeTraversalConfiguration conf;
+        private final String queryString;
+        
+        private int hop = 1;
+        private List<String> frontier = Collections.emptyList();
+        private int frontierIndex = 0;
+        
+        // the vertices that have been expanded, and those to expand in the next hop
+        private final Set<String> visited = new HashSet<>();
+        private final Set<String> next = new LinkedHashSet<>();
+        private boolean vertexLimitReached = false;
+        
+        // the sinks of each source of the current batch, only kept to limit the fan out
+        private final Map<String,Set<String>> sinks = new HashMap<>();
+        
+        private final EdgeKeyView view = new EdgeKeyView();
+        private Iterator<Entry<Key,Value>> edges = Collections.emptyIterator();
+        private Entry<Key,Value> top = null;
+        
+        private Traversal(EdgeTraversalConfiguration conf) {
+            this.conf = conf;
+            this.queryString = conf.getQueryString();
+        }
+        
+        private void scanFirstHop() throws Exception {
+            String edgeQuery = conf.getEdgeQuery();
+            scan(edgeQuery.isEmpty() ? queryString : "(" + queryString + ") && (" + edgeQuery + ")", dataTypes);
+        }
+        
+        private void scan(String query, List<? extends Type<?>> types) throws Exception {
+            if (log.isDebugEnabled()) {
+                log.debug("Scanning hop " + hop + ": " + query);
+            }
+            if (scanner != null) {
+                scannerFactory.close(scanner);
+            }
+            sinks.clear();
+            
+            currentIteratorPriority = firstIteratorPriority;
+            List<? extends Type<?>> queryTypes = dataTypes;
+            dataTypes = types;
+            conf.setQueryString(query);
+            try {
+                setupScan(conf);
+            } finally {
+                dataTypes = queryTypes;
+                conf.setQueryString(queryString);
+            }
+            edges = EdgeTraversalQueryLogic.this.iterator;
+        }
+        
+        /**
+         * Scan the next batch of sources, of this hop or the next one
+         *
+         * @return false if the traversal is complete
+         */
+        private boolean scanNextBatch() {
+            if (frontierIndex >= frontier.size()) {
+                next.removeAll(visited);
+                if (hop >= conf.getHops() || next.isEmpty()) {
+                    return false;
+                }
+                hop++;
+                frontier = new ArrayList<>(next);
+                frontierIndex = 0;
+                visited.addAll(next);
+                next.clear();
+            }
+            int end = Math.min(frontierIndex + conf.getFrontierBatchSize(), frontier.size());
+            try {
+                scan(getHopQuery(frontier.subList(frontierIndex, end), conf.getEdgeQuery()), FRONTIER_TYPES);
+            } catch (Exception e) {
+                throw new DatawaveFatalQueryException("Unable to scan hop " + hop + " of the edge traversal", e);
+            }
+            frontierIndex = end;
+            return true;
+        }
+        
+        private boolean accept(Entry<Key,Value> edge) {
+            view.set(edge.getKey());
+            String source = view.getSource().toString();
+            if (hop == 1) {
+                visited.add(source);
+            }
+            ByteSequence sinkData = view.getSink();
+            if (sinkData == null) {
+                // stats edges have no sink to expand
+                return true;
+            }
+            String sink = sinkData.toString();
+            if (conf.getMaxFanOut() > 0) {
+                Set<String> sourceSinks = sinks.get(source);
+                if (sourceSinks == null) {
+                    sourceSinks = new HashSet<>();
+                    sinks.put(source, sourceSinks);
+                }
+                if (!sourceSinks.contains(sink)) {
+                    if (sourceSinks.size() >= conf.getMaxFanOut()) {
+                        return false;
+                    }
+                    sourceSinks.add(sink);
+                }
+            }
+            if (hop < conf.getHops() && !visited.contains(sink) && !next.contains(sink)) {
+                if (visited.size() + next.size() < conf.getMaxVertices()) {
+                    next.add(sink);
+                } else if (!vertexLimitReached) {
+                    log.warn("Edge traversal reached the limit of " + conf.getMaxVertices() + " vertices in hop " + hop + ", not expanding any more");
+                    vertexLimitReached = true;
+                }
+            }
+            return true;
+        }
+        
+        @Override
+        public boolean hasNext() {
+            while (top == null) {
+                if (edges.hasNext()) {
+                    Entry<Key,Value> edge = edges.next();
+                    if (accept(edge)) {
+                        top = edge;
+                    }
+                } else if (!scanNextBatch()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        
+        @Override
+        public Entry<Key,Value> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Entry<Key,Value> edge = top;
+            top = null;
+            return edge;
+        }
+    }
+    
+    public int getHops() {
+        return hops;
+    }
+    
+    public void setHops(int hops) {
+        this.hops = hops;
+    }
+    
+    public int getMaxHops() {
+        return maxHops;
+    }
+    
+    public void setMaxHops(int maxHops) {
+        this.maxHops = maxHops;
+    }
+    
+    public int getMaxFanOut() {
+        return maxFanOut;
+    }
+    
+    public void setMaxFanOut(int maxFanOut) {
+        this.maxFanOut = maxFanOut;
+    }
+    
+    public int getFrontierBatchSize() {
+        return frontierBatchSize;
+    }
+    
+    public void setFrontierBatchSize(int frontierBatchSize) {
+        this.frontierBatchSize = frontierBatchSize;
+    }
+    
+    public int getMaxVertices() {
+        return maxVertices;
+    }
+    
+    public void setMaxVertices(int maxVertices) {
+        this.maxVertices = maxVertices;
+    }
+}
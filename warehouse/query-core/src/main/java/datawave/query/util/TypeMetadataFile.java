@@ -0,0 +1,187 @@
+package datawave.query.util;
+
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.hash.Hashing;
+import org.apache.log4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * The TypeMetadata of a metadata table, by set of auths, as written to hdfs by the TypeMetadataWriter and read by the TypeMetadataProvider.
+ *
+ * The file starts with a magic number and a format version, followed by the number of auth sets. Each auth set is written as its sorted auths, the version
+ * of its TypeMetadata and the serialized TypeMetadata. The version is a hash of the serialized TypeMetadata, which the query planner also computes and sends
+ * in the iterator options, so that the tservers can tell whether they already have the TypeMetadata of a query.
+ *
+ * Files written with java serialization, as earlier versions of the TypeMetadataWriter did and as it still does unless configured otherwise, can be read as
+ * well. Earlier versions of the TypeMetadataProvider can only read those, so the tservers have to be upgraded before the writer is switched to the binary
+ * format.
+ */
+public class TypeMetadataFile {
+    
+    private static final Logger log = Logger.getLogger(TypeMetadataFile.class);
+    
+    // "TMD" followed by the format version
+    private static final int MAGIC = 0x544d4400;
+    private static final int FORMAT_VERSION = 1;
+    
+    private final Map<Set<String>,TypeMetadata> typeMetadataMap;
+    private final Map<String,TypeMetadata> versions;
+    
+    public TypeMetadataFile(Map<Set<String>,TypeMetadata> typeMetadataMap) {
+        this(typeMetadataMap, Maps.<String,TypeMetadata> newHashMap());
+        for (TypeMetadata typeMetadata : typeMetadataMap.values()) {
+            this.versions.put(version(typeMetadata.toString()), typeMetadata);
+        }
+    }
+    
+    private TypeMetadataFile(Map<Set<String>,TypeMetadata> typeMetadataMap, Map<String,TypeMetadata> versions) {
+        this.typeMetadataMap = typeMetadataMap;
+        this.versions = versions;
+    }
+    
+    /**
+     *
+     * @param typeMetadataString
+     *            - the TypeMetadata as a String, as it is sent in the iterator options
+     * @return the version of the TypeMetadata
+     */
+    public static String version(String typeMetadataString) {
+        return Hashing.murmur3_128().hashString(typeMetadataString, StandardCharsets.UTF_8).toString();
+    }
+    
+    /**
+     *
+     * @param authKey
+     *            - the auths that the TypeMetadata was loaded with
+     * @return the TypeMetadata, or null if there is none for the auths
+     */
+    public TypeMetadata getTypeMetadata(Set<String> authKey) {
+        return this.typeMetadataMap.get(authKey);
+    }
+    
+    /**
+     *
+     * @param version
+     *            - the version of a TypeMetadata
+     * @return the TypeMetadata with that version, or null if there is none
+     */
+    public TypeMetadata getTypeMetadataForVersion(String version) {
+        return this.versions.get(version);
+    }
+    
+    public Map<Set<String>,TypeMetadata> getTypeMetadataMap() {
+        return Collections.unmodifiableMap(this.typeMetadataMap);
+    }
+    
+    /**
+     * Write the TypeMetadata map. The stream is not closed.
+     *
+     * @param map
+     *            - the TypeMetadata mapped with auth collections as keys
+     * @param out
+     *            - the stream to write to
+     * @throws IOException
+     */
+    public static void write(Map<Set<String>,TypeMetadata> map, OutputStream out) throws IOException {
+        DataOutputStream dos = new DataOutputStream(out);
+        dos.writeInt(MAGIC | FORMAT_VERSION);
+        dos.writeInt(map.size());
+        for (Map.Entry<Set<String>,TypeMetadata> entry : map.entrySet()) {
+            Set<String> auths = new TreeSet<>(entry.getKey());
+            dos.writeInt(auths.size());
+            for (String auth : auths) {
+                dos.writeUTF(auth);
+            }
+            String typeMetadataString = entry.getValue().toString();
+            byte[] bytes = typeMetadataString.getBytes(StandardCharsets.UTF_8);
+            dos.writeUTF(version(typeMetadataString));
+            dos.writeInt(bytes.length);
+            dos.write(bytes);
+        }
+        dos.flush();
+    }
+    
+    /**
+     * Write the TypeMetadata map with java serialization, which every version of the TypeMetadataProvider can read. The stream is not closed.
+     *
+     * @param map
+     *            - the TypeMetadata mapped with auth collections as keys
+     * @param out
+     *            - the stream to write to
+     * @throws IOException
+     */
+    public static void writeSerialized(Map<Set<String>,TypeMetadata> map, OutputStream out) throws IOException {
+        ObjectOutputStream oos = new ObjectOutputStream(out);
+        oos.writeObject(map);
+        oos.flush();
+    }
+    
+    /**
+     * Read a TypeMetadata file, in either the binary format or java serialization. The stream is not closed.
+     *
+     * @param in
+     *            - the stream to read from
+     * @return the TypeMetadata of the file
+     * @throws IOException
+     *             if the file is in neither format
+     */
+    @SuppressWarnings("unchecked")
+    public static TypeMetadataFile read(InputStream in) throws IOException {
+        BufferedInputStream bis = new BufferedInputStream(in);
+        bis.mark(4);
+        DataInputStream dis = new DataInputStream(bis);
+        int header = dis.readInt();
+        if ((header & 0xffffff00) != MAGIC) {
+            // a file written with java serialization
+            bis.reset();
+            try {
+                ObjectInputStream ois = new ObjectInputStream(bis);
+                return new TypeMetadataFile((Map<Set<String>,TypeMetadata>) ois.readObject());
+            } catch (ClassNotFoundException | ClassCastException ex) {
+                throw new IOException("Not a TypeMetadata file", ex);
+            }
+        }
+        if ((header & 0xff) != FORMAT_VERSION) {
+            throw new IOException("Unsupported TypeMetadata file format version " + (header & 0xff));
+        }
+        
+        int size = dis.readInt();
+        Map<Set<String>,TypeMetadata> typeMetadataMap = Maps.newHashMapWithExpectedSize(size);
+        Map<String,TypeMetadata> versions = Maps.newHashMapWithExpectedSize(size);
+        for (int i = 0; i < size; i++) {
+            int authCount = dis.readInt();
+            Set<String> auths = Sets.newHashSetWithExpectedSize(authCount);
+            for (int j = 0; j < authCount; j++) {
+                auths.add(dis.readUTF());
+            }
+            String version = dis.readUTF();
+            byte[] bytes = new byte[dis.readInt()];
+            dis.readFully(bytes);
+            // auth sets with the same TypeMetadata share a single instance
+            TypeMetadata typeMetadata = versions.get(version);
+            if (typeMetadata == null) {
+                typeMetadata = new TypeMetadata(new String(bytes, StandardCharsets.UTF_8));
+                versions.put(version, typeMetadata);
+            }
+            typeMetadataMap.put(auths, typeMetadata);
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("read " + typeMetadataMap.size() + " auth sets with " + versions.size() + " distinct TypeMetadata");
+        }
+        return new TypeMetadataFile(typeMetadataMap, versions);
+    }
+}
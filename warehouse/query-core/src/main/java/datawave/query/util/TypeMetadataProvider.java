@@ -11,7 +11,7 @@ import org.apache.commons.vfs2.impl.DefaultFileMonitor;
 import org.apache.log4j.Logger;
 import org.springframework.context.support.ClassPathXmlApplicationContext;
 
-import java.io.ObjectInputStream;
+import java.io.InputStream;
 import java.util.Map;
 import java.util.Set;
 import java.util.regex.Matcher;
@@ -22,6 +22,8 @@ import java.util.regex.Pattern;
  * TypeMetadataHelper and written to vfs. This Monitors the file in vfs so that when the file is updated, the {@code Map<Set<String>>,TypeMetadata>} is
  * refreshed.
  *
+ * The TypeMetadata read from a file is shared by all of the queries on the tserver. A query may also ask for the TypeMetadata by its version, which is found
+ * whatever auths it was written for.
  */
 public class TypeMetadataProvider implements FileListener {
     
@@ -33,14 +35,13 @@ public class TypeMetadataProvider implements FileListener {
     
     private final Pattern metadataTableNamePattern = Pattern.compile(".*/(\\w+)/typeMetadata");
     
-    private LoadingCache<String,Map<Set<String>,TypeMetadata>> typeMetadataMap = CacheBuilder.newBuilder().build(
-                    new CacheLoader<String,Map<Set<String>,TypeMetadata>>() {
-                        @Override
-                        public Map<Set<String>,TypeMetadata> load(String metadataTableName) {
-                            log.debug("loading the cache for " + metadataTableName);
-                            return reloadTypeMetadata(metadataTableName);
-                        }
-                    });
+    private LoadingCache<String,TypeMetadataFile> typeMetadataMap = CacheBuilder.newBuilder().build(new CacheLoader<String,TypeMetadataFile>() {
+        @Override
+        public TypeMetadataFile load(String metadataTableName) {
+            log.debug("loading the cache for " + metadataTableName);
+            return reloadTypeMetadata(metadataTableName);
+        }
+    });
     
     private long delay;
     
@@ -50,28 +51,55 @@ public class TypeMetadataProvider implements FileListener {
     
     public synchronized TypeMetadata getTypeMetadata(String metadataTableName, Set<String> authKey) {
         try {
-            return typeMetadataMap.get(metadataTableName).get(authKey);
+            return typeMetadataMap.get(metadataTableName).getTypeMetadata(authKey);
         } catch (Exception ex) {
             log.warn("could not get TypeMetadata for " + metadataTableName + " and " + authKey, ex);
             return new TypeMetadata();
         }
     }
     
-    private Map<Set<String>,TypeMetadata> reloadTypeMetadata(String metadataTableName) {
-        Map<Set<String>,TypeMetadata> typeMetadataMap = Maps.newHashMap();
+    /**
+     *
+     * @param metadataTableName
+     *            - the name of the table that the TypeMetadata came from
+     * @param authKey
+     *            - the auths to get the TypeMetadata for when there is none with the version
+     * @param version
+     *            - the version of the TypeMetadata that the query was planned with, or null
+     * @return the TypeMetadata with the version if there is one, otherwise the TypeMetadata for the auths
+     */
+    public synchronized TypeMetadata getTypeMetadata(String metadataTableName, Set<String> authKey, String version) {
+        if (version != null) {
+            try {
+                TypeMetadata typeMetadata = typeMetadataMap.get(metadataTableName).getTypeMetadataForVersion(version);
+                if (typeMetadata != null) {
+                    return typeMetadata;
+                }
+                if (log.isDebugEnabled()) {
+                    log.debug("no TypeMetadata with version " + version + " for " + metadataTableName + ", using the TypeMetadata for " + authKey);
+                }
+            } catch (Exception ex) {
+                log.warn("could not get TypeMetadata for " + metadataTableName + " and version " + version, ex);
+            }
+        }
+        return getTypeMetadata(metadataTableName, authKey);
+    }
+    
+    private TypeMetadataFile reloadTypeMetadata(String metadataTableName) {
+        TypeMetadataFile typeMetadataFile = new TypeMetadataFile(Maps.<Set<String>,TypeMetadata> newHashMap());
         try {
             log.debug("reloading TypeMetadata");
-            ObjectInputStream ois = new ObjectInputStream(this.bridge.getFileObject(metadataTableName).getContent().getInputStream());
-            typeMetadataMap = (Map<Set<String>,TypeMetadata>) ois.readObject();
+            try (InputStream in = this.bridge.getFileObject(metadataTableName).getContent().getInputStream()) {
+                typeMetadataFile = TypeMetadataFile.read(in);
+            }
             
             if (log.isTraceEnabled()) {
-                log.trace("reloaded TypeMetadataProvider.typeMetadataMap =" + typeMetadataMap);
+                log.trace("reloaded TypeMetadataProvider.typeMetadataMap =" + typeMetadataFile.getTypeMetadataMap());
             }
-            ois.close();
         } catch (Exception ex) {
-            log.warn("Unable to reload typeMetadata. Current value is " + typeMetadataMap);
+            log.warn("Unable to reload typeMetadata. Current value is " + typeMetadataFile.getTypeMetadataMap());
         }
-        return typeMetadataMap;
+        return typeMetadataFile;
     }
     
     public long getDelay() {
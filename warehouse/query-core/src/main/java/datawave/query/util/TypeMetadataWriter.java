@@ -3,12 +3,16 @@ package datawave.query.util;
 import org.apache.log4j.Logger;
 import org.springframework.context.support.ClassPathXmlApplicationContext;
 
-import java.io.ObjectOutputStream;
+import java.io.OutputStream;
 import java.util.Map;
 import java.util.Set;
 
 /**
+ * Writes the TypeMetadata of a metadata table to hdfs, where the tservers read it with the TypeMetadataProvider.
  *
+ * The file is written with java serialization unless {@code binaryFormat} is set, in which case it is written in the binary format of the
+ * {@link TypeMetadataFile}. Tservers that predate the binary format can only read java serialization, and would run with no TypeMetadata, so the tservers
+ * have to be upgraded before the binary format is enabled here.
  */
 public class TypeMetadataWriter {
     
@@ -16,6 +20,8 @@ public class TypeMetadataWriter {
     
     protected TypeMetadataBridge bridge;
     
+    protected boolean binaryFormat = false;
+    
     public TypeMetadataBridge getBridge() {
         return bridge;
     }
@@ -24,7 +30,17 @@ public class TypeMetadataWriter {
         this.bridge = bridge;
     }
     
+    public boolean isBinaryFormat() {
+        return binaryFormat;
+    }
+    
+    public void setBinaryFormat(boolean binaryFormat) {
+        this.binaryFormat = binaryFormat;
+    }
+    
     /**
+     *
+     * Write the TypeMetadata map with java serialization, or in the binary format of the {@link TypeMetadataFile} if so configured
      *
      * @param map
      *            - the TypeMetadata mapped with auth collections as keys
@@ -33,17 +49,21 @@ public class TypeMetadataWriter {
      * @throws Exception
      */
     public void writeTypeMetadataMap(Map<Set<String>,TypeMetadata> map, String name) throws Exception {
-        ObjectOutputStream oos = null;
+        OutputStream out = null;
         try {
-            oos = new ObjectOutputStream(this.bridge.getOutputStream(name));
-            oos.writeObject(map);
+            out = this.bridge.getOutputStream(name);
+            if (binaryFormat) {
+                TypeMetadataFile.write(map, out);
+            } else {
+                TypeMetadataFile.writeSerialized(map, out);
+            }
             log.debug("table:" + name + " wrote the typeMetadataMap to hdfs at " + this.bridge.getUri() + " " + this.bridge.getDir() + "/" + name + "/"
                             + this.bridge.getTempFileName());
         } catch (Exception ex) {
             log.warn("table:" + name + " Unable to write typeMetadataMap", ex);
         } finally {
-            if (oos != null) {
-                oos.close();
+            if (out != null) {
+                out.close();
             }
         }
         try {
@@ -0,0 +1,103 @@
+package datawave.query.util.metadata;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import datawave.iterators.FieldDaysCombiner;
+
+import org.apache.accumulo.core.client.Scanner;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.hadoop.io.Text;
+import org.apache.log4j.Logger;
+
+/**
+ * Reads the days that a field was indexed from the 'fd' column of the metadata table, which ingest writes as a bitmap of the days of each month, by datatype.
+ * The query planner uses the days to skip the days of the global index that a field has no entries for.
+ */
+public class FieldDays {
+    
+    private static final Logger log = Logger.getLogger(FieldDays.class);
+    
+    private FieldDays() {}
+    
+    /**
+     * @param field
+     *            the field
+     * @return the range of the metadata table with the days of the field
+     */
+    public static Range range(String field) {
+        return Range.exact(new Text(field), FieldDaysCombiner.COLF_FD);
+    }
+    
+    /**
+     * Scan the days of a field. The scanner is not closed.
+     *
+     * @param scanner
+     *            a scanner of the metadata table
+     * @param field
+     *            the field
+     * @param datatypeFilter
+     *            the datatypes to include, or null or empty for all of them
+     * @param beginDay
+     *            the first day to include, of the form yyyyMMdd
+     * @param endDay
+     *            the last day to include, of the form yyyyMMdd
+     * @return the days between the begin and end day that the field was indexed for any of the datatypes
+     */
+    public static Set<String> getDays(Scanner scanner, String field, Set<String> datatypeFilter, String beginDay, String endDay) {
+        scanner.setRange(range(field));
+        return getDays(scanner, datatypeFilter, beginDay, endDay);
+    }
+    
+    /**
+     * @param entries
+     *            the 'fd' entries of a field
+     * @param datatypeFilter
+     *            the datatypes to include, or null or empty for all of them
+     * @param beginDay
+     *            the first day to include, of the form yyyyMMdd
+     * @param endDay
+     *            the last day to include, of the form yyyyMMdd
+     * @return the days between the begin and end day that the field was indexed for any of the datatypes
+     */
+    public static Set<String> getDays(Iterable<Map.Entry<Key,Value>> entries, Set<String> datatypeFilter, String beginDay, String endDay) {
+        String beginMonth = FieldDaysCombiner.month(beginDay);
+        String endMonth = FieldDaysCombiner.month(endDay);
+        Set<String> days = new TreeSet<>();
+        for (Map.Entry<Key,Value> entry : entries) {
+            String colq = entry.getKey().getColumnQualifier().toString();
+            int index = colq.lastIndexOf('\0');
+            if (index < 0) {
+                log.warn("Ignoring field days with an unexpected column qualifier: " + entry.getKey());
+                continue;
+            }
+            String datatype = colq.substring(0, index);
+            String month = colq.substring(index + 1);
+            if ((datatypeFilter != null && !datatypeFilter.isEmpty() && !datatypeFilter.contains(datatype)) || month.compareTo(beginMonth) < 0
+                            || month.compareTo(endMonth) > 0) {
+                continue;
+            }
+            
+            int bits;
+            try {
+                bits = FieldDaysCombiner.decode(entry.getValue());
+            } catch (Exception e) {
+                // if the days cannot be read then none of the days of the month can be skipped
+                log.error("Unable to decode days from " + entry.getKey() + " / " + entry.getValue());
+                bits = -1;
+            }
+            for (int day = 1; day <= 31; day++) {
+                if ((bits & (1 << (day - 1))) != 0) {
+                    String dayString = month + (day < 10 ? "0" : "") + day;
+                    if (dayString.compareTo(beginDay) >= 0 && dayString.compareTo(endDay) <= 0) {
+                        days.add(dayString);
+                    }
+                }
+            }
+        }
+        return days;
+    }
+}
@@ -0,0 +1,309 @@
+package datawave.query.util.metadata;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import datawave.data.ColumnFamilyConstants;
+import datawave.data.type.Type;
+import datawave.query.util.TypeMetadata;
+
+import org.apache.accumulo.core.data.Key;
+import org.apache.hadoop.io.Text;
+import org.apache.log4j.Logger;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSetMultimap;
+import com.google.common.collect.Multimap;
+import com.google.common.collect.SetMultimap;
+
+/**
+ * An immutable copy of the columns of the metadata table that query planning looks up, i.e. the event, indexed, reverse indexed, normalized, term frequency
+ * and type columns of every field, by the datatypes they were seen for.
+ * <p>
+ * A snapshot is built once by a full scan, and can be updated incrementally with the keys scanned since, which creates a new snapshot and leaves this one
+ * as it is. An incremental update only adds columns, so columns removed from the metadata table remain until the next full scan.
+ */
+public class MetadataSnapshot {
+    
+    private static final Logger log = Logger.getLogger(MetadataSnapshot.class);
+    
+    // the column families kept in a snapshot
+    public static final List<Text> COLUMN_FAMILIES = Collections.unmodifiableList(Arrays.asList(ColumnFamilyConstants.COLF_E, ColumnFamilyConstants.COLF_I,
+                    ColumnFamilyConstants.COLF_RI, ColumnFamilyConstants.COLF_N, ColumnFamilyConstants.COLF_TF, ColumnFamilyConstants.COLF_T));
+    
+    // the classes of the types, shared by all snapshots so that a type class is only looked up once
+    private static final Map<String,Class<?>> typeClasses = new ConcurrentHashMap<>();
+    
+    // the datatypes of each field, by column family
+    private final Map<String,SetMultimap<String,String>> datatypes;
+    
+    // the type class names of each field, by datatype
+    private final Map<String,SetMultimap<String,String>> types;
+    
+    private final long timestamp;
+    private final long loadTime;
+    
+    private MetadataSnapshot(Map<String,SetMultimap<String,String>> datatypes, Map<String,SetMultimap<String,String>> types, long timestamp, long loadTime) {
+        this.datatypes = datatypes;
+        this.types = types;
+        this.timestamp = timestamp;
+        this.loadTime = loadTime;
+    }
+    
+    /**
+     * @return a builder for a snapshot with nothing in it
+     */
+    public static Builder builder() {
+        return new Builder(null);
+    }
+    
+    /**
+     * @return a builder for a snapshot with the columns of this one
+     */
+    public Builder update() {
+        return new Builder(this);
+    }
+    
+    /**
+     * @param datatypeFilter
+     *            the datatypes to include, or null or empty for all of them
+     * @return the fields that are indexed for any of the datatypes
+     */
+    public Set<String> getIndexedFields(Set<String> datatypeFilter) {
+        return getFields(ColumnFamilyConstants.COLF_I, datatypeFilter);
+    }
+    
+    /**
+     * @param datatypeFilter
+     *            the datatypes to include, or null or empty for all of them
+     * @return the fields that are reverse indexed for any of the datatypes
+     */
+    public Set<String> getReverseIndexedFields(Set<String> datatypeFilter) {
+        return getFields(ColumnFamilyConstants.COLF_RI, datatypeFilter);
+    }
+    
+    /**
+     * @param datatypeFilter
+     *            the datatypes to include, or null or empty for all of them
+     * @return the fields that are indexed for any of the datatypes without being in its events
+     */
+    public Set<String> getIndexOnlyFields(Set<String> datatypeFilter) {
+        Set<String> fields = new HashSet<>();
+        SetMultimap<String,String> indexed = datatypes.get(ColumnFamilyConstants.COLF_I.toString());
+        SetMultimap<String,String> event = datatypes.get(ColumnFamilyConstants.COLF_E.toString());
+        if (indexed == null) {
+            return fields;
+        }
+        for (Map.Entry<String,String> entry : indexed.entries()) {
+            if ((datatypeFilter == null || datatypeFilter.isEmpty() || datatypeFilter.contains(entry.getValue()))
+                            && (event == null || !event.containsEntry(entry.getKey(), entry.getValue()))) {
+                fields.add(entry.getKey());
+            }
+        }
+        return fields;
+    }
+    
+    /**
+     * @return the fields that are normalized for any datatype
+     */
+    public Set<String> getNormalizedFields() {
+        return getFields(ColumnFamilyConstants.COLF_N, null);
+    }
+    
+    /**
+     * @param datatypeFilter
+     *            the datatypes to include, or null or empty for all of them
+     * @return the fields that have term frequencies for any of the datatypes
+     */
+    public Set<String> getTermFrequencyFields(Set<String> datatypeFilter) {
+        return getFields(ColumnFamilyConstants.COLF_TF, datatypeFilter);
+    }
+    
+    /**
+     * @param datatypeFilter
+     *            the datatypes to include, or null or empty for all of them
+     * @return the fields of the events and the index of any of the datatypes, which includes the index only fields
+     */
+    public Set<String> getAllFields(Set<String> datatypeFilter) {
+        Set<String> fields = getFields(ColumnFamilyConstants.COLF_E, datatypeFilter);
+        fields.addAll(getFields(ColumnFamilyConstants.COLF_I, datatypeFilter));
+        return fields;
+    }
+    
+    /**
+     * @param columnFamily
+     *            one of the {@link #COLUMN_FAMILIES}
+     * @param datatypeFilter
+     *            the datatypes to include, or null or empty for all of them
+     * @return the fields that have the column for any of the datatypes
+     */
+    public Set<String> getFields(Text columnFamily, Set<String> datatypeFilter) {
+        Set<String> fields = new HashSet<>();
+        SetMultimap<String,String> fieldDatatypes = datatypes.get(columnFamily.toString());
+        if (fieldDatatypes == null) {
+            return fields;
+        }
+        if (datatypeFilter == null || datatypeFilter.isEmpty()) {
+            fields.addAll(fieldDatatypes.keySet());
+        } else {
+            for (Map.Entry<String,Collection<String>> entry : fieldDatatypes.asMap().entrySet()) {
+                if (!Collections.disjoint(entry.getValue(), datatypeFilter)) {
+                    fields.add(entry.getKey());
+                }
+            }
+        }
+        return fields;
+    }
+    
+    /**
+     * @param datatypeFilter
+     *            the datatypes to include, or null or empty for all of them
+     * @return new instances of the types of each field for any of the datatypes
+     */
+    public Multimap<String,Type<?>> getFieldsToTypes(Set<String> datatypeFilter) {
+        Multimap<String,Type<?>> fieldTypes = HashMultimap.create();
+        for (Map.Entry<String,SetMultimap<String,String>> entry : types.entrySet()) {
+            if (datatypeFilter == null || datatypeFilter.isEmpty() || datatypeFilter.contains(entry.getKey())) {
+                for (Map.Entry<String,String> fieldType : entry.getValue().entries()) {
+                    Type<?> type = newType(fieldType.getValue());
+                    if (type != null) {
+                        fieldTypes.put(fieldType.getKey(), type);
+                    }
+                }
+            }
+        }
+        return fieldTypes;
+    }
+    
+    /**
+     * @param datatypeFilter
+     *            the datatypes to include, or null or empty for all of them
+     * @return the type class names of each field of the datatypes
+     */
+    public TypeMetadata getTypeMetadata(Set<String> datatypeFilter) {
+        TypeMetadata typeMetadata = new TypeMetadata();
+        for (Map.Entry<String,SetMultimap<String,String>> entry : types.entrySet()) {
+            if (datatypeFilter == null || datatypeFilter.isEmpty() || datatypeFilter.contains(entry.getKey())) {
+                for (Map.Entry<String,String> fieldType : entry.getValue().entries()) {
+                    typeMetadata.put(fieldType.getKey(), entry.getKey(), fieldType.getValue());
+                }
+            }
+        }
+        return typeMetadata;
+    }
+    
+    private static Type<?> newType(String className) {
+        try {
+            Class<?> typeClass = typeClasses.get(className);
+            if (typeClass == null) {
+                typeClass = Class.forName(className);
+                typeClasses.put(className, typeClass);
+            }
+            return (Type<?>) typeClass.newInstance();
+        } catch (ClassNotFoundException | InstantiationException | IllegalAccessException | ClassCastException e) {
+            log.warn("Unable to create type " + className + " from the metadata snapshot", e);
+            return null;
+        }
+    }
+    
+    /**
+     * @return the newest timestamp of the keys in the snapshot
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+    
+    /**
+     * @return the time that the keys of the snapshot were last scanned
+     */
+    public long getLoadTime() {
+        return loadTime;
+    }
+    
+    /**
+     * Collects the keys of the metadata table into a new snapshot
+     */
+    public static class Builder {
+        private final Map<String,SetMultimap<String,String>> datatypes = new HashMap<>();
+        private final Map<String,SetMultimap<String,String>> types = new HashMap<>();
+        private long timestamp = 0;
+        private int added = 0;
+        
+        private Builder(MetadataSnapshot base) {
+            if (base != null) {
+                for (Map.Entry<String,SetMultimap<String,String>> entry : base.datatypes.entrySet()) {
+                    datatypes.put(entry.getKey(), HashMultimap.create(entry.getValue()));
+                }
+                for (Map.Entry<String,SetMultimap<String,String>> entry : base.types.entrySet()) {
+                    types.put(entry.getKey(), HashMultimap.create(entry.getValue()));
+                }
+                timestamp = base.timestamp;
+            }
+        }
+        
+        /**
+         * Add a key of the metadata table, ignoring those of the column families that are not kept
+         *
+         * @return this builder
+         */
+        public Builder add(Key key) {
+            if (!COLUMN_FAMILIES.contains(key.getColumnFamily())) {
+                return this;
+            }
+            String columnFamily = key.getColumnFamily().toString();
+            String field = key.getRow().toString();
+            String columnQualifier = key.getColumnQualifier().toString();
+            int separator = columnQualifier.indexOf('\0');
+            String datatype = (separator < 0 ? columnQualifier : columnQualifier.substring(0, separator));
+            
+            put(datatypes, columnFamily, field, datatype);
+            if (separator >= 0 && ColumnFamilyConstants.COLF_T.equals(key.getColumnFamily())) {
+                put(types, datatype, field, columnQualifier.substring(separator + 1));
+            }
+            timestamp = Math.max(timestamp, key.getTimestamp());
+            added++;
+            return this;
+        }
+        
+        private static void put(Map<String,SetMultimap<String,String>> map, String name, String key, String value) {
+            SetMultimap<String,String> values = map.get(name);
+            if (values == null) {
+                values = HashMultimap.create();
+                map.put(name, values);
+            }
+            values.put(key, value);
+        }
+        
+        /**
+         * @return the number of keys added to this builder
+         */
+        public int getAdded() {
+            return added;
+        }
+        
+        /**
+         * @param loadTime
+         *            the time that the keys were scanned
+         * @return the snapshot
+         */
+        public MetadataSnapshot build(long loadTime) {
+            return new MetadataSnapshot(copy(datatypes), copy(types), timestamp, loadTime);
+        }
+        
+        private static Map<String,SetMultimap<String,String>> copy(Map<String,SetMultimap<String,String>> map) {
+            ImmutableMap.Builder<String,SetMultimap<String,String>> copy = ImmutableMap.builder();
+            for (Map.Entry<String,SetMultimap<String,String>> entry : map.entrySet()) {
+                copy.put(entry.getKey(), ImmutableSetMultimap.copyOf(entry.getValue()));
+            }
+            return copy.build();
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package datawave.query.util.metadata;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import datawave.security.util.ScannerHelper;
+
+import org.apache.accumulo.core.client.Connector;
+import org.apache.accumulo.core.client.IteratorSetting;
+import org.apache.accumulo.core.client.Scanner;
+import org.apache.accumulo.core.client.TableNotFoundException;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.user.TimestampFilter;
+import org.apache.accumulo.core.security.Authorizations;
+import org.apache.hadoop.io.Text;
+import org.apache.log4j.Logger;
+
+import com.google.common.base.CharMatcher;
+import com.google.common.base.Splitter;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Keeps a {@link MetadataSnapshot} of the metadata table per table and subset of the metadata authorizations, so that query planning can look up the fields
+ * and types without scanning the metadata table. The snapshots are keyed by the metadata authorizations that a user has, see
+ * {@link datawave.query.util.MetadataHelper#getUsersMetadataAuthorizationSubset()}, rather than by all of the user's authorizations, since those are the only
+ * ones that the metadata table is labeled with, so users with different authorizations share a snapshot.
+ * <p>
+ * The first request for a table and subset of authorizations starts loading its snapshot in the background and returns null, so the caller falls back to the
+ * metadata helper until the snapshot is loaded. From then on the snapshot is refreshed in the background every {@link #getRefreshIntervalMillis()}, and the
+ * refreshed snapshot replaces the previous one atomically, so a request never waits for the metadata table.
+ * <p>
+ * The keys of the metadata table are timestamped with the most recent event date of their column, not the time they were written, so a refresh only scans
+ * the keys with a timestamp within {@link #getLookbackMillis()} of the newest timestamp of the snapshot. Every {@link #getFullReloadInterval()} refreshes the
+ * whole table is scanned again, to pick up columns with older timestamps and to drop the columns that were removed.
+ */
+public class MetadataSnapshotService {
+    
+    private static final Logger log = Logger.getLogger(MetadataSnapshotService.class);
+    
+    private long refreshIntervalMillis = TimeUnit.MINUTES.toMillis(5);
+    private long lookbackMillis = TimeUnit.DAYS.toMillis(1);
+    private int fullReloadInterval = 12;
+    // snapshots that have not been requested for this long are dropped
+    private long maxIdleMillis = TimeUnit.HOURS.toMillis(1);
+    
+    private final ConcurrentMap<SnapshotKey,Holder> holders = new ConcurrentHashMap<>();
+    private ScheduledExecutorService executor = null;
+    
+    /**
+     * Start refreshing the snapshots
+     */
+    public void start() {
+        getExecutor();
+    }
+    
+    private synchronized ScheduledExecutorService getExecutor() {
+        if (executor == null) {
+            executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("MetadataSnapshotService-%d").setDaemon(true)
+                            .build());
+            executor.scheduleWithFixedDelay(this::refresh, refreshIntervalMillis, refreshIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+        return executor;
+    }
+    
+    /**
+     * Stop refreshing the snapshots, and drop them
+     */
+    public synchronized void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+        holders.clear();
+    }
+    
+    /**
+     * Get the current snapshot of a metadata table, without waiting for it to be loaded
+     *
+     * @param connector
+     *            the connector to load the snapshot with, which is kept to refresh it
+     * @param metadataTableName
+     *            the metadata table
+     * @param metadataAuths
+     *            the subset of the metadata authorizations that the user has, as returned by the metadata helper, to scan the metadata table with
+     * @return the snapshot, or null if it is not loaded yet or there are no metadata authorizations
+     */
+    public MetadataSnapshot getSnapshot(Connector connector, String metadataTableName, String metadataAuths) {
+        Set<String> auths = parseAuths(metadataAuths);
+        if (auths.isEmpty()) {
+            return null;
+        }
+        SnapshotKey key = new SnapshotKey(metadataTableName, auths);
+        Holder holder = holders.get(key);
+        if (holder == null) {
+            holder = new Holder(connector, metadataTableName, Collections.singleton(new Authorizations(auths.toArray(new String[auths.size()]))));
+            Holder existing = holders.putIfAbsent(key, holder);
+            if (existing != null) {
+                holder = existing;
+            } else {
+                Holder loading = holder;
+                getExecutor().execute(() -> loading.refresh(true));
+            }
+        }
+        holder.lastAccess = System.currentTimeMillis();
+        return holder.snapshot;
+    }
+    
+    /**
+     * @return the authorizations of a subset of the metadata authorizations, split the same way as the query iterator splits them to find its type metadata
+     */
+    private static Set<String> parseAuths(String metadataAuths) {
+        Set<String> auths = new TreeSet<>();
+        if (metadataAuths != null) {
+            for (String auth : Splitter.on(CharMatcher.anyOf(",& ")).omitEmptyStrings().trimResults().split(metadataAuths)) {
+                auths.add(auth);
+            }
+        }
+        return auths;
+    }
+    
+    /**
+     * Refresh every snapshot, and drop those that are no longer requested
+     */
+    protected void refresh() {
+        long now = System.currentTimeMillis();
+        for (Iterator<Holder> it = holders.values().iterator(); it.hasNext();) {
+            Holder holder = it.next();
+            if (now - holder.lastAccess > maxIdleMillis) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Dropping the idle metadata snapshot of " + holder.tableName);
+                }
+                it.remove();
+            } else {
+                holder.refresh(fullReloadInterval <= 1 || ++holder.refreshes % fullReloadInterval == 0);
+            }
+        }
+    }
+    
+    /**
+     * Scan the metadata table into a new snapshot
+     *
+     * @param base
+     *            the snapshot to update incrementally, or null to scan the whole table
+     * @return the new snapshot
+     */
+    protected MetadataSnapshot load(Connector connector, String tableName, Set<Authorizations> auths, MetadataSnapshot base) throws TableNotFoundException {
+        long start = System.currentTimeMillis();
+        MetadataSnapshot.Builder builder = (base == null ? MetadataSnapshot.builder() : base.update());
+        try (Scanner scanner = ScannerHelper.createScanner(connector, tableName, auths)) {
+            for (Text columnFamily : MetadataSnapshot.COLUMN_FAMILIES) {
+                scanner.fetchColumnFamily(columnFamily);
+            }
+            if (base != null) {
+                IteratorSetting setting = new IteratorSetting(100, "snapshotTimestampFilter", TimestampFilter.class);
+                TimestampFilter.setStart(setting, Math.max(0, base.getTimestamp() - lookbackMillis), true);
+                scanner.addScanIterator(setting);
+            }
+            for (Entry<Key,Value> entry : scanner) {
+                builder.add(entry.getKey());
+            }
+        }
+        MetadataSnapshot snapshot = builder.build(start);
+        if (log.isDebugEnabled()) {
+            log.debug((base == null ? "Loaded " : "Updated ") + "the metadata snapshot of " + tableName + " with " + builder.getAdded() + " keys in "
+                            + (System.currentTimeMillis() - start) + "ms");
+        }
+        return snapshot;
+    }
+    
+    private class Holder {
+        private final Connector connector;
+        private final String tableName;
+        private final Set<Authorizations> auths;
+        
+        private volatile MetadataSnapshot snapshot = null;
+        private volatile long lastAccess = System.currentTimeMillis();
+        private int refreshes = 0;
+        
+        private Holder(Connector connector, String tableName, Set<Authorizations> auths) {
+            this.connector = connector;
+            this.tableName = tableName;
+            this.auths = auths;
+        }
+        
+        private void refresh(boolean full) {
+            try {
+                MetadataSnapshot current = snapshot;
+                snapshot = load(connector, tableName, auths, (full ? null : current));
+            } catch (Exception e) {
+                // keep the current snapshot, and try again at the next refresh
+                log.warn("Unable to refresh the metadata snapshot of " + tableName, e);
+            }
+        }
+    }
+    
+    private static class SnapshotKey {
+        private final String tableName;
+        private final Set<String> auths;
+        
+        private SnapshotKey(String tableName, Set<String> auths) {
+            this.tableName = tableName;
+            this.auths = auths;
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof SnapshotKey)) {
+                return false;
+            }
+            SnapshotKey other = (SnapshotKey) o;
+            return tableName.equals(other.tableName) && auths.equals(other.auths);
+        }
+        
+        @Override
+        public int hashCode() {
+            return tableName.hashCode() * 31 + auths.hashCode();
+        }
+    }
+    
+    /**
+     * @return the number of snapshots kept
+     */
+    public int size() {
+        return holders.size();
+    }
+    
+    public long getRefreshIntervalMillis() {
+        return refreshIntervalMillis;
+    }
+    
+    public void setRefreshIntervalMillis(long refreshIntervalMillis) {
+        this.refreshIntervalMillis = refreshIntervalMillis;
+    }
+    
+    public long getLookbackMillis() {
+        return lookbackMillis;
+    }
+    
+    public void setLookbackMillis(long lookbackMillis) {
+        this.lookbackMillis = lookbackMillis;
+    }
+    
+    public int getFullReloadInterval() {
+        return fullReloadInterval;
+    }
+    
+    public void setFullReloadInterval(int fullReloadInterval) {
+        this.fullReloadInterval = fullReloadInterval;
+    }
+    
+    public long getMaxIdleMillis() {
+        return maxIdleMillis;
+    }
+    
+    public void setMaxIdleMillis(long maxIdleMillis) {
+        this.maxIdleMillis = maxIdleMillis;
+    }
+}
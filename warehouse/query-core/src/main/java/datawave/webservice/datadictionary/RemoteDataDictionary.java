@@ -4,12 +4,19 @@ import com.codahale.metrics.Counter;
 import com.codahale.metrics.annotation.Metric;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectReader;
+import com.google.common.base.Ticker;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import datawave.configuration.RefreshableScope;
 import datawave.security.authorization.DatawavePrincipal;
 import datawave.security.system.CallerPrincipal;
+import datawave.security.util.AuthorizationsUtil;
 import datawave.webservice.common.remote.RemoteHttpService;
 import datawave.webservice.query.result.metadata.MetadataFieldBase;
 import datawave.webservice.results.datadictionary.DataDictionaryBase;
+import org.apache.accumulo.core.security.Authorizations;
 import org.apache.deltaspike.core.api.config.ConfigProperty;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.utils.URIBuilder;
@@ -18,7 +25,11 @@ import javax.annotation.PostConstruct;
 import javax.inject.Inject;
 import java.io.IOException;
 import java.net.URISyntaxException;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 
@@ -28,6 +39,7 @@ import java.util.function.Supplier;
 @RefreshableScope
 public class RemoteDataDictionary extends RemoteHttpService {
     private ObjectReader dataDictReader;
+    private LoadingCache<List<Object>,DataDictionaryBase<?,? extends MetadataFieldBase<?,?>>> dataDictionaryCache;
     
     @Inject
     @ConfigProperty(name = "dw.remoteDictionary.useSrvDnsLookup", defaultValue = "false")
@@ -73,6 +85,18 @@ public class RemoteDataDictionary extends RemoteHttpService {
     @ConfigProperty(name = "dw.remoteDictionary.unavailableRetryDelayMS", defaultValue = "2000")
     private int unavailableRetryDelay;
     
+    @Inject
+    @ConfigProperty(name = "dw.remoteDictionary.cache.maxSize", defaultValue = "100")
+    private int cacheMaxSize;
+    
+    @Inject
+    @ConfigProperty(name = "dw.remoteDictionary.cache.refreshMinutes", defaultValue = "10")
+    private int cacheRefreshMinutes;
+    
+    @Inject
+    @ConfigProperty(name = "dw.remoteDictionary.cache.expireMinutes", defaultValue = "60")
+    private int cacheExpireMinutes;
+    
     @Inject
     @Metric(name = "dw.remoteDictionary.retries", absolute = true)
     private Counter retryCounter;
@@ -95,10 +119,49 @@ public class RemoteDataDictionary extends RemoteHttpService {
         super.init();
         
         dataDictReader = objectMapper.readerFor(dataDictionaryType);
+        
+        initCache(Ticker.systemTicker());
     }
     
+    void initCache(Ticker ticker) {
+        CacheBuilder<Object,Object> builder = CacheBuilder.newBuilder().ticker(ticker).maximumSize(cacheMaxSize)
+                        .expireAfterWrite(cacheExpireMinutes, TimeUnit.MINUTES);
+        // a dictionary is refreshed by the first request after the refresh interval, while the other requests keep getting the current one. A refresh
+        // interval of 0 turns the refresh off.
+        if (cacheRefreshMinutes > 0) {
+            builder.refreshAfterWrite(cacheRefreshMinutes, TimeUnit.MINUTES);
+        }
+        dataDictionaryCache = builder.build(new CacheLoader<List<Object>,DataDictionaryBase<?,? extends MetadataFieldBase<?,?>>>() {
+            @Override
+            public DataDictionaryBase<?,? extends MetadataFieldBase<?,?>> load(List<Object> key) {
+                return fetchDataDictionary((String) key.get(0), (String) key.get(1), (String) key.get(2), (String) key.get(3));
+            }
+        });
+    }
+    
+    /**
+     * Get the data dictionary of a metadata table, which is kept per model, metadata table and auths, and refreshed every
+     * {@code dw.remoteDictionary.cache.refreshMinutes} from the remote data dictionary service. A dictionary is fetched with the credentials of the caller
+     * that missed the cache, so it is only shared with callers whose entities have the same authorizations within the requested auths.
+     */
     public DataDictionaryBase<?,? extends MetadataFieldBase<?,?>> getDataDictionary(String modelName, String modelTableName, String metadataTableName,
                     String auths) {
+        try {
+            Set<Authorizations> callerAuths = AuthorizationsUtil.mergeAuthorizations(auths, callerPrincipal.getAuthorizations());
+            return dataDictionaryCache.get(Arrays.asList(modelName, modelTableName, metadataTableName, auths, callerAuths));
+        } catch (CacheLoader.InvalidCacheLoadException e) {
+            // the service returned no dictionary
+            return null;
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause().getMessage(), e.getCause());
+        }
+    }
+    
+    protected DataDictionaryBase<?,? extends MetadataFieldBase<?,?>> fetchDataDictionary(String modelName, String modelTableName, String metadataTableName,
+                    String auths) {
         final String bearerHeader = "Bearer " + jwtTokenHandler.createTokenFromUsers(callerPrincipal.getName(), callerPrincipal.getProxiedUsers());
         // @formatter:off
         return executeGetMethodWithRuntimeException(
@@ -0,0 +1,206 @@
+package datawave.query.index.lookup;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Multimap;
+import com.google.common.collect.Sets;
+import datawave.accumulo.inmemory.InMemoryInstance;
+import datawave.data.type.LcNoDiacriticsType;
+import datawave.data.type.Type;
+import datawave.ingest.protobuf.Uid;
+import datawave.iterators.FieldDaysCombiner;
+import datawave.query.config.ShardQueryConfiguration;
+import datawave.query.jexl.JexlASTHelper;
+import datawave.query.planner.QueryPlan;
+import datawave.query.tables.ScannerFactory;
+import datawave.query.util.MockMetadataHelper;
+import datawave.util.time.DateHelper;
+import org.apache.accumulo.core.client.BatchWriter;
+import org.apache.accumulo.core.client.BatchWriterConfig;
+import org.apache.accumulo.core.client.Connector;
+import org.apache.accumulo.core.client.security.tokens.PasswordToken;
+import org.apache.accumulo.core.data.Mutation;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.hadoop.io.Text;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static datawave.common.test.utils.query.RangeFactoryForTests.makeTestRange;
+
+/**
+ * Assert that the days of the global index that a field was not indexed on, according to the field days of the metadata table, are not scanned.
+ */
+public class RangeStreamFieldDaysTest {
+    
+    private static final String SHARD_INDEX = "shardIndex";
+    private static final String METADATA = "metadata";
+    
+    private static InMemoryInstance instance = new InMemoryInstance(RangeStreamFieldDaysTest.class.toString());
+    private static Connector connector;
+    
+    private ShardQueryConfiguration config;
+    private MockMetadataHelper helper;
+    
+    @BeforeClass
+    public static void setupAccumulo() throws Exception {
+        connector = instance.getConnector("", new PasswordToken(new byte[0]));
+        connector.tableOperations().create(SHARD_INDEX);
+        connector.tableOperations().create(METADATA);
+        
+        BatchWriter bw = connector.createBatchWriter(SHARD_INDEX, new BatchWriterConfig().setMaxLatency(10, TimeUnit.SECONDS).setMaxMemory(100000L)
+                        .setMaxWriteThreads(1));
+        Mutation m = new Mutation("bag");
+        m.put(new Text("FOO"), new Text("20190301_0\0datatype1"), uidList("1"));
+        m.put(new Text("FOO"), new Text("20190302_0\0datatype1"), uidList("2"));
+        m.put(new Text("FOO"), new Text("20190305_0\0datatype1"), uidList("3"));
+        m.put(new Text("FOO"), new Text("20190310_0\0datatype1"), uidList("4"));
+        m.put(new Text("FOO"), new Text("20190320_0\0datatype2"), uidList("5"));
+        bw.addMutation(m);
+        
+        // a day that the field days do not record, which is only found when the day is scanned
+        m = new Mutation("unrecorded");
+        m.put(new Text("FOO"), new Text("20190315_0\0datatype1"), uidList("6"));
+        bw.addMutation(m);
+        
+        // a field without any field days
+        m = new Mutation("bag");
+        m.put(new Text("BAR"), new Text("20190301_0\0datatype1"), uidList("7"));
+        bw.addMutation(m);
+        bw.close();
+        
+        bw = connector.createBatchWriter(METADATA, new BatchWriterConfig().setMaxLatency(10, TimeUnit.SECONDS).setMaxMemory(100000L).setMaxWriteThreads(1));
+        m = new Mutation("FOO");
+        m.put(FieldDaysCombiner.COLF_FD, new Text("datatype1\0201903"), fieldDays("20190301", "20190302", "20190305", "20190310"));
+        m.put(FieldDaysCombiner.COLF_FD, new Text("datatype2\0201903"), fieldDays("20190320"));
+        bw.addMutation(m);
+        bw.close();
+    }
+    
+    private static Value uidList(String uid) {
+        return new Value(Uid.List.newBuilder().addUID(uid).setIGNORE(false).setCOUNT(1).build().toByteArray());
+    }
+    
+    private static Value fieldDays(String... days) {
+        int bits = 0;
+        for (String day : days) {
+            bits |= FieldDaysCombiner.dayBit(day);
+        }
+        return FieldDaysCombiner.encode(bits);
+    }
+    
+    @Before
+    public void setupTest() {
+        config = new ShardQueryConfiguration();
+        config.setConnector(connector);
+        config.setShardsPerDayThreshold(20);
+        config.setIndexTableName(SHARD_INDEX);
+        config.setMetadataTableName(METADATA);
+        config.setBeginDate(DateHelper.parse("20190301"));
+        config.setEndDate(DateHelper.parse("20190331"));
+        
+        Multimap<String,Type<?>> dataTypes = HashMultimap.create();
+        dataTypes.put("FOO", new LcNoDiacriticsType());
+        dataTypes.put("BAR", new LcNoDiacriticsType());
+        config.setQueryFieldsDatatypes(dataTypes);
+        config.setIndexedFields(dataTypes);
+        
+        helper = new MockMetadataHelper();
+        helper.setIndexedFields(dataTypes.keySet());
+    }
+    
+    private RangeStream rangeStream() {
+        return new RangeStream(config, new ScannerFactory(config.getConnector()), helper);
+    }
+    
+    private Range range(RangeStream stream, String term, String beginDay, String endDay) {
+        return stream.rangeForTerm(term, "FOO", DateHelper.parse(beginDay), DateHelper.parse(endDay));
+    }
+    
+    private Set<Range> plan(String query) throws Exception {
+        Set<Range> ranges = new HashSet<>();
+        for (QueryPlan queryPlan : rangeStream().streamPlans(JexlASTHelper.parseJexlQuery(query))) {
+            for (Range range : queryPlan.getRanges()) {
+                ranges.add(range);
+            }
+        }
+        return ranges;
+    }
+    
+    @Test
+    public void testRunsOfDays() throws Exception {
+        RangeStream stream = rangeStream();
+        Assert.assertEquals(Collections.singleton(stream.rangeForTerm("bag", "FOO", config)), stream.rangesForTerm("bag", "FOO"));
+        
+        // contiguous days are scanned as one range, and the days in between are not scanned
+        config.setFieldDaysStartDate("20190301");
+        stream = rangeStream();
+        Assert.assertEquals(Arrays.asList(range(stream, "bag", "20190301", "20190302"), range(stream, "bag", "20190305", "20190305"),
+                        range(stream, "bag", "20190310", "20190310"), range(stream, "bag", "20190320", "20190320")), stream.rangesForTerm("bag", "FOO"));
+    }
+    
+    @Test
+    public void testDaysBeforeStartDate() throws Exception {
+        // every day before the start date is scanned, since the field days may not have been written for it
+        config.setFieldDaysStartDate("20190305");
+        RangeStream stream = rangeStream();
+        Assert.assertEquals(Arrays.asList(range(stream, "bag", "20190301", "20190305"), range(stream, "bag", "20190310", "20190310"),
+                        range(stream, "bag", "20190320", "20190320")), stream.rangesForTerm("bag", "FOO"));
+        
+        // and none of the days are pruned when the query ends before it
+        config.setFieldDaysStartDate("20190401");
+        stream = rangeStream();
+        Assert.assertEquals(Collections.singleton(stream.rangeForTerm("bag", "FOO", config)), stream.rangesForTerm("bag", "FOO"));
+    }
+    
+    @Test
+    public void testDatatypeFilter() throws Exception {
+        config.setFieldDaysStartDate("20190301");
+        config.setDatatypeFilter(Collections.singleton("datatype1"));
+        RangeStream stream = rangeStream();
+        Assert.assertEquals(Arrays.asList(range(stream, "bag", "20190301", "20190302"), range(stream, "bag", "20190305", "20190305"),
+                        range(stream, "bag", "20190310", "20190310")), stream.rangesForTerm("bag", "FOO"));
+        
+        Assert.assertEquals(Sets.newHashSet(makeTestRange("20190301_0", "datatype1\u00001"), makeTestRange("20190302_0", "datatype1\u00002"),
+                        makeTestRange("20190305_0", "datatype1\u00003"), makeTestRange("20190310_0", "datatype1\u00004")), plan("FOO == 'bag'"));
+    }
+    
+    @Test
+    public void testResultsUnchanged() throws Exception {
+        Set<Range> expected = Sets.newHashSet(makeTestRange("20190301_0", "datatype1\u00001"), makeTestRange("20190302_0", "datatype1\u00002"),
+                        makeTestRange("20190305_0", "datatype1\u00003"), makeTestRange("20190310_0", "datatype1\u00004"),
+                        makeTestRange("20190320_0", "datatype2\u00005"));
+        Assert.assertEquals(expected, plan("FOO == 'bag'"));
+        
+        config.setFieldDaysStartDate("20190301");
+        Assert.assertEquals(expected, plan("FOO == 'bag'"));
+    }
+    
+    @Test
+    public void testPrunedDaysNotScanned() throws Exception {
+        Assert.assertEquals(Collections.singleton(makeTestRange("20190315_0", "datatype1\u00006")), plan("FOO == 'unrecorded'"));
+        
+        // the day is not recorded in the field days, so it is not scanned
+        config.setFieldDaysStartDate("20190301");
+        Assert.assertTrue(plan("FOO == 'unrecorded'").isEmpty());
+    }
+    
+    @Test
+    public void testNoFieldDays() throws Exception {
+        config.setFieldDaysStartDate("20190301");
+        RangeStream stream = rangeStream();
+        Assert.assertTrue(stream.rangesForTerm("bag", "BAR").isEmpty());
+        
+        // the term becomes a stream without data, without scanning the index
+        stream.streamPlans(JexlASTHelper.parseJexlQuery("BAR == 'bag'"));
+        Assert.assertEquals(IndexStream.StreamContext.ABSENT, stream.context());
+        Assert.assertFalse(stream.iterator().hasNext());
+    }
+}
@@ -0,0 +1,162 @@
+package datawave.query.iterator.filter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import datawave.edge.model.EdgeModelAware;
+
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.SortedMapIterator;
+import org.apache.commons.codec.binary.Base64;
+import org.apache.hadoop.io.Text;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.HashMultimap;
+
+public class EdgeFilterIteratorTest {
+    
+    private static final String SOURCE = EdgeModelAware.EDGE_SOURCE;
+    private static final String SINK = EdgeModelAware.EDGE_SINK;
+    private static final String TYPE = EdgeModelAware.EDGE_TYPE;
+    private static final String RELATIONSHIP = EdgeModelAware.EDGE_RELATIONSHIP;
+    private static final String ATTRIBUTE1 = EdgeModelAware.EDGE_ATTRIBUTE1;
+    private static final String ATTRIBUTE2 = EdgeModelAware.EDGE_ATTRIBUTE2;
+    private static final String ATTRIBUTE3 = EdgeModelAware.EDGE_ATTRIBUTE3;
+    private static final String DATE = EdgeModelAware.DATE;
+    
+    // a term that can not be compiled, so that the query is evaluated by JEXL
+    private static final String NOT_COMPILABLE = " && (1 == 1)";
+    
+    private static final String[] QUERIES = {SOURCE + " == 'source'", SOURCE + " == 'SOURCE'", "'sink' == " + SINK, SINK + " != 'sink'",
+            TYPE + " =~ 'ty.*' && " + RELATIONSHIP + " == 'rel1-rel2'", "(" + ATTRIBUTE2 + " == 'attr2' || " + ATTRIBUTE3 + " =~ '.*')",
+            "!(" + SOURCE + " =~ 's.*')", ATTRIBUTE2 + " !~ 'a.*'", SOURCE + " == 's\u00e9rvice'", SOURCE + " =~ 's\u00e9r.*'",
+            SOURCE + " == 'back\\\\slash'", DATE + " =~ '2020.*' and " + ATTRIBUTE1 + " == 'cat'", "not (" + SINK + " == 'b') or " + TYPE + " != 'type'",
+            ATTRIBUTE3 + " == 'attr3' || " + ATTRIBUTE1 + " =~ '[a-z]+-[a-z0-9]+'", "true", "false"};
+    
+    private static List<Key> keys(boolean protobuf) {
+        String[] rows = {"Source\0Sink", "SOURCE\0sink", "s\u00e9rvice\0bar", "s\\u00e9rvice\0bar", "back\\\\slash\0sink", "a\0b\0c", "\0sink", "source\0"};
+        String[] families = protobuf ? new String[] {"TYPE/REL1-REL2", "Type/Rel", "STATSTYPE/REL1-REL2", "TYPE/", "TYPE/REL/EXTRA"} : new String[] {
+                "TYPE/REL1-REL2/CAT-CAT2", "Type/Rel/Cat/ATTR2", "STATSTYPE/REL1-REL2/CAT", "TYPE/REL/", "TYPE/REL1-REL2/CAT-CAT2/ATTR2/ATTR3"};
+        String[] qualifiers = protobuf ? new String[] {"20200101/CAT-CAT2/ATTR2/ATTR3", "20200101/Cat//", "20200101/CAT/ATTR2/ATTR3/A", "20200101/CAT",
+                "20200101"} : new String[] {"20200101", "19991231", "20200101/CAT"};
+        List<Key> keys = new ArrayList<>();
+        for (String row : rows) {
+            for (String family : families) {
+                for (String qualifier : qualifiers) {
+                    keys.add(new Key(new Text(row), new Text(family), new Text(qualifier)));
+                }
+            }
+        }
+        
+        // stats edges
+        String[] statsFamilies = protobuf ? new String[] {"STATS/ACTIVITY/TYPE/REL1", "STATS/DURATION/Type/Rel"} : new String[] {
+                "STATS/ACTIVITY/TYPE/REL1/CAT", "STATS/DURATION/Type/Rel/Cat/ATTR2"};
+        for (String family : statsFamilies) {
+            for (String qualifier : qualifiers) {
+                keys.add(new Key(new Text("Source"), new Text(family), new Text(qualifier)));
+            }
+        }
+        return keys;
+    }
+    
+    private static EdgeFilterIterator newFilter(String query, String statsQuery, boolean protobuf, HashMultimap<String,String> prefilter) throws Exception {
+        Map<String,String> options = new HashMap<>();
+        options.put(EdgeFilterIterator.JEXL_OPTION, query);
+        options.put(EdgeFilterIterator.PROTOBUF_OPTION, Boolean.toString(protobuf));
+        options.put(EdgeFilterIterator.INCLUDE_STATS_OPTION, "true");
+        if (statsQuery != null) {
+            options.put(EdgeFilterIterator.JEXL_STATS_OPTION, statsQuery);
+        }
+        if (prefilter != null) {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            try (ObjectOutputStream oos = new ObjectOutputStream(baos)) {
+                oos.writeObject(prefilter);
+            }
+            options.put(EdgeFilterIterator.PREFILTER_WHITELIST, new String(Base64.encodeBase64(baos.toByteArray())));
+        }
+        EdgeFilterIterator filter = new EdgeFilterIterator();
+        filter.init(null, options);
+        return filter;
+    }
+    
+    private static void assertSameAsJexl(String query, String statsQuery, HashMultimap<String,String> prefilter) throws Exception {
+        for (boolean protobuf : new boolean[] {true, false}) {
+            EdgeFilterIterator compiled = newFilter(query, statsQuery, protobuf, prefilter);
+            EdgeFilterIterator jexl = newFilter("(" + query + ")" + NOT_COMPILABLE, statsQuery == null ? null : "(" + statsQuery + ")" + NOT_COMPILABLE,
+                            protobuf, prefilter);
+            for (Key key : keys(protobuf)) {
+                Assert.assertEquals(query + " " + key, jexl.accept(key, new Value()), compiled.accept(key, new Value()));
+            }
+        }
+    }
+    
+    @Test
+    public void testCompile() {
+        for (String query : QUERIES) {
+            Assert.assertNotNull(query, CompiledEdgeFilter.compile(query.toLowerCase()));
+            Assert.assertNull(query, CompiledEdgeFilter.compile(("(" + query + ")" + NOT_COMPILABLE).toLowerCase()));
+        }
+        
+        // unknown fields, comparisons other than to string literals, and invalid regular expressions are left to JEXL
+        Assert.assertNull(CompiledEdgeFilter.compile("unknown == 'a'"));
+        Assert.assertNull(CompiledEdgeFilter.compile(SOURCE.toLowerCase() + " == " + SINK.toLowerCase()));
+        Assert.assertNull(CompiledEdgeFilter.compile(SOURCE.toLowerCase() + " < 'a'"));
+        Assert.assertNull(CompiledEdgeFilter.compile("'a' =~ " + SOURCE.toLowerCase()));
+        Assert.assertNull(CompiledEdgeFilter.compile(SOURCE.toLowerCase() + " =~ '['"));
+    }
+    
+    @Test
+    public void testSameAsJexl() throws Exception {
+        for (String query : QUERIES) {
+            assertSameAsJexl(query, null, null);
+        }
+    }
+    
+    @Test
+    public void testStatsSameAsJexl() throws Exception {
+        for (String query : QUERIES) {
+            assertSameAsJexl(SOURCE + " == 'source'", query, null);
+        }
+    }
+    
+    @Test
+    public void testPrefilterSameAsJexl() throws Exception {
+        HashMultimap<String,String> prefilter = HashMultimap.create();
+        prefilter.put(SOURCE, "Source");
+        prefilter.put(SOURCE, "s\u00e9rvice");
+        prefilter.put(SOURCE, "back\\slash");
+        prefilter.put(TYPE, "TYPE");
+        prefilter.put(EdgeModelAware.STATS_EDGE, "true");
+        for (String query : QUERIES) {
+            assertSameAsJexl(query, null, prefilter);
+        }
+        
+        // stats edges are whitelisted as a whole
+        prefilter.removeAll(EdgeModelAware.STATS_EDGE);
+        prefilter.put(EdgeModelAware.STATS_EDGE, "false");
+        assertSameAsJexl("true", null, prefilter);
+    }
+    
+    @Test
+    public void testDeepCopy() throws Exception {
+        Map<String,String> options = new HashMap<>();
+        options.put(EdgeFilterIterator.JEXL_OPTION, SOURCE + " =~ 'so.*'");
+        options.put(EdgeFilterIterator.PROTOBUF_OPTION, "true");
+        options.put(EdgeFilterIterator.INCLUDE_STATS_OPTION, "true");
+        options.put(EdgeFilterIterator.JEXL_STATS_OPTION, TYPE + " == 'type'");
+        EdgeFilterIterator filter = new EdgeFilterIterator();
+        filter.init(new SortedMapIterator(new TreeMap<>()), options, null);
+        
+        EdgeFilterIterator copy = (EdgeFilterIterator) filter.deepCopy(null);
+        for (Key key : keys(true)) {
+            Assert.assertEquals(key.toString(), filter.accept(key, new Value()), copy.accept(key, new Value()));
+        }
+    }
+}
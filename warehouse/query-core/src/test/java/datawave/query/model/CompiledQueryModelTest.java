@@ -0,0 +1,66 @@
+package datawave.query.model;
+
+import com.google.common.collect.Sets;
+import datawave.query.jexl.JexlASTHelper;
+import datawave.query.jexl.visitors.QueryModelVisitor;
+import datawave.query.jexl.visitors.TreeEqualityVisitor;
+import org.apache.commons.jexl2.parser.ASTJexlScript;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Set;
+
+public class CompiledQueryModelTest {
+    
+    private QueryModel model;
+    
+    @Before
+    public void setupModel() {
+        model = new QueryModel();
+        model.addTermToModel("FOO", "BAR1");
+        model.addTermToModel("FOO", "BAR2");
+        model.addTermToModel("AG", "AGE");
+        model.addTermToModel("AG", "ETA");
+        
+        model.addTermToReverseModel("BAR1", "FOO");
+        model.addTermToReverseModel("BAR2", "FOO");
+        model.addTermToReverseModel("AGE", "AG");
+        model.addTermToReverseModel("ETA", "AG");
+    }
+    
+    @Test
+    public void testSameLookups() {
+        QueryModel compiled = CompiledQueryModel.compile(model);
+        Assert.assertTrue(compiled instanceof CompiledQueryModel);
+        Assert.assertSame(compiled, CompiledQueryModel.compile(compiled));
+        Assert.assertNull(CompiledQueryModel.compile(null));
+        
+        for (String field : new String[] {"FOO", "AG", "BAR1", "AGE", "OTHER"}) {
+            // twice, to look up the kept result
+            for (int i = 0; i < 2; i++) {
+                Assert.assertEquals(Sets.newHashSet(model.getMappingsForAlias(field)), compiled.getMappingsForAlias(field));
+                Assert.assertEquals(model.aliasFieldNameReverseModel(field), compiled.aliasFieldNameReverseModel(field));
+            }
+        }
+    }
+    
+    @Test
+    public void testInverseReverseModel() {
+        CompiledQueryModel compiled = new CompiledQueryModel(model);
+        Set<String> fooFields = Sets.newHashSet("BAR1", "BAR2");
+        Assert.assertEquals(fooFields, compiled.getInverseReverseModel().get("FOO"));
+        Assert.assertEquals(Sets.newHashSet("AGE", "ETA"), compiled.getInverseReverseModel().get("AG"));
+        Assert.assertTrue(compiled.getInverseReverseModel().get("BAR1").isEmpty());
+    }
+    
+    @Test
+    public void testApplyModel() throws Exception {
+        Set<String> allFields = Sets.newHashSet("BAR1", "BAR2", "AGE", "ETA");
+        String query = "FOO == 'blah' && AG == '12'";
+        ASTJexlScript expected = QueryModelVisitor.applyModel(JexlASTHelper.parseJexlQuery(query), model, allFields);
+        ASTJexlScript actual = QueryModelVisitor.applyModel(JexlASTHelper.parseJexlQuery(query), CompiledQueryModel.compile(model), allFields);
+        TreeEqualityVisitor.Reason reason = new TreeEqualityVisitor.Reason();
+        Assert.assertTrue(reason.reason, TreeEqualityVisitor.isEqual(expected, actual, reason));
+    }
+}
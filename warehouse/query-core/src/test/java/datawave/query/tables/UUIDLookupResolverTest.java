@@ -0,0 +1,125 @@
+package datawave.query.tables;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multimap;
+import datawave.accumulo.inmemory.InMemoryInstance;
+import datawave.data.type.LcNoDiacriticsType;
+import datawave.data.type.NoOpType;
+import datawave.data.type.Type;
+import datawave.ingest.protobuf.Uid;
+import datawave.query.DocumentSerialization;
+import datawave.query.attributes.Document;
+import datawave.query.config.ShardQueryConfiguration;
+import datawave.query.model.QueryModel;
+import datawave.query.util.MockMetadataHelper;
+import datawave.util.time.DateHelper;
+import datawave.webservice.query.QueryImpl;
+import org.apache.accumulo.core.client.BatchWriter;
+import org.apache.accumulo.core.client.BatchWriterConfig;
+import org.apache.accumulo.core.client.Connector;
+import org.apache.accumulo.core.client.security.tokens.PasswordToken;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Mutation;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.security.Authorizations;
+import org.apache.accumulo.core.security.ColumnVisibility;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+public class UUIDLookupResolverTest {
+    
+    @Test
+    public void testGetTerms() {
+        Assert.assertEquals(Arrays.asList(Maps.immutableEntry("UUID", "abc"), Maps.immutableEntry("UUID", "def"), Maps.immutableEntry("PARENT_UUID", "ghi")),
+                        UUIDLookupResolver.getTerms("UUID == 'abc' || (UUID == 'def' || PARENT_UUID == 'ghi')"));
+        Assert.assertEquals(Collections.singletonList(Maps.immutableEntry("UUID", "abc")), UUIDLookupResolver.getTerms("(UUID == 'abc')"));
+        
+        // anything else must be planned
+        Assert.assertNull(UUIDLookupResolver.getTerms("UUID == 'abc' && FOO == 'bar'"));
+        Assert.assertNull(UUIDLookupResolver.getTerms("UUID == 'abc' || UUID =~ 'def.*'"));
+        Assert.assertNull(UUIDLookupResolver.getTerms("UUID == 'abc' || !(FOO == 'bar')"));
+        Assert.assertNull(UUIDLookupResolver.getTerms("UUID == 1"));
+    }
+    
+    @Test
+    public void testNormalize() throws Exception {
+        Multimap<String,Type<?>> dataTypes = HashMultimap.create();
+        dataTypes.put("EVENT_UUID", new LcNoDiacriticsType());
+        dataTypes.put("EVENT_UUID", new NoOpType());
+        dataTypes.put("OTHER_UUID", new LcNoDiacriticsType());
+        MockMetadataHelper helper = new MockMetadataHelper();
+        helper.setDataTypes(dataTypes);
+        helper.setIndexedFields(dataTypes.keySet());
+        
+        QueryModel model = new QueryModel();
+        model.addTermToModel("UUID", "EVENT_UUID");
+        
+        List<Map.Entry<String,String>> terms = UUIDLookupResolver.normalize(
+                        Arrays.asList(Maps.immutableEntry("UUID", "ABC"), Maps.immutableEntry("OTHER_UUID", "DEF")), helper, model, null);
+        Assert.assertEquals(3, terms.size());
+        Assert.assertTrue(terms.contains(Maps.immutableEntry("EVENT_UUID", "abc")));
+        Assert.assertTrue(terms.contains(Maps.immutableEntry("EVENT_UUID", "ABC")));
+        Assert.assertTrue(terms.contains(Maps.immutableEntry("OTHER_UUID", "def")));
+        
+        // a term without an indexed field cannot be resolved from the index
+        Assert.assertNull(UUIDLookupResolver.normalize(Collections.singletonList(Maps.immutableEntry("FOO", "bar")), helper, model, null));
+    }
+    
+    @Test
+    public void testResolve() throws Exception {
+        Connector connector = new InMemoryInstance(UUIDLookupResolverTest.class.toString()).getConnector("root", new PasswordToken(new byte[0]));
+        connector.tableOperations().create("shardIndex");
+        BatchWriter writer = connector.createBatchWriter("shardIndex", new BatchWriterConfig().setMaxLatency(0, TimeUnit.SECONDS).setMaxMemory(0)
+                        .setMaxWriteThreads(1));
+        Mutation m = new Mutation("abc");
+        m.put("UUID", "20190101_0\u0000datatype", new ColumnVisibility("A"), uidList("uid.1"));
+        m.put("UUID", "20190301_0\u0000datatype", new ColumnVisibility("A"), uidList("uid.2"));
+        m.put("PARENT_UUID", "20190101_0\u0000datatype", new ColumnVisibility("A"), uidList("uid.1"));
+        writer.addMutation(m);
+        m = new Mutation("popular");
+        m.put("UUID", "20190101_0\u0000datatype", new ColumnVisibility("A"), new Value(Uid.List.newBuilder().setCOUNT(500).setIGNORE(true).build()
+                        .toByteArray()));
+        writer.addMutation(m);
+        writer.close();
+        
+        ShardQueryConfiguration config = new ShardQueryConfiguration();
+        config.setConnector(connector);
+        config.setAuthorizations(Collections.singleton(new Authorizations("A")));
+        config.setIndexTableName("shardIndex");
+        config.setBeginDate(DateHelper.parse("20190101"));
+        config.setEndDate(DateHelper.parse("20190131"));
+        QueryImpl settings = new QueryImpl();
+        
+        List<Map.Entry<Key,Value>> results = UUIDLookupResolver.resolve(config, settings,
+                        Arrays.asList(Maps.immutableEntry("UUID", "abc"), Maps.immutableEntry("PARENT_UUID", "abc")));
+        
+        // one document, outside of the query dates, is not returned, and the other holds both fields it was resolved by
+        Assert.assertEquals(1, results.size());
+        Map.Entry<Key,Document> document = DocumentSerialization.getDocumentDeserializer(settings).apply(results.get(0));
+        Assert.assertEquals("20190101_0", document.getKey().getRow().toString());
+        Assert.assertEquals("datatype\u0000uid.1", document.getKey().getColumnFamily().toString());
+        Assert.assertEquals("A", document.getKey().getColumnVisibility().toString());
+        Assert.assertNotNull(document.getValue().get("UUID"));
+        Assert.assertNotNull(document.getValue().get("PARENT_UUID"));
+        
+        // terms without a uid list in the index have to be planned
+        Assert.assertNull(UUIDLookupResolver.resolve(config, settings, Collections.singletonList(Maps.immutableEntry("UUID", "popular"))));
+    }
+    
+    private static Value uidList(String... uids) {
+        Uid.List.Builder builder = Uid.List.newBuilder();
+        for (String uid : uids) {
+            builder.addUID(uid);
+        }
+        builder.setCOUNT(uids.length);
+        builder.setIGNORE(false);
+        return new Value(builder.build().toByteArray());
+    }
+}
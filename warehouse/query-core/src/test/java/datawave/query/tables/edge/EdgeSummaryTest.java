@@ -0,0 +1,225 @@
+package datawave.query.tables.edge;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+import datawave.edge.util.EdgeValue;
+import datawave.query.iterator.EdgeSummaryIterator;
+
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.SortedMapIterator;
+import org.apache.hadoop.io.Text;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class EdgeSummaryTest {
+    
+    private static final String[] DATES = {"20200101", "20200102", "20200103"};
+    
+    private static Value value(long count) {
+        EdgeValue.EdgeValueBuilder builder = EdgeValue.newBuilder();
+        builder.setCount(count);
+        return builder.build().encode();
+    }
+    
+    private static long count(Value value) throws Exception {
+        return EdgeValue.decode(value).getCount();
+    }
+    
+    private static Key key(String row, String date, long timestamp) {
+        return new Key(new Text(row), new Text("TYPE/REL1-REL2"), new Text(date + "/CAT1-CAT2/ATTR2/ATTR3/A"), new Text(""), timestamp);
+    }
+    
+    /**
+     * The source MARS has a stats edge, and the sinks A, B, C, and D have a count of 1, 4, 3, and 2 on each date
+     */
+    private static TreeMap<Key,Value> edges() {
+        TreeMap<Key,Value> edges = new TreeMap<>();
+        long[] counts = {1, 4, 3, 2};
+        for (int i = 0; i < DATES.length; i++) {
+            for (int sink = 0; sink < counts.length; sink++) {
+                edges.put(key("MARS\0" + (char) ('A' + sink), DATES[i], i), value(counts[sink]));
+            }
+            edges.put(key("VENUS\0A", DATES[i], i), value(5));
+            edges.put(new Key(new Text("MARS"), new Text("STATS/ACTIVITY/TYPE/REL1"), new Text(DATES[i] + "/CAT1/ATTR2/ATTR3/A"), new Text(""), i),
+                            EdgeValue.newBuilder().build().encode());
+        }
+        return edges;
+    }
+    
+    private static List<Entry<Key,Value>> summarize(TreeMap<Key,Value> edges, Range range, int topN) throws Exception {
+        Map<String,String> options = new HashMap<>();
+        if (topN > 0) {
+            options.put(EdgeSummaryIterator.TOP_N_OPTION, Integer.toString(topN));
+        }
+        EdgeSummaryIterator iterator = new EdgeSummaryIterator();
+        iterator.init(new SortedMapIterator(edges), options, null);
+        iterator.seek(range, Collections.emptyList(), false);
+        List<Entry<Key,Value>> summaries = new ArrayList<>();
+        while (iterator.hasTop()) {
+            summaries.add(new AbstractMap.SimpleImmutableEntry<>(new Key(iterator.getTopKey()), new Value(iterator.getTopValue())));
+            iterator.next();
+        }
+        return summaries;
+    }
+    
+    private static List<Entry<Key,Value>> merge(List<Entry<Key,Value>> summaries, int topN) {
+        List<Entry<Key,Value>> edges = new ArrayList<>();
+        new EdgeSummaryMerger(summaries.iterator(), topN).forEachRemaining(edges::add);
+        return edges;
+    }
+    
+    /**
+     * @return the merged edges, with the edges of each source together in the order they were returned, since complete summaries are returned first
+     */
+    private static List<Entry<Key,Value>> mergeBySource(List<Entry<Key,Value>> summaries, int topN) {
+        List<Entry<Key,Value>> edges = merge(summaries, topN);
+        edges.sort(Comparator.comparing(edge -> edge.getKey().getRow().toString().split("\0")[0]));
+        return edges;
+    }
+    
+    @Test
+    public void testCombineDates() throws Exception {
+        EdgeSummary summary = new EdgeSummary();
+        for (Entry<Key,Value> edge : edges().entrySet()) {
+            if (edge.getKey().getRow().toString().equals("MARS\0B")) {
+                summary.add(edge.getKey(), edge.getValue());
+            }
+        }
+        
+        Assert.assertEquals(1, summary.getEdges().size());
+        Entry<Key,Value> edge = summary.getEdges().get(0);
+        Assert.assertEquals(key("MARS\0B", DATES[0], 2), edge.getKey());
+        Assert.assertEquals(12, count(edge.getValue()));
+        Assert.assertEquals(12, summary.getCount());
+        
+        // the combined edge can be combined again
+        EdgeSummary again = new EdgeSummary();
+        again.add(edge.getKey(), edge.getValue());
+        again.add(key("MARS\0B", "20191231", 7), value(1));
+        Assert.assertEquals(key("MARS\0B", "20191231", 7), again.getEdges().get(0).getKey());
+        Assert.assertEquals(13, again.getCount());
+    }
+    
+    @Test
+    public void testEncode() throws Exception {
+        List<Entry<Key,Value>> edges = new ArrayList<>(edges().entrySet());
+        List<Entry<Key,Value>> decoded = EdgeSummary.decode(EdgeSummary.encode(edges));
+        Assert.assertEquals(edges, decoded);
+        Assert.assertTrue(EdgeSummary.decode(EdgeSummary.encode(Collections.emptyList())).isEmpty());
+    }
+    
+    @Test
+    public void testSummarizeRows() throws Exception {
+        List<Entry<Key,Value>> summaries = summarize(edges(), new Range(), 0);
+        // the stats row, four sinks of MARS, and one sink of VENUS
+        Assert.assertEquals(6, summaries.size());
+        
+        List<Entry<Key,Value>> edges = merge(summaries, 0);
+        Assert.assertEquals(6, edges.size());
+        Assert.assertEquals("MARS", edges.get(0).getKey().getRow().toString());
+        Assert.assertEquals("MARS\0A", edges.get(1).getKey().getRow().toString());
+        Assert.assertEquals(3, count(edges.get(1).getValue()));
+        Assert.assertEquals("VENUS\0A", edges.get(5).getKey().getRow().toString());
+        Assert.assertEquals(15, count(edges.get(5).getValue()));
+    }
+    
+    @Test
+    public void testTopSinks() throws Exception {
+        List<Entry<Key,Value>> summaries = summarize(edges(), new Range(), 2);
+        // one summary per source
+        Assert.assertEquals(2, summaries.size());
+        Assert.assertEquals("MARS\0D", summaries.get(0).getKey().getRow().toString());
+        
+        List<Entry<Key,Value>> edges = merge(summaries, 2);
+        Assert.assertEquals(4, edges.size());
+        Assert.assertEquals("MARS", edges.get(0).getKey().getRow().toString());
+        Assert.assertEquals("MARS\0B", edges.get(1).getKey().getRow().toString());
+        Assert.assertEquals(12, count(edges.get(1).getValue()));
+        Assert.assertEquals("MARS\0C", edges.get(2).getKey().getRow().toString());
+        Assert.assertEquals("VENUS\0A", edges.get(3).getKey().getRow().toString());
+    }
+    
+    @Test
+    public void testResume() throws Exception {
+        TreeMap<Key,Value> edges = edges();
+        List<Entry<Key,Value>> all = summarize(edges, new Range(), 0);
+        
+        // resuming after a summary returns the rest of them
+        List<Entry<Key,Value>> resumed = new ArrayList<>(all.subList(0, 2));
+        resumed.addAll(summarize(edges, new Range(all.get(1).getKey(), false, null, false), 0));
+        Assert.assertEquals(merge(all, 0), merge(resumed, 0));
+    }
+    
+    @Test
+    public void testMergeSplitSource() throws Exception {
+        TreeMap<Key,Value> edges = edges();
+        Key split = key("MARS\0C", DATES[1], 1);
+        
+        // the sinks of MARS are split between two tablets, and so are the dates of MARS\0C
+        List<Entry<Key,Value>> summaries = summarize(edges, new Range(null, split), 2);
+        summaries.addAll(summarize(edges, new Range(split, false, null, false), 2));
+        Collections.reverse(summaries);
+        
+        Assert.assertFalse(EdgeSummary.isComplete(summaries.get(1).getValue()));
+        Assert.assertEquals(merge(summarize(edges, new Range(), 2), 2), mergeBySource(summaries, 2));
+    }
+    
+    @Test
+    public void testMergeSplitRow() throws Exception {
+        TreeMap<Key,Value> edges = edges();
+        Key split = key("MARS\0C", DATES[1], 1);
+        
+        List<Entry<Key,Value>> summaries = summarize(edges, new Range(null, split), 0);
+        summaries.addAll(summarize(edges, new Range(split, false, null, false), 0));
+        Collections.reverse(summaries);
+        
+        // only the two parts of MARS\0C are partial
+        int partial = 0;
+        for (Entry<Key,Value> summary : summaries) {
+            partial += EdgeSummary.isComplete(summary.getValue()) ? 0 : 1;
+        }
+        Assert.assertEquals(2, partial);
+        
+        List<Entry<Key,Value>> merged = merge(summaries, 0);
+        // the split row is merged after the complete rows
+        Assert.assertEquals("MARS\0C", merged.get(5).getKey().getRow().toString());
+        Assert.assertEquals(9, count(merged.get(5).getValue()));
+        merged.sort(Map.Entry.comparingByKey());
+        Assert.assertEquals(merge(summarize(edges, new Range(), 0), 0), merged);
+    }
+    
+    @Test
+    public void testMergeAsRead() throws Exception {
+        for (int topN : new int[] {0, 2}) {
+            Iterator<Entry<Key,Value>> summaries = summarize(edges(), new Range(), topN).iterator();
+            int[] read = {0};
+            EdgeSummaryMerger merger = new EdgeSummaryMerger(new Iterator<Entry<Key,Value>>() {
+                @Override
+                public boolean hasNext() {
+                    return summaries.hasNext();
+                }
+                
+                @Override
+                public Entry<Key,Value> next() {
+                    read[0]++;
+                    return summaries.next();
+                }
+            }, topN);
+            
+            // the complete summary of the first row or source is returned without reading any other
+            Assert.assertEquals("MARS", merger.next().getKey().getRow().toString());
+            Assert.assertEquals(1, read[0]);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package datawave.query.tables.edge;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.inject.Inject;
+
+import datawave.configuration.spring.SpringBean;
+import datawave.query.config.EdgeTraversalConfiguration;
+import datawave.webservice.edgedictionary.RemoteEdgeDictionary;
+import datawave.webservice.query.QueryImpl;
+import datawave.webservice.query.configuration.GenericQueryConfiguration;
+
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.security.Authorizations;
+import org.jboss.arquillian.container.test.api.Deployment;
+import org.jboss.arquillian.junit.Arquillian;
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.asset.StringAsset;
+import org.jboss.shrinkwrap.api.spec.JavaArchive;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(Arquillian.class)
+public class EdgeTraversalQueryLogicTest extends BaseEdgeQueryTest {
+    
+    @Inject
+    @SpringBean(name = "EdgeTraversalQuery")
+    EdgeTraversalQueryLogic logic;
+    
+    @Deployment
+    public static JavaArchive createDeployment() throws Exception {
+        return ShrinkWrap
+                        .create(JavaArchive.class)
+                        .addPackages(true, "org.apache.deltaspike", "io.astefanutti.metrics.cdi", "datawave.query", "datawave.webservice.query.result.event")
+                        .deleteClass(DefaultEdgeEventQueryLogic.class)
+                        .deleteClass(RemoteEdgeDictionary.class)
+                        .deleteClass(datawave.query.metrics.QueryMetricQueryLogic.class)
+                        .deleteClass(datawave.query.metrics.ShardTableQueryMetricHandler.class)
+                        .addAsManifestResource(
+                                        new StringAsset("<alternatives>" + "<stereotype>datawave.query.tables.edge.MockAlternative</stereotype>"
+                                                        + "</alternatives>"), "beans.xml");
+    }
+    
+    public EdgeTraversalQueryLogic runLogic(QueryImpl q, Set<Authorizations> auths) throws Exception {
+        GenericQueryConfiguration config = logic.initialize(connector, q, auths);
+        logic.setupQuery(config);
+        return logic;
+    }
+    
+    @Test
+    public void testForwardHops() throws Exception {
+        QueryImpl q = configQuery("SOURCE == 'MERCURY'", auths);
+        q.addParameter("stats", "false");
+        q.addParameter(EdgeTraversalConfiguration.HOPS, "3");
+        q.addParameter(EdgeTraversalConfiguration.EDGES, "TYPE == 'AdjacentPlanets' && RELATION == 'FROM-TO'");
+        EdgeTraversalQueryLogic logic = runLogic(q, auths);
+        
+        List<String> expected = new ArrayList<>();
+        expected.add("mercury%00;venus AdjacentPlanets/FROM-TO:20150713/COSMOS_DATA-COSMOS_DATA [A]");
+        expected.add("venus%00;earth AdjacentPlanets/FROM-TO:20150713/COSMOS_DATA-COSMOS_DATA [A]");
+        expected.add("earth%00;mars AdjacentPlanets/FROM-TO:20150713/COSMOS_DATA-COSMOS_DATA [A]");
+        
+        compareResults(logic, expected);
+    }
+    
+    @Test
+    public void testNeighborhood() throws Exception {
+        QueryImpl q = configQuery("SOURCE == 'MARS'", auths);
+        q.addParameter("stats", "false");
+        q.addParameter(EdgeTraversalConfiguration.HOPS, "2");
+        q.addParameter(EdgeTraversalConfiguration.EDGES, "TYPE == 'AdjacentPlanets'");
+        EdgeTraversalQueryLogic logic = runLogic(q, auths);
+        
+        // the edges back to mars are returned, but mars is not expanded again
+        List<String> expected = new ArrayList<>();
+        expected.add("mars%00;earth AdjacentPlanets/TO-FROM:20150713/COSMOS_DATA-COSMOS_DATA [A]");
+        expected.add("mars%00;jupiter AdjacentPlanets/FROM-TO:20150713/COSMOS_DATA-COSMOS_DATA [A]");
+        expected.add("earth%00;venus AdjacentPlanets/TO-FROM:20150713/COSMOS_DATA-COSMOS_DATA [A]");
+        expected.add("earth%00;mars AdjacentPlanets/FROM-TO:20150713/COSMOS_DATA-COSMOS_DATA [A]");
+        expected.add("jupiter%00;mars AdjacentPlanets/TO-FROM:20150713/COSMOS_DATA-COSMOS_DATA [A]");
+        expected.add("jupiter%00;saturn AdjacentPlanets/FROM-TO:20150713/COSMOS_DATA-COSMOS_DATA [B]");
+        
+        compareResults(logic, expected);
+    }
+    
+    @Test
+    public void testSmallFrontierBatches() throws Exception {
+        QueryImpl q = configQuery("SOURCE == 'MARS'", auths);
+        q.addParameter("stats", "false");
+        q.addParameter(EdgeTraversalConfiguration.HOPS, "2");
+        q.addParameter(EdgeTraversalConfiguration.EDGES, "TYPE == 'AdjacentPlanets'");
+        int batchSize = logic.getFrontierBatchSize();
+        logic.setFrontierBatchSize(1);
+        try {
+            Assert.assertEquals(6, count(runLogic(q, auths)));
+        } finally {
+            logic.setFrontierBatchSize(batchSize);
+        }
+    }
+    
+    @Test
+    public void testMaxFanOut() throws Exception {
+        QueryImpl q = configQuery("SOURCE == 'MARS'", auths);
+        q.addParameter("stats", "false");
+        q.addParameter(EdgeTraversalConfiguration.HOPS, "2");
+        q.addParameter(EdgeTraversalConfiguration.EDGES, "TYPE == 'AdjacentPlanets'");
+        q.addParameter(EdgeTraversalConfiguration.MAX_FAN_OUT, "1");
+        
+        // one sink of mars, and one sink of that sink
+        Assert.assertEquals(2, count(runLogic(q, auths)));
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testTooManyHops() throws Exception {
+        QueryImpl q = configQuery("SOURCE == 'MARS'", auths);
+        q.addParameter(EdgeTraversalConfiguration.HOPS, Integer.toString(logic.getMaxHops() + 1));
+        runLogic(q, auths);
+    }
+    
+    private static int count(EdgeTraversalQueryLogic logic) {
+        int count = 0;
+        for (Map.Entry<Key,Value> entry : logic) {
+            count++;
+        }
+        return count;
+    }
+}
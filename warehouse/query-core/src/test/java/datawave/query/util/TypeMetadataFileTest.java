@@ -0,0 +1,84 @@
+package datawave.query.util;
+
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+public class TypeMetadataFileTest {
+    
+    private Map<Set<String>,TypeMetadata> typeMetadataMap = Maps.newHashMap();
+    
+    @Before
+    public void prepareTypeMetadataMap() {
+        TypeMetadata typeMetadata = new TypeMetadata();
+        typeMetadata.put("field1", "ingest1", "LcType");
+        typeMetadata.put("field1", "ingest2", "DateType");
+        typeMetadataMap.put(Collections.singleton("AUTHA"), typeMetadata);
+        
+        typeMetadata = new TypeMetadata();
+        typeMetadata.put("field1", "ingest1", "LcType");
+        typeMetadata.put("field1", "ingest2", "DateType");
+        typeMetadata.put("field2", "ingest1", "IntegerType");
+        typeMetadataMap.put(Sets.newHashSet("AUTHA", "AUTHB"), typeMetadata);
+        typeMetadataMap.put(Sets.newHashSet("AUTHA", "AUTHB", "AUTHC"), new TypeMetadata(typeMetadata));
+    }
+    
+    @Test
+    public void testRoundTrip() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TypeMetadataFile.write(typeMetadataMap, out);
+        TypeMetadataFile file = TypeMetadataFile.read(new ByteArrayInputStream(out.toByteArray()));
+        
+        Assert.assertEquals(typeMetadataMap, file.getTypeMetadataMap());
+        for (Map.Entry<Set<String>,TypeMetadata> entry : typeMetadataMap.entrySet()) {
+            String version = TypeMetadataFile.version(entry.getValue().toString());
+            Assert.assertEquals(entry.getValue(), file.getTypeMetadataForVersion(version));
+        }
+        Assert.assertNull(file.getTypeMetadataForVersion(TypeMetadataFile.version("unknown")));
+        
+        // auth sets with the same TypeMetadata share a single instance
+        Assert.assertSame(file.getTypeMetadata(Sets.newHashSet("AUTHA", "AUTHB")), file.getTypeMetadata(Sets.newHashSet("AUTHA", "AUTHB", "AUTHC")));
+    }
+    
+    @Test
+    public void testReadJavaSerialization() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ObjectOutputStream oos = new ObjectOutputStream(out);
+        oos.writeObject(typeMetadataMap);
+        oos.close();
+        TypeMetadataFile file = TypeMetadataFile.read(new ByteArrayInputStream(out.toByteArray()));
+        
+        Assert.assertEquals(typeMetadataMap, file.getTypeMetadataMap());
+        TypeMetadata typeMetadata = typeMetadataMap.get(Collections.singleton("AUTHA"));
+        Assert.assertEquals(typeMetadata, file.getTypeMetadataForVersion(TypeMetadataFile.version(typeMetadata.toString())));
+    }
+    
+    @Test
+    public void testReadWriteSerialized() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TypeMetadataFile.writeSerialized(typeMetadataMap, out);
+        
+        // readable with java serialization, as by earlier versions of the TypeMetadataProvider
+        ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(out.toByteArray()));
+        Assert.assertEquals(typeMetadataMap, ois.readObject());
+        
+        TypeMetadataFile file = TypeMetadataFile.read(new ByteArrayInputStream(out.toByteArray()));
+        Assert.assertEquals(typeMetadataMap, file.getTypeMetadataMap());
+    }
+    
+    @Test(expected = IOException.class)
+    public void testNotATypeMetadataFile() throws Exception {
+        TypeMetadataFile.read(new ByteArrayInputStream("not a file".getBytes()));
+    }
+}
@@ -0,0 +1,51 @@
+package datawave.query.util.metadata;
+
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import datawave.iterators.FieldDaysCombiner;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+public class FieldDaysTest {
+    
+    private static Map.Entry<Key,Value> entry(String datatype, String month, String... days) {
+        int bits = 0;
+        for (String day : days) {
+            bits |= FieldDaysCombiner.dayBit(day);
+        }
+        Key key = new Key("FIELD", FieldDaysCombiner.COLF_FD.toString(), datatype + "\u0000" + month);
+        return Maps.immutableEntry(key, FieldDaysCombiner.encode(bits));
+    }
+    
+    @Test
+    public void testGetDays() {
+        List<Map.Entry<Key,Value>> entries = new ArrayList<>();
+        entries.add(entry("csv", "201812", "20181231"));
+        entries.add(entry("csv", "201901", "20190101", "20190115"));
+        entries.add(entry("wiki", "201901", "20190120", "20190131"));
+        entries.add(entry("wiki", "201902", "20190201"));
+        
+        Assert.assertEquals(Sets.newHashSet("20190101", "20190115", "20190120", "20190131"), FieldDays.getDays(entries, null, "20190101", "20190131"));
+        Assert.assertEquals(Sets.newHashSet("20190115", "20190120"), FieldDays.getDays(entries, Collections.emptySet(), "20190102", "20190130"));
+        Assert.assertEquals(Sets.newHashSet("20181231", "20190101", "20190115"),
+                        FieldDays.getDays(entries, Collections.singleton("csv"), "20181201", "20190228"));
+        Assert.assertTrue(FieldDays.getDays(entries, Collections.singleton("other"), "20181201", "20190228").isEmpty());
+    }
+    
+    @Test
+    public void testUndecodableDays() {
+        Key key = new Key("FIELD", FieldDaysCombiner.COLF_FD.toString(), "csv\u0000201902");
+        List<Map.Entry<Key,Value>> entries = Collections.singletonList(Maps.immutableEntry(key, new Value(new byte[] {1})));
+        
+        // every day of the month is kept
+        Assert.assertEquals(Sets.newHashSet("20190227", "20190228", "20190229", "20190230", "20190231"),
+                        FieldDays.getDays(entries, null, "20190227", "20190331"));
+    }
+}
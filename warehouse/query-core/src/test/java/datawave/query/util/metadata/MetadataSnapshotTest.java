@@ -0,0 +1,173 @@
+package datawave.query.util.metadata;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import datawave.accumulo.inmemory.InMemoryInstance;
+import datawave.data.ColumnFamilyConstants;
+import datawave.data.type.LcNoDiacriticsType;
+import datawave.data.type.NumberType;
+import datawave.data.type.Type;
+import datawave.query.config.ShardQueryConfiguration;
+import datawave.query.iterator.QueryIterator;
+import datawave.query.iterator.QueryOptions;
+import datawave.query.planner.DefaultQueryPlanner;
+import datawave.query.util.MockMetadataHelper;
+import datawave.query.util.TypeMetadata;
+import datawave.query.util.TypeMetadataFile;
+
+import org.apache.accumulo.core.client.BatchWriter;
+import org.apache.accumulo.core.client.BatchWriterConfig;
+import org.apache.accumulo.core.client.Connector;
+import org.apache.accumulo.core.client.IteratorSetting;
+import org.apache.accumulo.core.client.security.tokens.PasswordToken;
+import org.apache.accumulo.core.data.Mutation;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.security.Authorizations;
+import org.apache.accumulo.core.security.ColumnVisibility;
+import org.apache.hadoop.io.Text;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Multimap;
+import com.google.common.collect.Sets;
+
+public class MetadataSnapshotTest {
+    
+    private static final String TABLE = "metadata";
+    private static final Value EMPTY = new Value(new byte[0]);
+    private static final long NOW = System.currentTimeMillis();
+    
+    private Connector connector;
+    private Set<Authorizations> auths = Collections.singleton(new Authorizations("A"));
+    
+    @Before
+    public void setup() throws Exception {
+        connector = new InMemoryInstance(MetadataSnapshotTest.class.getName() + System.nanoTime()).getConnector("root", new PasswordToken(""));
+        connector.tableOperations().create(TABLE);
+        connector.securityOperations().changeUserAuthorizations("root", new Authorizations("A", "B"));
+        
+        write("NAME", "test", LcNoDiacriticsType.class, true, NOW, "A");
+        write("AGE", "test", NumberType.class, false, NOW, "A");
+        write("AGE", "other", NumberType.class, true, NOW, "A");
+        write("SECRET", "test", LcNoDiacriticsType.class, true, NOW, "B");
+    }
+    
+    private void write(String field, String datatype, Class<? extends Type<?>> type, boolean indexed, long timestamp, String visibility) throws Exception {
+        ColumnVisibility cv = new ColumnVisibility(visibility);
+        Mutation m = new Mutation(field);
+        m.put(ColumnFamilyConstants.COLF_E, new Text(datatype), cv, timestamp, EMPTY);
+        m.put(ColumnFamilyConstants.COLF_T, new Text(datatype + "\0" + type.getName()), cv, timestamp, EMPTY);
+        m.put(ColumnFamilyConstants.COLF_F, new Text(datatype + "\0" + "20200101"), cv, timestamp, new Value("1".getBytes()));
+        if (indexed) {
+            m.put(ColumnFamilyConstants.COLF_I, new Text(datatype), cv, timestamp, EMPTY);
+        }
+        BatchWriter writer = connector.createBatchWriter(TABLE, new BatchWriterConfig());
+        writer.addMutation(m);
+        writer.close();
+    }
+    
+    @Test
+    public void testLoad() throws Exception {
+        MetadataSnapshot snapshot = new MetadataSnapshotService().load(connector, TABLE, auths, null);
+        
+        Assert.assertEquals(Sets.newHashSet("NAME", "AGE"), snapshot.getAllFields(null));
+        Assert.assertEquals(Sets.newHashSet("NAME", "AGE"), snapshot.getIndexedFields(null));
+        Assert.assertEquals(Sets.newHashSet("NAME"), snapshot.getIndexedFields(Collections.singleton("test")));
+        Assert.assertEquals(Sets.newHashSet("AGE"), snapshot.getAllFields(Collections.singleton("other")));
+        Assert.assertTrue(snapshot.getReverseIndexedFields(null).isEmpty());
+        Assert.assertEquals(NOW, snapshot.getTimestamp());
+        
+        // AGE is only indexed for the other datatype, in which it is also an event field
+        Assert.assertTrue(snapshot.getIndexOnlyFields(null).isEmpty());
+        write("COLOR", "test", LcNoDiacriticsType.class, true, NOW, "A");
+        Mutation m = new Mutation("SIZE");
+        m.put(ColumnFamilyConstants.COLF_I, new Text("test"), new ColumnVisibility("A"), NOW, EMPTY);
+        m.put(ColumnFamilyConstants.COLF_T, new Text("test\0" + NumberType.class.getName()), new ColumnVisibility("A"), NOW, EMPTY);
+        BatchWriter writer = connector.createBatchWriter(TABLE, new BatchWriterConfig());
+        writer.addMutation(m);
+        writer.close();
+        snapshot = new MetadataSnapshotService().load(connector, TABLE, auths, null);
+        Assert.assertEquals(Sets.newHashSet("SIZE"), snapshot.getIndexOnlyFields(null));
+        Assert.assertTrue(snapshot.getIndexOnlyFields(Collections.singleton("other")).isEmpty());
+        
+        TypeMetadata expected = new TypeMetadata();
+        expected.put("NAME", "test", LcNoDiacriticsType.class.getName());
+        expected.put("AGE", "test", NumberType.class.getName());
+        expected.put("COLOR", "test", LcNoDiacriticsType.class.getName());
+        expected.put("SIZE", "test", NumberType.class.getName());
+        Assert.assertEquals(expected, snapshot.getTypeMetadata(Collections.singleton("test")));
+        
+        Multimap<String,Type<?>> types = snapshot.getFieldsToTypes(Collections.singleton("test"));
+        Assert.assertEquals(2, types.size());
+        Assert.assertTrue(types.get("NAME").iterator().next() instanceof LcNoDiacriticsType);
+        Assert.assertTrue(types.get("AGE").iterator().next() instanceof NumberType);
+        // the types are new instances for every call
+        Assert.assertNotSame(types.get("AGE").iterator().next(), snapshot.getFieldsToTypes(null).get("AGE").iterator().next());
+    }
+    
+    @Test
+    public void testTypeMetadataVersion() throws Exception {
+        MetadataSnapshot snapshot = new MetadataSnapshotService().load(connector, TABLE, auths, null);
+        ShardQueryConfiguration config = new ShardQueryConfiguration();
+        config.setDatatypeFilter(Collections.singleton("other"));
+        
+        // the type metadata that is sent is filtered to the datatypes of the query, and the version is its hash
+        IteratorSetting cfg = new IteratorSetting(10, "query", QueryIterator.class);
+        DefaultQueryPlanner.configureTypeMappings(config, cfg, new MockMetadataHelper(), false, snapshot);
+        String typeMetadata = snapshot.getTypeMetadata(Collections.singleton("other")).toString();
+        Assert.assertEquals(typeMetadata, cfg.getOptions().get(QueryOptions.TYPE_METADATA));
+        Assert.assertEquals(TypeMetadataFile.version(typeMetadata), cfg.getOptions().get(QueryOptions.TYPE_METADATA_VERSION));
+        
+        // when the tservers read the type metadata file only the version is sent, which is the hash of the unfiltered type metadata the file holds
+        config.setTypeMetadataInHdfs(true);
+        cfg = new IteratorSetting(10, "query", QueryIterator.class);
+        DefaultQueryPlanner.configureTypeMappings(config, cfg, new MockMetadataHelper(), true, snapshot);
+        Assert.assertFalse(cfg.getOptions().containsKey(QueryOptions.TYPE_METADATA));
+        Assert.assertEquals(TypeMetadataFile.version(snapshot.getTypeMetadata(null).toString()), cfg.getOptions().get(QueryOptions.TYPE_METADATA_VERSION));
+    }
+    
+    @Test
+    public void testIncrementalUpdate() throws Exception {
+        MetadataSnapshotService service = new MetadataSnapshotService();
+        service.setLookbackMillis(TimeUnit.HOURS.toMillis(1));
+        MetadataSnapshot snapshot = service.load(connector, TABLE, auths, null);
+        
+        // a new field with a recent event date is picked up, but not one older than the lookback
+        write("COLOR", "test", LcNoDiacriticsType.class, true, NOW - TimeUnit.MINUTES.toMillis(5), "A");
+        write("SHAPE", "test", LcNoDiacriticsType.class, true, NOW - TimeUnit.DAYS.toMillis(2), "A");
+        MetadataSnapshot updated = service.load(connector, TABLE, auths, snapshot);
+        
+        Assert.assertEquals(Sets.newHashSet("NAME", "AGE", "COLOR"), updated.getIndexedFields(null));
+        Assert.assertEquals(Sets.newHashSet("NAME", "AGE"), snapshot.getIndexedFields(null));
+        Assert.assertEquals(Sets.newHashSet("NAME", "AGE", "COLOR", "SHAPE"), service.load(connector, TABLE, auths, null).getIndexedFields(null));
+    }
+    
+    @Test
+    public void testServiceLoadsInTheBackground() throws Exception {
+        MetadataSnapshotService service = new MetadataSnapshotService();
+        try {
+            // the first request starts loading the snapshot, without waiting for it
+            MetadataSnapshot snapshot = service.getSnapshot(connector, TABLE, "A");
+            for (int i = 0; i < 100 && snapshot == null; i++) {
+                Thread.sleep(50);
+                snapshot = service.getSnapshot(connector, TABLE, "A");
+            }
+            Assert.assertNotNull(snapshot);
+            Assert.assertEquals(Sets.newHashSet("NAME", "AGE"), snapshot.getAllFields(null));
+            
+            // the snapshots are kept per subset of the metadata authorizations, however it is written
+            service.getSnapshot(connector, TABLE, "A,B");
+            service.getSnapshot(connector, TABLE, "B&A");
+            Assert.assertEquals(2, service.size());
+            
+            // without any metadata authorizations the metadata helper is used
+            Assert.assertNull(service.getSnapshot(connector, TABLE, ""));
+            Assert.assertEquals(2, service.size());
+        } finally {
+            service.stop();
+        }
+    }
+}
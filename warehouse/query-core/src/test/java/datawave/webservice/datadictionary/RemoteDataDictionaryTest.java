@@ -0,0 +1,195 @@
+package datawave.webservice.datadictionary;
+
+import com.google.common.base.Ticker;
+import com.google.common.collect.Sets;
+import datawave.security.authorization.DatawavePrincipal;
+import datawave.security.authorization.DatawaveUser;
+import datawave.security.authorization.SubjectIssuerDNPair;
+import datawave.webservice.query.result.metadata.MetadataFieldBase;
+import datawave.webservice.results.datadictionary.DataDictionaryBase;
+import org.easymock.EasyMock;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.powermock.reflect.Whitebox;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class RemoteDataDictionaryTest {
+    
+    private long nanos;
+    private Ticker ticker = new Ticker() {
+        @Override
+        public long read() {
+            return nanos;
+        }
+    };
+    private StubDataDictionary dictionary;
+    
+    @Before
+    public void setup() {
+        dictionary = new StubDataDictionary();
+        Whitebox.setInternalState(dictionary, "cacheMaxSize", 100);
+        Whitebox.setInternalState(dictionary, "cacheRefreshMinutes", 10);
+        Whitebox.setInternalState(dictionary, "cacheExpireMinutes", 60);
+        Whitebox.setInternalState(dictionary, "callerPrincipal", principal("A,B,C"));
+    }
+    
+    /**
+     * @return a principal for a user with the first auths, proxied by a server for each of the other auths
+     */
+    private DatawavePrincipal principal(String... entityAuths) {
+        List<DatawaveUser> users = new ArrayList<>();
+        for (int i = 0; i < entityAuths.length; i++) {
+            SubjectIssuerDNPair dn = SubjectIssuerDNPair.of("entity" + i, "issuer");
+            DatawaveUser.UserType type = i == 0 ? DatawaveUser.UserType.USER : DatawaveUser.UserType.SERVER;
+            users.add(new DatawaveUser(dn, type, Sets.newHashSet(entityAuths[i].split(",")), null, null, -1L));
+        }
+        return new DatawavePrincipal(users);
+    }
+    
+    private void advance(long minutes) {
+        nanos += TimeUnit.MINUTES.toNanos(minutes);
+    }
+    
+    @Test
+    public void testCacheKey() {
+        dictionary.initCache(ticker);
+        
+        DataDictionaryBase<?,? extends MetadataFieldBase<?,?>> dataDictionary = dictionary.getDataDictionary("model", "modelTable", "metadata", "A,B");
+        Assert.assertSame(dataDictionary, dictionary.getDataDictionary("model", "modelTable", "metadata", "A,B"));
+        Assert.assertEquals(1, dictionary.fetches.size());
+        
+        // any other model, table or auths is fetched separately
+        Assert.assertNotSame(dataDictionary, dictionary.getDataDictionary("other", "modelTable", "metadata", "A,B"));
+        Assert.assertNotSame(dataDictionary, dictionary.getDataDictionary("model", "otherTable", "metadata", "A,B"));
+        Assert.assertNotSame(dataDictionary, dictionary.getDataDictionary("model", "modelTable", "otherMetadata", "A,B"));
+        Assert.assertNotSame(dataDictionary, dictionary.getDataDictionary("model", "modelTable", "metadata", "A"));
+        Assert.assertEquals(Arrays.asList(Arrays.asList("model", "modelTable", "metadata", "A,B"), Arrays.asList("other", "modelTable", "metadata", "A,B"),
+                        Arrays.asList("model", "otherTable", "metadata", "A,B"), Arrays.asList("model", "modelTable", "otherMetadata", "A,B"),
+                        Arrays.asList("model", "modelTable", "metadata", "A")), dictionary.fetches);
+    }
+    
+    @Test
+    public void testCallerAuths() {
+        dictionary.initCache(ticker);
+        
+        DataDictionaryBase<?,? extends MetadataFieldBase<?,?>> dataDictionary = dictionary.getDataDictionary("model", "modelTable", "metadata", "A,B");
+        
+        // a caller whose entities have the same auths within the requested auths shares the dictionary
+        Whitebox.setInternalState(dictionary, "callerPrincipal", principal("A,B"));
+        Assert.assertSame(dataDictionary, dictionary.getDataDictionary("model", "modelTable", "metadata", "A,B"));
+        Assert.assertEquals(1, dictionary.fetches.size());
+        
+        // but a caller proxied by a server that lacks one of them does not
+        Whitebox.setInternalState(dictionary, "callerPrincipal", principal("A,B,C", "A"));
+        Assert.assertNotSame(dataDictionary, dictionary.getDataDictionary("model", "modelTable", "metadata", "A,B"));
+        Assert.assertEquals(2, dictionary.fetches.size());
+    }
+    
+    @Test
+    public void testRefresh() {
+        dictionary.initCache(ticker);
+        
+        DataDictionaryBase<?,? extends MetadataFieldBase<?,?>> dataDictionary = dictionary.getDataDictionary("model", "modelTable", "metadata", "A");
+        advance(9);
+        Assert.assertSame(dataDictionary, dictionary.getDataDictionary("model", "modelTable", "metadata", "A"));
+        Assert.assertEquals(1, dictionary.fetches.size());
+        
+        // the first request after the refresh interval fetches the dictionary again
+        advance(2);
+        DataDictionaryBase<?,? extends MetadataFieldBase<?,?>> refreshed = dictionary.getDataDictionary("model", "modelTable", "metadata", "A");
+        Assert.assertNotSame(dataDictionary, refreshed);
+        Assert.assertEquals(2, dictionary.fetches.size());
+        
+        // a failed refresh keeps the current dictionary
+        advance(11);
+        dictionary.failure = new IllegalStateException("unavailable");
+        Assert.assertSame(refreshed, dictionary.getDataDictionary("model", "modelTable", "metadata", "A"));
+        Assert.assertEquals(3, dictionary.fetches.size());
+    }
+    
+    @Test
+    public void testNoRefresh() {
+        Whitebox.setInternalState(dictionary, "cacheRefreshMinutes", 0);
+        dictionary.initCache(ticker);
+        
+        DataDictionaryBase<?,? extends MetadataFieldBase<?,?>> dataDictionary = dictionary.getDataDictionary("model", "modelTable", "metadata", "A");
+        advance(59);
+        Assert.assertSame(dataDictionary, dictionary.getDataDictionary("model", "modelTable", "metadata", "A"));
+        Assert.assertEquals(1, dictionary.fetches.size());
+        
+        // until it expires
+        advance(2);
+        Assert.assertNotSame(dataDictionary, dictionary.getDataDictionary("model", "modelTable", "metadata", "A"));
+        Assert.assertEquals(2, dictionary.fetches.size());
+    }
+    
+    @Test
+    public void testNoDictionary() {
+        dictionary.initCache(ticker);
+        dictionary.empty = true;
+        
+        Assert.assertNull(dictionary.getDataDictionary("model", "modelTable", "metadata", "A"));
+        
+        // nothing is cached for it
+        dictionary.empty = false;
+        Assert.assertNotNull(dictionary.getDataDictionary("model", "modelTable", "metadata", "A"));
+        Assert.assertEquals(2, dictionary.fetches.size());
+    }
+    
+    @Test
+    public void testRuntimeException() {
+        dictionary.initCache(ticker);
+        IllegalStateException failure = new IllegalStateException("unavailable");
+        dictionary.failure = failure;
+        
+        try {
+            dictionary.getDataDictionary("model", "modelTable", "metadata", "A");
+            Assert.fail("expected the failure of the fetch");
+        } catch (IllegalStateException e) {
+            Assert.assertSame(failure, e);
+        }
+    }
+    
+    @Test
+    public void testCheckedException() {
+        dictionary.initCache(ticker);
+        IOException failure = new IOException("unavailable");
+        dictionary.failure = failure;
+        
+        try {
+            dictionary.getDataDictionary("model", "modelTable", "metadata", "A");
+            Assert.fail("expected the failure of the fetch");
+        } catch (RuntimeException e) {
+            Assert.assertSame(failure, e.getCause());
+            Assert.assertEquals("unavailable", e.getMessage());
+        }
+    }
+    
+    private static class StubDataDictionary extends RemoteDataDictionary {
+        private final List<List<String>> fetches = new ArrayList<>();
+        private Exception failure;
+        private boolean empty;
+        
+        @Override
+        protected DataDictionaryBase<?,? extends MetadataFieldBase<?,?>> fetchDataDictionary(String modelName, String modelTableName,
+                        String metadataTableName, String auths) {
+            fetches.add(Arrays.asList(modelName, modelTableName, metadataTableName, auths));
+            if (failure != null) {
+                // the loader of the cache can fail with a checked exception as well
+                StubDataDictionary.<RuntimeException> sneakyThrow(failure);
+            }
+            return empty ? null : EasyMock.createMock(DataDictionaryBase.class);
+        }
+        
+        @SuppressWarnings("unchecked")
+        private static <E extends Exception> void sneakyThrow(Exception e) throws E {
+            throw (E) e;
+        }
+    }
+}
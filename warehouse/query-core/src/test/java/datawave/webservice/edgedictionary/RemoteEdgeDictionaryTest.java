@@ -0,0 +1,179 @@
+package datawave.webservice.edgedictionary;
+
+import com.google.common.base.Ticker;
+import com.google.common.collect.Sets;
+import datawave.security.authorization.DatawavePrincipal;
+import datawave.security.authorization.DatawaveUser;
+import datawave.security.authorization.SubjectIssuerDNPair;
+import datawave.webservice.results.edgedictionary.EdgeDictionaryBase;
+import datawave.webservice.results.edgedictionary.MetadataBase;
+import org.easymock.EasyMock;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.powermock.reflect.Whitebox;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class RemoteEdgeDictionaryTest {
+    
+    private long nanos;
+    private Ticker ticker = new Ticker() {
+        @Override
+        public long read() {
+            return nanos;
+        }
+    };
+    private StubEdgeDictionary dictionary;
+    
+    @Before
+    public void setup() {
+        dictionary = new StubEdgeDictionary();
+        Whitebox.setInternalState(dictionary, "cacheMaxSize", 100);
+        Whitebox.setInternalState(dictionary, "cacheRefreshMinutes", 10);
+        Whitebox.setInternalState(dictionary, "cacheExpireMinutes", 60);
+        Whitebox.setInternalState(dictionary, "callerPrincipal", principal("A,B,C"));
+    }
+    
+    /**
+     * @return a principal for a user with the first auths, proxied by a server for each of the other auths
+     */
+    private DatawavePrincipal principal(String... entityAuths) {
+        List<DatawaveUser> users = new ArrayList<>();
+        for (int i = 0; i < entityAuths.length; i++) {
+            SubjectIssuerDNPair dn = SubjectIssuerDNPair.of("entity" + i, "issuer");
+            DatawaveUser.UserType type = i == 0 ? DatawaveUser.UserType.USER : DatawaveUser.UserType.SERVER;
+            users.add(new DatawaveUser(dn, type, Sets.newHashSet(entityAuths[i].split(",")), null, null, -1L));
+        }
+        return new DatawavePrincipal(users);
+    }
+    
+    private void advance(long minutes) {
+        nanos += TimeUnit.MINUTES.toNanos(minutes);
+    }
+    
+    @Test
+    public void testCacheKey() {
+        dictionary.initCache(ticker);
+        
+        EdgeDictionaryBase<?,? extends MetadataBase<?>> edgeDictionary = dictionary.getEdgeDictionary("metadata", "A,B");
+        Assert.assertSame(edgeDictionary, dictionary.getEdgeDictionary("metadata", "A,B"));
+        Assert.assertNotSame(edgeDictionary, dictionary.getEdgeDictionary("otherMetadata", "A,B"));
+        Assert.assertNotSame(edgeDictionary, dictionary.getEdgeDictionary("metadata", "A"));
+        Assert.assertEquals(Arrays.asList(Arrays.asList("metadata", "A,B"), Arrays.asList("otherMetadata", "A,B"), Arrays.asList("metadata", "A")),
+                        dictionary.fetches);
+    }
+    
+    @Test
+    public void testCallerAuths() {
+        dictionary.initCache(ticker);
+        
+        EdgeDictionaryBase<?,? extends MetadataBase<?>> edgeDictionary = dictionary.getEdgeDictionary("metadata", "A,B");
+        
+        // a caller whose entities have the same auths within the requested auths shares the dictionary
+        Whitebox.setInternalState(dictionary, "callerPrincipal", principal("A,B"));
+        Assert.assertSame(edgeDictionary, dictionary.getEdgeDictionary("metadata", "A,B"));
+        Assert.assertEquals(1, dictionary.fetches.size());
+        
+        // but a caller proxied by a server that lacks one of them does not
+        Whitebox.setInternalState(dictionary, "callerPrincipal", principal("A,B,C", "A"));
+        Assert.assertNotSame(edgeDictionary, dictionary.getEdgeDictionary("metadata", "A,B"));
+        Assert.assertEquals(2, dictionary.fetches.size());
+    }
+    
+    @Test
+    public void testRefresh() {
+        dictionary.initCache(ticker);
+        
+        EdgeDictionaryBase<?,? extends MetadataBase<?>> edgeDictionary = dictionary.getEdgeDictionary("metadata", "A");
+        advance(9);
+        Assert.assertSame(edgeDictionary, dictionary.getEdgeDictionary("metadata", "A"));
+        
+        // the first request after the refresh interval fetches the dictionary again
+        advance(2);
+        EdgeDictionaryBase<?,? extends MetadataBase<?>> refreshed = dictionary.getEdgeDictionary("metadata", "A");
+        Assert.assertNotSame(edgeDictionary, refreshed);
+        Assert.assertEquals(2, dictionary.fetches.size());
+        
+        // a failed refresh keeps the current dictionary
+        advance(11);
+        dictionary.failure = new IllegalStateException("unavailable");
+        Assert.assertSame(refreshed, dictionary.getEdgeDictionary("metadata", "A"));
+        Assert.assertEquals(3, dictionary.fetches.size());
+    }
+    
+    @Test
+    public void testNoRefresh() {
+        Whitebox.setInternalState(dictionary, "cacheRefreshMinutes", 0);
+        dictionary.initCache(ticker);
+        
+        EdgeDictionaryBase<?,? extends MetadataBase<?>> edgeDictionary = dictionary.getEdgeDictionary("metadata", "A");
+        advance(59);
+        Assert.assertSame(edgeDictionary, dictionary.getEdgeDictionary("metadata", "A"));
+        
+        // until it expires
+        advance(2);
+        Assert.assertNotSame(edgeDictionary, dictionary.getEdgeDictionary("metadata", "A"));
+        Assert.assertEquals(2, dictionary.fetches.size());
+    }
+    
+    @Test
+    public void testNoDictionary() {
+        dictionary.initCache(ticker);
+        dictionary.empty = true;
+        
+        Assert.assertNull(dictionary.getEdgeDictionary("metadata", "A"));
+        
+        // nothing is cached for it
+        dictionary.empty = false;
+        Assert.assertNotNull(dictionary.getEdgeDictionary("metadata", "A"));
+        Assert.assertEquals(2, dictionary.fetches.size());
+    }
+    
+    @Test
+    public void testExceptions() {
+        dictionary.initCache(ticker);
+        IllegalStateException runtimeFailure = new IllegalStateException("unavailable");
+        dictionary.failure = runtimeFailure;
+        try {
+            dictionary.getEdgeDictionary("metadata", "A");
+            Assert.fail("expected the failure of the fetch");
+        } catch (IllegalStateException e) {
+            Assert.assertSame(runtimeFailure, e);
+        }
+        
+        // the loader of the cache can fail with a checked exception as well
+        IOException checkedFailure = new IOException("unavailable");
+        dictionary.failure = checkedFailure;
+        try {
+            dictionary.getEdgeDictionary("metadata", "A");
+            Assert.fail("expected the failure of the fetch");
+        } catch (RuntimeException e) {
+            Assert.assertSame(checkedFailure, e.getCause());
+        }
+    }
+    
+    private static class StubEdgeDictionary extends RemoteEdgeDictionary {
+        private final List<List<String>> fetches = new ArrayList<>();
+        private Exception failure;
+        private boolean empty;
+        
+        @Override
+        protected EdgeDictionaryBase<?,? extends MetadataBase<?>> fetchEdgeDictionary(String metadataTableName, String auths) {
+            fetches.add(Arrays.asList(metadataTableName, auths));
+            if (failure != null) {
+                StubEdgeDictionary.<RuntimeException> sneakyThrow(failure);
+            }
+            return empty ? null : EasyMock.createMock(EdgeDictionaryBase.class);
+        }
+        
+        @SuppressWarnings("unchecked")
+        private static <E extends Exception> void sneakyThrow(Exception e) throws E {
+            throw (E) e;
+        }
+    }
+}
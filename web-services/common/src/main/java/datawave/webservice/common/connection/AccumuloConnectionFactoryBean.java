@@ -356,8 +356,8 @@ public class AccumuloConnectionFactoryBean implements AccumuloConnectionFactory
                 MutableInt maxIdle = new MutableInt();
                 MutableInt numIdle = new MutableInt();
                 MutableInt numWaiting = new MutableInt();
-                // getConnectionPoolStats will collect the tracking maps and maxActive, numActive, maxIdle, numIdle while synchronized
-                // to ensure consistency between the GenericObjectPool and the tracking maps
+                // getConnectionPoolStats collects the tracking maps and maxActive, numActive, maxIdle, numIdle without blocking borrowers,
+                // so the counts may be momentarily out of step with the tracking maps
                 List<Map<String,String>> requestingConnectionsMap = p.getConnectionPoolStats(maxActive, numActive, maxIdle, numIdle, numWaiting);
                 
                 ConnectionPool poolInfo = new ConnectionPool();
@@ -428,6 +428,20 @@ public class AccumuloConnectionFactoryBean implements AccumuloConnectionFactory
         return (int) (maxPercentage * 100);
     }
     
+    @PermitAll
+    @JmxManaged
+    public String listConnectionPoolCounters() {
+        StringBuilder buf = new StringBuilder();
+        for (Entry<String,Map<Priority,AccumuloConnectionPool>> entry : pools.entrySet()) {
+            for (Entry<Priority,AccumuloConnectionPool> poolEntry : entry.getValue().entrySet()) {
+                AccumuloConnectionPool p = poolEntry.getValue();
+                buf.append(entry.getKey()).append(" ").append(poolEntry.getKey()).append(" borrowed=").append(p.getNumBorrowed()).append(" returned=")
+                                .append(p.getNumReturned()).append(" borrowWaitTimeMs=").append(p.getBorrowWaitTimeMs()).append("\n");
+            }
+        }
+        return buf.toString();
+    }
+    
     @Override
     @PermitAll
     public Map<String,String> getTrackingMap(StackTraceElement[] stackTrace) {
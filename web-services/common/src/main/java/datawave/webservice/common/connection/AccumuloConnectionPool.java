@@ -6,17 +6,26 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.apache.accumulo.core.client.Connector;
 import org.apache.commons.lang.mutable.MutableInt;
 import org.apache.commons.pool2.impl.GenericObjectPool;
 import org.apache.log4j.Logger;
 
+/**
+ * Connector pool that tracks who is waiting for and holding each connector. The tracking maps are published as immutable copies in concurrent maps so that
+ * borrowing, returning and collecting stats never block each other; the only locking on the borrow and return paths is the underlying GenericObjectPool's.
+ */
 public class AccumuloConnectionPool extends GenericObjectPool<Connector> {
     
     private static final Logger log = Logger.getLogger(AccumuloConnectionPool.class);
-    private final Map<Long,Map<String,String>> threadToTrackingMapMap = Collections.synchronizedMap(new HashMap<>());
-    private final Map<Connector,Map<String,String>> connectorToTrackingMapMap = Collections.synchronizedMap(new HashMap<>());
+    private final Map<Long,Map<String,String>> threadToTrackingMapMap = new ConcurrentHashMap<>();
+    private final Map<Connector,Map<String,String>> connectorToTrackingMapMap = new ConcurrentHashMap<>();
+    private final LongAdder numBorrowed = new LongAdder();
+    private final LongAdder numReturned = new LongAdder();
+    private final LongAdder borrowWaitTimeMs = new LongAdder();
     private AccumuloConnectionPoolFactory factory = null;
     
     public AccumuloConnectionPool(AccumuloConnectionPoolFactory factory) {
@@ -33,23 +42,28 @@ public class AccumuloConnectionPool extends GenericObjectPool<Connector> {
         
         Long threadId = Thread.currentThread().getId();
         Connector o = null;
+        long waitStart = System.currentTimeMillis();
         try {
-            trackingMap.put("connection.state.start", Long.valueOf(System.currentTimeMillis()).toString());
+            trackingMap.put("connection.state.start", Long.valueOf(waitStart).toString());
             trackingMap.put("state", AccumuloConnectionFactory.State.WAITING.toString());
             trackingMap.put("thread.name", Thread.currentThread().getName());
-            threadToTrackingMapMap.put(threadId, trackingMap);
+            // publish a copy so that stats readers never see the caller's map being modified
+            threadToTrackingMapMap.put(threadId, Collections.unmodifiableMap(new HashMap<>(trackingMap)));
             o = super.borrowObject();
-            log.debug(System.currentTimeMillis() + " thread: " + threadId + " borrowed connector: " + o);
+            long now = System.currentTimeMillis();
+            numBorrowed.increment();
+            borrowWaitTimeMs.add(now - waitStart);
+            log.debug(now + " thread: " + threadId + " borrowed connector: " + o);
             if (log.isTraceEnabled()) {
-                log.trace(System.currentTimeMillis() + " " + Arrays.toString(Thread.currentThread().getStackTrace()));
+                log.trace(now + " " + Arrays.toString(Thread.currentThread().getStackTrace()));
             }
-            // hopefully insignificant gap in synchronization where an object could be returned (and numActive incremented) without the
+            // hopefully insignificant gap where an object could be returned (and numActive incremented) without the
             // connection being moved from the threadToTrackingMapMap to the connectorToTrackingMapMap
             
             if (o != null) {
-                trackingMap.put("connection.state.start", Long.valueOf(System.currentTimeMillis()).toString());
+                trackingMap.put("connection.state.start", Long.valueOf(now).toString());
                 trackingMap.put("state", AccumuloConnectionFactory.State.CONNECTED.toString());
-                connectorToTrackingMapMap.put(o, trackingMap);
+                connectorToTrackingMapMap.put(o, Collections.unmodifiableMap(new HashMap<>(trackingMap)));
             }
             
         } finally {
@@ -65,43 +79,34 @@ public class AccumuloConnectionPool extends GenericObjectPool<Connector> {
     
     public void returnObject(Connector connector) {
         if (connector != null) {
-            synchronized (connectorToTrackingMapMap) {
-                connectorToTrackingMapMap.remove(connector);
-                Long threadId = Thread.currentThread().getId();
-                log.debug(System.currentTimeMillis() + " thread: " + threadId + " returned connector: " + connector);
-                if (log.isTraceEnabled()) {
-                    log.trace(System.currentTimeMillis() + " " + Arrays.toString(Thread.currentThread().getStackTrace()));
-                }
+            connectorToTrackingMapMap.remove(connector);
+            numReturned.increment();
+            if (log.isDebugEnabled()) {
+                log.debug(System.currentTimeMillis() + " thread: " + Thread.currentThread().getId() + " returned connector: " + connector);
+            }
+            if (log.isTraceEnabled()) {
+                log.trace(System.currentTimeMillis() + " " + Arrays.toString(Thread.currentThread().getStackTrace()));
             }
             
             super.returnObject(connector);
         }
     }
     
+    /**
+     * Collect the pool counts and the tracking maps of the waiting and connected requests without blocking borrowers. Each value is read independently, so the
+     * counts may be momentarily out of step with the tracking maps while connectors are being borrowed or returned.
+     */
     public List<Map<String,String>> getConnectionPoolStats(MutableInt maxTotal, MutableInt numActive, MutableInt maxIdle, MutableInt numIdle,
                     MutableInt numWaiting) {
         
         ArrayList<Map<String,String>> t = new ArrayList<>();
-        // no changes to underlying values while collecting metrics
-        synchronized (connectorToTrackingMapMap) {
-            // no changes to underlying values while collecting metrics
-            synchronized (threadToTrackingMapMap) {
-                // synchronize this last to prevent race condition for this lock underlying super type
-                synchronized (this) {
-                    if (!threadToTrackingMapMap.isEmpty()) {
-                        t.addAll(Collections.unmodifiableCollection(threadToTrackingMapMap.values()));
-                    }
-                    if (!connectorToTrackingMapMap.isEmpty()) {
-                        t.addAll(Collections.unmodifiableCollection(connectorToTrackingMapMap.values()));
-                    }
-                    maxTotal.setValue(getMaxTotal());
-                    numActive.setValue(getNumActive());
-                    maxIdle.setValue(getMaxIdle());
-                    numIdle.setValue(getNumIdle());
-                    numWaiting.setValue(getNumWaiters());
-                }
-            }
-        }
+        t.addAll(threadToTrackingMapMap.values());
+        t.addAll(connectorToTrackingMapMap.values());
+        maxTotal.setValue(getMaxTotal());
+        numActive.setValue(getNumActive());
+        maxIdle.setValue(getMaxIdle());
+        numIdle.setValue(getNumIdle());
+        numWaiting.setValue(getNumWaiters());
         return Collections.unmodifiableList(t);
     }
     
@@ -114,6 +119,18 @@ public class AccumuloConnectionPool extends GenericObjectPool<Connector> {
         return connectorToTrackingMapMap.size();
     }
     
+    public long getNumBorrowed() {
+        return numBorrowed.sum();
+    }
+    
+    public long getNumReturned() {
+        return numReturned.sum();
+    }
+    
+    public long getBorrowWaitTimeMs() {
+        return borrowWaitTimeMs.sum();
+    }
+    
     public AccumuloConnectionPoolFactory getFactory() {
         return factory;
     }
@@ -0,0 +1,103 @@
+package datawave.webservice.common.connection;
+
+import datawave.accumulo.inmemory.InMemoryInstance;
+import org.apache.accumulo.core.client.Connector;
+import org.apache.accumulo.core.client.security.tokens.PasswordToken;
+import org.apache.commons.lang.mutable.MutableInt;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.powermock.reflect.Whitebox;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class AccumuloConnectionPoolTest {
+    
+    private AccumuloConnectionPool pool;
+    private Connector connector;
+    
+    @Before
+    public void setup() throws Exception {
+        connector = new InMemoryInstance().getConnector("root", new PasswordToken(""));
+        AccumuloConnectionFactoryTest.MyAccumuloConnectionPoolFactory factory = Whitebox
+                        .newInstance(AccumuloConnectionFactoryTest.MyAccumuloConnectionPoolFactory.class);
+        factory.setConnector(connector);
+        pool = new AccumuloConnectionPool(factory);
+        pool.setMaxTotal(1);
+    }
+    
+    @Test
+    public void testBorrowAndReturnTracking() throws Exception {
+        Map<String,String> trackingMap = new HashMap<>();
+        trackingMap.put("request.location", "AccumuloConnectionPoolTest");
+        
+        Connector c = pool.borrowObject(trackingMap);
+        Assert.assertSame(connector, c);
+        Assert.assertTrue(pool.connectorCameFromHere(c));
+        Assert.assertEquals(AccumuloConnectionFactory.State.CONNECTED.toString(), trackingMap.get("state"));
+        
+        MutableInt maxTotal = new MutableInt();
+        MutableInt numActive = new MutableInt();
+        MutableInt maxIdle = new MutableInt();
+        MutableInt numIdle = new MutableInt();
+        MutableInt numWaiting = new MutableInt();
+        List<Map<String,String>> stats = pool.getConnectionPoolStats(maxTotal, numActive, maxIdle, numIdle, numWaiting);
+        Assert.assertEquals(1, stats.size());
+        Assert.assertEquals("AccumuloConnectionPoolTest", stats.get(0).get("request.location"));
+        Assert.assertEquals(AccumuloConnectionFactory.State.CONNECTED.toString(), stats.get(0).get("state"));
+        Assert.assertEquals(1, maxTotal.intValue());
+        Assert.assertEquals(1, numActive.intValue());
+        
+        // later changes to the caller's map do not leak into the published stats
+        trackingMap.put("state", "CHANGED");
+        stats = pool.getConnectionPoolStats(maxTotal, numActive, maxIdle, numIdle, numWaiting);
+        Assert.assertEquals(AccumuloConnectionFactory.State.CONNECTED.toString(), stats.get(0).get("state"));
+        
+        pool.returnObject(c);
+        Assert.assertFalse(pool.connectorCameFromHere(c));
+        stats = pool.getConnectionPoolStats(maxTotal, numActive, maxIdle, numIdle, numWaiting);
+        Assert.assertTrue(stats.isEmpty());
+        Assert.assertEquals(0, numActive.intValue());
+        Assert.assertEquals(1, pool.getNumBorrowed());
+        Assert.assertEquals(1, pool.getNumReturned());
+    }
+    
+    @Test
+    public void testWaitingRequestIsTracked() throws Exception {
+        Connector c = pool.borrowObject(new HashMap<>());
+        
+        Map<String,String> waitingMap = new HashMap<>();
+        waitingMap.put("request.location", "waiter");
+        Thread waiter = new Thread(() -> {
+            try {
+                pool.returnObject(pool.borrowObject(waitingMap));
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        waiter.start();
+        
+        MutableInt unused = new MutableInt();
+        MutableInt numWaiting = new MutableInt();
+        boolean sawWaiter = false;
+        long end = System.currentTimeMillis() + 10000;
+        while (!sawWaiter && System.currentTimeMillis() < end) {
+            for (Map<String,String> stats : pool.getConnectionPoolStats(unused, unused, unused, unused, numWaiting)) {
+                if ("waiter".equals(stats.get("request.location"))) {
+                    Assert.assertEquals(AccumuloConnectionFactory.State.WAITING.toString(), stats.get("state"));
+                    sawWaiter = true;
+                }
+            }
+            Thread.sleep(5);
+        }
+        Assert.assertTrue(sawWaiter);
+        
+        pool.returnObject(c);
+        waiter.join(10000);
+        Assert.assertEquals(2, pool.getNumBorrowed());
+        Assert.assertEquals(2, pool.getNumReturned());
+        Assert.assertEquals(0, pool.getNumActiveEntriesBeingTracked());
+    }
+}
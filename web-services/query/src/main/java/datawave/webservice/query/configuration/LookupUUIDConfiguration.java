@@ -19,6 +19,7 @@ public class LookupUUIDConfiguration {
     protected int batchLookupUpperLimit = LookupUUIDConstants.DEFAULT_BATCH_LOOKUP_UPPER_LIMIT;
     protected String beginDate = null;
     protected String columnVisibility;
+    protected boolean lookupEngineEnabled = false;
     
     /**
      * Returns the maximum number of UUIDs allowed for batch lookup. A zero or negative value is interpreted as unlimited. The default value is 100.
@@ -63,6 +64,20 @@ public class LookupUUIDConfiguration {
         this.uuidTypes = uuidTypes;
     }
     
+    /**
+     * Returns whether content lookups ask the UUID query logic to resolve their documents straight from the global index instead of planning a query. The
+     * logic only does so for plain UUID terms that it can resolve completely. Disabled by default.
+     * 
+     * @return true if content lookups request the UUID lookup engine
+     */
+    public boolean isLookupEngineEnabled() {
+        return this.lookupEngineEnabled;
+    }
+    
+    public void setLookupEngineEnabled(boolean lookupEngineEnabled) {
+        this.lookupEngineEnabled = lookupEngineEnabled;
+    }
+    
     public MultivaluedMap<String,String> optionalParamsToMap() {
         MultivaluedMap<String,String> p = new MultivaluedMapImpl<>();
         if (this.columnVisibility != null) {
@@ -12,6 +12,11 @@ import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.UUID;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.enterprise.inject.Typed;
 
@@ -31,8 +36,9 @@ import org.apache.commons.collections4.iterators.TransformIterator;
 import org.apache.log4j.Logger;
 
 /**
- * Query Logic implementation that is configured with more than one query logic delegate. The queries are run in parallel and results are retrieved as they come
- * back from the delegates. This class restricts the delegates such that they have to return the same type of response object and two query logics with the same
+ * Query Logic implementation that is configured with more than one query logic delegate. The queries are run in parallel on a bounded thread pool and results
+ * are retrieved as they come back from the delegates. Each delegate is limited to its own budget of queued results, so a slow delegate does not prevent the
+ * others from filling a page. This class restricts the delegates such that they have to return the same type of response object and two query logics with the same
  * class name and tableName cannot be configured.
  */
 public class CompositeQueryLogic extends BaseQueryLogic<Object> {
@@ -50,16 +56,16 @@ public class CompositeQueryLogic extends BaseQueryLogic<Object> {
         }
     }
     
-    private class QueryLogicHolder extends Thread {
+    private class QueryLogicHolder implements Runnable {
+        private final String logicName;
         private GenericQueryConfiguration config;
         private TransformIterator transformIterator;
         private Query settings;
-        private boolean started = false;
         private long maxResults;
+        private CompositeQueryLogicResults.Budget budget;
         
         public QueryLogicHolder(String logicName) {
-            this.setDaemon(true);
-            this.setName(Thread.currentThread().getName() + "-CompositeQueryLogic-" + logicName + "-" + UUID.randomUUID());
+            this.logicName = logicName;
         }
         
         public GenericQueryConfiguration getConfig() {
@@ -90,46 +96,57 @@ public class CompositeQueryLogic extends BaseQueryLogic<Object> {
             this.settings = settings;
         }
         
+        public void setBudget(CompositeQueryLogicResults.Budget budget) {
+            this.budget = budget;
+        }
+        
         public void run() {
             long resultCount = 0L;
             
-            log.trace("Starting thread: " + this.getName());
-            if (!started) {
-                startLatch.countDown();
-                started = true;
-            }
+            log.trace("Starting query logic: " + logicName);
             try {
                 Object last = new Object();
                 if (this.getMaxResults() < 0)
                     this.setMaxResults(Long.MAX_VALUE);
                 while ((null != last) && !interrupted && transformIterator.hasNext() && (resultCount < this.getMaxResults())) {
-                    try {
-                        last = transformIterator.next();
-                        if (null != last) {
-                            log.debug(Thread.currentThread().getName() + ": Added object to results");
-                            results.add(last);
-                        }
-                    } catch (InterruptedException e) {
-                        log.warn("QueryLogic thread interrupted", e);
+                    last = transformIterator.next();
+                    if (null != last) {
+                        log.debug(Thread.currentThread().getName() + ": Added object to results");
+                        results.add(last, budget);
                     }
                     resultCount++;
                 }
-                
+            } catch (InterruptedException e) {
+                log.warn("QueryLogic thread interrupted", e);
             } finally {
                 completionLatch.countDown();
-                log.trace("Finished thread: " + this.getName());
+                log.trace("Finished query logic: " + logicName);
             }
         }
         
     }
     
+    private static class QueryLogicThreadFactory implements ThreadFactory {
+        private final String namePrefix = Thread.currentThread().getName() + "-CompositeQueryLogic-" + UUID.randomUUID() + "-";
+        private final AtomicInteger threadCount = new AtomicInteger(0);
+        
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, namePrefix + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    }
+    
     protected static final Logger log = Logger.getLogger(CompositeQueryLogic.class);
     
     private List<BaseQueryLogic<?>> queryLogics = null;
     private QueryLogicTransformer transformer;
     private Priority p = Priority.NORMAL;
     private volatile boolean interrupted = false;
-    private CountDownLatch startLatch = null;
+    private int maxConcurrentLogics = 0;
+    private int maxQueuedResultsPerLogic = 1000;
+    private ExecutorService executor = null;
     private CountDownLatch completionLatch = null;
     private Map<BaseQueryLogic<?>,QueryLogicHolder> logicState = new TreeMap<>(new QueryLogicComparator());
     private CompositeQueryLogicResults results = null;
@@ -139,6 +156,8 @@ public class CompositeQueryLogic extends BaseQueryLogic<Object> {
     public CompositeQueryLogic(CompositeQueryLogic other) {
         super(other);
         this.queryLogics = new ArrayList<>(other.queryLogics);
+        this.maxConcurrentLogics = other.maxConcurrentLogics;
+        this.maxQueuedResultsPerLogic = other.maxQueuedResultsPerLogic;
     }
     
     @Override
@@ -180,6 +199,8 @@ public class CompositeQueryLogic extends BaseQueryLogic<Object> {
                 holder.setConfig(config);
                 holder.setSettings(settings);
                 holder.setMaxResults(logic.getMaxResults());
+                long maxBytes = (logic.getPageByteTrigger() > 0 ? logic.getPageByteTrigger() : getPageByteTrigger());
+                holder.setBudget(new CompositeQueryLogicResults.Budget(Math.min(settings.getPagesize() * 2, maxQueuedResultsPerLogic), maxBytes));
                 logicState.put(logic, holder);
             } catch (Exception e) {
                 log.info(e.getMessage() + " removing query logic " + logic.getClass().getName() + " from CompositeQuery");
@@ -190,9 +211,8 @@ public class CompositeQueryLogic extends BaseQueryLogic<Object> {
                 }
             }
         }
-        startLatch = new CountDownLatch(logicState.values().size());
         completionLatch = new CountDownLatch(logicState.values().size());
-        this.results = new CompositeQueryLogicResults(Math.min(settings.getPagesize() * 2, 1000), completionLatch);
+        this.results = new CompositeQueryLogicResults(completionLatch);
         if (log.isDebugEnabled()) {
             log.debug("CompositeQuery initialized with the following queryLogics: ");
             for (Entry<BaseQueryLogic<?>,QueryLogicHolder> entry : this.logicState.entrySet()) {
@@ -231,12 +251,15 @@ public class CompositeQueryLogic extends BaseQueryLogic<Object> {
             TransformIterator transformIterator = entry.getKey().getTransformIterator(entry.getValue().getSettings());
             entry.getValue().setTransformIterator(transformIterator);
         }
+        int numThreads = logicState.size();
+        if (maxConcurrentLogics > 0) {
+            numThreads = Math.min(numThreads, maxConcurrentLogics);
+        }
+        executor = Executors.newFixedThreadPool(Math.max(1, numThreads), new QueryLogicThreadFactory());
         for (Entry<BaseQueryLogic<?>,QueryLogicHolder> entry : logicState.entrySet()) {
-            entry.getValue().start();
+            executor.execute(entry.getValue());
         }
-        // Wait until all threads have started
-        startLatch.await();
-        log.trace("All threads have started.");
+        log.trace("Submitted " + logicState.size() + " query logics to " + numThreads + " threads.");
     }
     
     @Override
@@ -296,15 +319,23 @@ public class CompositeQueryLogic extends BaseQueryLogic<Object> {
         this.interrupted = true;
         for (Entry<BaseQueryLogic<?>,QueryLogicHolder> entry : logicState.entrySet()) {
             entry.getKey().close();
-            entry.getValue().interrupt();
         }
-        for (Entry<BaseQueryLogic<?>,QueryLogicHolder> entry : logicState.entrySet()) {
+        if (null != results)
+            results.clear();
+        if (null != executor) {
+            // logics that never got a thread will never count down the completion latch themselves
+            for (Runnable pending : executor.shutdownNow()) {
+                completionLatch.countDown();
+            }
             try {
-                entry.getValue().join();
+                if (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                    log.warn("Timed out waiting for query logic threads to terminate");
+                }
             } catch (InterruptedException e) {
                 log.error("Error joining query logic thread", e);
                 throw new RuntimeException("Error joining query logic thread", e);
             }
+            executor = null;
         }
         logicState.clear();
         if (null != results)
@@ -319,6 +350,35 @@ public class CompositeQueryLogic extends BaseQueryLogic<Object> {
         this.queryLogics = queryLogics;
     }
     
+    public int getMaxConcurrentLogics() {
+        return maxConcurrentLogics;
+    }
+    
+    /**
+     * Set the maximum number of delegate query logics that will be run concurrently. Values less than 1 run every delegate on its own thread.
+     *
+     * @param maxConcurrentLogics
+     *            the size of the thread pool used to run the delegates
+     */
+    public void setMaxConcurrentLogics(int maxConcurrentLogics) {
+        this.maxConcurrentLogics = maxConcurrentLogics;
+    }
+    
+    public int getMaxQueuedResultsPerLogic() {
+        return maxQueuedResultsPerLogic;
+    }
+    
+    /**
+     * Set the maximum number of results that a single delegate query logic may have queued. The delegate's page byte trigger (or this logic's when the delegate
+     * has none) limits the queued bytes.
+     *
+     * @param maxQueuedResultsPerLogic
+     *            the maximum number of queued results per delegate
+     */
+    public void setMaxQueuedResultsPerLogic(int maxQueuedResultsPerLogic) {
+        this.maxQueuedResultsPerLogic = maxQueuedResultsPerLogic;
+    }
+    
     @Override
     public boolean canRunQuery(Principal principal) {
         // user can run this composite query if they can run at least one of the configured query logics
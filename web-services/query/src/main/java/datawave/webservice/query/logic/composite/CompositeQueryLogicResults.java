@@ -1,25 +1,126 @@
 package datawave.webservice.query.logic.composite;
 
 import java.util.Iterator;
-import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
+import datawave.webservice.query.data.ObjectSizeOf;
+
+/**
+ * Merged results of the delegate query logics of a {@link CompositeQueryLogic}. Results from all delegates are merged through a single non-blocking queue, while
+ * each delegate is held to its own {@link Budget} of queued results and bytes. A slow delegate therefore never blocks a fast delegate from filling a page.
+ */
 public class CompositeQueryLogicResults implements Iterable<Object> {
     
-    private ArrayBlockingQueue<Object> results = null;
-    private CountDownLatch completionLatch = null;
+    /**
+     * The number of results and bytes a single delegate query logic may have queued but not yet consumed. The producing thread blocks in
+     * {@link CompositeQueryLogicResults#add(Object, Budget)} while its budget is exhausted.
+     */
+    public static class Budget {
+        private final int maxResults;
+        private final long maxBytes;
+        private int queuedResults = 0;
+        private long queuedBytes = 0L;
+        
+        public Budget(int maxResults, long maxBytes) {
+            this.maxResults = Math.max(1, maxResults);
+            this.maxBytes = maxBytes;
+        }
+        
+        private synchronized void acquire(long bytes) throws InterruptedException {
+            // always allow at least one queued result so that a single large result cannot stall the delegate
+            while (queuedResults > 0 && (queuedResults >= maxResults || (maxBytes > 0 && queuedBytes + bytes > maxBytes))) {
+                wait();
+            }
+            queuedResults++;
+            queuedBytes += bytes;
+        }
+        
+        private synchronized void release(long bytes) {
+            queuedResults--;
+            queuedBytes -= bytes;
+            notifyAll();
+        }
+        
+        private synchronized void reset() {
+            queuedResults = 0;
+            queuedBytes = 0L;
+            notifyAll();
+        }
+        
+        public synchronized int getQueuedResults() {
+            return queuedResults;
+        }
+        
+        public synchronized long getQueuedBytes() {
+            return queuedBytes;
+        }
+    }
+    
+    static class QueuedResult {
+        final Object result;
+        final Budget budget;
+        final long bytes;
+        
+        QueuedResult(Object result, Budget budget, long bytes) {
+            this.result = result;
+            this.budget = budget;
+            this.bytes = bytes;
+        }
+        
+        void release() {
+            if (budget != null) {
+                budget.release(bytes);
+            }
+        }
+    }
+    
+    private final ConcurrentLinkedQueue<QueuedResult> results = new ConcurrentLinkedQueue<>();
+    private final Semaphore available = new Semaphore(0);
+    private final CountDownLatch completionLatch;
     
-    public CompositeQueryLogicResults(int pagesize, CountDownLatch completionLatch) {
-        this.results = new ArrayBlockingQueue<>(pagesize);
+    public CompositeQueryLogicResults(CountDownLatch completionLatch) {
         this.completionLatch = completionLatch;
     }
     
-    public void add(Object object) throws InterruptedException {
-        this.results.put(object);
+    /**
+     * Add a result without a budget. The caller is never blocked.
+     *
+     * @param object
+     *            the result
+     */
+    public void add(Object object) {
+        results.add(new QueuedResult(object, null, 0L));
+        available.release();
+    }
+    
+    /**
+     * Add a result on behalf of a delegate, blocking until the delegate's budget allows the result to be queued.
+     *
+     * @param object
+     *            the result
+     * @param budget
+     *            the budget of the delegate producing the result
+     * @throws InterruptedException
+     *             if interrupted while waiting on the budget
+     */
+    public void add(Object object, Budget budget) throws InterruptedException {
+        long bytes = (budget.maxBytes > 0 ? ObjectSizeOf.Sizer.getObjectSize(object) : 0L);
+        budget.acquire(bytes);
+        results.add(new QueuedResult(object, budget, bytes));
+        available.release();
     }
     
     public void clear() {
-        this.results.clear();
+        QueuedResult result;
+        while ((result = results.poll()) != null) {
+            if (result.budget != null) {
+                result.budget.reset();
+            }
+        }
+        available.drainPermits();
     }
     
     public int size() {
@@ -27,12 +128,35 @@ public class CompositeQueryLogicResults implements Iterable<Object> {
     }
     
     public boolean contains(Object o) {
-        return results.contains(o);
+        for (QueuedResult result : results) {
+            if (result.result.equals(o)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Take the next result, waiting up to the given time for one to become available.
+     *
+     * @return the next result, or null if none became available
+     */
+    Object poll(long timeout, TimeUnit unit) throws InterruptedException {
+        if (available.tryAcquire(timeout, unit)) {
+            QueuedResult result = results.poll();
+            result.release();
+            return result.result;
+        }
+        return null;
+    }
+    
+    boolean isComplete() {
+        return completionLatch.getCount() == 0;
     }
     
     @Override
     public Iterator<Object> iterator() {
-        return new CompositeQueryLogicResultsIterator(this.results, this.completionLatch);
+        return new CompositeQueryLogicResultsIterator(this);
     }
     
 }
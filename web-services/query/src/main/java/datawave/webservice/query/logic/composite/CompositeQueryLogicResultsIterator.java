@@ -1,8 +1,6 @@
 package datawave.webservice.query.logic.composite;
 
 import java.util.Iterator;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.log4j.Logger;
@@ -11,14 +9,12 @@ public class CompositeQueryLogicResultsIterator implements Iterator<Object> {
     
     protected static final Logger log = Logger.getLogger(CompositeQueryLogicResultsIterator.class);
     
-    private ArrayBlockingQueue<Object> results = null;
+    private CompositeQueryLogicResults results = null;
     private Object nextEntry = null;
     private Object lock = new Object();
-    private CountDownLatch completionLatch = null;
     
-    public CompositeQueryLogicResultsIterator(ArrayBlockingQueue<Object> results, CountDownLatch completionLatch) {
+    public CompositeQueryLogicResultsIterator(CompositeQueryLogicResults results) {
         this.results = results;
-        this.completionLatch = completionLatch;
     }
     
     @Override
@@ -27,10 +23,15 @@ public class CompositeQueryLogicResultsIterator implements Iterator<Object> {
             if (nextEntry != null)
                 return true;
             try {
-                while (nextEntry == null && (!results.isEmpty() || completionLatch.getCount() > 0)) {
-                    nextEntry = results.poll(1, TimeUnit.SECONDS);
+                while (nextEntry == null) {
+                    // check for completion before polling so that a result added by the last delegate is never missed
+                    boolean complete = results.isComplete();
+                    nextEntry = results.poll(complete ? 0 : 1, TimeUnit.SECONDS);
+                    if (nextEntry == null && complete) {
+                        break;
+                    }
                 }
-                return true;
+                return (nextEntry != null);
             } catch (InterruptedException e) {
                 throw new RuntimeException(e);
             }
@@ -0,0 +1,125 @@
+package datawave.webservice.query.metric;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import datawave.webservice.query.metric.BaseQueryMetric.PageMetric;
+
+/**
+ * Buffers query metric updates received by the {@link QueryMetricsWriter} and coalesces the updates for the same query id, so that each query id is written
+ * once per flush no matter how many updates were received for it. The most recent update wins, but the page metrics of the superseded updates are carried
+ * into it, since each update only carries the pages added since the previous one.
+ * <p>
+ * The buffer is only accessed by the single thread draining the metrics queue and is not synchronized.
+ */
+public class QueryMetricUpdateBuffer {
+    
+    /**
+     * The coalesced update for a single query id along with every update that was folded into it
+     */
+    public static class CoalescedUpdate {
+        private QueryMetricHolder holder;
+        private final List<BaseQueryMetric> updates = new ArrayList<>();
+        
+        private CoalescedUpdate(QueryMetricHolder holder) {
+            this.holder = holder;
+            this.updates.add(holder.getQueryMetric());
+        }
+        
+        private void merge(QueryMetricHolder newer) {
+            Map<Long,PageMetric> pages = new TreeMap<>();
+            addPages(pages, holder.getQueryMetric().getPageTimes());
+            addPages(pages, newer.getQueryMetric().getPageTimes());
+            newer.getQueryMetric().setPageTimes(new ArrayList<>(pages.values()));
+            this.holder = newer;
+            this.updates.add(newer.getQueryMetric());
+        }
+        
+        private static void addPages(Map<Long,PageMetric> pages, List<PageMetric> pageTimes) {
+            if (pageTimes != null) {
+                for (PageMetric p : pageTimes) {
+                    pages.put(p.getPageNumber(), p);
+                }
+            }
+        }
+        
+        public QueryMetricHolder getHolder() {
+            return holder;
+        }
+        
+        /**
+         * @return every update received for the query id, in the order received
+         */
+        public List<BaseQueryMetric> getUpdates() {
+            return Collections.unmodifiableList(updates);
+        }
+    }
+    
+    private final Map<String,CoalescedUpdate> pending = new LinkedHashMap<>();
+    private long numReceived = 0;
+    
+    /**
+     * Add an update, merging it with any pending update for the same query id
+     *
+     * @param holder
+     *            the received update
+     */
+    public void add(QueryMetricHolder holder) {
+        numReceived++;
+        String queryId = holder.getQueryMetric().getQueryId();
+        CoalescedUpdate existing = (queryId == null ? null : pending.get(queryId));
+        if (existing == null) {
+            pending.put(queryId == null ? "null-" + numReceived : queryId, new CoalescedUpdate(holder));
+        } else {
+            existing.merge(holder);
+        }
+    }
+    
+    /**
+     * Re-queue updates that previously failed to write
+     *
+     * @param updates
+     *            the failed updates
+     */
+    public void addAll(Collection<CoalescedUpdate> updates) {
+        for (CoalescedUpdate update : updates) {
+            String queryId = update.getHolder().getQueryMetric().getQueryId();
+            pending.put(queryId == null ? "null-" + (++numReceived) : queryId, update);
+        }
+    }
+    
+    /**
+     * @return the number of distinct query ids pending
+     */
+    public int size() {
+        return pending.size();
+    }
+    
+    public boolean isEmpty() {
+        return pending.isEmpty();
+    }
+    
+    /**
+     * @return the number of updates received since the last drain, including those coalesced away
+     */
+    public long getNumReceived() {
+        return numReceived;
+    }
+    
+    /**
+     * Remove and return every pending update
+     *
+     * @return the coalesced updates in the order their query ids were first received
+     */
+    public List<CoalescedUpdate> drain() {
+        List<CoalescedUpdate> updates = new ArrayList<>(pending.values());
+        pending.clear();
+        numReceived = 0;
+        return updates;
+    }
+}
@@ -12,6 +12,7 @@ import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.annotation.Resource;
 import javax.annotation.security.DeclareRoles;
 import javax.annotation.security.RolesAllowed;
@@ -78,7 +79,7 @@ public class QueryMetricsWriter {
     
     // queryId to lastPage Map
     private Map<String,Long> lastPageMap;
-    private List<QueryMetricHolder> metricQueue;
+    private QueryMetricUpdateBuffer metricQueue;
     private DecimalFormat df = new DecimalFormat("0.00");
     
     private static volatile AtomicBoolean receivingMetrics = new AtomicBoolean(false);
@@ -103,23 +104,51 @@ public class QueryMetricsWriter {
         // noinspection unchecked
         lastPageMap = new LRUMap(1000);
         lastPageMetricMap = new LRUMap(1000);
-        metricQueue = new ArrayList<>();
+        metricQueue = new QueryMetricUpdateBuffer();
         timelyClient = createUdpClient();
     }
     
+    /**
+     * Write any updates still buffered, such as those that failed their last write, so that they are not lost when the writer is shut down. Updates still on
+     * the JMS queue are left there for the next writer.
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (receivingMetrics.compareAndSet(false, true)) {
+            try {
+                if (!metricQueue.isEmpty()) {
+                    List<QueryMetricUpdateBuffer.CoalescedUpdate> failedMetrics = writeMetrics(queryMetricHandler, metricQueue.drain());
+                    for (QueryMetricUpdateBuffer.CoalescedUpdate u : failedMetrics) {
+                        log.error("Failed write on shutdown : " + u.getHolder().getQueryMetric());
+                    }
+                }
+            } catch (Throwable t) {
+                log.error(t.getMessage(), t);
+            } finally {
+                receivingMetrics.set(false);
+            }
+        } else {
+            log.warn("Shutting down while receiving query metrics, buffered updates are written by the receiver");
+        }
+    }
+    
     @Schedule(hour = "*", minute = "*", second = "*/10", persistent = false)
     public void receiveQueryMetrics() {
         
         if (receivingMetrics.compareAndSet(false, true)) {
             
             long start = System.currentTimeMillis();
-            List<QueryMetricHolder> failedMetrics = new ArrayList<>();
+            int maxQueueSize = (config == null ? 1000 : config.getMaxQueueSize());
+            long maxLatencyMs = (config == null ? 60000 : config.getMaxLatencyMs());
+            long receiveTimeoutMs = (config == null ? 500 : config.getReceiveTimeoutMs());
+            List<QueryMetricUpdateBuffer.CoalescedUpdate> failedMetrics = new ArrayList<>();
             try {
                 if (!metricQueue.isEmpty()) {
+                    List<QueryMetricUpdateBuffer.CoalescedUpdate> previouslyFailed = metricQueue.drain();
                     try {
                         // write previously failed metrics
-                        failedMetrics = writeMetrics(queryMetricHandler, metricQueue);
-                        int successful = metricQueue.size() - failedMetrics.size();
+                        failedMetrics = writeMetrics(queryMetricHandler, previouslyFailed);
+                        int successful = previouslyFailed.size() - failedMetrics.size();
                         if (successful > 0) {
                             // logged at ERROR to record successful write of previously failed writes
                             log.error("Wrote " + successful + " previously failed query metric updates");
@@ -129,18 +158,16 @@ public class QueryMetricsWriter {
                         }
                     } catch (Throwable t) {
                         log.error(failedMetrics.size() + " metric updates failed a second time, removing");
-                        for (QueryMetricHolder h : failedMetrics) {
-                            log.error("Failed write : " + h.getQueryMetric());
+                        for (QueryMetricUpdateBuffer.CoalescedUpdate u : failedMetrics) {
+                            log.error("Failed write : " + u.getHolder().getQueryMetric());
                         }
-                    } finally {
-                        metricQueue.clear();
                     }
                 }
                 
                 try (JMSConsumer consumer = jmsContext.createConsumer(dest)) {
                     Message message;
                     do {
-                        message = consumer.receive(500);
+                        message = consumer.receive(receiveTimeoutMs);
                         if (message != null) {
                             try {
                                 if (message instanceof ObjectMessage) {
@@ -153,6 +180,8 @@ public class QueryMetricsWriter {
                                         queryMetricHolder = ((QueryMetricMessage) o).getMetricHolder();
                                     }
                                     if (queryMetricHolder != null) {
+                                        // assign page numbers before updates for the same query are coalesced
+                                        handleLegacyEvents(queryMetricHolder.getQueryMetric());
                                         metricQueue.add(queryMetricHolder);
                                     }
                                 }
@@ -161,18 +190,22 @@ public class QueryMetricsWriter {
                                 continue;
                             }
                         }
-                        // break out of loop every minute to ensure flush and acknowledge messages
-                        if (metricQueue.size() >= 1000 || (System.currentTimeMillis() - start) > 60000) {
+                        // break out of loop periodically to ensure flush and acknowledge messages
+                        if (metricQueue.size() >= maxQueueSize || (System.currentTimeMillis() - start) > maxLatencyMs) {
                             break;
                         }
                     } while (message != null);
                 }
                 
-                failedMetrics = writeMetrics(queryMetricHandler, metricQueue);
-                if (log.isTraceEnabled() && (metricQueue.size() - failedMetrics.size()) > 0) {
-                    log.trace("Wrote " + (metricQueue.size() - failedMetrics.size()) + " query metric updates");
+                long numReceived = metricQueue.getNumReceived();
+                List<QueryMetricUpdateBuffer.CoalescedUpdate> updates = metricQueue.drain();
+                long writeStart = System.currentTimeMillis();
+                failedMetrics = writeMetrics(queryMetricHandler, updates);
+                long writeTime = System.currentTimeMillis() - writeStart;
+                if (log.isTraceEnabled() && (updates.size() - failedMetrics.size()) > 0) {
+                    log.trace("Wrote " + (updates.size() - failedMetrics.size()) + " query metric updates coalesced from " + numReceived + " received");
                 }
-                metricQueue.clear();
+                sendWriterMetricsToTimely(numReceived, updates.size() - failedMetrics.size(), writeTime);
                 if (!failedMetrics.isEmpty()) {
                     metricQueue.addAll(failedMetrics);
                     throw new IllegalStateException(metricQueue.size() + " metrics failed write");
@@ -194,6 +227,23 @@ public class QueryMetricsWriter {
         }
     }
     
+    /**
+     * Report the throughput of the writer itself: the number of updates received, the number of coalesced updates written and the time taken to write them
+     */
+    private synchronized void sendWriterMetricsToTimely(long numReceived, long numWritten, long writeTime) {
+        if (timelyClient != null && numReceived > 0) {
+            try {
+                long now = System.currentTimeMillis();
+                timelyClient.open();
+                timelyClient.write("put dw.query.metrics.writer.UPDATES_RECEIVED " + now + " " + numReceived + "\n");
+                timelyClient.write("put dw.query.metrics.writer.UPDATES_WRITTEN " + now + " " + numWritten + "\n");
+                timelyClient.write("put dw.query.metrics.writer.WRITE_TIME " + now + " " + writeTime + "\n");
+            } catch (Exception e) {
+                log.error(e.getMessage(), e);
+            }
+        }
+    }
+    
     private synchronized void sendMetricsToTimely(BaseQueryMetric queryMetric) {
         
         if (timelyClient != null && queryMetric.getQueryType().equalsIgnoreCase("RunningQuery")) {
@@ -275,27 +325,32 @@ public class QueryMetricsWriter {
         }
     }
     
-    private List<QueryMetricHolder> writeMetrics(QueryMetricHandler queryMetricHandler, List<QueryMetricHolder> metricQueue) throws Exception {
+    private List<QueryMetricUpdateBuffer.CoalescedUpdate> writeMetrics(QueryMetricHandler queryMetricHandler,
+                    List<QueryMetricUpdateBuffer.CoalescedUpdate> metricQueue) throws Exception {
         
-        List<QueryMetricHolder> failedMetrics = new ArrayList<>();
+        List<QueryMetricUpdateBuffer.CoalescedUpdate> failedMetrics = new ArrayList<>();
         
         if (!metricQueue.isEmpty()) {
             log.debug("writing " + metricQueue.size() + " query metric updates");
-            for (QueryMetricHolder queryMetricHolder : metricQueue) {
+            for (QueryMetricUpdateBuffer.CoalescedUpdate update : metricQueue) {
                 try {
+                    QueryMetricHolder queryMetricHolder = update.getHolder();
                     BaseQueryMetric queryMetric = queryMetricHolder.getQueryMetric();
-                    handleLegacyEvents(queryMetric);
                     DatawavePrincipal datawavePrincipal = queryMetricHolder.getPrincipal();
                     queryMetricHandler.updateMetric(queryMetric, datawavePrincipal);
-                    sendMetricsToTimely(queryMetric);
+                    // every received update is reported so that no lifecycle transition is lost to coalescing
+                    for (BaseQueryMetric received : update.getUpdates()) {
+                        sendMetricsToTimely(received);
+                    }
                 } catch (Throwable t) {
                     log.error("query metric updates failed: " + t.getMessage(), t);
-                    failedMetrics.add(queryMetricHolder);
+                    failedMetrics.add(update);
                 }
             }
             try {
                 queryMetricHandler.flush();
             } catch (Throwable t) {
+                failedMetrics.clear();
                 failedMetrics.addAll(metricQueue);
             }
             log.debug("wrote " + (metricQueue.size() - failedMetrics.size()) + " query metric updates");
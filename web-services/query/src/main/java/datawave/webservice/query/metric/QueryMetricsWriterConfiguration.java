@@ -8,6 +8,9 @@ public class QueryMetricsWriterConfiguration {
     private String timelyHost = null;
     private int timelyPort = 0;
     private Set<String> timelyMetricTags = new HashSet<>();
+    private int maxQueueSize = 1000;
+    private long maxLatencyMs = 60000;
+    private long receiveTimeoutMs = 500;
     
     public String getTimelyHost() {
         return timelyHost;
@@ -32,4 +35,36 @@ public class QueryMetricsWriterConfiguration {
     public void setTimelyMetricTags(Set<String> timelyMetricTags) {
         this.timelyMetricTags = timelyMetricTags;
     }
+    
+    public int getMaxQueueSize() {
+        return maxQueueSize;
+    }
+    
+    /**
+     * @param maxQueueSize
+     *            the number of distinct query ids buffered before the query metric updates are written
+     */
+    public void setMaxQueueSize(int maxQueueSize) {
+        this.maxQueueSize = maxQueueSize;
+    }
+    
+    public long getMaxLatencyMs() {
+        return maxLatencyMs;
+    }
+    
+    /**
+     * @param maxLatencyMs
+     *            the maximum time that query metric updates are buffered before being written
+     */
+    public void setMaxLatencyMs(long maxLatencyMs) {
+        this.maxLatencyMs = maxLatencyMs;
+    }
+    
+    public long getReceiveTimeoutMs() {
+        return receiveTimeoutMs;
+    }
+    
+    public void setReceiveTimeoutMs(long receiveTimeoutMs) {
+        this.receiveTimeoutMs = receiveTimeoutMs;
+    }
 }
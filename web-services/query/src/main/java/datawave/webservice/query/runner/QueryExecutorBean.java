@@ -244,6 +244,9 @@ public class QueryExecutorBean implements QueryExecutor {
     @Inject
     private AccumuloConnectionRequestBean accumuloConnectionRequestBean;
     
+    @Inject
+    private QuerySchedulerBean querySchedulerBean;
+    
     private Multimap<String,PatternWrapper> traceInfos;
     private CacheListener traceCacheListener;
     
@@ -644,6 +647,7 @@ public class QueryExecutorBean implements QueryExecutor {
         AccumuloConnectionFactory.Priority priority;
         Span createSpan = null;
         RunningQuery rq = null;
+        QueryScheduler.Permit permit = null;
         try {
             // Default hasResults to true. If a query logic is actually able to set this value,
             // then their value will overwrite this one. Otherwise, we return true so that
@@ -684,11 +688,15 @@ public class QueryExecutorBean implements QueryExecutor {
                 }
             }
             
+            admitQuery(qd.userid, queryLogicName, q);
+            
             priority = qd.logic.getConnectionPriority();
             Map<String,String> trackingMap = connectionFactory.getTrackingMap(Thread.currentThread().getStackTrace());
             addQueryToTrackingMap(trackingMap, q);
             accumuloConnectionRequestBean.requestBegin(q.getId().toString());
             try {
+                // wait for our fair share of the call slots before taking a connection
+                permit = acquireCallPermit(qd.userid, queryLogicName);
                 connection = connectionFactory.getConnection(qd.logic.getConnPoolName(), priority, trackingMap);
             } finally {
                 accumuloConnectionRequestBean.requestEnd(q.getId().toString());
@@ -792,6 +800,53 @@ public class QueryExecutorBean implements QueryExecutor {
                 // - Remove the logic from the cache
                 qlCache.poll(q.getId().toString());
             }
+            if (null != permit) {
+                permit.close();
+            }
+        }
+    }
+    
+    /**
+     * Reject the query if the scheduler's admission control considers its predicted cost too high for the current load
+     */
+    private void admitQuery(String userid, String queryLogicName, Query q) throws Exception {
+        if (querySchedulerBean != null && predictor != null && querySchedulerBean.isAdmissionControlEnabled()) {
+            BaseQueryMetric metric = metricFactory.createMetric();
+            q.populateMetric(metric);
+            metric.setQueryType(RunningQuery.class.getSimpleName());
+            Set<Prediction> predictions;
+            try {
+                predictions = predictor.predict(metric);
+            } catch (Exception e) {
+                log.warn("Unable to predict the cost of query " + q.getId() + ", admitting it", e);
+                return;
+            }
+            querySchedulerBean.admit(userid, queryLogicName, predictions);
+        }
+    }
+    
+    /**
+     * Wait for a call slot from the fair share scheduler, if one is configured
+     */
+    private QueryScheduler.Permit acquireCallPermit(String userid, String queryLogicName) throws Exception {
+        if (querySchedulerBean == null) {
+            return () -> {};
+        }
+        return querySchedulerBean.acquire(userid, queryLogicName);
+    }
+    
+    /**
+     * Wait for a call slot from the fair share scheduler, if one is configured, registering the wait so that canceling or closing the query interrupts it
+     */
+    private QueryScheduler.Permit acquireCallPermit(String id, String userid, String queryLogicName) throws Exception {
+        if (querySchedulerBean == null) {
+            return () -> {};
+        }
+        accumuloConnectionRequestBean.requestBegin(id);
+        try {
+            return querySchedulerBean.acquire(userid, queryLogicName);
+        } finally {
+            accumuloConnectionRequestBean.requestEnd(id);
         }
     }
     
@@ -1945,7 +2000,9 @@ public class QueryExecutorBean implements QueryExecutor {
                 
                 // Set the active call and get next
                 query.setActiveCall(true);
-                response = _next(query, id, proxyServers, span);
+                try (QueryScheduler.Permit permit = acquireCallPermit(id, userid, query.getLogic().getLogicName())) {
+                    response = _next(query, id, proxyServers, span);
+                }
                 
                 // Conditionally swap the standard response with content
                 if (checkForContentLookup) {
@@ -1979,6 +2036,22 @@ public class QueryExecutorBean implements QueryExecutor {
             close(id); // close the query, as there were no results and we are done here
             closedQueryCache.add(id); // remember that we auto-closed this query
             throw e;
+        } catch (InterruptedException e) {
+            // canceled or closed while waiting for a call slot
+            if (query != null) {
+                query.setActiveCall(false);
+                query.getMetric().setLifecycle(QueryMetric.Lifecycle.CANCELLED);
+            }
+            try {
+                ctx.getUserTransaction().setRollbackOnly();
+            } catch (Exception ex) {
+                log.error("Error marking transaction for roll back", ex);
+            }
+            log.info("Query " + id + " canceled on request");
+            QueryException qe = new QueryException(DatawaveErrorCode.QUERY_CANCELED, e);
+            response.addException(qe.getBottomQueryException());
+            int statusCode = qe.getBottomQueryException().getStatusCode();
+            throw new DatawaveWebApplicationException(qe, response, statusCode);
         } catch (DatawaveWebApplicationException e) {
             if (query != null) {
                 query.setActiveCall(false);
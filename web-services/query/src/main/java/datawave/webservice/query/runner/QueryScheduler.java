@@ -0,0 +1,306 @@
+package datawave.webservice.query.runner;
+
+import org.apache.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Weighted fair share scheduler for the create and next calls of running queries. A fixed number of call slots is shared between the users that are
+ * currently waiting, in proportion to the configured user and query logic weights: when a slot frees up it is handed to the waiting call whose user holds the
+ * fewest slots relative to its weight, so one user issuing many concurrent calls cannot starve everyone else. Calls from the same user with equal weight are
+ * served in arrival order.
+ * <p>
+ * Admission control rejects new queries whose estimated cost exceeds a threshold while all slots are busy, so expensive queries only start when there is
+ * spare capacity.
+ */
+public class QueryScheduler {
+    
+    private static final Logger log = Logger.getLogger(QueryScheduler.class);
+    
+    /**
+     * A granted call slot, released by {@link #close()}
+     */
+    public interface Permit extends AutoCloseable {
+        @Override
+        void close();
+    }
+    
+    private static final Permit NO_OP_PERMIT = () -> {};
+    
+    private static class UserState {
+        int active = 0;
+        int waiting = 0;
+        long granted = 0;
+    }
+    
+    private static class Waiter {
+        final String user;
+        final String logic;
+        final Condition condition;
+        final long arrival = System.currentTimeMillis();
+        boolean granted = false;
+        
+        Waiter(String user, String logic, Condition condition) {
+            this.user = user;
+            this.logic = logic;
+            this.condition = condition;
+        }
+    }
+    
+    private final QuerySchedulerConfiguration config;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<String,UserState> users = new TreeMap<>();
+    private final List<Waiter> waiters = new LinkedList<>();
+    private int active = 0;
+    
+    private long numGranted = 0;
+    private long numTimedOut = 0;
+    private long numRejected = 0;
+    private long totalWaitMs = 0;
+    
+    public QueryScheduler(QuerySchedulerConfiguration config) {
+        this.config = config;
+    }
+    
+    public boolean isEnabled() {
+        return config != null && config.getMaxConcurrentCalls() > 0;
+    }
+    
+    /**
+     * Wait for a call slot for the given user and query logic.
+     *
+     * @param user
+     *            the user making the call
+     * @param logic
+     *            the query logic name
+     * @return the permit, or null if no slot became available within the configured wait time
+     * @throws InterruptedException
+     *             if the calling thread is interrupted while waiting, for example when the query is canceled
+     */
+    public Permit acquire(String user, String logic) throws InterruptedException {
+        if (!isEnabled()) {
+            return NO_OP_PERMIT;
+        }
+        lock.lock();
+        try {
+            Waiter waiter = new Waiter(user, logic, lock.newCondition());
+            waiters.add(waiter);
+            getUserState(user).waiting++;
+            dispatch();
+            
+            long remainingNanos = TimeUnit.MILLISECONDS.toNanos(config.getMaxWaitMs());
+            try {
+                while (!waiter.granted) {
+                    if (remainingNanos <= 0) {
+                        removeWaiter(waiter);
+                        numTimedOut++;
+                        log.warn("Timed out waiting " + config.getMaxWaitMs() + "ms for a call slot for " + user + " running " + logic);
+                        return null;
+                    }
+                    remainingNanos = waiter.condition.awaitNanos(remainingNanos);
+                }
+            } catch (InterruptedException e) {
+                if (waiter.granted) {
+                    release(user);
+                } else {
+                    removeWaiter(waiter);
+                }
+                throw e;
+            }
+            
+            totalWaitMs += System.currentTimeMillis() - waiter.arrival;
+            return new Permit() {
+                private boolean released = false;
+                
+                @Override
+                public void close() {
+                    lock.lock();
+                    try {
+                        if (!released) {
+                            released = true;
+                            release(user);
+                        }
+                    } finally {
+                        lock.unlock();
+                    }
+                }
+            };
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Determine whether a new query with the given estimated cost may be started now.
+     *
+     * @param user
+     *            the user creating the query
+     * @param logic
+     *            the query logic name
+     * @param estimatedCost
+     *            the estimated cost of the query, as predicted by the QueryPredictor
+     * @return false if the query is too expensive to start while all call slots are busy
+     */
+    public boolean admit(String user, String logic, double estimatedCost) {
+        if (!isEnabled() || config.getMaxAdmissibleCost() <= 0 || estimatedCost <= config.getMaxAdmissibleCost()) {
+            return true;
+        }
+        lock.lock();
+        try {
+            if (active >= config.getMaxConcurrentCalls() || !waiters.isEmpty()) {
+                numRejected++;
+                log.warn("Rejecting " + logic + " query for " + user + " with estimated cost " + estimatedCost + " while all call slots are busy");
+                return false;
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    // must be called while holding the lock
+    private void release(String user) {
+        UserState state = getUserState(user);
+        state.active--;
+        active--;
+        if (state.active == 0 && state.waiting == 0) {
+            users.remove(user);
+        }
+        dispatch();
+    }
+    
+    // must be called while holding the lock
+    private void removeWaiter(Waiter waiter) {
+        waiters.remove(waiter);
+        UserState state = getUserState(waiter.user);
+        state.waiting--;
+        if (state.active == 0 && state.waiting == 0) {
+            users.remove(waiter.user);
+        }
+    }
+    
+    // must be called while holding the lock: hand free slots to the waiters whose users hold the smallest weighted share
+    private void dispatch() {
+        while (active < config.getMaxConcurrentCalls() && !waiters.isEmpty()) {
+            Waiter next = null;
+            double nextShare = Double.MAX_VALUE;
+            for (Waiter waiter : waiters) {
+                double share = (getUserState(waiter.user).active + 1) / getWeight(waiter);
+                if (share < nextShare) {
+                    next = waiter;
+                    nextShare = share;
+                }
+            }
+            waiters.remove(next);
+            UserState state = getUserState(next.user);
+            state.waiting--;
+            state.active++;
+            state.granted++;
+            active++;
+            numGranted++;
+            next.granted = true;
+            next.condition.signal();
+        }
+    }
+    
+    private double getWeight(Waiter waiter) {
+        return getWeight(config.getUserWeights(), waiter.user) * getWeight(config.getLogicWeights(), waiter.logic);
+    }
+    
+    private static double getWeight(Map<String,Double> weights, String key) {
+        Double weight = (weights == null || key == null) ? null : weights.get(key);
+        return (weight == null || weight <= 0) ? 1.0 : weight;
+    }
+    
+    private UserState getUserState(String user) {
+        return users.computeIfAbsent(user, k -> new UserState());
+    }
+    
+    public int getNumActive() {
+        lock.lock();
+        try {
+            return active;
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    public int getNumWaiting() {
+        lock.lock();
+        try {
+            return waiters.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    public long getNumGranted() {
+        lock.lock();
+        try {
+            return numGranted;
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    public long getNumTimedOut() {
+        lock.lock();
+        try {
+            return numTimedOut;
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    public long getNumRejected() {
+        lock.lock();
+        try {
+            return numRejected;
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    public long getAverageWaitMs() {
+        lock.lock();
+        try {
+            return numGranted == 0 ? 0 : totalWaitMs / numGranted;
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * @return one line per user with calls in flight or waiting, listing the active and waiting call counts
+     */
+    public List<String> getUserStatus() {
+        List<String> status = new ArrayList<>();
+        lock.lock();
+        try {
+            long now = System.currentTimeMillis();
+            for (Map.Entry<String,UserState> entry : users.entrySet()) {
+                long oldestWaitMs = 0;
+                for (Iterator<Waiter> it = waiters.iterator(); it.hasNext() && oldestWaitMs == 0;) {
+                    Waiter waiter = it.next();
+                    if (waiter.user.equals(entry.getKey())) {
+                        oldestWaitMs = now - waiter.arrival;
+                    }
+                }
+                UserState state = entry.getValue();
+                status.add(entry.getKey() + " active=" + state.active + " waiting=" + state.waiting + " granted=" + state.granted + " oldestWaitMs="
+                                + oldestWaitMs);
+            }
+        } finally {
+            lock.unlock();
+        }
+        return status;
+    }
+}
@@ -0,0 +1,129 @@
+package datawave.webservice.query.runner;
+
+import datawave.configuration.spring.SpringBean;
+import datawave.webservice.query.exception.DatawaveErrorCode;
+import datawave.webservice.query.exception.PreConditionFailedQueryException;
+import datawave.webservice.query.metric.BaseQueryMetric.Prediction;
+import org.apache.deltaspike.core.api.jmx.JmxManaged;
+import org.apache.deltaspike.core.api.jmx.MBean;
+import org.apache.log4j.Logger;
+
+import javax.annotation.PostConstruct;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.text.MessageFormat;
+import java.util.Set;
+
+/**
+ * Holds the {@link QueryScheduler} shared by all calls to the QueryExecutorBean and exposes its queue statistics over JMX
+ */
+@Singleton
+// CDI singleton
+@MBean
+public class QuerySchedulerBean {
+    
+    private static Logger log = Logger.getLogger(QuerySchedulerBean.class);
+    
+    @Inject
+    @SpringBean(required = false, refreshable = true)
+    private QuerySchedulerConfiguration config;
+    
+    private QueryScheduler scheduler;
+    
+    @PostConstruct
+    public void init() {
+        if (config == null) {
+            log.info("No QuerySchedulerConfiguration found, create and next calls will not be scheduled");
+        }
+        scheduler = new QueryScheduler(config);
+    }
+    
+    /**
+     * Wait for a call slot for the given user and query logic.
+     *
+     * @param user
+     *            the user making the call
+     * @param logic
+     *            the query logic name
+     * @return the permit to close when the call is done
+     * @throws PreConditionFailedQueryException
+     *             if no slot became available within the configured wait time
+     * @throws InterruptedException
+     *             if the query was canceled while waiting
+     */
+    public QueryScheduler.Permit acquire(String user, String logic) throws PreConditionFailedQueryException, InterruptedException {
+        QueryScheduler.Permit permit = scheduler.acquire(user, logic);
+        if (permit == null) {
+            throw new PreConditionFailedQueryException(DatawaveErrorCode.QUERY_TIMEOUT_FOR_RESOURCES, MessageFormat.format(
+                            "No call slot available for {0} within {1}ms", user, config.getMaxWaitMs()));
+        }
+        return permit;
+    }
+    
+    /**
+     * Reject the query if its predicted cost is too high to start while the scheduler is saturated.
+     *
+     * @param user
+     *            the user creating the query
+     * @param logic
+     *            the query logic name
+     * @param predictions
+     *            the QueryPredictor output for the query, may be null
+     * @throws PreConditionFailedQueryException
+     *             if the query is not admitted
+     */
+    public void admit(String user, String logic, Set<Prediction> predictions) throws PreConditionFailedQueryException {
+        if (predictions == null || config == null || config.getCostPredictionName() == null) {
+            return;
+        }
+        for (Prediction prediction : predictions) {
+            if (config.getCostPredictionName().equals(prediction.getName()) && !scheduler.admit(user, logic, prediction.getPrediction())) {
+                throw new PreConditionFailedQueryException(DatawaveErrorCode.QUERY_TIMEOUT_FOR_RESOURCES, MessageFormat.format(
+                                "Estimated cost {0} exceeds {1} while the server is busy", prediction.getPrediction(), config.getMaxAdmissibleCost()));
+            }
+        }
+    }
+    
+    public boolean isAdmissionControlEnabled() {
+        return scheduler.isEnabled() && config.getCostPredictionName() != null && config.getMaxAdmissibleCost() > 0;
+    }
+    
+    @JmxManaged
+    public int getNumActive() {
+        return scheduler.getNumActive();
+    }
+    
+    @JmxManaged
+    public int getNumWaiting() {
+        return scheduler.getNumWaiting();
+    }
+    
+    @JmxManaged
+    public long getNumGranted() {
+        return scheduler.getNumGranted();
+    }
+    
+    @JmxManaged
+    public long getNumTimedOut() {
+        return scheduler.getNumTimedOut();
+    }
+    
+    @JmxManaged
+    public long getNumRejected() {
+        return scheduler.getNumRejected();
+    }
+    
+    @JmxManaged
+    public long getAverageWaitMs() {
+        return scheduler.getAverageWaitMs();
+    }
+    
+    @JmxManaged
+    public String listUserStatus() {
+        StringBuilder buf = new StringBuilder();
+        for (String status : scheduler.getUserStatus()) {
+            buf.append(status).append("\n");
+        }
+        return buf.toString();
+    }
+}
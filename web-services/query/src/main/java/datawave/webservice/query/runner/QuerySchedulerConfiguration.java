@@ -0,0 +1,73 @@
+package datawave.webservice.query.runner;
+
+import datawave.configuration.RefreshableScope;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Configuration file is located at: datawave/query/QueryScheduler.xml
+ */
+@RefreshableScope
+public class QuerySchedulerConfiguration {
+    
+    // maximum number of create and next calls executing at once, 0 disables scheduling
+    private int maxConcurrentCalls = 0;
+    // milliseconds a call will wait for its turn before it is rejected
+    private long maxWaitMs = 60000;
+    // relative share of the call slots given to a user or a query logic, 1.0 if not listed
+    private Map<String,Double> userWeights = new HashMap<>();
+    private Map<String,Double> logicWeights = new HashMap<>();
+    // name of the QueryPredictor prediction used as the estimated cost of a query
+    private String costPredictionName = null;
+    // queries estimated above this cost are only admitted when there are free call slots, 0 disables admission control
+    private double maxAdmissibleCost = 0;
+    
+    public int getMaxConcurrentCalls() {
+        return maxConcurrentCalls;
+    }
+    
+    public void setMaxConcurrentCalls(int maxConcurrentCalls) {
+        this.maxConcurrentCalls = maxConcurrentCalls;
+    }
+    
+    public long getMaxWaitMs() {
+        return maxWaitMs;
+    }
+    
+    public void setMaxWaitMs(long maxWaitMs) {
+        this.maxWaitMs = maxWaitMs;
+    }
+    
+    public Map<String,Double> getUserWeights() {
+        return userWeights;
+    }
+    
+    public void setUserWeights(Map<String,Double> userWeights) {
+        this.userWeights = userWeights;
+    }
+    
+    public Map<String,Double> getLogicWeights() {
+        return logicWeights;
+    }
+    
+    public void setLogicWeights(Map<String,Double> logicWeights) {
+        this.logicWeights = logicWeights;
+    }
+    
+    public String getCostPredictionName() {
+        return costPredictionName;
+    }
+    
+    public void setCostPredictionName(String costPredictionName) {
+        this.costPredictionName = costPredictionName;
+    }
+    
+    public double getMaxAdmissibleCost() {
+        return maxAdmissibleCost;
+    }
+    
+    public void setMaxAdmissibleCost(double maxAdmissibleCost) {
+        this.maxAdmissibleCost = maxAdmissibleCost;
+    }
+}
@@ -61,6 +61,11 @@ public class LookupUUIDUtil {
      */
     public static final String PARAM_CONTENT_LOOKUP = "content.lookup";
     
+    /**
+     * Internally assigned parameter asking the UUID query logic to resolve the documents of a content lookup with its UUID lookup engine
+     */
+    public static final String PARAM_UUID_LOOKUP_ENGINE = "uuid.lookup.engine";
+    
     private static final String PARAM_LUCENE_QUERY_SYNTAX = ";query.syntax:LUCENE-UUID";
     protected static final String QUOTE = "\"";
     private static final String REGEX_GROUPING_CHARS = "[()]";
@@ -850,6 +855,11 @@ public class LookupUUIDUtil {
         // Conditionally add content.lookup syntax to parameters to indicate content lookup during "next" calls
         if (criteria.isContentLookup() && !criteria.isAllEventLookup()) {
             params = params + ';' + PARAM_CONTENT_LOOKUP + ':' + true;
+            
+            // Only the document IDs are needed for content lookups, so the UUIDs may be resolved without planning a query
+            if (this.lookupUUIDConfiguration.isLookupEngineEnabled() && !(criteria instanceof NextContentCriteria)) {
+                params = params + ';' + PARAM_UUID_LOOKUP_ENGINE + ':' + true;
+            }
         }
         criteria.getQueryParameters().putSingle(QueryParameters.QUERY_PARAMS, params);
         
@@ -539,6 +539,75 @@ public class CompositeQueryLogicTest {
         
     }
     
+    @Test
+    // testQueryLogic with fewer threads than query logics and a small per logic queue
+    public void testQueryLogicWithBoundedConcurrency() throws Exception {
+        Logger.getLogger(CompositeQueryLogic.class).setLevel(Level.TRACE);
+        Logger.getLogger(CompositeQueryLogicResults.class).setLevel(Level.TRACE);
+        Logger.getLogger(CompositeQueryLogicTransformer.class).setLevel(Level.TRACE);
+        List<BaseQueryLogic<?>> logics = new ArrayList<>();
+        TestQueryLogic logic1 = new TestQueryLogic();
+        TestQueryLogic2 logic2 = new TestQueryLogic2();
+        logics.add(logic1);
+        logics.add(logic2);
+        
+        logic1.getData().put(key1, value1);
+        logic1.getData().put(key2, value2);
+        logic2.getData().put(key3, value3);
+        logic2.getData().put(key4, value4);
+        logic1.getData().put(key5, value5);
+        logic1.getData().put(key6, value6);
+        logic2.getData().put(key7, value7);
+        logic2.getData().put(key8, value8);
+        
+        QueryImpl settings = new QueryImpl();
+        settings.setPagesize(100);
+        settings.setQueryAuthorizations(auths.toString());
+        settings.setQuery("FOO == 'BAR'");
+        settings.setParameters(new HashSet<>());
+        settings.setId(UUID.randomUUID());
+        
+        CompositeQueryLogic c = new CompositeQueryLogic();
+        // max.results.override is set to -1 when it is not passed in as it is an optional paramter
+        logic1.setMaxResults(-1);
+        logic2.setMaxResults(-1);
+        /**
+         * RunningQuery.setupConnection()
+         */
+        c.setQueryLogics(logics);
+        c.setMaxConcurrentLogics(1);
+        c.setMaxQueuedResultsPerLogic(1);
+        c.initialize((Connector) null, (Query) settings, Collections.singleton(auths));
+        c.setupQuery(null);
+        TransformIterator iter = c.getTransformIterator((Query) settings);
+        
+        /**
+         * RunningQuery.next() - iterate over results coming from tablet server through the TransformIterator to turn them into the objects.
+         */
+        List<Object> results = new ArrayList<>();
+        while (iter.hasNext()) {
+            Object o = iter.next();
+            if (null == o)
+                break;
+            Assert.assertTrue(o instanceof TestQueryResponse);
+            results.add((TestQueryResponse) o);
+        }
+        Assert.assertEquals(8, results.size());
+        ResultsPage page = new ResultsPage(results, Status.COMPLETE);
+        
+        /**
+         * QueryExecutorBean.next() - transform list of objects into JAXB response
+         */
+        TestQueryResponseList response = (TestQueryResponseList) c.getTransformer((Query) settings).createResponse(page);
+        Assert.assertEquals(8, response.getResponses().size());
+        for (TestQueryResponse r : response.getResponses()) {
+            Assert.assertNotNull(r);
+        }
+        
+        c.close();
+        
+    }
+    
     @Test
     // testQueryLogic with max.results.override is set
     public void testQueryLogicWithMaxResultsOverride() throws Exception {
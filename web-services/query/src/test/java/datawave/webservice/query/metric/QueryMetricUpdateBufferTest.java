@@ -0,0 +1,119 @@
+package datawave.webservice.query.metric;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import datawave.webservice.query.metric.BaseQueryMetric.Lifecycle;
+import datawave.webservice.query.metric.BaseQueryMetric.PageMetric;
+
+import org.junit.Test;
+
+public class QueryMetricUpdateBufferTest {
+    
+    private static QueryMetricHolder update(String queryId, Lifecycle lifecycle, long... pageNumbers) {
+        QueryMetric metric = new QueryMetric();
+        metric.setQueryId(queryId);
+        metric.setLifecycle(lifecycle);
+        ArrayList<PageMetric> pages = new ArrayList<>();
+        for (long pageNumber : pageNumbers) {
+            PageMetric page = new PageMetric(10, 5, pageNumber, pageNumber);
+            page.setPageNumber(pageNumber);
+            pages.add(page);
+        }
+        metric.setPageTimes(pages);
+        return new QueryMetricHolder(null, metric);
+    }
+    
+    private static List<Long> pageNumbers(QueryMetricUpdateBuffer.CoalescedUpdate update) {
+        List<Long> pageNumbers = new ArrayList<>();
+        for (PageMetric page : update.getHolder().getQueryMetric().getPageTimes()) {
+            pageNumbers.add(page.getPageNumber());
+        }
+        return pageNumbers;
+    }
+    
+    @Test
+    public void testLatestUpdateWins() {
+        QueryMetricUpdateBuffer buffer = new QueryMetricUpdateBuffer();
+        QueryMetricHolder first = update("query1", Lifecycle.INITIALIZED);
+        QueryMetricHolder other = update("query2", Lifecycle.INITIALIZED);
+        QueryMetricHolder second = update("query1", Lifecycle.RESULTS);
+        QueryMetricHolder third = update("query1", Lifecycle.CLOSED);
+        buffer.add(first);
+        buffer.add(other);
+        buffer.add(second);
+        buffer.add(third);
+        
+        assertEquals(2, buffer.size());
+        assertEquals(4, buffer.getNumReceived());
+        
+        List<QueryMetricUpdateBuffer.CoalescedUpdate> updates = buffer.drain();
+        assertEquals(2, updates.size());
+        // in the order the query ids were first received
+        assertSame(third, updates.get(0).getHolder());
+        assertEquals(Lifecycle.CLOSED, updates.get(0).getHolder().getQueryMetric().getLifecycle());
+        assertEquals(Arrays.asList(first.getQueryMetric(), second.getQueryMetric(), third.getQueryMetric()), updates.get(0).getUpdates());
+        assertSame(other, updates.get(1).getHolder());
+        
+        assertTrue(buffer.isEmpty());
+        assertEquals(0, buffer.getNumReceived());
+    }
+    
+    @Test
+    public void testPagesMerged() {
+        QueryMetricUpdateBuffer buffer = new QueryMetricUpdateBuffer();
+        buffer.add(update("query1", Lifecycle.RESULTS, 1));
+        buffer.add(update("query1", Lifecycle.RESULTS, 2, 3));
+        buffer.add(update("query1", Lifecycle.CLOSED));
+        
+        List<QueryMetricUpdateBuffer.CoalescedUpdate> updates = buffer.drain();
+        assertEquals(1, updates.size());
+        assertEquals(Arrays.asList(1L, 2L, 3L), pageNumbers(updates.get(0)));
+    }
+    
+    @Test
+    public void testNewerPageReplacesOlder() {
+        QueryMetricUpdateBuffer buffer = new QueryMetricUpdateBuffer();
+        buffer.add(update("query1", Lifecycle.RESULTS, 1, 2));
+        QueryMetricHolder newer = update("query1", Lifecycle.RESULTS, 2);
+        PageMetric newerPage = newer.getQueryMetric().getPageTimes().get(0);
+        buffer.add(newer);
+        
+        List<PageMetric> pages = buffer.drain().get(0).getHolder().getQueryMetric().getPageTimes();
+        assertEquals(2, pages.size());
+        assertSame(newerPage, pages.get(1));
+    }
+    
+    @Test
+    public void testUpdatesWithoutQueryIdAreNotCoalesced() {
+        QueryMetricUpdateBuffer buffer = new QueryMetricUpdateBuffer();
+        buffer.add(update(null, Lifecycle.INITIALIZED));
+        buffer.add(update(null, Lifecycle.INITIALIZED));
+        assertEquals(2, buffer.size());
+    }
+    
+    @Test
+    public void testFailedUpdatesRequeued() {
+        QueryMetricUpdateBuffer buffer = new QueryMetricUpdateBuffer();
+        buffer.add(update("query1", Lifecycle.RESULTS, 1));
+        buffer.add(update("query1", Lifecycle.RESULTS, 2));
+        List<QueryMetricUpdateBuffer.CoalescedUpdate> failed = buffer.drain();
+        
+        buffer.addAll(failed);
+        assertEquals(1, buffer.size());
+        
+        // a later update for the same query keeps the pages of the failed one
+        buffer.add(update("query1", Lifecycle.CLOSED, 3));
+        List<QueryMetricUpdateBuffer.CoalescedUpdate> updates = buffer.drain();
+        assertEquals(1, updates.size());
+        assertEquals(Arrays.asList(1L, 2L, 3L), pageNumbers(updates.get(0)));
+        assertEquals(Lifecycle.CLOSED, updates.get(0).getHolder().getQueryMetric().getLifecycle());
+        assertEquals(Collections.emptyList(), buffer.drain());
+    }
+}
@@ -0,0 +1,104 @@
+package datawave.webservice.query.metric;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertTrue;
+
+import javax.jms.JMSConsumer;
+import javax.jms.JMSContext;
+import javax.jms.ObjectMessage;
+import javax.jms.Queue;
+
+import datawave.webservice.query.metric.BaseQueryMetric.Lifecycle;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.powermock.reflect.Whitebox;
+
+public class QueryMetricsWriterTest {
+    
+    private QueryMetricsWriter writer;
+    private JMSContext jmsContext;
+    private JMSConsumer consumer;
+    private Queue dest;
+    private QueryMetricHandler queryMetricHandler;
+    private QueryMetricsWriterConfiguration config;
+    
+    @Before
+    public void setup() throws Exception {
+        jmsContext = createMock(JMSContext.class);
+        consumer = createMock(JMSConsumer.class);
+        dest = createMock(Queue.class);
+        queryMetricHandler = createMock(QueryMetricHandler.class);
+        config = new QueryMetricsWriterConfiguration();
+        config.setMaxQueueSize(2);
+        config.setReceiveTimeoutMs(10);
+        
+        writer = new QueryMetricsWriter();
+        Whitebox.setInternalState(writer, "jmsContext", jmsContext);
+        Whitebox.setInternalState(writer, "dest", dest);
+        Whitebox.setInternalState(writer, "queryMetricHandler", queryMetricHandler);
+        Whitebox.setInternalState(writer, "config", config);
+        Whitebox.invokeMethod(writer, "init");
+    }
+    
+    private static QueryMetric metric(String queryId, Lifecycle lifecycle) {
+        QueryMetric metric = new QueryMetric();
+        metric.setQueryId(queryId);
+        metric.setLifecycle(lifecycle);
+        return metric;
+    }
+    
+    private static ObjectMessage message(QueryMetric metric) throws Exception {
+        ObjectMessage message = createMock(ObjectMessage.class);
+        expect(message.getObject()).andReturn(new QueryMetricHolder(null, metric));
+        replay(message);
+        return message;
+    }
+    
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testFlushOnSize() throws Exception {
+        QueryMetric first = metric("query1", Lifecycle.INITIALIZED);
+        QueryMetric second = metric("query1", Lifecycle.RESULTS);
+        QueryMetric other = metric("query2", Lifecycle.INITIALIZED);
+        
+        expect(jmsContext.createConsumer(dest)).andReturn(consumer);
+        // the receive loop stops once two query ids are buffered, leaving the rest of the messages on the queue
+        expect(consumer.receive(10L)).andReturn(message(first));
+        expect(consumer.receive(10L)).andReturn(message(second));
+        expect(consumer.receive(10L)).andReturn(message(other));
+        consumer.close();
+        // only the latest update of each query is written
+        queryMetricHandler.updateMetric(second, null);
+        queryMetricHandler.updateMetric(other, null);
+        queryMetricHandler.flush();
+        expectLastCall().times(2);
+        replay(jmsContext, consumer, queryMetricHandler);
+        
+        writer.receiveQueryMetrics();
+        
+        verify(jmsContext, consumer, queryMetricHandler);
+        assertTrue(((QueryMetricUpdateBuffer) Whitebox.getInternalState(writer, "metricQueue")).isEmpty());
+    }
+    
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testFlushOnShutdown() throws Exception {
+        QueryMetric failed = metric("query1", Lifecycle.CLOSED);
+        QueryMetricUpdateBuffer metricQueue = Whitebox.getInternalState(writer, "metricQueue");
+        metricQueue.add(new QueryMetricHolder(null, failed));
+        
+        queryMetricHandler.updateMetric(failed, null);
+        queryMetricHandler.flush();
+        replay(jmsContext, consumer, queryMetricHandler);
+        
+        writer.shutdown();
+        
+        verify(jmsContext, consumer, queryMetricHandler);
+        assertTrue(metricQueue.isEmpty());
+    }
+}
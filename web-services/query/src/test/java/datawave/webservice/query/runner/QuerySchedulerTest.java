@@ -0,0 +1,194 @@
+package datawave.webservice.query.runner;
+
+import org.easymock.EasyMock;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.powermock.reflect.Whitebox;
+
+import javax.ejb.EJBContext;
+import java.security.Principal;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class QuerySchedulerTest {
+    
+    private QuerySchedulerConfiguration config;
+    private QueryScheduler scheduler;
+    
+    @Before
+    public void setup() {
+        config = new QuerySchedulerConfiguration();
+        config.setMaxConcurrentCalls(1);
+        config.setMaxWaitMs(10000);
+        scheduler = new QueryScheduler(config);
+    }
+    
+    @Test
+    public void testDisabled() throws Exception {
+        config.setMaxConcurrentCalls(0);
+        QueryScheduler.Permit first = scheduler.acquire("userA", "EventQuery");
+        QueryScheduler.Permit second = scheduler.acquire("userA", "EventQuery");
+        Assert.assertNotNull(first);
+        Assert.assertNotNull(second);
+        Assert.assertEquals(0, scheduler.getNumActive());
+    }
+    
+    @Test
+    public void testFairShare() throws Exception {
+        config.setMaxConcurrentCalls(2);
+        QueryScheduler.Permit first = scheduler.acquire("userA", "EventQuery");
+        QueryScheduler.Permit second = scheduler.acquire("userA", "EventQuery");
+        Assert.assertEquals(2, scheduler.getNumActive());
+        
+        List<String> order = new CopyOnWriteArrayList<>();
+        // userA queues two calls before userB queues one
+        Thread a1 = startCall("userA", order);
+        waitForWaiting(1);
+        Thread a2 = startCall("userA", order);
+        waitForWaiting(2);
+        Thread b1 = startCall("userB", order);
+        waitForWaiting(3);
+        
+        // the freed slot goes to userB even though userA queued first, since userA still holds a slot
+        first.close();
+        b1.join(10000);
+        second.close();
+        a1.join(10000);
+        a2.join(10000);
+        Assert.assertEquals(3, order.size());
+        Assert.assertEquals("userB", order.get(0));
+        Assert.assertEquals(0, scheduler.getNumActive());
+        Assert.assertEquals(0, scheduler.getNumWaiting());
+        Assert.assertEquals(5, scheduler.getNumGranted());
+    }
+    
+    @Test
+    public void testUserWeights() throws Exception {
+        config.setMaxConcurrentCalls(2);
+        config.setUserWeights(Collections.singletonMap("userA", 4.0));
+        QueryScheduler.Permit a = scheduler.acquire("userA", "EventQuery");
+        QueryScheduler.Permit b = scheduler.acquire("userB", "EventQuery");
+        
+        List<String> order = new CopyOnWriteArrayList<>();
+        Thread b2 = startCall("userB", order);
+        waitForWaiting(1);
+        Thread a2 = startCall("userA", order);
+        waitForWaiting(2);
+        
+        // with four times the weight, userA's second call is served before userB's even though userB queued first
+        b.close();
+        a2.join(10000);
+        b2.join(10000);
+        Assert.assertEquals(2, order.size());
+        Assert.assertEquals("userA", order.get(0));
+        Assert.assertEquals("userB", order.get(1));
+        
+        a.close();
+        Assert.assertEquals(0, scheduler.getNumActive());
+    }
+    
+    @Test
+    public void testTimeout() throws Exception {
+        config.setMaxWaitMs(50);
+        QueryScheduler.Permit held = scheduler.acquire("userA", "EventQuery");
+        Assert.assertNull(scheduler.acquire("userB", "EventQuery"));
+        Assert.assertEquals(1, scheduler.getNumTimedOut());
+        Assert.assertEquals(0, scheduler.getNumWaiting());
+        held.close();
+        // closing twice must not release a second slot
+        held.close();
+        Assert.assertEquals(0, scheduler.getNumActive());
+    }
+    
+    @Test
+    public void testAdmission() throws Exception {
+        config.setMaxAdmissibleCost(100);
+        Assert.assertTrue(scheduler.admit("userA", "EventQuery", 1000));
+        QueryScheduler.Permit held = scheduler.acquire("userA", "EventQuery");
+        Assert.assertTrue(scheduler.admit("userB", "EventQuery", 10));
+        Assert.assertFalse(scheduler.admit("userB", "EventQuery", 1000));
+        Assert.assertEquals(1, scheduler.getNumRejected());
+        held.close();
+        Assert.assertTrue(scheduler.admit("userB", "EventQuery", 1000));
+    }
+    
+    @Test
+    public void testCancelWhileWaitingForNext() throws Exception {
+        Principal principal = () -> "userA";
+        EJBContext context = EasyMock.createMock(EJBContext.class);
+        EasyMock.expect(context.getCallerPrincipal()).andReturn(principal).anyTimes();
+        EasyMock.replay(context);
+        AccumuloConnectionRequestBean connectionRequestBean = new AccumuloConnectionRequestBean();
+        Whitebox.setInternalState(connectionRequestBean, EJBContext.class, context);
+        
+        QuerySchedulerBean querySchedulerBean = new QuerySchedulerBean();
+        Whitebox.setInternalState(querySchedulerBean, QuerySchedulerConfiguration.class, config);
+        querySchedulerBean.init();
+        QueryScheduler scheduler = Whitebox.getInternalState(querySchedulerBean, QueryScheduler.class);
+        
+        QueryExecutorBean queryExecutor = new QueryExecutorBean();
+        Whitebox.setInternalState(queryExecutor, AccumuloConnectionRequestBean.class, connectionRequestBean);
+        Whitebox.setInternalState(queryExecutor, QuerySchedulerBean.class, querySchedulerBean);
+        
+        // another call holds the only slot, so the next call for the query has to wait
+        QueryScheduler.Permit held = querySchedulerBean.acquire("userB", "EventQuery");
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread next = new Thread(() -> {
+            try (QueryScheduler.Permit permit = Whitebox.invokeMethod(queryExecutor, "acquireCallPermit", "query1", "userA", "EventQuery")) {
+                Assert.fail("The call should have been canceled");
+            } catch (Throwable t) {
+                failure.set(t);
+            }
+        });
+        next.start();
+        long end = System.currentTimeMillis() + 10000;
+        while (scheduler.getNumWaiting() < 1 && System.currentTimeMillis() < end) {
+            Thread.sleep(5);
+        }
+        Assert.assertEquals(1, scheduler.getNumWaiting());
+        
+        // canceling the query interrupts the wait the same way it interrupts a wait for a connection
+        Assert.assertTrue(connectionRequestBean.cancelConnectionRequest("query1", principal));
+        next.join(10000);
+        Assert.assertFalse(next.isAlive());
+        Assert.assertTrue(failure.get() instanceof InterruptedException);
+        Assert.assertEquals(0, scheduler.getNumWaiting());
+        // the wait is no longer registered
+        Assert.assertFalse(connectionRequestBean.cancelConnectionRequest("query1", principal));
+        
+        held.close();
+        Assert.assertEquals(0, scheduler.getNumActive());
+    }
+    
+    private Thread startCall(String user, List<String> order) {
+        CountDownLatch started = new CountDownLatch(1);
+        Thread t = new Thread(() -> {
+            started.countDown();
+            try (QueryScheduler.Permit permit = scheduler.acquire(user, "EventQuery")) {
+                order.add(user);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        t.start();
+        try {
+            started.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return t;
+    }
+    
+    private void waitForWaiting(int numWaiting) throws InterruptedException {
+        long end = System.currentTimeMillis() + 10000;
+        while (scheduler.getNumWaiting() < numWaiting && System.currentTimeMillis() < end) {
+            Thread.sleep(5);
+        }
+        Assert.assertEquals(numWaiting, scheduler.getNumWaiting());
+    }
+}